@@ -7,6 +7,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -15,10 +16,12 @@ import java.util.Set;
 import com.fy.sparam.core.JoinWorker.JoinRelationType;
 import com.fy.sparam.core.JoinWorker.JoinType;
 import com.fy.sparam.core.ParameterContext.IParameterObj;
+import com.fy.sparam.core.ParameterContext.ModifyType;
 import com.fy.sparam.core.SearchContext.IRelationalable;
 import com.fy.sparam.core.SearchContext.ISearchable;
 import com.fy.sparam.core.SearchContext.ITransformable;
 import com.fy.sparam.core.SearchContext.SearchContentSource;
+import com.fy.sparam.core.SearchNode.SearchGroup;
 import com.fy.sparam.util.StringUtils;
 
 /**
@@ -225,6 +228,9 @@ implements IParameterObj, Cloneable {
 	 */
 	public void setQueryName(String queryName) {
 		this.queryName = queryName;
+		if(this.paramContext != null) {
+			this.paramContext.markModified(ModifyType.QUERY_NAME);
+		}
 	}
 
 	/**
@@ -249,6 +255,9 @@ implements IParameterObj, Cloneable {
 	 */
 	public void setQueryAlias(String queryAlias) {
 		this.queryAlias = queryAlias;
+		if(this.paramContext != null) {
+			this.paramContext.markModified(ModifyType.QUERY_NAME);
+		}
 	}
 
 	/**
@@ -275,6 +284,7 @@ implements IParameterObj, Cloneable {
 	public void setPage(int page) {
 		this.assertParameterContextNotNull();
 		this.paramContext.page = page;
+		this.paramContext.markModified(ModifyType.PAGING);
 	}
 	
 	/**
@@ -301,6 +311,7 @@ implements IParameterObj, Cloneable {
 	public void setCount(int count) {
 		this.assertParameterContextNotNull();
 		this.paramContext.count = count;
+		this.paramContext.markModified(ModifyType.PAGING);
 	}
 	
 	/**
@@ -356,6 +367,30 @@ implements IParameterObj, Cloneable {
 	 */
 	public final void join(PT param, JoinType joinType, JoinRelationType relationType,
 			ISearchable<?> from, ISearchable<?> to, String extractQuery) throws Exception {
+		this.join(param, joinType, relationType, from, to, extractQuery, null);
+	}
+	
+	/**
+	 * 动态关联其它搜索参数, 额外搜索条件语句中可以使用命名绑定
+	 * <br/> 如果当前搜索参数/指定关联的搜索参数不是根搜索参数会自动找到根搜索参数并进行关联.
+	 * <br/> 额外搜索条件语句只解析一次, 如: {$TO.orderNumber}:eq(:num), 命名绑定的值在关联时才进行转换;
+	 * 缺少命名绑定或绑定后的参数数量不正确时在调用时就抛出异常.
+	 * 
+	 * @param param 要动态关联的搜索参数实例, 不能为null.
+	 * @param joinType 关联类型, 如果为null则默认为{@link JoinType.INNER_JOIN}
+	 * @param relationType 关联关系类型, 如果为null默认为{@link JoinRelationType.EQ}
+	 * @param from 属于当前搜索参数管理范围内的搜索器, 作为关联起点, 不能为null
+	 * @param to 属于动态关联的搜索参数管理范围内的搜索器, 作为关联终点, 不能为null
+	 * @param extractQuery 额外搜索条件语句, 可以为null
+	 * @param extractQueryBinds 额外搜索条件语句中命名绑定的值, 可以为null
+	 * @throws Exception 动态关联失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final void join(PT param, JoinType joinType, JoinRelationType relationType,
+			ISearchable<?> from, ISearchable<?> to, String extractQuery,
+			Map<String, ?> extractQueryBinds) throws Exception {
 		this.assertHasInit();
 		if(param == null || ! param.hasInit) {
 			throw new IllegalArgumentException("动态关联的搜索参数为null, 或没没完成初始化");
@@ -363,6 +398,7 @@ implements IParameterObj, Cloneable {
 		if(from == null || to == null) {
 			throw new IllegalArgumentException("动态关联的起点搜索器或终点搜索器为null");
 		}
+		JoinWorker.checkExtraQueryBinds(extractQuery, extractQueryBinds);
 		PT fromRootParam = this.paramContext.rootParam;
 		PT toRootParam = param.paramContext.rootParam;
 		if(param.paramContext.dynamicJoinParamContextPool != null
@@ -401,7 +437,7 @@ implements IParameterObj, Cloneable {
 		if(fromParam.myDynamicJoinedParams == null) {
 			fromParam.myDynamicJoinedParams = new HashMap<ParameterField<PT, SCT, RT>, PT>();
 		}
-		fromParam.myDynamicJoinedParams.put(fromParamField, toParam);
+		final PT replacedJoinedParam = fromParam.myDynamicJoinedParams.put(fromParamField, toParam);
 		// 重新动态关联的搜索参数的表别名, 使用被关联的搜索参数中的计数器
 		toParam.paramContext.generateGlobalNonConflictQueryAlias(fromParam.paramContext,
 				fromParam.paramContext.joinCounter);
@@ -413,8 +449,24 @@ implements IParameterObj, Cloneable {
 		}
 		// 反转最短关联路径的关联关系
 		JoinWorker<PT, SCT, RT> joinWorker = JoinWorker.build(fromParam, toParam,
-				joinType, relationType, fromParamField, toParamField, extractQuery);
+				joinType, relationType, fromParamField, toParamField, extractQuery, extractQueryBinds);
 		toParam.paramContext.reverseParametersJoinDirection(toParam, toRootParam, joinWorker);
+		fromRootParam.paramContext.markAllModified();
+		// 有保存点时, 回滚通过解绑撤销这次动态关联
+		final PT joinedRootParam = toRootParam;
+		final PT joinFromParam = fromParam;
+		final ParameterField<PT, SCT, RT> joinFromParamField = fromParamField;
+		fromRootParam.paramContext.journal.record(new ChangeJournal.Change() {
+			@Override
+			void undo() throws Exception {
+				joinedRootParam.unJoin(true);
+				if(replacedJoinedParam == null) {
+					joinFromParam.myDynamicJoinedParams.remove(joinFromParamField);
+				} else {
+					joinFromParam.myDynamicJoinedParams.put(joinFromParamField, replacedJoinedParam);
+				}
+			}
+		});
 	}
 	
 	/**
@@ -493,11 +545,13 @@ implements IParameterObj, Cloneable {
 	/**
 	 * 被动态关联的搜索参数解绑动态关联
 	 * <br/> 会重置被动态关联的搜索参数在关联期间进行添加的搜索内容
+	 * <br/> 解绑不能回滚, 会使关联起点的根搜索参数的所有保存点失效.
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
 	public final void unJoin() throws Exception {
+		this.paramContext.journal.invalidate();
 		this.unJoin(true);
 	}
 	
@@ -549,7 +603,7 @@ implements IParameterObj, Cloneable {
 			if(this.usingJoinWorker == null) {
 				throw new IllegalArgumentException("不能改变非关联搜索参数的关联类型");
 			}
-			this.usingJoinWorker.mappedJoinType = joinType;
+			this.usingJoinWorker.setMappedTypes(joinType, this.usingJoinWorker.mappedRelationType);
 		}
 	}
 	
@@ -567,7 +621,7 @@ implements IParameterObj, Cloneable {
 			if(this.usingJoinWorker == null) {
 				throw new IllegalArgumentException("不能改变非关联搜索参数的关联连接条件类型");
 			}
-			this.usingJoinWorker.mappedRelationType = relationType;
+			this.usingJoinWorker.setMappedTypes(this.usingJoinWorker.mappedJoinType, relationType);
 		}
 	}
 	
@@ -713,6 +767,45 @@ implements IParameterObj, Cloneable {
 		this.paramContext.getCurrentSearchContext().disableAutoRelation();
 	}
 	
+	/**
+	 * 启用构建时的条件规范化
+	 * <br/> 构建时按不改变搜索结果的规则重写搜索条件: 同一字段以OR连接的等于条件合并为IN,
+	 * 同一字段以AND连接的范围条件合并为最紧的范围或BETWEEN, 去掉完全相同的重复条件.
+	 * 记录的条件本身不会被修改, 取消搜索等操作仍按原来的条件进行.
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final void enableConditionNormalization() {
+		this.assertHasInit();
+		this.paramContext.getCurrentSearchContext().setNormalizeSearchTree(true);
+	}
+	
+	/**
+	 * 把已有的搜索条件整体作为一个条件组, 相当于在已有条件的最前和最后加上分割符
+	 * <br/> 用于在已有的搜索条件上追加必须同时满足的条件, 如: a OR b 整体作为一组后再AND c, 构建为 ( a OR b ) AND c.
+	 * 
+	 * @throws Exception 有还没结束的分割符则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final void wrapSearch() throws Exception {
+		this.assertHasInit();
+		this.paramContext.getCurrentSearchContext().wrapSearchTree();
+	}
+	
+	/**
+	 * 关闭构建时的条件规范化
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final void disableConditionNormalization() {
+		this.assertHasInit();
+		this.paramContext.getCurrentSearchContext().setNormalizeSearchTree(false);
+	}
+	
 	/**
 	 * 设置以当前搜索参数开始可以管理的所有搜索参数字段进行输出
 	 * 
@@ -788,14 +881,16 @@ implements IParameterObj, Cloneable {
 		}
 		// 回调自定义实现方法
 		this.onReset(args);
+		this.paramContext.markAllModified();
 		// 清空搜索内容
 		this.paramContext.getCurrentSearchContext().clear();
 		// 重置搜素参数字段(重置搜索内容发现全没了就不会处理)
 		for(ParameterField<PT, SCT, RT> paramField : this.paramContext.allParamFields) {
 			paramField.reset();
 		}
-		// 重置动态关联搜索内容
+		// 重置动态关联搜索内容, 解绑不能回滚, 保存点都失效
 		if(this.paramContext.dynamicJoinParamContextPool != null && ! this.paramContext.dynamicJoinParamContextPool.isEmpty()) {
+			this.paramContext.journal.invalidate();
 			for(PT param : this.paramContext.dynamicJoinParamContextPool.keySet()) {
 				param.unJoin(false);
 			}
@@ -803,11 +898,145 @@ implements IParameterObj, Cloneable {
 		// 重置关联搜索内容(关联搜索内容已经没有了)
 		for(PT param : this.paramContext.allParams) {
 			if(param.usingJoinWorker != null) {
-				param.usingJoinWorker.hasJoin = false;
+				param.usingJoinWorker.setHasJoin(false);
 			}
 		}
 	}
 	
+	/**
+	 * 创建当前搜索状态的保存点
+	 * <br/> 之后对搜索内容, 字段的输出, 排序和分组标记, 关联状态和分页的修改都会被记录,
+	 * 可以通过{@link #rollbackTo(SearchMark)}回滚到创建时的状态; 创建保存点不复制任何状态, 回滚的代价只与之后的修改数量有关.
+	 * <br/> 搜索参数实现类自己的状态不在保存点的范围内; 取消动态关联(包括重置时的取消)不能回滚, 会使所有保存点失效.
+	 * <br/> 有保存点时每次修改都会被记录, 不再需要的保存点应该通过{@link #releaseMark(SearchMark)}释放.
+	 * 
+	 * @return 保存点
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final SearchMark mark() {
+		this.assertHasInit();
+		if(this.paramType != ParameterType.ROOT || this.usingJoinWorker != null) {
+			throw new IllegalArgumentException("非根搜索参数或被动态关联的搜索参数不能创建保存点!");
+		}
+		final ParameterContext<PT, SCT, RT> paramContext = this.paramContext;
+		final ChangeJournal.Change searchContextRestorer = paramContext.getCurrentSearchContext().captureState();
+		final int page = paramContext.page;
+		final int count = paramContext.count;
+		return paramContext.journal.mark(new ChangeJournal.Change() {
+			@Override
+			void undo() throws Exception {
+				searchContextRestorer.undo();
+				paramContext.page = page;
+				paramContext.count = count;
+				paramContext.markAllModified();
+			}
+		});
+	}
+	
+	/**
+	 * 回滚到指定的保存点
+	 * <br/> 之后创建的保存点会失效, 指定的保存点仍然有效, 可以再次回滚.
+	 * 
+	 * @param mark 当前搜索参数创建的保存点
+	 * @throws Exception 保存点已经释放或失效, 或回滚失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final void rollbackTo(SearchMark mark) throws Exception {
+		this.assertHasInit();
+		if(this.paramType != ParameterType.ROOT || this.usingJoinWorker != null) {
+			throw new IllegalArgumentException("非根搜索参数或被动态关联的搜索参数不能回滚!");
+		}
+		// 回滚会修改搜索内容的容器, 分叉出来还在共用的搜索参数先复制
+		this.paramContext.getCurrentSearchContext().unshareContent();
+		this.paramContext.journal.rollbackTo(mark);
+	}
+	
+	/**
+	 * 释放指定的保存点, 之后创建的保存点也一起释放
+	 * <br/> 所有保存点都释放后不再记录修改.
+	 * 
+	 * @param mark 当前搜索参数创建的保存点
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final void releaseMark(SearchMark mark) {
+		this.assertHasInit();
+		this.paramContext.journal.release(mark);
+	}
+	
+	/**
+	 * 从当前搜索参数分叉出一个新的根搜索参数
+	 * <br/> 分叉出来的搜索参数有与当前相同的搜索内容, 字段的输出, 排序和分组标记, 关联状态和分页, 之后双方的修改互不影响.
+	 * <br/> 搜索内容与当前搜索参数共用而不复制, 分叉的代价只与搜索参数树的大小有关, 与已有的搜索内容数量无关;
+	 * 任意一方之后第一次修改搜索内容(分叉出来的一方第一次构建)时才复制一次搜索内容的容器, 不会重新进行搜索.
+	 * <br/> 适用于从同一个基础搜索派生出多个搜索(如列表, 计数和各个维度的统计), 原型请使用{@link #clone()}.
+	 * <br/> 有动态关联时不能分叉, 搜索参数实现类自己的状态通过{@link #onFork(AbsParameter, Map)}复制.
+	 * 
+	 * @return 分叉出来的根搜索参数
+	 * @throws Exception 不是非原型的根搜索参数, 有动态关联, 或分叉失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public final PT fork() throws Exception {
+		this.assertHasInit();
+		if(this.paramType != ParameterType.ROOT || this.usingJoinWorker != null) {
+			throw new IllegalArgumentException("非根搜索参数或被动态关联的搜索参数不能分叉!");
+		}
+		if(this.paramContext.isPrototype) {
+			throw new IllegalArgumentException("原型搜索参数不能分叉, 请使用clone!");
+		}
+		if(this.paramContext.dynamicJoinParamContextPool != null
+				&& ! this.paramContext.dynamicJoinParamContextPool.isEmpty()) {
+			throw new IllegalArgumentException("有动态关联的搜索参数不能分叉, 请在动态关联前分叉!");
+		}
+		if(! ParameterContext.DEFAULT_SEARCH_CONTEXT_NAME.equals(this.paramContext.usingSearchContextName)) {
+			throw new IllegalArgumentException("正在处理关联额外条件的搜索参数不能分叉!");
+		}
+		PT forkParam = (PT) super.clone();
+		// 克隆搜索参数上下文, 保留分页和关联计数
+		ParameterContext<PT, SCT, RT> forkParamContext = this.paramContext.clone();
+		forkParamContext.rootParam = forkParam;
+		forkParamContext.joinCounter = this.paramContext.joinCounter;
+		// 克隆搜索参数树, 记录对象的对应关系
+		Map<Object, Object> forkMapper = new IdentityHashMap<Object, Object>();
+		this.cloneImpl(forkParam, forkParamContext, forkMapper);
+		forkParam.callCloneDoneCallBack(forkParam);
+		// 复制搜索参数的标志和关联状态, 以及字段的标志
+		Map<ParameterField<PT, SCT, RT>, ParameterField<PT, SCT, RT>> forkParamFields = 
+				new IdentityHashMap<ParameterField<PT, SCT, RT>, ParameterField<PT, SCT, RT>>();
+		for(Entry<Object, Object> entry : forkMapper.entrySet()) {
+			if(entry.getKey() instanceof ParameterField) {
+				forkParamFields.put((ParameterField<PT, SCT, RT>) entry.getKey(), 
+						(ParameterField<PT, SCT, RT>) entry.getValue());
+			} else if(entry.getKey() instanceof AbsParameter) {
+				PT param = (PT) entry.getKey();
+				PT forkedParam = (PT) entry.getValue();
+				forkedParam.hasFieldSearched = param.hasFieldSearched;
+				forkedParam.hasFieldOutput = param.hasFieldOutput;
+				forkedParam.isAllMyFieldOutput = param.isAllMyFieldOutput;
+				if(param.usingJoinWorker != null) {
+					forkedParam.usingJoinWorker.hasJoin = param.usingJoinWorker.hasJoin;
+				}
+			}
+		}
+		for(Entry<ParameterField<PT, SCT, RT>, ParameterField<PT, SCT, RT>> entry : forkParamFields.entrySet()) {
+			entry.getValue().copyStateFrom(entry.getKey(), forkParamFields);
+		}
+		// 共用搜索内容
+		SearchContext<PT, SCT, RT> forkSearchContext = this.paramContext.getCurrentSearchContext().fork(forkMapper);
+		forkSearchContext.journal = forkParamContext.journal;
+		forkParamContext.registerSearchContext(ParameterContext.DEFAULT_SEARCH_CONTEXT_NAME, forkSearchContext);
+		forkParam.onFork((PT) this, forkParamFields);
+		return forkParam;
+	}
+	
 	@Override
 	public String toString() {
 		if(this.usingJoinWorker != null) {
@@ -833,7 +1062,7 @@ implements IParameterObj, Cloneable {
 		cloneParamContex.isPrototype = false;
 		try {
 			// 克隆包含内容, 递归克隆关联搜索参数
-			this.cloneImpl(cloneParam, cloneParamContex);
+			this.cloneImpl(cloneParam, cloneParamContex, null);
 			// 调用克隆回调
 			cloneParam.callCloneDoneCallBack(cloneParam);
 		} catch (Exception e) {
@@ -902,7 +1131,7 @@ implements IParameterObj, Cloneable {
 				fromParam, toParam,
 				joinType, relationType,
 				fromParamField, toParamField,
-				null);
+				null, null);
 		this.usingJoinWorker = joinWorker; /* 设置关联搜索参数的关联处理器*/
 		// 设置关联起点字段的属性
 		if(toParam.isDefaultJoinParameter()) {
@@ -1090,7 +1319,7 @@ implements IParameterObj, Cloneable {
 	 * @author linjie
 	 * @since 1.0.2
 	 */
-	final boolean isInheritJoinParameter() {
+	protected final boolean isInheritJoinParameter() {
 		this.assertParameterTypeNotNull();
 		return this.paramType == ParameterType.INHERIT_JOIN;
 	}
@@ -1116,6 +1345,7 @@ implements IParameterObj, Cloneable {
 		if(! isRaw) {
 			handleParamField = this.paramContext.getIndeedSearchParameterField(targetParamField, null);
 		}
+		handleParamField.recordState();
 		// 出现最短关联处理的情况下
 		if(! handleParamField.equals(targetParamField)) {
 			// 设置输出时设置实际操作字段代表目标字段操作的引用信息
@@ -1138,6 +1368,7 @@ implements IParameterObj, Cloneable {
 		PT handleParam = handleParamField.belongParameter;
 		// 搜索字段设置为指定的输出类型
 		handleParamField.isOutput = isOutput;
+		this.paramContext.markModified(ModifyType.OUTPUT);
 		// 处理输出标志
 		boolean isAllFieldOutput = true; // 全部字段都输出
 		boolean isAllFieldNotOutput = true; // 全部字段都不输出
@@ -1152,6 +1383,7 @@ implements IParameterObj, Cloneable {
 			isAllFieldNotOutput &= ! paramField.isOutput;
 		}
 		// 所有字段输出或所有字段不输出作处理, 两者互斥
+		checkParam.recordState();
 		if(isAllFieldOutput) {
 			checkParam.isAllMyFieldOutput = true;
 		} else if(isAllFieldNotOutput) {
@@ -1164,6 +1396,7 @@ implements IParameterObj, Cloneable {
 		}
 		// 如果是设置为输出, 触发搜索参数关联操作(包括继承和默认关联)
 		if(isOutput) {
+			handleParam.recordState();
 			handleParam.hasFieldOutput = true;
 			// 如果是关联搜索参数, 触发关联关系
 			if(handleParam.usingJoinWorker != null && ! isRaw/* 如果在直接操作模式下(目前只为继承), 不触发关联操作 */) {
@@ -1172,6 +1405,30 @@ implements IParameterObj, Cloneable {
 		}
 	}
 	
+	/**
+	 * 在修改字段输出和搜索的汇总标志前记录它们当前的值, 有保存点时用于回滚
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void recordState() {
+		if(this.paramContext == null || ! this.paramContext.journal.isRecording()) {
+			return;
+		}
+		final boolean hasFieldSearched = this.hasFieldSearched;
+		final boolean hasFieldOutput = this.hasFieldOutput;
+		final boolean isAllMyFieldOutput = this.isAllMyFieldOutput;
+		this.paramContext.journal.record(new ChangeJournal.Change() {
+			@Override
+			void undo() {
+				AbsParameter<PT, SCT, RT> param = AbsParameter.this;
+				param.hasFieldSearched = hasFieldSearched;
+				param.hasFieldOutput = hasFieldOutput;
+				param.isAllMyFieldOutput = isAllMyFieldOutput;
+			}
+		});
+	}
+	
 	/**
 	 * 被动态关联的搜索参数解绑动态关联, 通过isSingle决定是否从动态关联缓存池中删除对应的键值对.
 	 * <br/> 会重置被动态关联的搜索参数在关联期间进行添加的搜索内容
@@ -1188,6 +1445,7 @@ implements IParameterObj, Cloneable {
 			throw new IllegalArgumentException("当前搜索参数不是动态关联搜索参数");
 		}
 		ParameterContext<PT, SCT, RT> originalParamContext = this.paramContext.dynamicJoinParamContextPool.get(this);
+		this.paramContext.markAllModified();
 		if(isSingle) {
 			this.paramContext.dynamicJoinParamContextPool.remove(this);
 		}
@@ -1211,16 +1469,21 @@ implements IParameterObj, Cloneable {
 	 * 
 	 * @param cloneParam 克隆的搜索参数引用, 如果为null会自动创建实例(关联搜索参数逻辑)
 	 * @param cloneParamContext 克隆出来的新搜索参数上下文
+	 * @param cloneMapper 记录被克隆的搜索参数, 搜索参数字段和搜索器到克隆出来的对象的映射, 不需要记录时为null
 	 * @return 完成克隆完成填充信息的搜索参数
 	 * @throws Exception 克隆失败则抛出异常
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
-	final PT cloneImpl(PT cloneParam, ParameterContext<PT, SCT, RT> cloneParamContext) throws Exception {
+	final PT cloneImpl(PT cloneParam, ParameterContext<PT, SCT, RT> cloneParamContext,
+			Map<Object, Object> cloneMapper) throws Exception {
 		if(cloneParam == null) {
 			cloneParam = (PT) super.clone();
 		}
+		if(cloneMapper != null) {
+			cloneMapper.put(this, cloneParam);
+		}
 		cloneParamContext.allParams.add(cloneParam);
 		/* 重用搜索参数类型, 表信息 */
 		cloneParam.paramContext = cloneParamContext;
@@ -1243,11 +1506,17 @@ implements IParameterObj, Cloneable {
 			ParameterField<PT, SCT, RT> cloneParamField = paramField.clone();
 			cloneParam.registerParameterField(cloneParamField);
 			cloneParamContext.allParamFields.add(cloneParamField);
+			if(cloneMapper != null) {
+				cloneMapper.put(paramField, cloneParamField);
+			}
 			// 克隆搜索器
 			if(paramField.usingSearcher != null) {
 				AbsSearcher<PT, SCT, RT, ?> cloneSearcher = paramField.usingSearcher.clone();
 				cloneParam.registerSeacher(cloneParamField, cloneSearcher);
 				cloneParamContext.allSearchers.add(cloneSearcher);
+				if(cloneMapper != null) {
+					cloneMapper.put(paramField.usingSearcher, cloneSearcher);
+				}
 			}
 		}
 		// 克隆关联搜索参数, 把继承和默认关联的放一起处理, 搜索参数类型是重用的
@@ -1264,7 +1533,7 @@ implements IParameterObj, Cloneable {
 		}
 		for(PT joinParam : needCloneJoinParams) {
 			// 克隆关联搜索参数, 已经克隆好搜索参数字段和搜索器了
-			PT cloneJoinParam = joinParam.cloneImpl(null, cloneParamContext);
+			PT cloneJoinParam = joinParam.cloneImpl(null, cloneParamContext, cloneMapper);
 			// 获取关联起点相关信息
 			String fromFieldName = joinParam.usingJoinWorker.mappedFromField.fieldName;
 			ParameterField<PT, SCT, RT> fromCloneParamField = null;
@@ -1290,7 +1559,7 @@ implements IParameterObj, Cloneable {
 					joinParam.usingJoinWorker.mappedRelationType,
 					fromCloneParamField,
 					toCloneParamField,
-					null);
+					null, null);
 			cloneJoinParam.usingJoinWorker = newJoinWorker;
 			// 设置关联起点字段的属性, 以及注册关联搜索参数
 			fromCloneParamField.isMappedFromField = true;
@@ -1410,6 +1679,101 @@ implements IParameterObj, Cloneable {
 		return Collections.emptyList();
 	}
 	
+	/**
+	 * 获取当前搜索参数自身声明的搜索参数字段
+	 * <br/> 不包括继承的父级搜索参数的
+	 * 
+	 * @return 当前搜索参数自身声明的搜索参数字段, 没有则返回空列表, 不会为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final Collection<ParameterField<PT, SCT, RT>> getMyParameterFields() {
+		this.assertHasInit();
+		if(this.myParameterFields != null && ! this.myParameterFields.isEmpty()) {
+			return Collections.unmodifiableCollection(this.myParameterFields.values());
+		}
+		return Collections.emptyList();
+	}
+
+	/**
+	 * 获取关联到当前搜索参数的关联来源搜索参数
+	 *
+	 * @return 关联来源搜索参数, 当前搜索参数不是关联的搜索参数则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final PT getMappedFromParameter() {
+		this.assertHasInit();
+		return this.usingJoinWorker == null ? null : this.usingJoinWorker.mappedFromParam;
+	}
+
+	/**
+	 * 获取关联到当前搜索参数的关联来源字段
+	 *
+	 * @return 关联来源搜索参数中的关联字段, 当前搜索参数不是关联的搜索参数则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final ParameterField<PT, SCT, RT> getMappedFromField() {
+		this.assertHasInit();
+		return this.usingJoinWorker == null ? null : this.usingJoinWorker.mappedFromField;
+	}
+
+	/**
+	 * 获取当前搜索参数被关联的字段
+	 *
+	 * @return 当前搜索参数中的被关联字段, 当前搜索参数不是关联的搜索参数则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final ParameterField<PT, SCT, RT> getMappedField() {
+		this.assertHasInit();
+		return this.usingJoinWorker == null ? null : this.usingJoinWorker.mappedField;
+	}
+
+	/**
+	 * 获取关联到当前搜索参数的关联类型
+	 *
+	 * @return 关联类型, 当前搜索参数不是关联的搜索参数则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final JoinType getMappedJoinType() {
+		this.assertHasInit();
+		return this.usingJoinWorker == null ? null : this.usingJoinWorker.mappedJoinType;
+	}
+
+	/**
+	 * 获取关联到当前搜索参数的关联关系类型
+	 *
+	 * @return 关联关系类型, 当前搜索参数不是关联的搜索参数则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final JoinRelationType getMappedRelationType() {
+		this.assertHasInit();
+		return this.usingJoinWorker == null ? null : this.usingJoinWorker.mappedRelationType;
+	}
+
+	/**
+	 * 判断关联到当前搜索参数时是否有额外的关联条件
+	 *
+	 * @return 有额外的关联条件返回true, 否则(包括不是关联的搜索参数)返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final boolean hasMappedExtraQuery() {
+		this.assertHasInit();
+		return this.usingJoinWorker != null && this.usingJoinWorker.extraQuery != null;
+	}
+
 	@Override
 	protected final void addSearchEntry(String key, SCT searchContent) throws Exception {
 		this.assertParameterContextNotNull();
@@ -1417,6 +1781,42 @@ implements IParameterObj, Cloneable {
 		usingSearchContext.addSearchEntry(this, key, searchContent);
 	}
 	
+	/**
+	 * 添加自定义的条件到搜索条件树中
+	 * <br/> 与前一个条件的逻辑关系需要先通过and或or方法确定, 之后的条件也需要确定与它的逻辑关系.
+	 * 
+	 * @param searchContent 条件的搜索内容, 不能为null
+	 * @throws Exception 搜索内容为null则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final void addSearchCondition(SCT searchContent) throws Exception {
+		this.assertParameterContextNotNull();
+		SearchContext<PT, SCT, RT> usingSearchContext = this.paramContext.getCurrentSearchContext();
+		usingSearchContext.addCustomCondition(this, searchContent);
+		usingSearchContext.endSearchRelationCheck();
+	}
+	
+	/**
+	 * 获取当前搜索上下文的搜索条件树
+	 * <br/> 启用了条件规范化时返回规范化后的副本, 搜索参数实现类在构建时按它渲染条件.
+	 * 
+	 * @return 搜索条件树的根条件组, 不会为null
+	 * @throws Exception 规范化搜索条件树失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected final SearchGroup<SCT> getSearchTree() throws Exception {
+		this.assertParameterContextNotNull();
+		SearchContext<PT, SCT, RT> usingSearchContext = this.paramContext.getCurrentSearchContext();
+		if(usingSearchContext.isNormalizeSearchTree()) {
+			return usingSearchContext.getNormalizedSearchTree();
+		}
+		return usingSearchContext.getSearchTree();
+	}
+	
 	@Override
 	protected List<SCT> getSearchEntry(String key) throws Exception {
 		this.assertParameterContextNotNull();
@@ -1501,6 +1901,20 @@ implements IParameterObj, Cloneable {
 	 */
 	protected void onReset(Object...args) throws Exception {};
 	
+	/**
+	 * 分叉完成时进行的回调, 在分叉出来的根搜索参数上调用
+	 * <br/> 分叉出来的根搜索参数是被分叉的浅复制, 可变的成员(如引用搜索参数字段的集合, 构建缓存)需要在这里处理.
+	 * 
+	 * @param fromParam 被分叉的根搜索参数
+	 * @param forkParamFields 被分叉的搜索参数树的字段到分叉出来的对应字段的映射
+	 * @throws Exception 处理失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected void onFork(PT fromParam, 
+			Map<ParameterField<PT, SCT, RT>, ParameterField<PT, SCT, RT>> forkParamFields) throws Exception {};
+	
 	/**
 	 * 断言搜索参数已完成初始化否则抛出异常
 	 * 
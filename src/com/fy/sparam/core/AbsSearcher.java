@@ -2,14 +2,18 @@ package com.fy.sparam.core;
 
 import static java.lang.String.format;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import com.fy.sparam.core.ParameterContext.IParameterObj;
+import com.fy.sparam.core.ParameterContext.ModifyType;
 import com.fy.sparam.core.SearchContext.IRelationalable;
 import com.fy.sparam.core.SearchContext.ISearchable;
 import com.fy.sparam.core.SearchContext.ITransformable;
 import com.fy.sparam.core.SearchContext.SearchContentSource;
+import com.fy.sparam.core.SearchNode.SearchCondition;
 import com.fy.sparam.util.StringUtils;
 
 /**
@@ -66,6 +70,17 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 				.getIndeedSearchParameterField(this.belongParameterField, null);
 	}
 	
+	/**
+	 * 获取搜索器对应的字段类型, 由初始化器根据搜索器的泛型类型决定
+	 * @return 搜索器对应的字段类型, 初始化器无法确定时为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final Class<?> getFieldTypeClass() {
+		return this.belongParameter.paramContext.intializor.onGetSearcherFieldTypeClass(this);
+	}
+	
 	@Override
 	public final <RPT extends AbsParameter<?, ?, ?>> RPT and(RPT param) throws Exception {
 		if(this.belongParameter.paramContext.getCurrentSearchContext().isSkipFirstRelation()
@@ -73,6 +88,7 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 			return param;
 		}
 		this.belongParameter.paramContext.getCurrentSearchContext().startSearchRelationCheck();
+		this.belongParameter.paramContext.getCurrentSearchContext().meetRelation(true);
 		this.isNeedRelationCheck = false;
 		this.onAnd();
 		this.isNeedRelationCheck = true;
@@ -86,6 +102,7 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 			return param;
 		}
 		this.belongParameter.paramContext.getCurrentSearchContext().startSearchRelationCheck();
+		this.belongParameter.paramContext.getCurrentSearchContext().meetRelation(false);
 		this.isNeedRelationCheck = false;
 		this.onOr();
 		this.isNeedRelationCheck = true;
@@ -124,185 +141,289 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 
 	@Override
 	public final IRelationalable<T> eq(T value) throws Exception {
-		this.preparingDoSearch();
-		this.onEq(value);
+		this.startSearch(SearchOperator.EQ, value);
+		try {
+			this.onEq(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> eq(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onEq(searchField);
+		this.startSearch(SearchOperator.EQ, searchField);
+		try {
+			this.onEq(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notEq(T value) throws Exception {
-		this.preparingDoSearch();
-		this.onNotEq(value);
+		this.startSearch(SearchOperator.NOT_EQ, value);
+		try {
+			this.onNotEq(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notEq(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onNotEq(searchField);
+		this.startSearch(SearchOperator.NOT_EQ, searchField);
+		try {
+			this.onNotEq(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> in(Collection<T> values) throws Exception {
-		this.preparingDoSearch();
-		this.onIn(values);
+		this.startSearch(SearchOperator.IN, values != null ? values.toArray() : new Object[0]);
+		try {
+			this.onIn(values);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> in(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onIn(searchField);
+		this.startSearch(SearchOperator.IN, searchField);
+		try {
+			this.onIn(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notIn(Collection<T> values) throws Exception {
-		this.preparingDoSearch();
-		this.onNotIn(values);
+		this.startSearch(SearchOperator.NOT_IN, values != null ? values.toArray() : new Object[0]);
+		try {
+			this.onNotIn(values);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notIn(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onNotIn(searchField);
+		this.startSearch(SearchOperator.NOT_IN, searchField);
+		try {
+			this.onNotIn(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> between(T from, T to) throws Exception {
-		this.preparingDoSearch();
-		this.onBetween(from, to);
+		this.startSearch(SearchOperator.BETWEEN, from, to);
+		try {
+			this.onBetween(from, to);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> between(ISearchable<?> from, ISearchable<?> to) throws Exception {
-		this.preparingDoSearch();
-		this.onBetween(from, to);
+		this.startSearch(SearchOperator.BETWEEN, from, to);
+		try {
+			this.onBetween(from, to);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> lessThan(T value) throws Exception {
-		this.preparingDoSearch();
-		this.onLessThan(value);
+		this.startSearch(SearchOperator.LESS_THAN, value);
+		try {
+			this.onLessThan(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> lessThan(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onLessThan(searchField);
+		this.startSearch(SearchOperator.LESS_THAN, searchField);
+		try {
+			this.onLessThan(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notLessThan(T value) throws Exception {
-		this.preparingDoSearch();
-		this.onNotLessThan(value);
+		this.startSearch(SearchOperator.NOT_LESS_THAN, value);
+		try {
+			this.onNotLessThan(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notLessThan(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onNotLessThan(searchField);
+		this.startSearch(SearchOperator.NOT_LESS_THAN, searchField);
+		try {
+			this.onNotLessThan(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> greaterThan(T value) throws Exception {
-		this.preparingDoSearch();
-		this.onGreaterThan(value);
+		this.startSearch(SearchOperator.GREATER_THAN, value);
+		try {
+			this.onGreaterThan(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> greaterThan(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onGreaterThan(searchField);
+		this.startSearch(SearchOperator.GREATER_THAN, searchField);
+		try {
+			this.onGreaterThan(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notGreaterThan(T value) throws Exception {
-		this.preparingDoSearch();
-		this.onNotGreaterThan(value);
+		this.startSearch(SearchOperator.NOT_GREATER_THAN, value);
+		try {
+			this.onNotGreaterThan(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notGreaterThan(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onNotGreaterThan(searchField);
+		this.startSearch(SearchOperator.NOT_GREATER_THAN, searchField);
+		try {
+			this.onNotGreaterThan(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> like(String value) throws Exception {
-		this.preparingDoSearch();
-		this.onLike(value);
+		this.startSearch(SearchOperator.LIKE, value);
+		try {
+			this.onLike(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> like(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onLike(searchField);
+		this.startSearch(SearchOperator.LIKE, searchField);
+		try {
+			this.onLike(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notLike(String value) throws Exception {
-		this.preparingDoSearch();
-		this.onNotLike(value);
+		this.startSearch(SearchOperator.NOT_LIKE, value);
+		try {
+			this.onNotLike(value);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> notLike(ISearchable<?> searchField) throws Exception {
-		this.preparingDoSearch();
-		this.onNotLike(searchField);
+		this.startSearch(SearchOperator.NOT_LIKE, searchField);
+		try {
+			this.onNotLike(searchField);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> isNull() throws Exception {
-		this.preparingDoSearch();
-		this.onIsNull();
+		this.startSearch(SearchOperator.IS_NULL);
+		try {
+			this.onIsNull();
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	public final IRelationalable<T> isNotNull() throws Exception {
-		this.preparingDoSearch();
-		this.onIsNotNull();
+		this.startSearch(SearchOperator.IS_NOT_NULL);
+		try {
+			this.onIsNotNull();
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	@SuppressWarnings("unchecked")
 	public final IRelationalable<T> inChildQuery(AbsParameter<?, ?, ?> childQuery) throws Exception {
-		this.preparingDoSearch();
-		this.onInChildQuery((PT) childQuery); 
+		this.startSearch(SearchOperator.IN_CHILD_QUERY, childQuery);
+		try {
+			this.onInChildQuery((PT) childQuery);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
 	@Override
 	@SuppressWarnings("unchecked")
 	public final IRelationalable<T> notInChildQuery(AbsParameter<?, ?, ?> childQuery) throws Exception {
-		this.preparingDoSearch();
-		this.onNotInChildQuery((PT) childQuery);
+		this.startSearch(SearchOperator.NOT_IN_CHILD_QUERY, childQuery);
+		try {
+			this.onNotInChildQuery((PT) childQuery);
+		} finally {
+			this.endSearch();
+		}
 		return this;
 	}
 
@@ -311,6 +432,7 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 		// 删除相关的搜索内容
 		SearchContext<PT, SCT, RT> usingSearchContext = this.belongParameter.paramContext.getCurrentSearchContext();
 		usingSearchContext.removeSearchEntryBySource(this);
+		this.belongParameterField.recordState();
 		this.belongParameterField.isSearched = false;
 		// 判断当前搜索参数包含的搜索参数字段是否都有输出, 如果没有则设置其是否有字段搜索表示
 		boolean isAllFieldNotSearched = true;
@@ -322,6 +444,7 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 		}
 		// 如果是, 则设置所属搜索参数没有被搜索
 		if(isAllFieldNotSearched) {
+			this.belongParameter.recordState();
 			this.belongParameter.hasFieldSearched = false;
 		}
 		// 尝试回滚, 减少多余关联搜索内容
@@ -333,16 +456,20 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 	@Override
 	public final void markGroupBy(int priority) throws Exception {
 		ParameterField<PT, SCT, RT> searchParamField = this.preparingDoSearch();
+		searchParamField.recordState();
 		searchParamField.isGroupBy = true;
 		searchParamField.groupByPriority = priority;
+		this.belongParameter.paramContext.markModified(ModifyType.GROUP_BY);
 	}
 
 	@Override
 	public final void markOrderBy(int priority, boolean isAsc) throws Exception {
 		ParameterField<PT, SCT, RT> searchParamField = this.preparingDoSearch();
+		searchParamField.recordState();
 		searchParamField.isOrderBy = true;
 		searchParamField.orderByPriority = priority;
 		searchParamField.isAsc = isAsc;
+		this.belongParameter.paramContext.markModified(ModifyType.ORDER_BY);
 	}
 	
 	@Override
@@ -817,7 +944,9 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 	private ParameterField<PT, SCT, RT> preparingDoSearch() throws Exception {
 		ParameterField<PT, SCT, RT> searchParamField = this.getSearchParameterField();
 		// 设置搜索的字段为被搜索
+		searchParamField.recordState();
 		searchParamField.isSearched = true;
+		searchParamField.belongParameter.recordState();
 		searchParamField.belongParameter.hasFieldSearched = true;
 		// 如果实际搜索的搜索参数字段所属的搜索参数之前没有进行过关联处理, 这里进行执行
 		JoinWorker<PT, SCT, RT> joinWorker = searchParamField.belongParameter.usingJoinWorker;
@@ -826,4 +955,79 @@ implements IParameterObj, ISearchable<T>, IRelationalable<T>, Cloneable {
 		}
 		return searchParamField;
 	}
+	
+	/**
+	 * 开始一次搜索, 在搜索条件树中记录对应的条件, 搜索器实现类之后添加的搜索内容都属于该条件
+	 * 
+	 * @param operator 条件的操作类型
+	 * @param values 条件的值
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void startSearch(SearchOperator operator, Object...values) throws Exception {
+		this.preparingDoSearch();
+		this.belongParameter.paramContext.getCurrentSearchContext()
+			.startCondition(this, operator, Collections.unmodifiableList(Arrays.asList(values)));
+	}
+	
+	/**
+	 * 按指定的操作类型和值重新生成一个条件, 条件不加入搜索条件树
+	 * <br/> 用于规范化搜索条件树时生成合并后的条件, 只支持值的比较.
+	 * 
+	 * @param operator 条件的操作类型
+	 * @param values 条件的值
+	 * @return 生成的条件, 搜索器实现类没有添加搜索内容时条件的搜索内容为空
+	 * @throws Exception 操作类型不支持或搜索器实现类生成搜索内容失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	final SearchCondition<SCT> renderCondition(SearchOperator operator, List<Object> values) throws Exception {
+		SearchContext<PT, SCT, RT> usingSearchContext = this.belongParameter.paramContext.getCurrentSearchContext();
+		SearchCondition<SCT> condition = usingSearchContext.startDetachedCondition(this, operator, values);
+		this.isNeedRelationCheck = false;
+		try {
+			switch(operator) {
+			case EQ:
+				this.onEq((T) values.get(0));
+				break;
+			case IN:
+				this.onIn((Collection<T>) (Collection<?>) values);
+				break;
+			case BETWEEN:
+				this.onBetween((T) values.get(0), (T) values.get(1));
+				break;
+			case LESS_THAN:
+				this.onLessThan((T) values.get(0));
+				break;
+			case NOT_LESS_THAN:
+				this.onNotLessThan((T) values.get(0));
+				break;
+			case GREATER_THAN:
+				this.onGreaterThan((T) values.get(0));
+				break;
+			case NOT_GREATER_THAN:
+				this.onNotGreaterThan((T) values.get(0));
+				break;
+			default:
+				throw new IllegalArgumentException(format("不支持重新生成操作类型为%s的条件", operator));
+			}
+		} finally {
+			this.isNeedRelationCheck = true;
+			usingSearchContext.endCondition();
+		}
+		return condition;
+	}
+	
+	/**
+	 * 结束一次搜索
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void endSearch() {
+		this.belongParameter.paramContext.getCurrentSearchContext().endCondition();
+	}
 }
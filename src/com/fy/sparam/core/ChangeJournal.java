@@ -0,0 +1,150 @@
+package com.fy.sparam.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 搜索参数树的修改日志
+ * <br/> 有未释放的保存点时, 搜索内容, 搜索条件树, 字段标志和关联状态的每次修改都会记录一个撤销操作;
+ * 回滚到保存点时按相反的顺序执行保存点之后记录的撤销操作, 代价只与保存点之后的修改数量有关.
+ * <br/> 没有保存点时不记录, 不影响正常使用的性能.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+final class ChangeJournal {
+
+	/**
+	 * 一次修改的撤销操作
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static abstract class Change {
+
+		/**
+		 * 撤销修改, 执行时保存点之后的修改都已经撤销
+		 *
+		 * @throws Exception 撤销失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		abstract void undo() throws Exception;
+	}
+
+	private final List<Change> changes = new ArrayList<Change>();
+	private final List<SearchMark> marks = new ArrayList<SearchMark>(); /* 未释放的保存点, 按创建顺序排列 */
+	private boolean isRollingBack;
+
+	/**
+	 * 当前是否需要记录修改
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	boolean isRecording() {
+		return ! this.marks.isEmpty() && ! this.isRollingBack;
+	}
+
+	/**
+	 * 记录一次修改的撤销操作, 不需要记录时忽略
+	 *
+	 * @param change 撤销操作
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void record(Change change) {
+		if(this.isRecording()) {
+			this.changes.add(change);
+		}
+	}
+
+	/**
+	 * 创建一个保存点
+	 *
+	 * @param restorer 回滚到保存点后恢复保存点时的其它状态的操作
+	 * @return 保存点
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SearchMark mark(Change restorer) {
+		SearchMark mark = new SearchMark(this, this.changes.size(), restorer);
+		this.marks.add(mark);
+		return mark;
+	}
+
+	/**
+	 * 回滚到指定的保存点, 之后创建的保存点会失效, 指定的保存点仍然可以再次回滚
+	 *
+	 * @param mark 指定的保存点
+	 * @throws Exception 回滚失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void rollbackTo(SearchMark mark) throws Exception {
+		int index = this.indexOf(mark);
+		while(this.marks.size() > index + 1) {
+			this.marks.remove(this.marks.size() - 1);
+		}
+		this.isRollingBack = true;
+		try {
+			while(this.changes.size() > mark.position) {
+				this.changes.remove(this.changes.size() - 1).undo();
+			}
+			mark.restorer.undo();
+		} finally {
+			this.isRollingBack = false;
+		}
+	}
+
+	/**
+	 * 释放指定的保存点, 之后创建的保存点也一起释放, 没有保存点时丢弃所有记录
+	 *
+	 * @param mark 指定的保存点
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void release(SearchMark mark) {
+		int index = this.indexOf(mark);
+		while(this.marks.size() > index) {
+			this.marks.remove(this.marks.size() - 1);
+		}
+		if(this.marks.isEmpty()) {
+			this.changes.clear();
+		}
+	}
+
+	/**
+	 * 使所有保存点失效, 在进行了不能撤销的修改时使用
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void invalidate() {
+		this.marks.clear();
+		this.changes.clear();
+	}
+
+	/**
+	 * 获取未释放的保存点的位置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private int indexOf(SearchMark mark) {
+		if(mark == null || mark.journal != this) {
+			throw new IllegalArgumentException("保存点为null或不属于当前搜索参数");
+		}
+		for(int i = this.marks.size() - 1; i >= 0; i --) {
+			if(this.marks.get(i) == mark) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException("保存点已经释放或失效");
+	}
+}
@@ -1,6 +1,9 @@
 package com.fy.sparam.core;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import com.fy.sparam.core.SearchExpressionsCompiler.CompileResult;
@@ -106,6 +109,7 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 	JoinType mappedJoinType;
 	JoinRelationType mappedRelationType;
 	String extraQuery;
+	Map<String, ?> extraQueryBinds;
 	
 	@Override
 	public String toString() {
@@ -122,6 +126,7 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 	 * @param fromField 关联起点字段
 	 * @param toField 关联终点字段
 	 * @param extraQuery 可选的连接额外搜索条件语句
+	 * @param extraQueryBinds 额外搜索条件语句中命名绑定的值, 可以为null
 	 * @return 返回生成的关联处理器
 	 * 
 	 * @author linjie
@@ -131,7 +136,7 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 			PT fromParam, PT toParam,
 			JoinType joinType, JoinRelationType relationType,
 			ParameterField<PT, SCT, RT> fromField, ParameterField<PT, SCT, RT> toField,
-			String extraQuery) {
+			String extraQuery, Map<String, ?> extraQueryBinds) {
 		JoinWorker<PT, SCT, RT> joinWorker = new JoinWorker<PT, SCT, RT>();
 		joinWorker.mappedFromParam = fromParam;
 		joinWorker.mappedParam = toParam;
@@ -140,6 +145,7 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 		joinWorker.mappedFromField = fromField;
 		joinWorker.mappedField = toField;
 		joinWorker.extraQuery = extraQuery;
+		joinWorker.extraQueryBinds = extraQueryBinds;
 		
 		joinWorker.mappedFromField.isMappedFromField = true;
 		return joinWorker;
@@ -163,7 +169,7 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 			fromParamJoinWorker.doJoinWork();
 		}
 		// 设置为已经关联
-		this.hasJoin = true;
+		this.setHasJoin(true);
 		// 如果有额外的查询, 进行处理
 		RT extraQuery = null;
 		if(this.extraQuery != null) {
@@ -225,7 +231,7 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 			SearchContext<PT, SCT, RT> searchContext = this.mappedParam.paramContext.getCurrentSearchContext();
 			searchContext.removeSearchEntryBySource(this.mappedParam);
 			// 还原关联标志
-			this.hasJoin = false;
+			this.setHasJoin(false);
 			// 对关联来源的搜索参数进行此操作(可能是一个隔代字段设置输出导致关联)
 			if(this.mappedFromParam.usingJoinWorker != null) {
 				this.mappedFromParam.usingJoinWorker.cancelJoinWork(false, false);
@@ -233,6 +239,51 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 		}
 	}
 	
+	/**
+	 * 设置是否完成关联操作处理, 有保存点时记录原来的值用于回滚
+	 * 
+	 * @param hasJoin 是否完成关联操作处理
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void setHasJoin(boolean hasJoin) {
+		if(this.hasJoin == hasJoin) {
+			return;
+		}
+		final boolean oldHasJoin = this.hasJoin;
+		this.mappedParam.paramContext.journal.record(new ChangeJournal.Change() {
+			@Override
+			void undo() {
+				JoinWorker.this.hasJoin = oldHasJoin;
+			}
+		});
+		this.hasJoin = hasJoin;
+	}
+	
+	/**
+	 * 设置关联类型和关联关系类型, 有保存点时记录原来的值用于回滚
+	 * 
+	 * @param joinType 关联类型
+	 * @param relationType 关联关系类型
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void setMappedTypes(JoinType joinType, JoinRelationType relationType) {
+		final JoinType oldJoinType = this.mappedJoinType;
+		final JoinRelationType oldRelationType = this.mappedRelationType;
+		this.mappedParam.paramContext.journal.record(new ChangeJournal.Change() {
+			@Override
+			void undo() {
+				JoinWorker.this.mappedJoinType = oldJoinType;
+				JoinWorker.this.mappedRelationType = oldRelationType;
+			}
+		});
+		this.mappedJoinType = joinType;
+		this.mappedRelationType = relationType;
+	}
+	
 	/**
 	 * 反转关联方向, 起点变终点
 	 * 
@@ -265,7 +316,11 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 		if(compileResult == null) {
 			return false;
 		}
-		for(SearchExpression expression : compileResult.getExpressions()) {
+		// 先查找搜索器和转换所有搜索值, 转换失败时不会设置一半的搜索条件
+		Collection<SearchExpression> expressions = compileResult.getExpressions();
+		List<AbsSearcher<?, ?, ?, ?>> searchers = new ArrayList<AbsSearcher<?, ?, ?, ?>>(expressions.size());
+		List<List<Object>> searchValsList = new ArrayList<List<Object>>(expressions.size());
+		for(SearchExpression expression : expressions) {
 			AbsSearcher<?, ?, ?, ?> searcher = null;
 			if(expression.containsSymbol(SYMBOL_FROM)) {
 				searcher = this.mappedFromParam.paramContext.getParameterObjWithStartParam(
@@ -274,11 +329,37 @@ public final class JoinWorker<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
 				searcher = this.mappedParam.paramContext.getParameterObjWithStartParam(
 						this.mappedParam, AbsSearcher.class, expression.getSearchFieldPath());
 			}
-			compileResult.doSearch(searcher, expression);
+			searchers.add(searcher);
+			searchValsList.add(compileResult.toSearchVals(searcher, expression, this.extraQueryBinds));
+		}
+		int index = 0;
+		for(SearchExpression expression : expressions) {
+			compileResult.doConvertedSearch(searchers.get(index), expression, searchValsList.get(index));
+			index ++;
 		}
 		return true;
 	}
 	
+	/**
+	 * 校验额外搜索条件语句的命名绑定, 在动态关联时提前发现缺少的命名绑定
+	 * 
+	 * @param extraQuery 额外搜索条件语句, 可以为null
+	 * @param extraQueryBinds 额外搜索条件语句中命名绑定的值, 可以为null
+	 * @throws IllegalArgumentException 语句格式错误, 缺少命名绑定或者绑定后的参数数量不正确则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static void checkExtraQueryBinds(String extraQuery, Map<String, ?> extraQueryBinds) {
+		if(extraQuery == null) {
+			return;
+		}
+		CompileResult<?, ?, ?> compileResult = SearchExpressionsCompiler.compile(extraQuery, SYMBOL_FROM, SYMBOL_TO);
+		if(compileResult != null) {
+			compileResult.checkBinds(extraQueryBinds);
+		}
+	}
+	
 	/**
 	 * 不允许外部new
 	 * 
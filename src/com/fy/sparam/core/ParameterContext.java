@@ -2,6 +2,7 @@ package com.fy.sparam.core;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -51,6 +52,55 @@ implements Cloneable {
 		String getPath() throws Exception;
 	}
 	
+	/**
+	 * 搜索参数树状态的修改类型, 搜索内容之外的会影响构建结果的状态
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static enum ModifyType {
+		
+		/**
+		 * 字段的输出状态
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		OUTPUT,
+		
+		/**
+		 * 字段的排序标记
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		ORDER_BY,
+		
+		/**
+		 * 字段的分组标记
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		GROUP_BY,
+		
+		/**
+		 * 分页信息
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		PAGING,
+		
+		/**
+		 * 搜索参数或字段的查询名称, 别名
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		QUERY_NAME;
+	}
+	
 	// 全局使用的搜索参数对象初始化器
 	IParameterInitializor<PT, SCT, RT> intializor;
 	// 所有搜索字段类型转换器
@@ -74,6 +124,10 @@ implements Cloneable {
 	// 动态关联相关信息, 一个搜素参数上下文统一管理
 	Map<PT, ParameterContext<PT, SCT, RT>> dynamicJoinParamContextPool; /* 动态关联起点的搜索参数树已经动态关联的搜索参数信息 */
 	PT realDynamicJoinParam; /* 被动态关联的根搜索参数进行过最短关联处理后实际用来关联的搜索参数 */
+	// 搜索内容之外的状态最后一次修改的标记
+	Map<ModifyType, Long> modifyStamps = new EnumMap<ModifyType, Long>(ModifyType.class);
+	// 保存点使用的修改日志, 动态关联后被关联的搜索参数也使用关联起点的
+	ChangeJournal journal = new ChangeJournal();
 	
 	/**
 	 * 注册继承关联搜索参数
@@ -261,6 +315,30 @@ implements Cloneable {
 		return result;
 	}
 	
+	/**
+	 * 获取所有已经关联的搜索参数
+	 * <br/> 包括根搜索参数和已经触发关联的默认关联, 继承关联, 动态关联的搜索参数.
+	 * 
+	 * @return 所有已经关联的搜索参数集合, 不会返回null.
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final Collection<PT> getAllJoinedParameters() {
+		List<PT> result = new LinkedList<PT>();
+		for(PT param : this.allParams) {
+			if(param.usingJoinWorker == null || param.usingJoinWorker.hasJoin) {
+				result.add(param);
+			}
+		}
+		if(this.dynamicJoinParamContextPool != null && ! this.dynamicJoinParamContextPool.isEmpty()) {
+			for(ParameterContext<PT, SCT, RT> dynamicJoinParamContext : this.dynamicJoinParamContextPool.values()) {
+				result.addAll(dynamicJoinParamContext.getAllJoinedParameters());
+			}
+		}
+		return result;
+	}
+	
 	/**
 	 * 获取所有输出的搜索参数字段
 	 * <br/> 包括默认关联, 继承关联, 动态关联的.
@@ -338,6 +416,54 @@ implements Cloneable {
 		return result;
 	}
 	
+	/**
+	 * 获取指定类型的状态最后一次修改的标记
+	 * <br/> 标记只会递增, 与之前获取的值不同则说明对应的状态被修改过.
+	 * 
+	 * @param types 状态的修改类型, 多个则返回其中最后修改的
+	 * @return 最后一次修改的标记, 没有修改过则为0
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final long getModifyStamp(ModifyType...types) {
+		long result = 0;
+		for(ModifyType type : types) {
+			Long modifyStamp = this.modifyStamps.get(type);
+			if(modifyStamp != null && modifyStamp > result) {
+				result = modifyStamp;
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * 获取当前搜索上下文中指定键的搜索内容最后一次修改的标记
+	 * <br/> 标记只会递增, 与之前获取的值不同则说明对应的搜索内容被修改过.
+	 * 
+	 * @param key 搜索内容的键
+	 * @return 最后一次修改的标记, 没有修改过则为0
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final long getSearchEntryModifyStamp(String key) {
+		return this.getCurrentSearchContext().getModifyStamp(key);
+	}
+	
+	/**
+	 * 获取当前搜索上下文中搜索条件树最后一次修改的标记
+	 * <br/> 标记只会递增, 与之前获取的值不同则说明搜索条件树被修改过.
+	 * 
+	 * @return 最后一次修改的标记, 没有修改过则为0
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final long getSearchTreeModifyStamp() {
+		return this.getCurrentSearchContext().getSearchTreeModifyStamp();
+	}
+	
 	/**
 	 * 构造器: 指定初始化器
 	 * 
@@ -352,6 +478,31 @@ implements Cloneable {
 		this.fieldTransformer = intializor.onGetSearcherFieldTransformers();
 	}
 	
+	/**
+	 * 标记指定类型的状态被修改
+	 * 
+	 * @param type 状态的修改类型
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void markModified(ModifyType type) {
+		this.modifyStamps.put(type, SearchContext.nextModifyStamp());
+	}
+	
+	/**
+	 * 标记所有类型的状态被修改, 在关联关系或整体状态变化时使用
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void markAllModified() {
+		long modifyStamp = SearchContext.nextModifyStamp();
+		for(ModifyType type : ModifyType.values()) {
+			this.modifyStamps.put(type, modifyStamp);
+		}
+	}
+	
 	/**
 	 * 注册为根搜索参数
 	 * 
@@ -450,7 +601,9 @@ implements Cloneable {
 	final SearchContext<PT, SCT, RT> getCurrentSearchContext() {
 		if(! this.usingSearchContextMap.containsKey(DEFAULT_SEARCH_CONTEXT_NAME)) {
 			try {
-				this.registerSearchContext(DEFAULT_SEARCH_CONTEXT_NAME, SearchContext.create());
+				SearchContext<PT, SCT, RT> defaultSearchContext = SearchContext.create();
+				defaultSearchContext.journal = this.journal;
+				this.registerSearchContext(DEFAULT_SEARCH_CONTEXT_NAME, defaultSearchContext);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
@@ -886,6 +1039,8 @@ implements Cloneable {
 		cloneParamContext.joinCounter = 0;
 		cloneParamContext.dynamicJoinParamContextPool = null;
 		cloneParamContext.realDynamicJoinParam = null;
+		cloneParamContext.modifyStamps = new EnumMap<ModifyType, Long>(this.modifyStamps);
+		cloneParamContext.journal = new ChangeJournal();
 		return cloneParamContext;
 	}
 	
@@ -3,6 +3,7 @@ package com.fy.sparam.core;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -10,6 +11,7 @@ import java.util.Map;
 import java.util.Set;
 
 import com.fy.sparam.core.ParameterContext.IParameterObj;
+import com.fy.sparam.core.ParameterContext.ModifyType;
 import com.fy.sparam.util.StringUtils;
 
 /**
@@ -195,6 +197,7 @@ implements IParameterObj, Cloneable {
 
 	public void setQueryFieldName(String queryFieldName) {
 		this.queryFieldName = queryFieldName;
+		this.markModified(ModifyType.QUERY_NAME);
 	}
 
 	public String getQueryFieldAlias() {
@@ -203,6 +206,7 @@ implements IParameterObj, Cloneable {
 
 	public void setQueryFieldAlias(String queryFieldAlias) {
 		this.queryFieldAlias = queryFieldAlias;
+		this.markModified(ModifyType.QUERY_NAME);
 	}
 
 	public boolean isOrderBy() {
@@ -210,7 +214,9 @@ implements IParameterObj, Cloneable {
 	}
 
 	public void setOrderBy(boolean isOrderBy) {
+		this.recordState();
 		this.isOrderBy = isOrderBy;
+		this.markModified(ModifyType.ORDER_BY);
 	}
 
 	public boolean isAsc() {
@@ -218,7 +224,9 @@ implements IParameterObj, Cloneable {
 	}
 
 	public void setAsc(boolean isAsc) {
+		this.recordState();
 		this.isAsc = isAsc;
+		this.markModified(ModifyType.ORDER_BY);
 	}
 
 	public Integer getOrderByPriority() {
@@ -226,7 +234,9 @@ implements IParameterObj, Cloneable {
 	}
 
 	public void setOrderByPriority(Integer orderByPriority) {
+		this.recordState();
 		this.orderByPriority = orderByPriority;
+		this.markModified(ModifyType.ORDER_BY);
 	}
 
 	public boolean isGroupBy() {
@@ -234,7 +244,9 @@ implements IParameterObj, Cloneable {
 	}
 
 	public void setGroupBy(boolean isGroupBy) {
+		this.recordState();
 		this.isGroupBy = isGroupBy;
+		this.markModified(ModifyType.GROUP_BY);
 	}
 
 	public Integer getGroupByPriority() {
@@ -242,7 +254,9 @@ implements IParameterObj, Cloneable {
 	}
 
 	public void setGroupByPriority(Integer groupByPriority) {
+		this.recordState();
 		this.groupByPriority = groupByPriority;
+		this.markModified(ModifyType.GROUP_BY);
 	}
 	
 	/**
@@ -343,6 +357,31 @@ implements IParameterObj, Cloneable {
 		return new ArrayList<String>(results);
 	}
 	
+	/**
+	 * 获取对应的搜索参数字段经过的关联路径上的搜索参数字段路径
+	 * <br/> 与{@link #getPassedLocateFieldNames(IFieldQueryNameGenerateStrategy)}经过相同的搜索参数字段,
+	 * 被关联的搜索参数字段包括实际代表操作的字段的路径, 从关联链的头到尾的顺序返回结果.
+	 * 
+	 * @return 去重的搜索参数字段路径集合, 至少包含一个值.
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final List<String> getPassedPaths() {
+		List<ParameterField<PT, SCT, RT>> passParamFields = new LinkedList<ParameterField<PT, SCT, RT>>();
+		if(this.isMappedFromField) {
+			this.belongParameter.paramContext.getIndeedRepresentParamFields(this, passParamFields);
+		} else {
+			this.belongParameter.paramContext.getIndeedSearchParameterField(this, passParamFields);
+			Collections.reverse(passParamFields);
+		}
+		Set<String> results = new LinkedHashSet<String>(passParamFields.size());
+		for(ParameterField<PT, SCT, RT> passParamField : passParamFields) {
+			results.add(passParamField.getPath());
+		}
+		return new ArrayList<String>(results);
+	}
+	
 	/**
 	 * 添加额外的数据
 	 * 
@@ -389,6 +428,7 @@ implements IParameterObj, Cloneable {
 	 * @since 1.0.2
 	 */
 	void reset() throws Exception {
+		this.recordState();
 		// 重置所有标志位相关的
 		this.isOrderBy = false;
 		this.isAsc = false;
@@ -397,6 +437,9 @@ implements IParameterObj, Cloneable {
 		this.groupByPriority = 0;
 		this.isOutput = false;
 		this.isSearched = false;
+		this.markModified(ModifyType.ORDER_BY);
+		this.markModified(ModifyType.GROUP_BY);
+		this.markModified(ModifyType.OUTPUT);
 		// 还原相关的搜索内容, 如果有
 		if(this.usingSearcher != null) {
 			this.belongParameter.paramContext.getCurrentSearchContext()
@@ -409,6 +452,84 @@ implements IParameterObj, Cloneable {
 		}
 	}
 	
+	/**
+	 * 在修改排序, 分组, 输出和搜索标志前记录它们当前的值, 有保存点时用于回滚
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void recordState() {
+		if(this.belongParameter == null || this.belongParameter.paramContext == null
+				|| ! this.belongParameter.paramContext.journal.isRecording()) {
+			return;
+		}
+		final boolean isOrderBy = this.isOrderBy;
+		final boolean isAsc = this.isAsc;
+		final int orderByPriority = this.orderByPriority;
+		final boolean isGroupBy = this.isGroupBy;
+		final int groupByPriority = this.groupByPriority;
+		final boolean isOutput = this.isOutput;
+		final boolean isSearched = this.isSearched;
+		final Set<ParameterField<PT, SCT, RT>> representOptFields = this.representOptFields == null ? null
+				: new HashSet<ParameterField<PT, SCT, RT>>(this.representOptFields);
+		this.belongParameter.paramContext.journal.record(new ChangeJournal.Change() {
+			@Override
+			void undo() {
+				ParameterField<PT, SCT, RT> paramField = ParameterField.this;
+				paramField.isOrderBy = isOrderBy;
+				paramField.isAsc = isAsc;
+				paramField.orderByPriority = orderByPriority;
+				paramField.isGroupBy = isGroupBy;
+				paramField.groupByPriority = groupByPriority;
+				paramField.isOutput = isOutput;
+				paramField.isSearched = isSearched;
+				paramField.representOptFields = representOptFields;
+			}
+		});
+	}
+	
+	/**
+	 * 复制另一个搜索参数字段的排序, 分组, 输出和搜索标志, 用于分叉搜索参数
+	 * 
+	 * @param fromParamField 被分叉的搜索参数字段
+	 * @param forkParamFields 被分叉的字段到分叉出来的对应字段的映射, 用来转换代表操作的字段
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void copyStateFrom(ParameterField<PT, SCT, RT> fromParamField,
+			Map<ParameterField<PT, SCT, RT>, ParameterField<PT, SCT, RT>> forkParamFields) {
+		this.isOrderBy = fromParamField.isOrderBy;
+		this.isAsc = fromParamField.isAsc;
+		this.orderByPriority = fromParamField.orderByPriority;
+		this.isGroupBy = fromParamField.isGroupBy;
+		this.groupByPriority = fromParamField.groupByPriority;
+		this.isOutput = fromParamField.isOutput;
+		this.isSearched = fromParamField.isSearched;
+		if(fromParamField.representOptFields != null) {
+			this.representOptFields = new HashSet<ParameterField<PT, SCT, RT>>();
+			for(ParameterField<PT, SCT, RT> representOptField : fromParamField.representOptFields) {
+				ParameterField<PT, SCT, RT> forkField = forkParamFields.get(representOptField);
+				this.representOptFields.add(forkField != null ? forkField : representOptField);
+			}
+		}
+	}
+	
+	/**
+	 * 标记搜索参数字段所在的搜索参数树的状态被修改
+	 * <br/> 还没注册到搜索参数中时无处理
+	 * 
+	 * @param type 状态的修改类型
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void markModified(ModifyType type) {
+		if(this.belongParameter != null && this.belongParameter.paramContext != null) {
+			this.belongParameter.paramContext.markModified(type);
+		}
+	}
+	
 	/**
 	 * 克隆一个搜索参数字段, 重置相关引用信息
 	 * 
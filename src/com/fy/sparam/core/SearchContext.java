@@ -1,11 +1,19 @@
 package com.fy.sparam.core;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fy.sparam.core.SearchNode.Relation;
+import com.fy.sparam.core.SearchNode.SearchCondition;
+import com.fy.sparam.core.SearchNode.SearchGroup;
 
 /**
  * 搜索上下文
@@ -598,11 +606,17 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 		protected abstract void clearSearchEntry(String key) throws Exception ;
 	}
 	
+	// 修改标记的发号器, 全局递增使不同搜索上下文之间的修改标记也不会重复
+	private static final AtomicLong MODIFY_STAMP_GENERATOR = new AtomicLong();
+	
 	// 所有的搜索内容
-	private Map<String, List<SCT>> contents = new HashMap<String, List<SCT>>();
-	// 描述搜索内容添加者和添加的搜索内容的映射关系, 当进行回滚时要用到
-	private Map<SearchContentSource<SCT>, Map<String, List<SCT>>> contentMapper 
-		= new HashMap<SearchContentSource<SCT>, Map<String, List<SCT>>>();
+	private Map<String, SearchEntryChain<SCT>> contents = new HashMap<String, SearchEntryChain<SCT>>();
+	// 描述搜索内容添加者和添加的搜索内容的映射关系, 当进行回滚时要用到, 只需断开记录的链节点
+	private Map<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>> contentMapper 
+		= new HashMap<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>>();
+	// 描述搜索内容添加者和加入搜索条件树的条件的映射关系, 当进行回滚时要用到
+	private Map<SearchContentSource<SCT>, List<SearchCondition<SCT>>> conditionMapper 
+		= new HashMap<SearchContentSource<SCT>, List<SearchCondition<SCT>>>();
 	// 所有搜索内容逻辑关系检查用的数据
 	private boolean isSkipFirstRelation = true;
 	private boolean relationalCheckFlag = true; /* 用来检查连接是否完整的标志 */
@@ -611,6 +625,56 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 	
 	private boolean isAutoAddRelation = false; /* 是否自动为条件追加逻辑关系 */
 	private boolean isAutoAddAnd = true; /* 自动追加的逻辑关系是否是And, false则是Or */
+	// 各个键的搜索内容最后一次修改的标记, 用来判断构建结果是否需要重新生成
+	private Map<String, Long> modifyStamps = new HashMap<String, Long>();
+	private long clearStamp;
+	
+	private SearchGroup<SCT> searchTree = new SearchGroup<SCT>(); /* 搜索条件树 */
+	private SearchGroup<SCT> currentGroup = this.searchTree; /* 正在添加条件的条件组 */
+	private Relation pendingRelation; /* 下一个添加的节点与前一个节点的逻辑关系 */
+	private SearchCondition<SCT> collectingCondition; /* 正在收集搜索内容的条件 */
+	private boolean isCollectingDetached; /* 正在收集的条件是否不加入搜索条件树 */
+	private long searchTreeModifyStamp;
+	
+	private boolean isNormalizeSearchTree = false; /* 构建时是否使用规范化后的搜索条件树 */
+	private SearchGroup<SCT> normalizedSearchTree; /* 规范化后的搜索条件树缓存 */
+	private long normalizedSearchTreeStamp;
+	
+	ChangeJournal journal; /* 记录修改的日志, 只有默认的搜索上下文有 */
+	
+	// 分叉共用的搜索内容, 还没有复制时搜索内容, 映射关系和搜索条件树的容器与拥有者的是同一个
+	private SearchContext<PT, SCT, RT> sharedOwner; /* 共用容器的拥有者, 为null表示容器属于自己 */
+	private Map<SearchContentSource<SCT>, SearchContentSource<SCT>> sharedSourceMapper; /* 拥有者的搜索内容源到自己的搜索内容源 */
+	private List<WeakReference<SearchContext<PT, SCT, RT>>> sharingForks; /* 共用自己容器的搜索上下文 */
+	
+	/**
+	 * 获取一个新的修改标记
+	 * 
+	 * @return 新的修改标记, 总比之前获取的大
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static long nextModifyStamp() {
+		return MODIFY_STAMP_GENERATOR.incrementAndGet();
+	}
+	
+	/**
+	 * 获取指定键的搜索内容最后一次修改的标记
+	 * 
+	 * @param key 搜索内容的键
+	 * @return 最后一次修改的标记, 只要修改过对应的搜索内容值就会变化
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final long getModifyStamp(String key) {
+		Long modifyStamp = this.modifyStamps.get(key);
+		if(modifyStamp == null || modifyStamp < this.clearStamp) {
+			return this.clearStamp;
+		}
+		return modifyStamp;
+	}
 	
 	/**
 	 * 启用关系自动追加
@@ -659,23 +723,253 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 	}
 	
 	/**
-	 * 标记遇到开始分割符
+	 * 标记遇到开始分割符, 之后的条件添加到新的条件组中
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
 	final void meetDelimiterStart() {
 		this.delimiterStartCount ++;
+		SearchGroup<SCT> group = new SearchGroup<SCT>();
+		this.appendSearchNode(group);
+		this.currentGroup = group;
 	}
 	
 	/**
-	 * 标记遇到结束分割符
+	 * 标记遇到结束分割符, 回到上一层条件组, 没有条件的条件组会被移除
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
 	final void meetDelimiterEnd() {
+		this.unshareContent();
 		this.delimiterEndCount ++;
+		SearchGroup<SCT> group = this.currentGroup;
+		if(group.parent == null) {
+			return;
+		}
+		this.currentGroup = group.parent;
+		if(group.isEmpty()) {
+			this.removeSearchNode(group);
+		}
+		this.searchTreeModifyStamp = nextModifyStamp();
+	}
+	
+	/**
+	 * 把已有的条件整体移到一个新的条件组中, 相当于在已有条件的最前和最后加上分割符
+	 * <br/> 之后添加的条件与这个条件组以逻辑关系连接, 不会与已有条件中的OR按优先级混在一起.
+	 * 
+	 * @throws IllegalArgumentException 有还没结束的分割符或者正在收集条件时抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void wrapSearchTree() {
+		if(this.currentGroup != this.searchTree || this.collectingCondition != null) {
+			throw new IllegalArgumentException("有还没结束的分割符或者条件时不能把已有条件作为整体");
+		}
+		if(! this.hasTopLevelOrRelation()) {
+			return;
+		}
+		this.unshareContent();
+		final SearchGroup<SCT> root = this.searchTree;
+		final SearchNode<SCT> first = root.first;
+		final SearchNode<SCT> last = root.last;
+		final int size = root.size;
+		final Relation firstRelation = first.relation;
+		final SearchGroup<SCT> group = new SearchGroup<SCT>();
+		group.first = first;
+		group.last = last;
+		group.size = size;
+		for(SearchNode<SCT> child = first; child != null; child = child.next) {
+			child.parent = group;
+		}
+		first.relation = null;
+		root.first = null;
+		root.last = null;
+		root.size = 0;
+		root.add(group, firstRelation);
+		if(this.isJournaling()) {
+			this.journal.record(new ChangeJournal.Change() {
+				@Override
+				void undo() {
+					for(SearchNode<SCT> child = first; child != null; child = child.next) {
+						child.parent = root;
+					}
+					first.relation = firstRelation;
+					root.first = first;
+					root.last = last;
+					root.size = size;
+				}
+			});
+		}
+		this.searchTreeModifyStamp = nextModifyStamp();
+	}
+	
+	/**
+	 * 判断根条件组的直接子节点间是否有OR逻辑关系, 没有时已有条件与后加的条件按AND结合不需要加分割符
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean hasTopLevelOrRelation() {
+		SearchGroup<SCT> root = this.searchTree;
+		for(SearchNode<SCT> child = root.first; child != null; child = child.next) {
+			if(child != root.first && child.relation == Relation.OR) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * 标记遇到逻辑关系, 作为下一个添加的条件或条件组与前一个的逻辑关系
+	 * 
+	 * @param isAnd 是否是AND逻辑关系, 为false则是OR逻辑关系
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void meetRelation(boolean isAnd) {
+		this.pendingRelation = isAnd ? Relation.AND : Relation.OR;
+	}
+	
+	/**
+	 * 开始一个条件, 结束前指定源添加的搜索内容都属于该条件
+	 * <br/> 条件在第一次添加搜索内容时才加入搜索条件树, 没有添加搜索内容的条件会被忽略.
+	 * 
+	 * @param source 指定的搜索内容源
+	 * @param operator 条件的操作类型
+	 * @param values 条件的值
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void startCondition(SearchContentSource<SCT> source, SearchOperator operator, List<Object> values) {
+		this.collectingCondition = new SearchCondition<SCT>(source, operator, values);
+		this.isCollectingDetached = false;
+	}
+	
+	/**
+	 * 开始一个不加入搜索条件树的条件, 结束前指定源添加的搜索内容都属于该条件
+	 * <br/> 用于规范化搜索条件树时重新生成合并后条件的搜索内容, 不影响搜索内容和逻辑关系检查.
+	 * 
+	 * @param source 指定的搜索内容源
+	 * @param operator 条件的操作类型
+	 * @param values 条件的值
+	 * @return 收集搜索内容的条件
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final SearchCondition<SCT> startDetachedCondition(SearchContentSource<SCT> source, 
+			SearchOperator operator, List<Object> values) {
+		this.collectingCondition = new SearchCondition<SCT>(source, operator, values);
+		this.isCollectingDetached = true;
+		return this.collectingCondition;
+	}
+	
+	/**
+	 * 结束当前的条件
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void endCondition() {
+		this.collectingCondition = null;
+		this.isCollectingDetached = false;
+	}
+	
+	/**
+	 * 添加搜索内容源自定义的条件
+	 * 
+	 * @param source 指定的搜索内容源
+	 * @param searchContent 条件的搜索内容
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void addCustomCondition(SearchContentSource<SCT> source, SCT searchContent) {
+		if(source == null) {
+			throw new IllegalArgumentException("添加搜索内容不能不指定搜索内容来源");
+		}
+		if(searchContent == null) {
+			throw new IllegalArgumentException("添加的搜索内容不能为null");
+		}
+		List<Object> values = Collections.emptyList();
+		SearchCondition<SCT> condition = new SearchCondition<SCT>(source, SearchOperator.CUSTOM, values);
+		condition.contents.add(searchContent);
+		this.appendSearchNode(condition);
+	}
+	
+	/**
+	 * 获取搜索条件树
+	 * <br/> 分叉出来还没有修改时返回的是与拥有者共用的搜索条件树, 只能读取, 条件的来源是拥有者的搜索内容源.
+	 * 
+	 * @return 搜索条件树的根条件组, 不会为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final SearchGroup<SCT> getSearchTree() {
+		return this.searchTree;
+	}
+	
+	/**
+	 * 获取搜索条件树最后一次修改的标记
+	 * 
+	 * @return 最后一次修改的标记, 只要修改过搜索条件树就会变化
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final long getSearchTreeModifyStamp() {
+		return Math.max(this.searchTreeModifyStamp, this.clearStamp);
+	}
+	
+	/**
+	 * 设置构建时是否使用规范化后的搜索条件树
+	 * 
+	 * @param isNormalize 是否规范化
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void setNormalizeSearchTree(boolean isNormalize) {
+		if(this.isNormalizeSearchTree != isNormalize) {
+			this.isNormalizeSearchTree = isNormalize;
+			this.normalizedSearchTree = null;
+			// 渲染结果会变化, 需要让依赖搜索条件树的构建缓存失效
+			this.searchTreeModifyStamp = nextModifyStamp();
+		}
+	}
+	
+	/**
+	 * 构建时是否使用规范化后的搜索条件树
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final boolean isNormalizeSearchTree() {
+		return this.isNormalizeSearchTree;
+	}
+	
+	/**
+	 * 获取规范化后的搜索条件树, 搜索条件树没有修改时使用上次规范化的结果
+	 * 
+	 * @return 规范化后的搜索条件树的根条件组, 是搜索条件树的副本, 不会为null
+	 * @throws Exception 重新生成合并后条件的搜索内容失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final SearchGroup<SCT> getNormalizedSearchTree() throws Exception {
+		long stamp = this.getSearchTreeModifyStamp();
+		if(this.normalizedSearchTree == null || this.normalizedSearchTreeStamp != stamp) {
+			this.normalizedSearchTree = SearchTreeNormalizer.normalize(this.getSearchTree());
+			this.normalizedSearchTreeStamp = stamp;
+		}
+		return this.normalizedSearchTree;
 	}
 	
 	/**
@@ -772,22 +1066,67 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 		if(searchContent == null) {
 			throw new IllegalArgumentException("添加的搜索内容不能为null");
 		}
+		// 正在收集的条件的搜索内容添加到搜索条件树中
+		if(this.collectingCondition != null && this.collectingCondition.source == source) {
+			if(this.isCollectingDetached) {
+				this.collectingCondition.contents.add(searchContent);
+				return;
+			}
+			this.unshareContent();
+			if(this.collectingCondition.parent == null) {
+				this.appendSearchNode(this.collectingCondition);
+			}
+			final List<SCT> conditionContents = this.collectingCondition.contents;
+			conditionContents.add(searchContent);
+			if(this.isJournaling()) {
+				this.journal.record(new ChangeJournal.Change() {
+					@Override
+					void undo() {
+						conditionContents.remove(conditionContents.size() - 1);
+					}
+				});
+			}
+			this.searchTreeModifyStamp = nextModifyStamp();
+			return;
+		}
 		// 添加到总的搜索内容中
-		this.addSearchContentHelper(this.contents, key, searchContent);
+		this.unshareContent();
+		SearchEntryChain<SCT> vals = this.contents.get(key);
+		if(vals == null) {
+			vals = new SearchEntryChain<SCT>(key);
+			this.contents.put(key, vals);
+		}
+		final SearchEntryChain.Link<SCT> link = vals.append(searchContent);
+		this.modifyStamps.put(key, nextModifyStamp());
 		// 添加到搜索内容-源关联集合中
-		Map<String, List<SCT>> mappedContents = contentMapper.get(source);
-		if(mappedContents == null) {
-			mappedContents = new HashMap<String, List<SCT>>();
-			contentMapper.put(source, mappedContents);
+		List<SearchEntryChain.Link<SCT>> mappedLinks = this.contentMapper.get(source);
+		if(mappedLinks == null) {
+			mappedLinks = new ArrayList<SearchEntryChain.Link<SCT>>();
+			this.contentMapper.put(source, mappedLinks);
+		}
+		mappedLinks.add(link);
+		if(this.isJournaling()) {
+			final SearchEntryChain<SCT> chain = vals;
+			final List<SearchEntryChain.Link<SCT>> links = mappedLinks;
+			final SearchContentSource<SCT> linkSource = source;
+			this.journal.record(new ChangeJournal.Change() {
+				@Override
+				void undo() {
+					chain.unlink(link);
+					links.remove(links.size() - 1);
+					if(links.isEmpty()) {
+						SearchContext.this.contentMapper.remove(linkSource);
+					}
+				}
+			});
 		}
-		this.addSearchContentHelper(mappedContents, key, searchContent);
 	}
 	
 	/**
 	 * 根据搜索内容的key获取它对应的值
 	 * 
 	 * @param key 搜索内容的key, 由parameter实现类自定义
-	 * @return key对应的搜索内容值, 如果没有则返回空列表
+	 * @return key对应的搜索内容值, 只读, 如果没有则返回空列表
 	 *
 	 * @author linjie
 	 * @since 1.0.2
@@ -815,16 +1154,28 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 		if(key == null || key.isEmpty()) {
 			throw new IllegalArgumentException("移除搜索内容需要指定键");
 		}
-		if(this.contents.containsKey(key)) {
-			List<SCT> vals = this.contents.get(key);
-			if(vals != null && ! vals.isEmpty()) {
-				vals.clear();
+		this.unshareContent();
+		final SearchEntryChain<SCT> vals = this.contents.get(key);
+		if(vals != null && ! vals.isEmpty()) {
+			if(this.isJournaling()) {
+				final SearchEntryChain.Link<SCT> head = vals.head;
+				final SearchEntryChain.Link<SCT> tail = vals.tail;
+				final int size = vals.size();
+				this.journal.record(new ChangeJournal.Change() {
+					@Override
+					void undo() {
+						vals.restore(head, tail, size);
+					}
+				});
 			}
+			vals.clear();
+			this.modifyStamps.put(key, nextModifyStamp());
 		}
 	}
 	
 	/**
 	 * 根据搜索内容源移除其对应的所有的搜索内容键值对
+	 * <br/> 只处理该搜索内容源添加过的搜索内容和条件, 代价与其它搜索内容源添加的数量无关.
 	 * 
 	 * @param source 指定的搜索内容源
 	 * 
@@ -835,18 +1186,46 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 		if(source == null) {
 			throw new IllegalArgumentException("移除搜索内容不能不指定搜索内容来源");
 		}
-		if(! this.contents.isEmpty()) {
-			Map<String, List<SCT>> needRemoveContents = this.contentMapper.get(source);
-			if(needRemoveContents != null && ! needRemoveContents.isEmpty()) {
-				for(String key : needRemoveContents.keySet()) {
-					List<SCT> needRemoveVals = needRemoveContents.get(key);
-					List<SCT> vals = this.contents.get(key);
-					if(needRemoveVals != null && ! needRemoveVals.isEmpty()
-							&& vals != null && ! vals.isEmpty()) {
-						vals.removeAll(needRemoveVals);
+		this.unshareContent();
+		final List<SearchCondition<SCT>> needRemoveConditions = this.conditionMapper.remove(source);
+		final List<SearchEntryChain.Link<SCT>> needRemoveLinks = this.contentMapper.remove(source);
+		if(this.isJournaling() && (needRemoveConditions != null || needRemoveLinks != null)) {
+			final SearchContentSource<SCT> removedSource = source;
+			this.journal.record(new ChangeJournal.Change() {
+				@Override
+				void undo() {
+					if(needRemoveConditions != null) {
+						SearchContext.this.conditionMapper.put(removedSource, needRemoveConditions);
+					}
+					if(needRemoveLinks != null) {
+						SearchContext.this.contentMapper.put(removedSource, needRemoveLinks);
+					}
+				}
+			});
+		}
+		if(needRemoveConditions != null && this.removeSearchNodes(needRemoveConditions)) {
+			this.searchTreeModifyStamp = nextModifyStamp();
+		}
+		if(needRemoveLinks != null) {
+			long modifyStamp = 0;
+			for(final SearchEntryChain.Link<SCT> link : needRemoveLinks) {
+				final SearchEntryChain<SCT> vals = link.chain;
+				final SearchEntryChain.Link<SCT> prev = link.prev;
+				final SearchEntryChain.Link<SCT> next = link.next;
+				if(vals != null && vals.unlink(link)) {
+					if(this.isJournaling()) {
+						this.journal.record(new ChangeJournal.Change() {
+							@Override
+							void undo() {
+								vals.relink(link, prev, next);
+							}
+						});
+					}
+					if(modifyStamp == 0) {
+						modifyStamp = nextModifyStamp();
 					}
+					this.modifyStamps.put(vals.key, modifyStamp);
 				}
-				this.contentMapper.remove(source);
 			}
 		}
 	}
@@ -860,8 +1239,34 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 	 * @since 1.0.2
 	 */
 	final void clear() throws Exception {
-		this.contents.clear();
-		this.contentMapper.clear();
+		this.unshareContent();
+		if(this.isJournaling()) {
+			final Map<String, SearchEntryChain<SCT>> oldContents = this.contents;
+			final Map<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>> oldContentMapper = this.contentMapper;
+			final Map<SearchContentSource<SCT>, List<SearchCondition<SCT>>> oldConditionMapper = this.conditionMapper;
+			final SearchGroup<SCT> oldSearchTree = this.searchTree;
+			this.journal.record(new ChangeJournal.Change() {
+				@Override
+				void undo() {
+					SearchContext.this.contents = oldContents;
+					SearchContext.this.contentMapper = oldContentMapper;
+					SearchContext.this.conditionMapper = oldConditionMapper;
+					SearchContext.this.searchTree = oldSearchTree;
+				}
+			});
+		}
+		// 换成新的容器而不是清空, 这样撤销时可以直接换回来
+		this.contents = new HashMap<String, SearchEntryChain<SCT>>();
+		this.contentMapper = new HashMap<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>>();
+		this.conditionMapper = new HashMap<SearchContentSource<SCT>, List<SearchCondition<SCT>>>();
+		this.modifyStamps.clear();
+		this.clearStamp = nextModifyStamp();
+		this.searchTree = new SearchGroup<SCT>();
+		this.currentGroup = this.searchTree;
+		this.pendingRelation = null;
+		this.collectingCondition = null;
+		this.isCollectingDetached = false;
+		this.normalizedSearchTree = null;
 		
 		this.isAutoAddAnd = false;
 		this.isAutoAddRelation = false;
@@ -871,23 +1276,397 @@ public final class SearchContext<PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 	}
 	
 	/**
-	 * 添加搜索内容的辅助方法
+	 * 在当前条件组末尾添加节点, 使用之前遇到的逻辑关系
 	 * 
-	 * @param contentsRef 搜索内容容器的引用
-	 * @param key 键
-	 * @param content 搜索内容
+	 * @param node 添加的节点
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
-	private void addSearchContentHelper(Map<String, List<SCT>> contentsRef,
-			String key, SCT content) {
-		List<SCT> vals = contentsRef.get(key);
-		if(vals == null) {
-			vals = new LinkedList<SCT>();
-			contentsRef.put(key, vals);
+	private void appendSearchNode(final SearchNode<SCT> node) {
+		this.unshareContent();
+		Relation relation = this.pendingRelation;
+		this.pendingRelation = null;
+		final SearchGroup<SCT> group = this.currentGroup;
+		final Relation groupRelation = group.relation;
+		// 逻辑关系落在条件组开头时(如自动追加或前面的条件被取消), 作为条件组与前一个节点的逻辑关系,
+		// 只有不忽略第一个逻辑关系的根条件组才保留开头的逻辑关系
+		if(relation != null && group.isEmpty() && (group.parent != null || this.isSkipFirstRelation)) {
+			if(group.parent != null && group.relation == null && group.prev != null) {
+				group.relation = relation;
+			}
+			relation = null;
+		}
+		group.add(node, relation);
+		List<SearchCondition<SCT>> mappedConditions = null;
+		if(node instanceof SearchCondition) {
+			SearchCondition<SCT> condition = (SearchCondition<SCT>) node;
+			mappedConditions = this.conditionMapper.get(condition.source);
+			if(mappedConditions == null) {
+				mappedConditions = new ArrayList<SearchCondition<SCT>>();
+				this.conditionMapper.put(condition.source, mappedConditions);
+			}
+			mappedConditions.add(condition);
+		}
+		if(this.isJournaling()) {
+			final List<SearchCondition<SCT>> conditions = mappedConditions;
+			this.journal.record(new ChangeJournal.Change() {
+				@Override
+				void undo() {
+					group.remove(node);
+					group.relation = groupRelation;
+					if(conditions != null) {
+						conditions.remove(conditions.size() - 1);
+						if(conditions.isEmpty()) {
+							SearchContext.this.conditionMapper.remove(((SearchCondition<SCT>) node).source);
+						}
+					}
+				}
+			});
+		}
+		this.searchTreeModifyStamp = nextModifyStamp();
+	}
+	
+	/**
+	 * 从搜索条件树中移除指定的条件, 移除后没有条件且已经结束的条件组也会被逐层移除
+	 * 
+	 * @param conditions 指定的条件, 按加入搜索条件树的顺序排列
+	 * @return 有移除返回true, 否则返回false
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean removeSearchNodes(List<SearchCondition<SCT>> conditions) {
+		boolean isRemoved = false;
+		for(SearchCondition<SCT> condition : conditions) {
+			SearchGroup<SCT> group = condition.parent;
+			if(group == null) {
+				continue;
+			}
+			this.removeSearchNode(condition);
+			isRemoved = true;
+			while(group.parent != null && group.isEmpty() && ! this.isOpenGroup(group)) {
+				SearchGroup<SCT> parent = group.parent;
+				this.removeSearchNode(group);
+				group = parent;
+			}
+		}
+		return isRemoved;
+	}
+	
+	/**
+	 * 从所在的条件组中移除节点
+	 * 
+	 * @param node 移除的节点, 必须在条件组中
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void removeSearchNode(final SearchNode<SCT> node) {
+		final SearchGroup<SCT> group = node.parent;
+		if(this.isJournaling()) {
+			final SearchNode<SCT> prev = node.prev;
+			final SearchNode<SCT> next = node.next;
+			final Relation nextRelation = next == null ? null : next.relation;
+			this.journal.record(new ChangeJournal.Change() {
+				@Override
+				void undo() {
+					group.restore(node, prev, next, nextRelation);
+				}
+			});
+		}
+		group.remove(node);
+	}
+	
+	/**
+	 * 记录当前不通过修改日志记录的状态: 正在添加条件的位置, 逻辑关系检查和自动追加设置等
+	 * 
+	 * @return 恢复为当前状态的操作, 恢复时还会使所有搜索内容相关的构建缓存失效
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final ChangeJournal.Change captureState() {
+		// 正在添加条件的位置在根条件组时不记录节点本身, 恢复时使用当时的根条件组, 这样共用容器时不需要先复制
+		if(this.sharedOwner != null && this.currentGroup != this.searchTree) {
+			this.ownSharedContent();
+		}
+		final SearchGroup<SCT> currentGroup = this.currentGroup == this.searchTree ? null : this.currentGroup;
+		final Relation pendingRelation = this.pendingRelation;
+		final SearchCondition<SCT> collectingCondition = this.collectingCondition;
+		final boolean isCollectingDetached = this.isCollectingDetached;
+		final boolean isSkipFirstRelation = this.isSkipFirstRelation;
+		final boolean relationalCheckFlag = this.relationalCheckFlag;
+		final int delimiterStartCount = this.delimiterStartCount;
+		final int delimiterEndCount = this.delimiterEndCount;
+		final boolean isAutoAddRelation = this.isAutoAddRelation;
+		final boolean isAutoAddAnd = this.isAutoAddAnd;
+		final boolean isNormalizeSearchTree = this.isNormalizeSearchTree;
+		return new ChangeJournal.Change() {
+			@Override
+			void undo() {
+				SearchContext<PT, SCT, RT> context = SearchContext.this;
+				context.currentGroup = currentGroup != null ? currentGroup : context.searchTree;
+				context.pendingRelation = pendingRelation;
+				context.collectingCondition = collectingCondition;
+				context.isCollectingDetached = isCollectingDetached;
+				context.isSkipFirstRelation = isSkipFirstRelation;
+				context.relationalCheckFlag = relationalCheckFlag;
+				context.delimiterStartCount = delimiterStartCount;
+				context.delimiterEndCount = delimiterEndCount;
+				context.isAutoAddRelation = isAutoAddRelation;
+				context.isAutoAddAnd = isAutoAddAnd;
+				context.isNormalizeSearchTree = isNormalizeSearchTree;
+				context.normalizedSearchTree = null;
+				// 修改标记不回退, 而是整体更新, 使之前的构建缓存都失效
+				context.clearStamp = nextModifyStamp();
+				context.searchTreeModifyStamp = context.clearStamp;
+			}
+		};
+	}
+	
+	/**
+	 * 分叉出一个搜索上下文, 用于分叉出来的搜索参数树
+	 * <br/> 分叉出来的搜索上下文不复制搜索内容, 映射关系和搜索条件树, 而是与当前搜索上下文(或它共用的拥有者)共用,
+	 * 代价与搜索内容的数量无关; 读取和构建使用共用的容器, 任意一方修改前才复制容器, 搜索内容本身一直共用.
+	 * 
+	 * @param forkMapper 当前搜索参数树的对象到分叉出来的搜索参数树对应对象的映射, 用来转换搜索内容源
+	 * @return 分叉出来的搜索上下文, 没有修改日志
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	final SearchContext<PT, SCT, RT> fork(Map<Object, Object> forkMapper) {
+		SearchContext<PT, SCT, RT> forkContext = new SearchContext<PT, SCT, RT>();
+		// 逻辑关系检查, 自动追加和规范化设置
+		forkContext.isSkipFirstRelation = this.isSkipFirstRelation;
+		forkContext.relationalCheckFlag = this.relationalCheckFlag;
+		forkContext.delimiterStartCount = this.delimiterStartCount;
+		forkContext.delimiterEndCount = this.delimiterEndCount;
+		forkContext.isAutoAddRelation = this.isAutoAddRelation;
+		forkContext.isAutoAddAnd = this.isAutoAddAnd;
+		forkContext.pendingRelation = this.pendingRelation;
+		forkContext.isNormalizeSearchTree = this.isNormalizeSearchTree;
+		forkContext.modifyStamps = new HashMap<String, Long>(this.modifyStamps);
+		forkContext.clearStamp = this.clearStamp;
+		forkContext.searchTreeModifyStamp = this.searchTreeModifyStamp;
+		// 共用容器, 正在收集的条件不共用
+		forkContext.contents = this.contents;
+		forkContext.contentMapper = this.contentMapper;
+		forkContext.conditionMapper = this.conditionMapper;
+		forkContext.searchTree = this.searchTree;
+		forkContext.currentGroup = this.currentGroup;
+		// 搜索内容源映射到拥有者的搜索内容源, 当前也是共用的则通过当前的映射转换一次
+		Map<SearchContentSource<SCT>, SearchContentSource<SCT>> sourceMapper = 
+				new IdentityHashMap<SearchContentSource<SCT>, SearchContentSource<SCT>>();
+		if(this.sharedOwner != null) {
+			for(Map.Entry<SearchContentSource<SCT>, SearchContentSource<SCT>> entry : this.sharedSourceMapper.entrySet()) {
+				Object forkSource = forkMapper.get(entry.getValue());
+				sourceMapper.put(entry.getKey(), forkSource != null ? (SearchContentSource<SCT>) forkSource : entry.getValue());
+			}
+		} else {
+			for(Map.Entry<Object, Object> entry : forkMapper.entrySet()) {
+				if(entry.getKey() instanceof SearchContentSource) {
+					sourceMapper.put((SearchContentSource<SCT>) entry.getKey(), (SearchContentSource<SCT>) entry.getValue());
+				}
+			}
+		}
+		forkContext.sharedSourceMapper = sourceMapper;
+		SearchContext<PT, SCT, RT> owner = this.sharedOwner != null ? this.sharedOwner : this;
+		forkContext.sharedOwner = owner;
+		synchronized(owner) {
+			if(owner.sharingForks == null) {
+				owner.sharingForks = new ArrayList<WeakReference<SearchContext<PT, SCT, RT>>>();
+			}
+			// 顺便清理已经回收的
+			Iterator<WeakReference<SearchContext<PT, SCT, RT>>> it = owner.sharingForks.iterator();
+			while(it.hasNext()) {
+				if(it.next().get() == null) {
+					it.remove();
+				}
+			}
+			owner.sharingForks.add(new WeakReference<SearchContext<PT, SCT, RT>>(forkContext));
+		}
+		return forkContext;
+	}
+	
+	/**
+	 * 在修改共用的容器前取消共用: 共用别人的容器时复制一份自己的, 容器被别人共用时让它们先复制
+	 * <br/> 回滚修改日志也会修改容器, 回滚前也需要调用.
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final void unshareContent() {
+		if(this.sharedOwner != null) {
+			this.ownSharedContent();
+			return;
+		}
+		if(this.sharingForks == null) {
+			return;
+		}
+		synchronized(this) {
+			for(WeakReference<SearchContext<PT, SCT, RT>> forkRef : this.sharingForks) {
+				SearchContext<PT, SCT, RT> forkContext = forkRef.get();
+				if(forkContext != null) {
+					forkContext.copySharedContent();
+				}
+			}
+			this.sharingForks = null;
+		}
+	}
+	
+	/**
+	 * 不再共用拥有者的容器, 复制一份自己的
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void ownSharedContent() {
+		SearchContext<PT, SCT, RT> owner = this.sharedOwner;
+		synchronized(owner) {
+			if(this.sharedOwner == null) { /* 等待时已经被拥有者复制了 */
+				return;
+			}
+			if(owner.sharingForks != null) {
+				Iterator<WeakReference<SearchContext<PT, SCT, RT>>> it = owner.sharingForks.iterator();
+				while(it.hasNext()) {
+					SearchContext<PT, SCT, RT> forkContext = it.next().get();
+					if(forkContext == null || forkContext == this) {
+						it.remove();
+					}
+				}
+			}
+			this.copySharedContent();
+		}
+	}
+	
+	/**
+	 * 复制共用的容器, 搜索内容源转换为自己的, 搜索内容本身不复制
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void copySharedContent() {
+		// 搜索内容链, 已经断开的链节点不用复制
+		Map<SearchEntryChain.Link<SCT>, SearchEntryChain.Link<SCT>> linkMapper = 
+				new IdentityHashMap<SearchEntryChain.Link<SCT>, SearchEntryChain.Link<SCT>>();
+		Map<String, SearchEntryChain<SCT>> contents = new HashMap<String, SearchEntryChain<SCT>>();
+		for(SearchEntryChain<SCT> vals : this.contents.values()) {
+			SearchEntryChain<SCT> copyVals = new SearchEntryChain<SCT>(vals.key);
+			for(SearchEntryChain.Link<SCT> link = vals.head; link != null; link = link.next) {
+				linkMapper.put(link, copyVals.append(link.content));
+			}
+			contents.put(vals.key, copyVals);
+		}
+		Map<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>> contentMapper 
+			= new HashMap<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>>();
+		for(Map.Entry<SearchContentSource<SCT>, List<SearchEntryChain.Link<SCT>>> entry : this.contentMapper.entrySet()) {
+			List<SearchEntryChain.Link<SCT>> copyLinks = new ArrayList<SearchEntryChain.Link<SCT>>(entry.getValue().size());
+			for(SearchEntryChain.Link<SCT> link : entry.getValue()) {
+				SearchEntryChain.Link<SCT> copyLink = linkMapper.get(link);
+				if(copyLink != null) {
+					copyLinks.add(copyLink);
+				}
+			}
+			if(! copyLinks.isEmpty()) {
+				contentMapper.put(this.getForkedSource(entry.getKey()), copyLinks);
+			}
+		}
+		// 搜索条件树
+		Map<SearchNode<SCT>, SearchNode<SCT>> nodeMapper = new IdentityHashMap<SearchNode<SCT>, SearchNode<SCT>>();
+		SearchGroup<SCT> searchTree = this.copySearchGroup(this.searchTree, nodeMapper);
+		Map<SearchContentSource<SCT>, List<SearchCondition<SCT>>> conditionMapper 
+			= new HashMap<SearchContentSource<SCT>, List<SearchCondition<SCT>>>();
+		for(Map.Entry<SearchContentSource<SCT>, List<SearchCondition<SCT>>> entry : this.conditionMapper.entrySet()) {
+			List<SearchCondition<SCT>> copyConditions = new ArrayList<SearchCondition<SCT>>(entry.getValue().size());
+			for(SearchCondition<SCT> condition : entry.getValue()) {
+				SearchNode<SCT> copyCondition = nodeMapper.get(condition);
+				if(copyCondition != null) {
+					copyConditions.add((SearchCondition<SCT>) copyCondition);
+				}
+			}
+			if(! copyConditions.isEmpty()) {
+				conditionMapper.put(this.getForkedSource(entry.getKey()), copyConditions);
+			}
+		}
+		SearchNode<SCT> currentGroup = nodeMapper.get(this.currentGroup);
+		this.contents = contents;
+		this.contentMapper = contentMapper;
+		this.conditionMapper = conditionMapper;
+		this.searchTree = searchTree;
+		this.currentGroup = currentGroup != null ? (SearchGroup<SCT>) currentGroup : searchTree;
+		this.normalizedSearchTree = null;
+		this.sharedOwner = null;
+		this.sharedSourceMapper = null;
+	}
+	
+	/**
+	 * 复制条件组及其所有后代节点
+	 * 
+	 * @param group 复制的条件组
+	 * @param nodeMapper 记录原节点到复制的节点的映射
+	 * @return 复制的条件组, 没有所在的条件组
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SearchGroup<SCT> copySearchGroup(SearchGroup<SCT> group, Map<SearchNode<SCT>, SearchNode<SCT>> nodeMapper) {
+		SearchGroup<SCT> copyGroup = new SearchGroup<SCT>();
+		copyGroup.relation = group.relation;
+		nodeMapper.put(group, copyGroup);
+		for(SearchNode<SCT> child = group.first; child != null; child = child.next) {
+			SearchNode<SCT> copyChild;
+			if(child instanceof SearchCondition) {
+				SearchCondition<SCT> condition = (SearchCondition<SCT>) child;
+				SearchCondition<SCT> copyCondition = new SearchCondition<SCT>(
+						this.getForkedSource(condition.source), condition.operator, condition.values);
+				copyCondition.contents.addAll(condition.contents);
+				nodeMapper.put(condition, copyCondition);
+				copyChild = copyCondition;
+			} else {
+				copyChild = this.copySearchGroup((SearchGroup<SCT>) child, nodeMapper);
+			}
+			copyGroup.add(copyChild, child.relation);
+		}
+		return copyGroup;
+	}
+	
+	/**
+	 * 获取拥有者的搜索内容源对应的自己的搜索内容源, 不属于拥有者的搜索参数树的(如子查询)保持不变
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SearchContentSource<SCT> getForkedSource(SearchContentSource<SCT> source) {
+		SearchContentSource<SCT> forkSource = this.sharedSourceMapper.get(source);
+		return forkSource != null ? forkSource : source;
+	}
+	
+	/**
+	 * 当前是否需要记录修改
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isJournaling() {
+		return this.journal != null && this.journal.isRecording();
+	}
+	
+	/**
+	 * 判断条件组是否还没有遇到结束分割符
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isOpenGroup(SearchGroup<SCT> group) {
+		for(SearchGroup<SCT> openGroup = this.currentGroup; openGroup != null; openGroup = openGroup.parent) {
+			if(openGroup == group) {
+				return true;
+			}
 		}
-		vals.add(content);
+		return false;
 	}
 	
 	/**
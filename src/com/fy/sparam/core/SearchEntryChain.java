@@ -0,0 +1,284 @@
+package com.fy.sparam.core;
+
+import java.util.AbstractSequentialList;
+import java.util.ConcurrentModificationException;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 一个键的搜索内容链
+ * <br/> 搜索内容按添加顺序链接, 添加时返回对应的链节点, 由搜索上下文按搜索内容源记录;
+ * 回滚一个搜索内容源时逐个断开它添加的链节点, 代价只与该搜索内容源添加的搜索内容数量有关.
+ * <br/> 作为列表使用时是只读的, 遍历时链被修改会抛出{@link ConcurrentModificationException}.
+ *
+ * @param <SCT> 搜索内容类类型
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+final class SearchEntryChain<SCT> extends AbstractSequentialList<SCT> {
+
+	final String key;
+	Link<SCT> head;
+	Link<SCT> tail;
+	private int size;
+
+	/**
+	 * 构造器: 指定搜索内容的键
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SearchEntryChain(String key) {
+		this.key = key;
+	}
+
+	/**
+	 * 在链的末尾添加搜索内容
+	 *
+	 * @param content 搜索内容
+	 * @return 搜索内容对应的链节点
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	Link<SCT> append(SCT content) {
+		Link<SCT> link = new Link<SCT>(this, content);
+		link.prev = this.tail;
+		if(this.tail == null) {
+			this.head = link;
+		} else {
+			this.tail.next = link;
+		}
+		this.tail = link;
+		this.size ++;
+		this.modCount ++;
+		return link;
+	}
+
+	/**
+	 * 从链中断开指定的链节点
+	 *
+	 * @param link 指定的链节点
+	 * @return 断开了返回true, 链节点已经不在链中(如链被清空过)返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	boolean unlink(Link<SCT> link) {
+		if(link.chain != this) {
+			return false;
+		}
+		if(link.prev == null) {
+			this.head = link.next;
+		} else {
+			link.prev.next = link.next;
+		}
+		if(link.next == null) {
+			this.tail = link.prev;
+		} else {
+			link.next.prev = link.prev;
+		}
+		link.chain = null;
+		link.prev = null;
+		link.next = null;
+		this.size --;
+		this.modCount ++;
+		return true;
+	}
+
+	/**
+	 * 把断开的链节点放回原来的两个链节点之间, 用于撤销断开
+	 *
+	 * @param link 断开的链节点
+	 * @param prev 断开前的前一个链节点, 可以为null
+	 * @param next 断开前的后一个链节点, 可以为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void relink(Link<SCT> link, Link<SCT> prev, Link<SCT> next) {
+		link.chain = this;
+		link.prev = prev;
+		link.next = next;
+		if(prev == null) {
+			this.head = link;
+		} else {
+			prev.next = link;
+		}
+		if(next == null) {
+			this.tail = link;
+		} else {
+			next.prev = link;
+		}
+		this.size ++;
+		this.modCount ++;
+	}
+
+	/**
+	 * 恢复清空前的链, 用于撤销清空, 清空后添加的链节点必须已经断开
+	 *
+	 * @param head 清空前的第一个链节点
+	 * @param tail 清空前的最后一个链节点
+	 * @param size 清空前的链节点数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void restore(Link<SCT> head, Link<SCT> tail, int size) {
+		for(Link<SCT> link = head; link != null; link = link.next) {
+			link.chain = this;
+		}
+		this.head = head;
+		this.tail = tail;
+		this.size = size;
+		this.modCount ++;
+	}
+
+	/**
+	 * 清空链, 已经断开的链节点之后再断开不会有影响
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@Override
+	public void clear() {
+		for(Link<SCT> link = this.head; link != null; link = link.next) {
+			link.chain = null;
+		}
+		this.head = null;
+		this.tail = null;
+		this.size = 0;
+		this.modCount ++;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public ListIterator<SCT> listIterator(int index) {
+		if(index < 0 || index > this.size) {
+			throw new IndexOutOfBoundsException(String.format("索引%s超出范围[0, %s]", index, this.size));
+		}
+		return new ChainIterator(index);
+	}
+
+	/**
+	 * 链节点, 对应一次添加的搜索内容
+	 *
+	 * @param <SCT> 搜索内容类类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static final class Link<SCT> {
+
+		final SCT content;
+		SearchEntryChain<SCT> chain; /* 所在的链, 断开后为null */
+		Link<SCT> prev;
+		Link<SCT> next;
+
+		Link(SearchEntryChain<SCT> chain, SCT content) {
+			this.chain = chain;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * 只读的链迭代器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final class ChainIterator implements ListIterator<SCT> {
+
+		private Link<SCT> nextLink;
+		private Link<SCT> lastReturned;
+		private int nextIndex;
+		private final int expectedModCount = SearchEntryChain.this.modCount;
+
+		ChainIterator(int index) {
+			if(index == SearchEntryChain.this.size) {
+				this.nextLink = null;
+			} else if(index < (SearchEntryChain.this.size >> 1)) {
+				this.nextLink = SearchEntryChain.this.head;
+				for(int i = 0; i < index; i ++) {
+					this.nextLink = this.nextLink.next;
+				}
+			} else {
+				this.nextLink = SearchEntryChain.this.tail;
+				for(int i = SearchEntryChain.this.size - 1; i > index; i --) {
+					this.nextLink = this.nextLink.prev;
+				}
+			}
+			this.nextIndex = index;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.nextIndex < SearchEntryChain.this.size;
+		}
+
+		@Override
+		public SCT next() {
+			this.checkForComodification();
+			if(! this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.lastReturned = this.nextLink;
+			this.nextLink = this.nextLink.next;
+			this.nextIndex ++;
+			return this.lastReturned.content;
+		}
+
+		@Override
+		public boolean hasPrevious() {
+			return this.nextIndex > 0;
+		}
+
+		@Override
+		public SCT previous() {
+			this.checkForComodification();
+			if(! this.hasPrevious()) {
+				throw new NoSuchElementException();
+			}
+			this.nextLink = this.nextLink == null ? SearchEntryChain.this.tail : this.nextLink.prev;
+			this.lastReturned = this.nextLink;
+			this.nextIndex --;
+			return this.lastReturned.content;
+		}
+
+		@Override
+		public int nextIndex() {
+			return this.nextIndex;
+		}
+
+		@Override
+		public int previousIndex() {
+			return this.nextIndex - 1;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("搜索内容链是只读的");
+		}
+
+		@Override
+		public void set(SCT content) {
+			throw new UnsupportedOperationException("搜索内容链是只读的");
+		}
+
+		@Override
+		public void add(SCT content) {
+			throw new UnsupportedOperationException("搜索内容链是只读的");
+		}
+
+		private void checkForComodification() {
+			if(SearchEntryChain.this.modCount != this.expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+}
@@ -0,0 +1,467 @@
+package com.fy.sparam.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fy.sparam.core.SearchExpressionsCompiler.ExpressionCondition;
+import com.fy.sparam.core.SearchExpressionsCompiler.ExpressionGroup;
+import com.fy.sparam.core.SearchExpressionsCompiler.ExpressionNode;
+import com.fy.sparam.core.SearchExpressionsCompiler.SearchHandler;
+
+/**
+ * 搜索表达式解析器
+ * <br/> 手写的单遍词法分析和递归下降语法分析, 每个字符只读取一次, 解析时间与表达式长度成线性关系.
+ * <br/> 词法单元只记录在解析器的字段中, 不创建词法单元对象, 只有字段路径, 搜索方法和参数值会产生字符串.
+ * <br/> 语法:
+ * <pre>
+ * group     := term (relation term)*
+ * relation  := AND | OR
+ * term      := '(' group ')' | condition
+ * condition := '{' path '}' ':' method [ '(' [ arg (',' arg)* ] ')' ]
+ * arg       := ':' name | '...' | "..." | 直到','或')'的文本
+ * </pre>
+ * 字段路径和参数值中可以使用'\'转义下一个字符, 引号中的参数值可以包含','和')'.
+ * <br/> 以':'开头的参数为命名绑定的占位符, 值在应用解析结果时由绑定参数提供.
+ * <br/> 分组的嵌套层数不能超过{@value #MAX_NESTING_DEPTH}, 避免过深的嵌套耗尽调用栈.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+final class SearchExpressionParser {
+
+	/**
+	 * 分组嵌套层数的上限
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static final int MAX_NESTING_DEPTH = 256;
+
+	/**
+	 * 词法单元类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private enum TokenType {
+		FIELD, COLON, WORD, LEFT_PAREN, RIGHT_PAREN, COMMA, END
+	}
+
+	private final String expressions;
+
+	private final String[] symbols;
+
+	private final int length;
+
+	// 当前读取的位置
+	private int pos;
+
+	// 当前分组的嵌套层数
+	private int depth;
+
+	// 当前词法单元的信息
+	private TokenType tokenType;
+	private int tokenStart;
+	private String tokenText;
+
+	// 当前条件的命名绑定名称, 与参数一一对应, 不是命名绑定的为null; 没有命名绑定则为null
+	private String[] bindNames;
+
+	// 复用的转义处理缓冲区
+	private final StringBuilder escapeBuffer = new StringBuilder();
+
+	/**
+	 * 构造器: 指定要解析的搜索表达式和符号
+	 *
+	 * @param expressions 搜索表达式, 不能为null
+	 * @param symbols 搜索字段路径中可能使用的符号
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SearchExpressionParser(String expressions, String[] symbols) {
+		this.expressions = expressions;
+		this.symbols = symbols;
+		this.length = expressions.length();
+	}
+
+	/**
+	 * 解析搜索表达式
+	 *
+	 * @return 表达式的根分组
+	 * @throws IllegalArgumentException 表达式格式错误则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	ExpressionGroup parse() {
+		this.nextToken();
+		ExpressionGroup root = this.parseGroup(true);
+		if(this.tokenType != TokenType.END) {
+			throw this.error("存在多余的内容");
+		}
+		return root;
+	}
+
+	/**
+	 * group := term (relation term)*
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private ExpressionGroup parseGroup(boolean isAnd) {
+		List<ExpressionNode> children = new ArrayList<ExpressionNode>(4);
+		children.add(this.parseTerm(true));
+		while(this.tokenType == TokenType.WORD) {
+			boolean isChildAnd;
+			if("AND".equalsIgnoreCase(this.tokenText)) {
+				isChildAnd = true;
+			} else if("OR".equalsIgnoreCase(this.tokenText)) {
+				isChildAnd = false;
+			} else {
+				throw this.error(String.format("无法识别的连接关系%s", this.tokenText));
+			}
+			this.nextToken();
+			children.add(this.parseTerm(isChildAnd));
+		}
+		return new ExpressionGroup(isAnd, children);
+	}
+
+	/**
+	 * term := '(' group ')' | condition
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private ExpressionNode parseTerm(boolean isAnd) {
+		if(this.tokenType == TokenType.LEFT_PAREN) {
+			if(this.depth >= MAX_NESTING_DEPTH) {
+				throw this.error(String.format("分组的嵌套层数超过上限%s", MAX_NESTING_DEPTH));
+			}
+			this.depth ++;
+			this.nextToken();
+			ExpressionGroup group = this.parseGroup(isAnd);
+			this.expect(TokenType.RIGHT_PAREN, "分组缺少')'");
+			this.nextToken();
+			this.depth --;
+			return group;
+		}
+		return this.parseCondition(isAnd);
+	}
+
+	/**
+	 * condition := '{' path '}' ':' method [ '(' [ arg (',' arg)* ] ')' ]
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private ExpressionCondition parseCondition(boolean isAnd) {
+		this.expect(TokenType.FIELD, "需要'{字段路径}'");
+		String searchFieldPath = this.tokenText;
+		Set<String> containSymbols = Collections.emptySet();
+		for(String symbol : this.symbols) {
+			if(searchFieldPath.contains(symbol)) {
+				if(containSymbols.isEmpty()) {
+					containSymbols = new HashSet<String>(2);
+				}
+				containSymbols.add(symbol);
+				searchFieldPath = searchFieldPath.replace(symbol, "");
+			}
+		}
+		this.nextToken();
+		this.expect(TokenType.COLON, "字段路径后需要':'");
+		this.nextToken();
+		this.expect(TokenType.WORD, "需要搜索方法");
+		int methodStart = this.tokenStart;
+		SearchHandler handler = SearchHandler.of(this.tokenText);
+		if(handler == null) {
+			throw this.error(String.format("不支持的搜索方法%s", this.tokenText));
+		}
+		this.bindNames = null;
+		List<String> searchArgs = Collections.emptyList();
+		// 搜索方法和参数括号之间不能有空白, 否则与后面的分组结束括号无法区分
+		if(this.pos < this.length && this.expressions.charAt(this.pos) == '(') {
+			this.pos ++;
+			searchArgs = this.parseArgs();
+			this.nextToken();
+		} else {
+			this.nextToken();
+		}
+		if(! handler.isAcceptArgCount(searchArgs.size())) {
+			throw new IllegalArgumentException(String.format("搜索表达式[%s]在位置%s处解析失败: 搜索方法%s的参数数量%s不正确",
+					this.expressions, methodStart, handler.name(), searchArgs.size()));
+		}
+		return new ExpressionCondition(isAnd, searchFieldPath, handler, searchArgs, this.bindNames, containSymbols);
+	}
+
+	/**
+	 * 解析参数列表, 调用时当前位置在'('之后, 返回时当前位置在')'之后
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<String> parseArgs() {
+		this.skipWhitespace();
+		if(this.pos < this.length && this.expressions.charAt(this.pos) == ')') {
+			this.pos ++;
+			return Collections.emptyList();
+		}
+		List<String> args = new ArrayList<String>(2);
+		while(true) {
+			this.skipWhitespace();
+			this.tokenStart = this.pos;
+			if(this.pos >= this.length) {
+				throw this.error("参数列表缺少')'");
+			}
+			char c = this.expressions.charAt(this.pos);
+			if(c == '\'' || c == '"') {
+				args.add(this.readQuoted(c));
+				this.skipWhitespace();
+			} else if(c == ':') {
+				String bindName = this.readBindName();
+				if(this.bindNames == null) {
+					this.bindNames = new String[args.size() + 1];
+				} else if(this.bindNames.length <= args.size()) {
+					this.bindNames = Arrays.copyOf(this.bindNames, args.size() + 1);
+				}
+				this.bindNames[args.size()] = bindName;
+				args.add(":" + bindName);
+				this.skipWhitespace();
+			} else {
+				args.add(this.readBare());
+			}
+			if(this.pos >= this.length) {
+				throw this.error("参数列表缺少')'");
+			}
+			c = this.expressions.charAt(this.pos ++);
+			if(c == ')') {
+				if(this.bindNames != null && this.bindNames.length < args.size()) {
+					this.bindNames = Arrays.copyOf(this.bindNames, args.size());
+				}
+				return Collections.unmodifiableList(args);
+			}
+			if(c != ',') {
+				throw this.error(String.format("参数后出现无法识别的字符%s", c));
+			}
+		}
+	}
+
+	/**
+	 * 读取命名绑定的名称, 调用时当前位置在':'上
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String readBindName() {
+		int start = ++ this.pos;
+		while(this.pos < this.length && Character.isJavaIdentifierPart(this.expressions.charAt(this.pos))) {
+			this.pos ++;
+		}
+		if(start == this.pos) {
+			throw this.error("':'后缺少绑定名称");
+		}
+		return this.expressions.substring(start, this.pos);
+	}
+
+	/**
+	 * 读取引号中的参数值, 调用时当前位置在开始引号上
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String readQuoted(char quote) {
+		int start = ++ this.pos;
+		StringBuilder buffer = null;
+		while(this.pos < this.length) {
+			char c = this.expressions.charAt(this.pos);
+			if(c == quote) {
+				String value = buffer == null ? this.expressions.substring(start, this.pos) : buffer.toString();
+				this.pos ++;
+				return value;
+			}
+			if(c == '\\') {
+				if(buffer == null) {
+					buffer = this.resetEscapeBuffer(start);
+				}
+				buffer.append(this.readEscaped());
+				continue;
+			}
+			if(buffer != null) {
+				buffer.append(c);
+			}
+			this.pos ++;
+		}
+		throw this.error(String.format("参数值缺少结束引号%s", quote));
+	}
+
+	/**
+	 * 读取没有引号的参数值, 到','或')'为止, 去掉两端空白
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String readBare() {
+		int start = this.pos;
+		int end = this.pos;
+		StringBuilder buffer = null;
+		while(this.pos < this.length) {
+			char c = this.expressions.charAt(this.pos);
+			if(c == ',' || c == ')') {
+				break;
+			}
+			if(c == '\\') {
+				if(buffer == null) {
+					buffer = this.resetEscapeBuffer(start);
+				}
+				buffer.append(this.readEscaped());
+				end = this.pos;
+				continue;
+			}
+			if(buffer != null) {
+				buffer.append(c);
+			}
+			this.pos ++;
+			if(! Character.isWhitespace(c)) {
+				end = this.pos;
+			}
+		}
+		if(buffer == null) {
+			return this.expressions.substring(start, end);
+		}
+		// 转义的内容不去掉空白, 只去掉末尾没有转义的空白
+		buffer.setLength(buffer.length() - (this.pos - end));
+		return buffer.toString();
+	}
+
+	/**
+	 * 读取转义字符, 调用时当前位置在'\'上
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private char readEscaped() {
+		if(this.pos + 1 >= this.length) {
+			throw this.error("'\\'后缺少转义的字符");
+		}
+		char c = this.expressions.charAt(this.pos + 1);
+		this.pos += 2;
+		return c;
+	}
+
+	/**
+	 * 读取下一个词法单元
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void nextToken() {
+		this.skipWhitespace();
+		this.tokenStart = this.pos;
+		this.tokenText = null;
+		if(this.pos >= this.length) {
+			this.tokenType = TokenType.END;
+			return;
+		}
+		char c = this.expressions.charAt(this.pos);
+		switch(c) {
+		case '(':
+			this.pos ++;
+			this.tokenType = TokenType.LEFT_PAREN;
+			return;
+		case ')':
+			this.pos ++;
+			this.tokenType = TokenType.RIGHT_PAREN;
+			return;
+		case ',':
+			this.pos ++;
+			this.tokenType = TokenType.COMMA;
+			return;
+		case ':':
+			this.pos ++;
+			this.tokenType = TokenType.COLON;
+			return;
+		case '{':
+			this.tokenType = TokenType.FIELD;
+			this.tokenText = this.readField();
+			return;
+		default:
+			if(Character.isJavaIdentifierStart(c)) {
+				int start = this.pos ++;
+				while(this.pos < this.length && Character.isJavaIdentifierPart(this.expressions.charAt(this.pos))) {
+					this.pos ++;
+				}
+				this.tokenType = TokenType.WORD;
+				this.tokenText = this.expressions.substring(start, this.pos);
+				return;
+			}
+			throw this.error(String.format("无法识别的字符%s", c));
+		}
+	}
+
+	/**
+	 * 读取字段路径, 调用时当前位置在'{'上
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String readField() {
+		int start = ++ this.pos;
+		StringBuilder buffer = null;
+		while(this.pos < this.length) {
+			char c = this.expressions.charAt(this.pos);
+			if(c == '}') {
+				String field = buffer == null ? this.expressions.substring(start, this.pos) : buffer.toString();
+				this.pos ++;
+				if(field.isEmpty()) {
+					throw this.error("字段路径不能为空");
+				}
+				return field;
+			}
+			if(c == '\\') {
+				if(buffer == null) {
+					buffer = this.resetEscapeBuffer(start);
+				}
+				buffer.append(this.readEscaped());
+				continue;
+			}
+			if(buffer != null) {
+				buffer.append(c);
+			}
+			this.pos ++;
+		}
+		throw this.error("字段路径缺少'}'");
+	}
+
+	/**
+	 * 重置转义缓冲区并放入从开始位置到当前位置的内容
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private StringBuilder resetEscapeBuffer(int start) {
+		this.escapeBuffer.setLength(0);
+		this.escapeBuffer.append(this.expressions, start, this.pos);
+		return this.escapeBuffer;
+	}
+
+	private void skipWhitespace() {
+		while(this.pos < this.length && Character.isWhitespace(this.expressions.charAt(this.pos))) {
+			this.pos ++;
+		}
+	}
+
+	private void expect(TokenType expectType, String message) {
+		if(this.tokenType != expectType) {
+			throw this.error(message);
+		}
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(String.format("搜索表达式[%s]在位置%s处解析失败: %s",
+				this.expressions, this.tokenStart, message));
+	}
+}
@@ -3,359 +3,805 @@ package com.fy.sparam.core;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import com.fy.sparam.core.SearchContext.ISearchable;
 
 public class SearchExpressionsCompiler {
-	
+
+	// 解析结果缓存的容量上限, 超过时按加入顺序淘汰
+	private static final int COMPILE_CACHE_CAPACITY = 1024;
+	// 解析结果缓存, 以表达式和符号为键; 解析结果不可变, 可以在线程间共享
+	private static final Map<String, CompileResult<?, ?, ?>> COMPILE_CACHE
+		= new ConcurrentHashMap<String, CompileResult<?, ?, ?>>();
+	private static final Queue<String> COMPILE_CACHE_KEYS = new ConcurrentLinkedQueue<String>();
+	// 没有解析出表达式时缓存的结果
+	private static final CompileResult<?, ?, ?> EMPTY_RESULT = SearchExpressionsCompiler.emptyResult();
+
+	/**
+	 * 解析搜索表达式, 相同的表达式和符号会使用缓存的解析结果
+	 *
+	 * @param expressions 搜索表达式
+	 * @param symbols 搜索字段路径中可能使用的符号
+	 * @return 解析结果, 表达式为空则返回null
+	 * @throws IllegalArgumentException 表达式格式错误则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
 	public static final <PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 	CompileResult<PT, SCT, RT> compile(String expressions, String...symbols) {
-		SearchExpressionsCompiler compiler = getInstance();
-		return compiler.handleCompile(expressions, symbols);
+		if(expressions == null) {
+			return null;
+		}
+		String cacheKey = toCacheKey(expressions, symbols);
+		CompileResult<?, ?, ?> result = COMPILE_CACHE.get(cacheKey);
+		if(result == null) {
+			SearchExpressionsCompiler compiler = getInstance();
+			result = compiler.handleCompile(expressions, symbols);
+			if(result == null) {
+				result = EMPTY_RESULT;
+			}
+			if(COMPILE_CACHE.putIfAbsent(cacheKey, result) == null) {
+				COMPILE_CACHE_KEYS.offer(cacheKey);
+				while(COMPILE_CACHE.size() > COMPILE_CACHE_CAPACITY) {
+					String evictKey = COMPILE_CACHE_KEYS.poll();
+					if(evictKey == null) {
+						break;
+					}
+					COMPILE_CACHE.remove(evictKey);
+				}
+			}
+		}
+		if(result == EMPTY_RESULT) {
+			return null;
+		}
+		return (CompileResult<PT, SCT, RT>) result;
+	}
+
+	/**
+	 * 创建没有表达式的解析结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <PT extends AbsParameter<PT, SCT, RT>, SCT, RT> CompileResult<PT, SCT, RT> emptyResult() {
+		return new CompileResult<PT, SCT, RT>(null, Collections.<SearchExpression>emptyList());
 	}
-	
+
+	/**
+	 * 生成解析结果缓存的键
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static String toCacheKey(String expressions, String[] symbols) {
+		StringBuilder cacheKey = new StringBuilder(expressions);
+		for(String symbol : symbols) {
+			cacheKey.append('\u0000').append(symbol);
+		}
+		return cacheKey.toString();
+	}
+
 	public static SearchExpressionsCompiler getInstance() {
 		return new SearchExpressionsCompiler();
 	}
-	
-	protected <PT extends AbsParameter<PT, SCT, RT>, SCT, RT> 
+
+	protected <PT extends AbsParameter<PT, SCT, RT>, SCT, RT>
 	CompileResult<PT, SCT, RT> handleCompile(String expressionsStr, String[] symbols) {
-		Pattern pattern = Pattern.compile("(AND|OR)?[\\s(]*\\{[^\\s]+\\}\\:[^\\s]+");
-		Matcher matcher = pattern.matcher(expressionsStr);
-		List<SearchExpression> expressions = new LinkedList<SearchExpression>();
-		while(matcher.find()) {
-			String expressionStr = expressionsStr.substring(matcher.start(), matcher.end());
-			SearchExpression expression = this.compileSingleExpression(expressionStr, symbols);
-			expressions.add(expression);
-		}
-		if(expressions.isEmpty()) {
+		if(expressionsStr.trim().isEmpty()) {
 			return null;
 		}
-		return new CompileResult<PT, SCT, RT>(expressions);
+		ExpressionGroup root = new SearchExpressionParser(expressionsStr, symbols).parse();
+		List<SearchExpression> expressions = new ArrayList<SearchExpression>();
+		this.flatten(root, true, 0, expressions);
+		return new CompileResult<PT, SCT, RT>(root, expressions);
 	}
-	
-	private SearchExpression compileSingleExpression(String expressionStr, String[] symbols) {
-		String handlingExpressionStr = expressionStr;
-		SearchExpression expression = new SearchExpression();
-		// 获取连接关系
-		boolean isAnd = true;
-		if(handlingExpressionStr.startsWith("OR")) {
-			isAnd = false;
-		}
-		expression.setAnd(isAnd);
-		handlingExpressionStr = handlingExpressionStr.replaceAll("AND|OR", "").trim();
-		// 处理前面括号
-		while(handlingExpressionStr.startsWith("(")) {
-			expression.increaseDsCount();
-			handlingExpressionStr = handlingExpressionStr.substring(1, handlingExpressionStr.length()).trim();
-		}
-		// 获取搜索字段和搜索方法
-		String[] contents = handlingExpressionStr.split(":");
-		// 处理搜索字段
-		String searchFieldPath = contents[0];
-		searchFieldPath = searchFieldPath.replaceAll("\\{|\\}", "");
-		for(String symbol : symbols) {
-			if(searchFieldPath.contains(symbol)) {
-				expression.addSymbol(symbol);
-				searchFieldPath = searchFieldPath.replace(symbol, "");
-			}
-		}
-		expression.setSearchFieldPath(searchFieldPath);
-		handlingExpressionStr = handlingExpressionStr.replace(searchFieldPath, "").trim();
-		// 处理操作
-		String optExpression = contents[1];
-		int paramsDsIndex = optExpression.indexOf("(");
-		int paramsDeIndex = optExpression.indexOf(")", paramsDsIndex);
-		if(paramsDsIndex != -1 && paramsDeIndex != -1) { /* eq(1)) */
-			String searchMethod = optExpression.substring(0, paramsDsIndex);
-			String searchParams = optExpression.substring(paramsDsIndex + 1, paramsDeIndex);
-			expression.setSearchMethod(searchMethod);
-			expression.setSearchParams(searchParams);
-			optExpression = optExpression.substring(0, paramsDeIndex + 1);
-		} else if(paramsDeIndex != -1) { /* isNull) */
-			String searchMethod = optExpression.substring(0, paramsDeIndex);
-			expression.setSearchMethod(searchMethod);
-			optExpression = optExpression.substring(0, paramsDeIndex);
-		} else { /* isNull */
-			expression.setSearchMethod(optExpression);
-		}
-		handlingExpressionStr = handlingExpressionStr.replace(optExpression, "").trim();
-		// 处理后面的括号
-		while(handlingExpressionStr.endsWith(")")) {
-			expression.increaseDeCount();
-			handlingExpressionStr = handlingExpressionStr.substring(0, handlingExpressionStr.length() - 1);
-		}
-		return expression;
+
+	/**
+	 * 把分组展开为按顺序排列的搜索表达式, 分组转换为表达式前后的括号数量
+	 *
+	 * @param group 要展开的分组
+	 * @param isAnd 分组第一个表达式使用的连接关系
+	 * @param dsCount 分组第一个表达式前面的括号数量
+	 * @param expressions 展开结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void flatten(ExpressionGroup group, boolean isAnd, int dsCount, List<SearchExpression> expressions) {
+		boolean isFirst = true;
+		for(ExpressionNode child : group.getChildren()) {
+			boolean isChildAnd = isFirst ? isAnd : child.isAnd();
+			int childDsCount = isFirst ? dsCount : 0;
+			isFirst = false;
+			if(child instanceof ExpressionCondition) {
+				expressions.add(new SearchExpression(isChildAnd, (ExpressionCondition) child, childDsCount, 0));
+			} else {
+				this.flatten((ExpressionGroup) child, isChildAnd, childDsCount + 1, expressions);
+				int lastIndex = expressions.size() - 1;
+				SearchExpression last = expressions.get(lastIndex);
+				expressions.set(lastIndex, new SearchExpression(last.isAnd(), last.getCondition(),
+						last.getDsCount(), last.getDeCount() + 1));
+			}
+		}
 	}
-	
+
 	public static void main(String[] args) throws Exception {
 		CompileResult<?, ?, ?> result = SearchExpressionsCompiler.compile(
-				"{$TO.parentBtnID}:isNull AND ({$FROM.some}:isNotNull OR {$TO.bar}:eq(123) AND ({$TO.bar}:eq(123)))",
+				"{$TO.parentBtnID}:isNull AND ({$FROM.some}:isNotNull OR {$TO.bar}:in(123, 'a,b') AND ({$TO.bar}:eq('1\\'2')))",
 				"$TO.", "$FROM.");
 		Collection<SearchExpression> exprssions = result.getExpressions();
 		System.out.println(exprssions);
 	}
-	
+
 	/**
-	 * 
-	 * 
+	 * 搜索表达式的解析结果, 不可变, 可以在线程间共享
+	 *
 	 * @author linjie
 	 * @since 1.0.2
 	 */
 	public static class CompileResult<PT extends AbsParameter<PT, SCT, RT>, SCT, RT> {
-		
+
 		/**
-		 * 
-		 * 
+		 * 表达式的语法树根分组
+		 *
+		 */
+		private final ExpressionGroup root;
+
+		/**
+		 * 按出现顺序排列的搜索表达式
+		 *
 		 */
 		private final Collection<SearchExpression> expressions;
-		
-		public CompileResult(Collection<SearchExpression> expressions) {
-			this.expressions = expressions;
+
+		public CompileResult(ExpressionGroup root, Collection<SearchExpression> expressions) {
+			this.root = root;
+			this.expressions = Collections.unmodifiableList(new ArrayList<SearchExpression>(expressions));
 		}
-		
+
+		/**
+		 * 获取表达式的语法树根分组
+		 *
+		 * @return 语法树根分组
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public ExpressionGroup getRoot() {
+			return root;
+		}
+
 		public Collection<SearchExpression> getExpressions() throws Exception {
-			return Collections.unmodifiableCollection(this.expressions);
+			return this.expressions;
+		}
+
+		/**
+		 * 获取表达式中使用的所有命名绑定的名称
+		 *
+		 * @return 按出现顺序排列的命名绑定名称, 没有则为空集合
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public Set<String> getBindNames() {
+			Set<String> bindNames = new LinkedHashSet<String>();
+			for(SearchExpression expression : this.expressions) {
+				expression.getCondition().collectBindNames(bindNames);
+			}
+			return bindNames;
+		}
+
+		/**
+		 * 把解析结果作为模板应用到搜索参数上
+		 * <br/> 表达式中的字段路径以指定的搜索参数为起点查找, 多个表达式时会整体使用括号包围, 并以AND连接到已有的搜索内容.
+		 * <br/> 命名绑定的值为字符串时使用搜索器的转换器转换, 为集合时展开为多个参数值, 其它类型直接作为搜索值.
+		 * <br/> 所有搜索器的查找和参数值的转换都在设置搜索条件之前完成, 失败时搜索参数不会被修改.
+		 *
+		 * @param param 要应用的搜索参数, 一般为克隆出来的搜索参数, 不能为null
+		 * @param binds 命名绑定的值, 表达式没有命名绑定时可以为null
+		 * @throws Exception 应用失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public void apply(PT param, Map<String, ?> binds) throws Exception {
+			if(param == null) {
+				throw new IllegalArgumentException("应用搜索表达式的搜索参数不能为null");
+			}
+			// 先查找搜索器和转换参数值, 避免应用一半时失败
+			List<AbsSearcher<?, ?, ?, ?>> searchers = new ArrayList<AbsSearcher<?, ?, ?, ?>>(this.expressions.size());
+			List<List<Object>> searchValsList = new ArrayList<List<Object>>(this.expressions.size());
+			for(SearchExpression expression : this.expressions) {
+				AbsSearcher<?, ?, ?, ?> searcher = param.paramContext.getParameterObjWithStartParam(
+						param, AbsSearcher.class, expression.getSearchFieldPath());
+				if(searcher == null) {
+					throw new IllegalArgumentException(String.format("搜索参数%s中找不到路径为%s的搜索器",
+							param.getClass().getName(), expression.getSearchFieldPath()));
+				}
+				searchers.add(searcher);
+				searchValsList.add(this.toSearchVals(searcher, expression, binds));
+			}
+			int lastIndex = this.expressions.size() - 1;
+			boolean isWrap = lastIndex > 0;
+			int index = 0;
+			for(SearchExpression expression : this.expressions) {
+				this.doSearch(searchers.get(index), expression, searchValsList.get(index),
+						isWrap && index == 0 ? 1 : 0, isWrap && index == lastIndex ? 1 : 0);
+				index ++;
+			}
 		}
-		
+
 		/**
-		 * 
+		 * 校验命名绑定的值, 检查是否缺少命名绑定以及绑定后的参数数量
+		 *
+		 * @param binds 命名绑定的值, 表达式没有命名绑定时可以为null
+		 * @throws IllegalArgumentException 缺少命名绑定或者绑定后的参数数量不正确则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public void checkBinds(Map<String, ?> binds) {
+			for(SearchExpression expression : this.expressions) {
+				expression.getCondition().resolveArgs(binds);
+			}
+		}
+
+		/**
+		 *
 		 * @param searcher
 		 * @throws Exception
-		 * 
+		 *
 		 * @author linjie
 		 * @since 1.0.2
 		 */
 		public void doSearch(AbsSearcher<?,?,?,?> searcher, SearchExpression expression) throws Exception {
+			this.doSearch(searcher, expression, null);
+		}
+
+		/**
+		 * 使用命名绑定的值进行单个搜索表达式的搜索
+		 *
+		 * @param searcher 搜索字段对应的搜索器
+		 * @param expression 搜索表达式
+		 * @param binds 命名绑定的值, 表达式没有命名绑定时可以为null
+		 * @throws Exception 搜索失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public void doSearch(AbsSearcher<?,?,?,?> searcher, SearchExpression expression, Map<String, ?> binds) throws Exception {
 			if(expression == null) {
 				return;
 			}
+			this.doConvertedSearch(searcher, expression, this.toSearchVals(searcher, expression, binds));
+		}
+
+		/**
+		 * 使用已经转换的搜索值进行单个搜索表达式的搜索
+		 *
+		 * @param searcher 搜索字段对应的搜索器
+		 * @param expression 搜索表达式
+		 * @param searchVals 转换后的搜索值, 参考{@link #toSearchVals(AbsSearcher, SearchExpression, Map)}
+		 * @throws Exception 搜索失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		void doConvertedSearch(AbsSearcher<?,?,?,?> searcher, SearchExpression expression,
+				List<Object> searchVals) throws Exception {
 			searcher.belongParameter.paramContext.getCurrentSearchContext().setSkipFirstRelation(false);
-			SearchHandler handler = SearchHandler.valueOf(expression.getSearchMethod());
+			this.doSearch(searcher, expression, searchVals, 0, 0);
+		}
+
+		/**
+		 * 替换命名绑定并使用搜索器的转换器把参数值转换为搜索值, 不修改搜索参数
+		 *
+		 * @param searcher 搜索字段对应的搜索器
+		 * @param expression 搜索表达式
+		 * @param binds 命名绑定的值, 表达式没有命名绑定时可以为null
+		 * @return 转换后的搜索值
+		 * @throws Exception 缺少命名绑定或者转换失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		List<Object> toSearchVals(AbsSearcher<?,?,?,?> searcher, SearchExpression expression,
+				Map<String, ?> binds) throws Exception {
+			SearchHandler handler = expression.getCondition().getHandler();
+			return handler.toSearchVals(searcher, expression.getCondition().resolveArgs(binds));
+		}
+
+		private void doSearch(AbsSearcher<?,?,?,?> searcher, SearchExpression expression,
+				List<Object> searchVals, int extraDsCount, int extraDeCount) throws Exception {
+			SearchHandler handler = expression.getCondition().getHandler();
 			if(expression.isAnd()) {
 				searcher.belongParameter.above().and(null);
 			} else {
 				searcher.belongParameter.above().or(null);
 			}
-			for(int i = 0; i < expression.getDsCount(); i ++) {
+			for(int i = 0; i < expression.getDsCount() + extraDsCount; i ++) {
 				searcher.ds(null);
 			}
-			handler.getInstance().doSearch(searcher, expression);
-			for(int i = 0; i < expression.getDeCount(); i ++) {
+			handler.getInstance().doSearch(searcher, searchVals);
+			for(int i = 0; i < expression.getDeCount() + extraDeCount; i ++) {
 				searcher.de();
 			}
 		}
 	}
-	
-	public static final class SearchExpression {
-		
-		private boolean isAnd;
-		
-		private String searchFieldPath;
-		
-		private String searchMethod;
-		
-		private String searchParams;
-		
-		private int dsCount;
-		
-		private int deCount;
-		
-		private Set<String> symbols = new HashSet<String>();
-		
+
+	/**
+	 * 语法树节点
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static abstract class ExpressionNode {
+
+		/**
+		 * 与前一个节点的连接关系, 分组中的第一个节点固定为true
+		 *
+		 */
+		private final boolean isAnd;
+
+		ExpressionNode(boolean isAnd) {
+			this.isAnd = isAnd;
+		}
+
 		public boolean isAnd() {
 			return isAnd;
 		}
-		
-		public void setAnd(boolean isAnd) {
-			this.isAnd = isAnd;
+	}
+
+	/**
+	 * 语法树分组节点, 对应一对括号或整个表达式
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class ExpressionGroup extends ExpressionNode {
+
+		private final List<ExpressionNode> children;
+
+		ExpressionGroup(boolean isAnd, List<ExpressionNode> children) {
+			super(isAnd);
+			this.children = Collections.unmodifiableList(children);
 		}
 
-		public String getSearchFieldPath() {
-			return searchFieldPath;
+		public List<ExpressionNode> getChildren() {
+			return children;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("(");
+			for(ExpressionNode child : children) {
+				if(sb.length() > 1) {
+					sb.append(child.isAnd() ? " AND " : " OR ");
+				}
+				sb.append(child);
+			}
+			return sb.append(")").toString();
 		}
+	}
+
+	/**
+	 * 语法树条件节点, 对应一个字段的搜索
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class ExpressionCondition extends ExpressionNode {
 
-		public void setSearchFieldPath(String searchFieldPath) {
+		private final String searchFieldPath;
+
+		private final SearchHandler handler;
+
+		private final List<String> searchArgs;
+
+		// 与搜索参数值一一对应的命名绑定名称, 不是命名绑定的为null; 没有命名绑定则为null
+		private final String[] bindNames;
+
+		private final Set<String> symbols;
+
+		ExpressionCondition(boolean isAnd, String searchFieldPath, SearchHandler handler,
+				List<String> searchArgs, String[] bindNames, Set<String> symbols) {
+			super(isAnd);
 			this.searchFieldPath = searchFieldPath;
+			this.handler = handler;
+			this.searchArgs = searchArgs;
+			this.bindNames = bindNames;
+			this.symbols = Collections.unmodifiableSet(symbols);
+		}
+
+		public String getSearchFieldPath() {
+			return searchFieldPath;
 		}
 
 		public String getSearchMethod() {
-			return searchMethod;
+			return handler.name();
 		}
 
-		public void setSearchMethod(String searchMethod) {
-			this.searchMethod = searchMethod;
+		/**
+		 * 获取搜索参数值, 引号和转义已经处理
+		 *
+		 * @return 搜索参数值, 没有参数则为空列表
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public List<String> getSearchArgs() {
+			return searchArgs;
 		}
 
-		public String getSearchParams() {
-			return searchParams;
+		public boolean containsSymbol(String symbol) {
+			return symbols.contains(symbol);
+		}
+
+		/**
+		 * 获取指定位置的搜索参数的命名绑定名称
+		 *
+		 * @param index 搜索参数的位置
+		 * @return 命名绑定名称, 不是命名绑定则返回null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public String getBindName(int index) {
+			if(bindNames == null) {
+				return null;
+			}
+			return bindNames[index];
 		}
 
-		public void setSearchParams(String searchParams) {
-			this.searchParams = searchParams;
+		SearchHandler getHandler() {
+			return handler;
 		}
 
-		public void addSymbol(String symbol) {
-			symbols.add(symbol);
+		void collectBindNames(Set<String> result) {
+			if(bindNames == null) {
+				return;
+			}
+			for(String bindName : bindNames) {
+				if(bindName != null) {
+					result.add(bindName);
+				}
+			}
 		}
-		
+
+		/**
+		 * 把命名绑定替换为绑定的值, 得到实际的搜索参数值
+		 *
+		 * @param binds 命名绑定的值, 没有命名绑定时可以为null
+		 * @return 实际的搜索参数值, 字符串的值还需要转换
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@SuppressWarnings("unchecked")
+		List<Object> resolveArgs(Map<String, ?> binds) {
+			if(bindNames == null) {
+				return (List<Object>) (List<?>) searchArgs;
+			}
+			List<Object> args = new ArrayList<Object>(searchArgs.size());
+			for(int i = 0; i < searchArgs.size(); i ++) {
+				String bindName = bindNames[i];
+				if(bindName == null) {
+					args.add(searchArgs.get(i));
+					continue;
+				}
+				if(binds == null || ! binds.containsKey(bindName)) {
+					throw new IllegalArgumentException(String.format("搜索表达式缺少命名绑定%s的值", bindName));
+				}
+				Object bindValue = binds.get(bindName);
+				if(bindValue instanceof Collection) {
+					args.addAll((Collection<?>) bindValue);
+				} else {
+					args.add(bindValue);
+				}
+			}
+			if(! handler.isAcceptArgCount(args.size())) {
+				throw new IllegalArgumentException(String.format("搜索方法%s绑定后的参数数量%s不正确",
+						handler.name(), args.size()));
+			}
+			return args;
+		}
+
+		@Override
+		public String toString() {
+			return "{" + searchFieldPath + ":" + handler.name() + searchArgs + "}";
+		}
+	}
+
+	/**
+	 * 单个搜索表达式, 由语法树展开得到, 不可变, 可以在线程间共享
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class SearchExpression {
+
+		private final boolean isAnd;
+
+		private final ExpressionCondition condition;
+
+		private final int dsCount;
+
+		private final int deCount;
+
+		SearchExpression(boolean isAnd, ExpressionCondition condition, int dsCount, int deCount) {
+			this.isAnd = isAnd;
+			this.condition = condition;
+			this.dsCount = dsCount;
+			this.deCount = deCount;
+		}
+
+		public boolean isAnd() {
+			return isAnd;
+		}
+
+		public ExpressionCondition getCondition() {
+			return condition;
+		}
+
+		public String getSearchFieldPath() {
+			return condition.getSearchFieldPath();
+		}
+
+		public String getSearchMethod() {
+			return condition.getSearchMethod();
+		}
+
+		/**
+		 * 获取以','连接的搜索参数值, 参数值本身包含','时使用{@link #getSearchArgs()}
+		 *
+		 * @return 搜索参数值, 没有参数则返回null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public String getSearchParams() {
+			List<String> searchArgs = condition.getSearchArgs();
+			if(searchArgs.isEmpty()) {
+				return null;
+			}
+			if(searchArgs.size() == 1) {
+				return searchArgs.get(0);
+			}
+			StringBuilder sb = new StringBuilder();
+			for(String searchArg : searchArgs) {
+				if(sb.length() > 0) {
+					sb.append(",");
+				}
+				sb.append(searchArg);
+			}
+			return sb.toString();
+		}
+
+		public List<String> getSearchArgs() {
+			return condition.getSearchArgs();
+		}
+
 		public boolean containsSymbol(String symbol) {
-			return symbols.contains(symbol);
+			return condition.containsSymbol(symbol);
 		}
-		
+
 		public int getDsCount() {
 			return dsCount;
 		}
-		
-		public void increaseDsCount() {
-			dsCount ++;
-		}
-		
+
 		public int getDeCount() {
 			return deCount;
 		}
-		
-		public void increaseDeCount() {
-			deCount ++;
-		}
-		
+
 		@Override
 		public String toString() {
-			return "[" + dsCount + "{" 
-					+ searchFieldPath + ":" + searchMethod 
-					+ "(" + searchParams + ")}" + deCount +"]";
+			return "[" + dsCount + condition + deCount +"]";
 		}
 	}
-	
-	private interface ISearchHandler {
-		
-		<T> void doSearch(ISearchable<T> searcher, SearchExpression paramsStr) throws Exception;
+
+	interface ISearchHandler {
+
+		/**
+		 * 进行搜索
+		 *
+		 * @param searcher 搜索器
+		 * @param searchVals 已经转换的搜索值, 参考{@link SearchHandler#toSearchVals(ISearchable, List)}
+		 * @throws Exception 搜索失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		<T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception;
 	}
-	
-	private enum SearchHandler {
-		eq(new ISearchHandler() {
+
+	enum SearchHandler {
+		eq(1, 1, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				T arg = searcher.getTransformer().strToTarget(paramsStr);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T arg = asTarget(searcher, searchVals.get(0));
 				searcher.eq(arg);
 			}
 		}),
-		notEq(new ISearchHandler() {
+		notEq(1, 1, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				T arg = searcher.getTransformer().strToTarget(paramsStr);
-				searcher.eq(arg);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T arg = asTarget(searcher, searchVals.get(0));
+				searcher.notEq(arg);
 			}
 		}),
-		in(new ISearchHandler() {
+		in(1, Integer.MAX_VALUE, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				String[] elements = paramsStr.split(",");
-				List<T> args = new ArrayList<T>(elements.length);
-				for(String element : elements) {
-					T arg = searcher.getTransformer().strToTarget(element);
-					args.add(arg);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				List<T> args = new ArrayList<T>(searchVals.size());
+				for(Object searchVal : searchVals) {
+					args.add(asTarget(searcher, searchVal));
 				}
 				searcher.in(args);
 			}
 		}),
-		notIn(new ISearchHandler() {
+		notIn(1, Integer.MAX_VALUE, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				String[] elements = paramsStr.split(",");
-				List<T> args = new ArrayList<T>(elements.length);
-				for(String element : elements) {
-					T arg = searcher.getTransformer().strToTarget(element);
-					args.add(arg);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				List<T> args = new ArrayList<T>(searchVals.size());
+				for(Object searchVal : searchVals) {
+					args.add(asTarget(searcher, searchVal));
 				}
 				searcher.notIn(args);
 			}
 		}),
-		between(new ISearchHandler() {
+		between(2, 2, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				String[] elements = paramsStr.split(",");
-				T from = searcher.getTransformer().strToTarget(elements[0]);
-				T to = searcher.getTransformer().strToTarget(elements[1]);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T from = asTarget(searcher, searchVals.get(0));
+				T to = asTarget(searcher, searchVals.get(1));
 				searcher.between(from, to);
 			}
 		}),
-		lessThan(new ISearchHandler() {
+		lessThan(1, 1, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				T arg = searcher.getTransformer().strToTarget(paramsStr);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T arg = asTarget(searcher, searchVals.get(0));
 				searcher.lessThan(arg);
 			}
 		}),
-		notLessThan(new ISearchHandler() {
+		notLessThan(1, 1, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				T arg = searcher.getTransformer().strToTarget(paramsStr);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T arg = asTarget(searcher, searchVals.get(0));
 				searcher.notLessThan(arg);
 			}
 		}),
-		greaterThan(new ISearchHandler() {
+		greaterThan(1, 1, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				T arg = searcher.getTransformer().strToTarget(paramsStr);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T arg = asTarget(searcher, searchVals.get(0));
 				searcher.greaterThan(arg);
 			}
 		}),
-		notGreaterThan(new ISearchHandler() {
+		notGreaterThan(1, 1, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				String paramsStr = expression.getSearchParams();
-				T arg = searcher.getTransformer().strToTarget(paramsStr);
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				T arg = asTarget(searcher, searchVals.get(0));
 				searcher.notGreaterThan(arg);
 			}
 		}),
-		like(new ISearchHandler() {
+		like(1, 1, false, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				searcher.like(expression.getSearchParams());
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				searcher.like((String) searchVals.get(0));
 			}
 		}),
-		notLike(new ISearchHandler() {
+		notLike(1, 1, false, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
-				searcher.notLike(expression.getSearchParams());
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
+				searcher.notLike((String) searchVals.get(0));
 			}
 		}),
-		isNull(new ISearchHandler() {
+		isNull(0, 0, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
 				searcher.isNull();
 			}
 		}),
-		isNotNull(new ISearchHandler() {
+		isNotNull(0, 0, true, new ISearchHandler() {
 			@Override
-			public <T> void doSearch(ISearchable<T> searcher, SearchExpression expression) throws Exception {
+			public <T> void doSearch(ISearchable<T> searcher, List<Object> searchVals) throws Exception {
 				searcher.isNotNull();
 			}
 		});
-		
+
+		// 按名称查找搜索方法, 避免valueOf找不到时抛出异常
+		private static final Map<String, SearchHandler> HANDLER_MAPPER = new HashMap<String, SearchHandler>();
+
+		static {
+			for(SearchHandler handler : SearchHandler.values()) {
+				HANDLER_MAPPER.put(handler.name(), handler);
+			}
+		}
+
+		private final int minArgCount;
+
+		private final int maxArgCount;
+
+		// 参数值是否转换为搜索器的值类型, 否则转换为字符串
+		private final boolean isToTarget;
+
 		private final ISearchHandler instance;
-		
-		private SearchHandler(ISearchHandler instance) {
+
+		private SearchHandler(int minArgCount, int maxArgCount, boolean isToTarget, ISearchHandler instance) {
+			this.minArgCount = minArgCount;
+			this.maxArgCount = maxArgCount;
+			this.isToTarget = isToTarget;
 			this.instance = instance;
 		}
-		
+
 		public ISearchHandler getInstance() {
 			return instance;
 		}
+
+		boolean isAcceptArgCount(int argCount) {
+			return argCount >= minArgCount && argCount <= maxArgCount;
+		}
+
+		static SearchHandler of(String searchMethod) {
+			return HANDLER_MAPPER.get(searchMethod);
+		}
+
+		/**
+		 * 把搜索参数值转换为搜索值, 只进行转换不进行搜索
+		 *
+		 * @param searcher 搜索器
+		 * @param searchArgs 替换命名绑定后的搜索参数值
+		 * @return 转换后的搜索值
+		 * @throws Exception 转换失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		List<Object> toSearchVals(ISearchable<?> searcher, List<Object> searchArgs) throws Exception {
+			List<Object> searchVals = new ArrayList<Object>(searchArgs.size());
+			for(Object searchArg : searchArgs) {
+				searchVals.add(this.isToTarget ? toTarget(searcher, searchArg) : toStr(searchArg));
+			}
+			return searchVals;
+		}
+
+		/**
+		 * 把搜索参数值转换为搜索值, 字符串使用搜索器的转换器转换, 其它类型的值直接使用
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@SuppressWarnings("unchecked")
+		private static <T> T toTarget(ISearchable<T> searcher, Object searchArg) throws Exception {
+			if(searchArg instanceof String) {
+				return searcher.getTransformer().strToTarget((String) searchArg);
+			}
+			return (T) searchArg;
+		}
+
+		/**
+		 * 把已经转换的搜索值作为搜索器的值类型使用
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@SuppressWarnings("unchecked")
+		private static <T> T asTarget(ISearchable<T> searcher, Object searchVal) {
+			return (T) searchVal;
+		}
+
+		private static String toStr(Object searchArg) {
+			return searchArg == null ? null : searchArg.toString();
+		}
 	}
-}
\ No newline at end of file
+}
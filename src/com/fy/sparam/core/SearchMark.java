@@ -0,0 +1,29 @@
+package com.fy.sparam.core;
+
+/**
+ * 搜索参数的保存点
+ * <br/> 由根搜索参数的{@link AbsParameter#mark()}创建, 记录创建时的搜索内容, 输出标志, 关联状态, 排序分组和分页,
+ * 之后可以通过{@link AbsParameter#rollbackTo(SearchMark)}回滚到创建时的状态.
+ * <br/> 只能在创建它的搜索参数上使用, 释放或失效后不能再回滚.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class SearchMark {
+
+	final ChangeJournal journal;
+	final int position; /* 创建时修改日志的长度 */
+	final ChangeJournal.Change restorer; /* 恢复创建时不通过修改日志记录的状态 */
+
+	/**
+	 * 构造器: 指定所属的修改日志, 位置和状态恢复操作
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SearchMark(ChangeJournal journal, int position, ChangeJournal.Change restorer) {
+		this.journal = journal;
+		this.position = position;
+		this.restorer = restorer;
+	}
+}
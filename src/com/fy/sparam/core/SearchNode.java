@@ -0,0 +1,323 @@
+package com.fy.sparam.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fy.sparam.core.SearchContext.SearchContentSource;
+
+/**
+ * 搜索条件树的节点
+ * <br/> 搜索上下文按搜索的顺序把条件, 逻辑关系和分割符记录为由条件组和条件组成的树,
+ * 搜索参数实现类在构建时遍历它进行渲染.
+ * <br/> 每个节点记录与前一个兄弟节点的逻辑关系, 组内第一个节点一般没有逻辑关系,
+ * 只有不忽略第一个逻辑关系的搜索上下文(如关联的额外条件)中才会有.
+ *
+ * @param <SCT>　搜索内容类类型
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public abstract class SearchNode<SCT> {
+
+	/**
+	 * 节点间的逻辑关系
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public enum Relation {
+		AND, OR
+	}
+
+	Relation relation;
+	SearchGroup<SCT> parent;
+	SearchNode<SCT> prev; /* 组内的前一个兄弟节点 */
+	SearchNode<SCT> next; /* 组内的后一个兄弟节点 */
+
+	/**
+	 * 获取与前一个兄弟节点的逻辑关系
+	 *
+	 * @return 与前一个兄弟节点的逻辑关系, 没有则为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final Relation getRelation() {
+		return relation;
+	}
+
+	/**
+	 * 获取所在的条件组
+	 *
+	 * @return 所在的条件组, 根条件组返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public final SearchGroup<SCT> getParent() {
+		return parent;
+	}
+
+	/**
+	 * 条件组, 对应一对分割符或者整个搜索上下文
+	 * <br/> 组内节点通过兄弟节点的引用链接, 移除任意节点不需要查找和移动其它节点.
+	 *
+	 * @param <SCT>　搜索内容类类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class SearchGroup<SCT> extends SearchNode<SCT> {
+
+		SearchNode<SCT> first; /* 组内的第一个节点 */
+		SearchNode<SCT> last; /* 组内的最后一个节点 */
+		int size;
+
+		/**
+		 * 获取组内的节点
+		 *
+		 * @return 组内节点的快照, 不可修改, 不会为null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public List<SearchNode<SCT>> getChildren() {
+			List<SearchNode<SCT>> children = new ArrayList<SearchNode<SCT>>(this.size);
+			for(SearchNode<SCT> child = this.first; child != null; child = child.next) {
+				children.add(child);
+			}
+			return Collections.unmodifiableList(children);
+		}
+
+		/**
+		 * 判断组内是否没有节点
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public boolean isEmpty() {
+			return this.first == null;
+		}
+
+		/**
+		 * 判断组内(包括子条件组)是否有OR逻辑关系
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public boolean hasOrRelation() {
+			for(SearchNode<SCT> child = this.first; child != null; child = child.next) {
+				if(child != this.first && child.relation == Relation.OR) {
+					return true;
+				}
+				if(child instanceof SearchGroup && ((SearchGroup<SCT>) child).hasOrRelation()) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * 获取组内(包括子条件组)所有的条件, 按搜索顺序排列
+		 *
+		 * @return 所有的条件, 不会为null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public List<SearchCondition<SCT>> getAllConditions() {
+			List<SearchCondition<SCT>> result = new ArrayList<SearchCondition<SCT>>();
+			this.collectConditions(result);
+			return result;
+		}
+
+		/**
+		 * 在组的末尾添加节点
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		void add(SearchNode<SCT> node, Relation relation) {
+			node.relation = relation;
+			node.parent = this;
+			node.prev = this.last;
+			node.next = null;
+			if(this.last == null) {
+				this.first = node;
+			} else {
+				this.last.next = node;
+			}
+			this.last = node;
+			this.size ++;
+		}
+
+		/**
+		 * 移除组内的节点, 被移除的是第一个节点时后一个节点继承它的逻辑关系
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		void remove(SearchNode<SCT> node) {
+			if(node.parent != this) {
+				return;
+			}
+			if(node.prev == null) {
+				this.first = node.next;
+				if(node.next != null) {
+					node.next.relation = node.relation;
+				}
+			} else {
+				node.prev.next = node.next;
+			}
+			if(node.next == null) {
+				this.last = node.prev;
+			} else {
+				node.next.prev = node.prev;
+			}
+			node.parent = null;
+			node.prev = null;
+			node.next = null;
+			this.size --;
+		}
+
+		/**
+		 * 把移除的节点放回原来的两个兄弟节点之间, 用于撤销移除
+		 *
+		 * @param node 移除的节点
+		 * @param prev 移除前的前一个兄弟节点, 可以为null
+		 * @param next 移除前的后一个兄弟节点, 可以为null
+		 * @param nextRelation 移除前后一个兄弟节点的逻辑关系
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		void restore(SearchNode<SCT> node, SearchNode<SCT> prev, SearchNode<SCT> next, Relation nextRelation) {
+			node.parent = this;
+			node.prev = prev;
+			node.next = next;
+			if(prev == null) {
+				this.first = node;
+			} else {
+				prev.next = node;
+			}
+			if(next == null) {
+				this.last = node;
+			} else {
+				next.prev = node;
+				next.relation = nextRelation;
+			}
+			this.size ++;
+		}
+
+		private void collectConditions(List<SearchCondition<SCT>> result) {
+			for(SearchNode<SCT> child = this.first; child != null; child = child.next) {
+				if(child instanceof SearchCondition) {
+					result.add((SearchCondition<SCT>) child);
+				} else {
+					((SearchGroup<SCT>) child).collectConditions(result);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("(");
+			for(SearchNode<SCT> child = this.first; child != null; child = child.next) {
+				if(child.relation != null) {
+					sb.append(' ').append(child.relation).append(' ');
+				}
+				sb.append(child);
+			}
+			return sb.append(')').toString();
+		}
+	}
+
+	/**
+	 * 条件, 对应一次搜索
+	 *
+	 * @param <SCT>　搜索内容类类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class SearchCondition<SCT> extends SearchNode<SCT> {
+
+		final SearchContentSource<SCT> source;
+		final SearchOperator operator;
+		final List<Object> values;
+		final List<SCT> contents = new ArrayList<SCT>(1);
+
+		/**
+		 * 构造器: 指定条件的来源, 操作类型和值
+		 *
+		 * @param source 添加条件的搜索器或搜索参数
+		 * @param operator 操作类型
+		 * @param values 操作的值, 搜索字段间的比较为另一个搜索字段
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		SearchCondition(SearchContentSource<SCT> source, SearchOperator operator, List<Object> values) {
+			this.source = source;
+			this.operator = operator;
+			this.values = values;
+		}
+
+		/**
+		 * 获取添加条件的搜索器
+		 *
+		 * @return 添加条件的搜索器, 搜索参数添加的自定义条件返回null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@SuppressWarnings("unchecked")
+		public AbsSearcher<?, SCT, ?, ?> getSearcher() {
+			if(this.source instanceof AbsSearcher) {
+				return (AbsSearcher<?, SCT, ?, ?>) this.source;
+			}
+			return null;
+		}
+
+		/**
+		 * 获取操作类型
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public SearchOperator getOperator() {
+			return operator;
+		}
+
+		/**
+		 * 获取操作的值
+		 *
+		 * @return 操作的值, 不可修改, 不会为null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public List<Object> getValues() {
+			return values;
+		}
+
+		/**
+		 * 获取搜索器实现类为条件生成的搜索内容
+		 *
+		 * @return 条件的搜索内容, 不可修改, 不会为null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public List<SCT> getContents() {
+			return Collections.unmodifiableList(this.contents);
+		}
+
+		@Override
+		public String toString() {
+			AbsSearcher<?, SCT, ?, ?> searcher = this.getSearcher();
+			return (searcher != null ? searcher.path : "") + " " + this.operator + " " + this.values;
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.fy.sparam.core;
+
+/**
+ * 搜索条件的操作类型, 与{@link SearchContext.ISearchable}的搜索方法对应
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public enum SearchOperator {
+
+	/**
+	 * 等于, 值为一个搜索值或搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	EQ,
+
+	/**
+	 * 不等于, 值为一个搜索值或搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	NOT_EQ,
+
+	/**
+	 * 在集合中, 值为集合中的搜索值或一个搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	IN,
+
+	/**
+	 * 不在集合中, 值为集合中的搜索值或一个搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	NOT_IN,
+
+	/**
+	 * 在范围中, 值为范围起点和终点
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	BETWEEN,
+
+	/**
+	 * 小于, 值为一个搜索值或搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	LESS_THAN,
+
+	/**
+	 * 不小于, 值为一个搜索值或搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	NOT_LESS_THAN,
+
+	/**
+	 * 大于, 值为一个搜索值或搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	GREATER_THAN,
+
+	/**
+	 * 不大于, 值为一个搜索值或搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	NOT_GREATER_THAN,
+
+	/**
+	 * 模糊匹配, 值为匹配模式或一个搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	LIKE,
+
+	/**
+	 * 不模糊匹配, 值为匹配模式或一个搜索字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	NOT_LIKE,
+
+	/**
+	 * 为null, 没有值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	IS_NULL,
+
+	/**
+	 * 不为null, 没有值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	IS_NOT_NULL,
+
+	/**
+	 * 在子查询结果中, 值为子查询的搜索参数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	IN_CHILD_QUERY,
+
+	/**
+	 * 不在子查询结果中, 值为子查询的搜索参数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	NOT_IN_CHILD_QUERY,
+
+	/**
+	 * 搜索参数实现类自定义的条件, 没有值, 只有搜索内容
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	CUSTOM;
+}
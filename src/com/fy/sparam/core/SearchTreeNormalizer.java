@@ -0,0 +1,465 @@
+package com.fy.sparam.core;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.core.SearchContext.SearchContentSource;
+import com.fy.sparam.core.SearchNode.Relation;
+import com.fy.sparam.core.SearchNode.SearchCondition;
+import com.fy.sparam.core.SearchNode.SearchGroup;
+
+/**
+ * 搜索条件树的规范化器
+ * <br/> 在不改变搜索结果的前提下生成搜索条件树的规范化副本, 组内按AND优先于OR拆分为项后:
+ * <br/> 1. 同一项中完全相同的条件, 以及只有一个条件且完全相同的项只保留第一个;
+ * <br/> 2. 同一项中同一搜索器的数值或日期范围条件合并为最紧的上下界, 上下界都包含边界时合并为BETWEEN;
+ * <br/> 3. 只有一个条件的项中同一搜索器的等于和在集合中条件合并为一个在集合中条件.
+ * <br/> 只由AND连接的条件组会被展开到所在的项中; 合并后的条件通过搜索器实现类重新生成搜索内容, 其它条件沿用原来的搜索内容.
+ * <br/> 字符串不参与范围合并, 因为数据库的排序规则可能与Java的比较结果不同.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+final class SearchTreeNormalizer {
+
+	private SearchTreeNormalizer() {}
+
+	/**
+	 * 生成条件组的规范化副本
+	 *
+	 * @param group 规范化的条件组, 不会被修改
+	 * @return 规范化后的条件组, 没有父条件组和逻辑关系
+	 * @throws Exception 重新生成合并后条件的搜索内容失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static <SCT> SearchGroup<SCT> normalize(SearchGroup<SCT> group) throws Exception {
+		// 按OR拆分为由AND连接的项, 组内第一个节点的逻辑关系单独保留
+		List<List<SearchNode<SCT>>> terms = new ArrayList<List<SearchNode<SCT>>>();
+		List<SearchNode<SCT>> term = null;
+		for(SearchNode<SCT> child = group.first; child != null; child = child.next) {
+			List<SearchNode<SCT>> copies;
+			if(child instanceof SearchCondition) {
+				copies = new ArrayList<SearchNode<SCT>>(1);
+				copies.add(copyCondition((SearchCondition<SCT>) child));
+			} else {
+				SearchGroup<SCT> childGroup = normalize((SearchGroup<SCT>) child);
+				if(childGroup.isEmpty()) {
+					continue;
+				}
+				// 组内只有AND逻辑关系时不影响优先级, 直接展开到所在的项中
+				if(isAndOnly(childGroup)) {
+					copies = new ArrayList<SearchNode<SCT>>(childGroup.getChildren());
+				} else {
+					copies = new ArrayList<SearchNode<SCT>>(1);
+					copies.add(childGroup);
+				}
+			}
+			if(term == null || (child != group.first && child.relation == Relation.OR)) {
+				term = new ArrayList<SearchNode<SCT>>();
+				terms.add(term);
+			}
+			term.addAll(copies);
+		}
+		for(List<SearchNode<SCT>> andTerm : terms) {
+			removeDuplicateConditions(andTerm);
+			mergeRangeConditions(andTerm);
+		}
+		removeDuplicateTerms(terms);
+		mergeEqualConditions(terms);
+		// 重新按AND和OR连接
+		SearchGroup<SCT> result = new SearchGroup<SCT>();
+		Relation leadingRelation = group.first == null ? null : group.first.relation;
+		for(int i = 0; i < terms.size(); i ++) {
+			List<SearchNode<SCT>> andTerm = terms.get(i);
+			for(int j = 0; j < andTerm.size(); j ++) {
+				Relation relation = j > 0 ? Relation.AND : (i > 0 ? Relation.OR : leadingRelation);
+				result.add(andTerm.get(j), relation);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 判断条件组内的节点是否只由AND逻辑关系连接
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> boolean isAndOnly(SearchGroup<SCT> group) {
+		for(SearchNode<SCT> child = group.first.next; child != null; child = child.next) {
+			if(child.relation == Relation.OR) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 去掉项中与前面的条件完全相同的条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> void removeDuplicateConditions(List<SearchNode<SCT>> andTerm) {
+		for(int i = andTerm.size() - 1; i > 0; i --) {
+			for(int j = 0; j < i; j ++) {
+				if(isSameCondition(andTerm.get(i), andTerm.get(j))) {
+					andTerm.remove(i);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 去掉只有一个条件且与前面的项完全相同的项
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> void removeDuplicateTerms(List<List<SearchNode<SCT>>> terms) {
+		for(int i = terms.size() - 1; i > 0; i --) {
+			List<SearchNode<SCT>> andTerm = terms.get(i);
+			if(andTerm.size() != 1) {
+				continue;
+			}
+			for(int j = 0; j < i; j ++) {
+				List<SearchNode<SCT>> prevTerm = terms.get(j);
+				if(prevTerm.size() == 1 && isSameCondition(andTerm.get(0), prevTerm.get(0))) {
+					terms.remove(i);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 合并项中同一搜索器的范围条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> void mergeRangeConditions(List<SearchNode<SCT>> andTerm) throws Exception {
+		Map<SearchContentSource<SCT>, List<SearchCondition<SCT>>> rangeConditions
+			= new LinkedHashMap<SearchContentSource<SCT>, List<SearchCondition<SCT>>>();
+		for(SearchNode<SCT> node : andTerm) {
+			if(node instanceof SearchCondition && isRangeCondition((SearchCondition<SCT>) node)) {
+				SearchCondition<SCT> condition = (SearchCondition<SCT>) node;
+				List<SearchCondition<SCT>> conditions = rangeConditions.get(condition.source);
+				if(conditions == null) {
+					conditions = new ArrayList<SearchCondition<SCT>>(2);
+					rangeConditions.put(condition.source, conditions);
+				}
+				conditions.add(condition);
+			}
+		}
+		for(List<SearchCondition<SCT>> conditions : rangeConditions.values()) {
+			if(conditions.size() < 2 || ! isComparableEachOther(conditions)) {
+				continue;
+			}
+			// 找出最紧的上下界
+			RangeBound lower = null;
+			RangeBound upper = null;
+			for(SearchCondition<SCT> condition : conditions) {
+				switch(condition.operator) {
+				case GREATER_THAN:
+					lower = tighter(lower, new RangeBound(condition.values.get(0), true, condition), true);
+					break;
+				case NOT_LESS_THAN:
+					lower = tighter(lower, new RangeBound(condition.values.get(0), false, condition), true);
+					break;
+				case LESS_THAN:
+					upper = tighter(upper, new RangeBound(condition.values.get(0), true, condition), false);
+					break;
+				case NOT_GREATER_THAN:
+					upper = tighter(upper, new RangeBound(condition.values.get(0), false, condition), false);
+					break;
+				default: /* BETWEEN */
+					lower = tighter(lower, new RangeBound(condition.values.get(0), false, null), true);
+					upper = tighter(upper, new RangeBound(condition.values.get(1), false, null), false);
+					break;
+				}
+			}
+			// 生成合并后的条件
+			SearchCondition<SCT> first = conditions.get(0);
+			List<SearchNode<SCT>> merged = new ArrayList<SearchNode<SCT>>(2);
+			if(lower != null && upper != null && ! lower.isExclusive && ! upper.isExclusive) {
+				merged.add(render(first, SearchOperator.BETWEEN, lower.value, upper.value));
+			} else {
+				if(lower != null) {
+					merged.add(lower.toCondition(first, lower.isExclusive ? SearchOperator.GREATER_THAN
+							: SearchOperator.NOT_LESS_THAN));
+				}
+				if(upper != null) {
+					merged.add(upper.toCondition(first, upper.isExclusive ? SearchOperator.LESS_THAN
+							: SearchOperator.NOT_GREATER_THAN));
+				}
+			}
+			if(merged.contains(null)) {
+				continue;
+			}
+			int index = andTerm.indexOf(first);
+			andTerm.removeAll(conditions);
+			andTerm.addAll(index, merged);
+		}
+	}
+
+	/**
+	 * 合并只有一个条件的项中同一搜索器的等于和在集合中条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> void mergeEqualConditions(List<List<SearchNode<SCT>>> terms) throws Exception {
+		Map<SearchContentSource<SCT>, List<List<SearchNode<SCT>>>> equalTerms
+			= new LinkedHashMap<SearchContentSource<SCT>, List<List<SearchNode<SCT>>>>();
+		for(List<SearchNode<SCT>> andTerm : terms) {
+			if(andTerm.size() == 1 && andTerm.get(0) instanceof SearchCondition
+					&& isEqualCondition((SearchCondition<SCT>) andTerm.get(0))) {
+				SearchCondition<SCT> condition = (SearchCondition<SCT>) andTerm.get(0);
+				List<List<SearchNode<SCT>>> sameSourceTerms = equalTerms.get(condition.source);
+				if(sameSourceTerms == null) {
+					sameSourceTerms = new ArrayList<List<SearchNode<SCT>>>(2);
+					equalTerms.put(condition.source, sameSourceTerms);
+				}
+				sameSourceTerms.add(andTerm);
+			}
+		}
+		for(List<List<SearchNode<SCT>>> sameSourceTerms : equalTerms.values()) {
+			if(sameSourceTerms.size() < 2) {
+				continue;
+			}
+			LinkedHashSet<Object> values = new LinkedHashSet<Object>();
+			for(List<SearchNode<SCT>> andTerm : sameSourceTerms) {
+				values.addAll(((SearchCondition<SCT>) andTerm.get(0)).values);
+			}
+			List<SearchNode<SCT>> firstTerm = sameSourceTerms.get(0);
+			SearchCondition<SCT> first = (SearchCondition<SCT>) firstTerm.get(0);
+			SearchCondition<SCT> merged = values.size() == 1 ? render(first, SearchOperator.EQ, values.toArray())
+					: render(first, SearchOperator.IN, values.toArray());
+			if(merged == null) {
+				continue;
+			}
+			firstTerm.set(0, merged);
+			for(int i = 1; i < sameSourceTerms.size(); i ++) {
+				terms.remove(sameSourceTerms.get(i));
+			}
+		}
+	}
+
+	/**
+	 * 判断两个节点是否是完全相同的条件, 自定义条件和子查询条件不作判断
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> boolean isSameCondition(SearchNode<SCT> node1, SearchNode<SCT> node2) {
+		if(! (node1 instanceof SearchCondition) || ! (node2 instanceof SearchCondition)) {
+			return false;
+		}
+		SearchCondition<SCT> condition1 = (SearchCondition<SCT>) node1;
+		SearchCondition<SCT> condition2 = (SearchCondition<SCT>) node2;
+		if(condition1.source != condition2.source || condition1.operator != condition2.operator
+				|| condition1.getSearcher() == null) {
+			return false;
+		}
+		switch(condition1.operator) {
+		case CUSTOM:
+		case IN_CHILD_QUERY:
+		case NOT_IN_CHILD_QUERY:
+			return false;
+		default:
+			return condition1.values.equals(condition2.values);
+		}
+	}
+
+	/**
+	 * 判断条件是否是可以合并的范围条件: 搜索器的数值或日期值的比较
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> boolean isRangeCondition(SearchCondition<SCT> condition) {
+		switch(condition.operator) {
+		case GREATER_THAN:
+		case NOT_LESS_THAN:
+		case LESS_THAN:
+		case NOT_GREATER_THAN:
+		case BETWEEN:
+			break;
+		default:
+			return false;
+		}
+		if(condition.getSearcher() == null || condition.values.isEmpty()) {
+			return false;
+		}
+		for(Object value : condition.values) {
+			if(! isComparableValue(value)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 判断条件是否是可以合并的等于条件: 搜索器的等于或在集合中值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> boolean isEqualCondition(SearchCondition<SCT> condition) {
+		if(condition.operator != SearchOperator.EQ && condition.operator != SearchOperator.IN) {
+			return false;
+		}
+		if(condition.getSearcher() == null || condition.values.isEmpty()) {
+			return false;
+		}
+		for(Object value : condition.values) {
+			if(value == null || value instanceof ISearchable) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 判断值是否可以比较大小: 有限的数值或日期
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean isComparableValue(Object value) {
+		if(value instanceof Double || value instanceof Float) {
+			double doubleValue = ((Number) value).doubleValue();
+			return ! Double.isNaN(doubleValue) && ! Double.isInfinite(doubleValue);
+		}
+		return value instanceof Number || value instanceof Date;
+	}
+
+	/**
+	 * 判断条件的值是否可以相互比较大小: 都是数值或者都是日期
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> boolean isComparableEachOther(List<SearchCondition<SCT>> conditions) {
+		boolean isNumber = conditions.get(0).values.get(0) instanceof Number;
+		for(SearchCondition<SCT> condition : conditions) {
+			for(Object value : condition.values) {
+				if((value instanceof Number) != isNumber) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 比较两个值的大小, 值必须可以相互比较
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static int compareValue(Object value1, Object value2) {
+		if(value1 instanceof Date) {
+			long time1 = ((Date) value1).getTime();
+			long time2 = ((Date) value2).getTime();
+			return time1 < time2 ? -1 : (time1 == time2 ? 0 : 1);
+		}
+		return new BigDecimal(value1.toString()).compareTo(new BigDecimal(value2.toString()));
+	}
+
+	/**
+	 * 获取两个边界中更紧的一个
+	 *
+	 * @param current 当前的边界, 可以为null
+	 * @param other 另一个边界
+	 * @param isLower 是否是下界
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static RangeBound tighter(RangeBound current, RangeBound other, boolean isLower) {
+		if(current == null) {
+			return other;
+		}
+		int result = compareValue(other.value, current.value);
+		if(result == 0) {
+			return other.isExclusive && ! current.isExclusive ? other : current;
+		}
+		return (result > 0) == isLower ? other : current;
+	}
+
+	/**
+	 * 复制条件, 搜索内容沿用原来的
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> SearchCondition<SCT> copyCondition(SearchCondition<SCT> condition) {
+		SearchCondition<SCT> copy = new SearchCondition<SCT>(condition.source, condition.operator, condition.values);
+		copy.contents.addAll(condition.contents);
+		return copy;
+	}
+
+	/**
+	 * 使用条件的搜索器重新生成指定操作类型和值的条件
+	 *
+	 * @return 生成的条件, 搜索器实现类没有生成搜索内容时返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <SCT> SearchCondition<SCT> render(SearchCondition<SCT> condition, SearchOperator operator,
+			Object...values) throws Exception {
+		List<Object> valueList = new ArrayList<Object>(values.length);
+		for(Object value : values) {
+			valueList.add(value);
+		}
+		SearchCondition<SCT> rendered = condition.getSearcher().renderCondition(operator,
+				Collections.unmodifiableList(valueList));
+		return rendered.contents.isEmpty() ? null : rendered;
+	}
+
+	/**
+	 * 范围的一个边界
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class RangeBound {
+
+		final Object value;
+		final boolean isExclusive;
+		final SearchCondition<?> from; /* 只有这个边界的原条件, 来自BETWEEN时为null */
+
+		RangeBound(Object value, boolean isExclusive, SearchCondition<?> from) {
+			this.value = value;
+			this.isExclusive = isExclusive;
+			this.from = from;
+		}
+
+		/**
+		 * 获取这个边界对应的条件, 有原条件则直接使用
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@SuppressWarnings("unchecked")
+		<SCT> SearchCondition<SCT> toCondition(SearchCondition<SCT> source, SearchOperator operator) throws Exception {
+			if(this.from != null) {
+				return (SearchCondition<SCT>) this.from;
+			}
+			return render(source, operator, this.value);
+		}
+	}
+}
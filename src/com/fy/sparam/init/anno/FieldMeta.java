@@ -33,4 +33,22 @@ public @interface FieldMeta {
 	 * @since 1.0.2
 	 */
 	public String alias() default "";
+	
+	/**
+	 * 绑定占位符值时使用的值类型, 可以没有
+	 * <br/>没有的话使用搜索器的泛型类型, 在数据库字段类型与属性类型不一致时指定
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Class<?> valType() default Object.class;
+	
+	/**
+	 * 数据库字段上是否有可以单独使用的索引, 默认没有
+	 * <br/>用于判断条件能否使用索引, 如对不同索引字段的OR条件改写为UNION
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public boolean indexed() default false;
 }
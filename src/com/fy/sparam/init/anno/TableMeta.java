@@ -32,4 +32,97 @@ public @interface TableMeta {
 	 * @since 1.0.2
 	 */
 	public String alias() default "";
+	
+	/**
+	 * 分表键, 为搜索参数中搜索字段或关联字段的属性名, 可以没有
+	 * <br/>有的话与{@link #shardCount()}一起使表被视为分表, 构建时会根据分表键的条件路由到物理表
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String shardKey() default "";
+	
+	/**
+	 * 分表的数量
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int shardCount() default 0;
+	
+	/**
+	 * 分表路由函数, 默认使用取模路由
+	 * <br/>关联的分表需要使用相同的路由函数和分表数量才能保证在同一个分表位置上关联
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Class<? extends IShardRouter> shardRouter() default ModShardRouter.class;
+
+	/**
+	 * 主键, 为搜索参数中搜索字段的属性名, 可以没有
+	 * <br/>有的话只按主键的eq或in条件定位记录的构建结果会记录主键值, 用于按主键缓存实体
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String primaryKey() default "";
+
+	/**
+	 * 分表路由函数, 实现类需要提供无参构造器
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static interface IShardRouter {
+		
+		/**
+		 * 根据分表键的值获取所在分表的位置
+		 * 
+		 * @param shardKeyVal 分表键的值, 不为null
+		 * @param shardCount 分表的数量
+		 * @return 所在分表的位置, 范围为[0, shardCount)
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		int route(Object shardKeyVal, int shardCount);
+		
+		/**
+		 * 获取指定分表位置的物理表名
+		 * 
+		 * @param tableName {@link TableMeta#name()}配置的逻辑表名
+		 * @param shardIndex 分表的位置
+		 * @return 物理表名
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		String getShardTableName(String tableName, int shardIndex);
+	}
+	
+	/**
+	 * 取模路由, 数字类型按数值取模, 其它按字符串的hashCode取模, 物理表名为: 逻辑表名_分表位置
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static class ModShardRouter implements IShardRouter {
+
+		@Override
+		public int route(Object shardKeyVal, int shardCount) {
+			long hash;
+			if(shardKeyVal instanceof Number) {
+				hash = ((Number) shardKeyVal).longValue();
+			} else {
+				hash = shardKeyVal.toString().hashCode();
+			}
+			return (int) Math.floorMod(hash, (long) shardCount);
+		}
+
+		@Override
+		public String getShardTableName(String tableName, int shardIndex) {
+			return tableName + "_" + shardIndex;
+		}
+	}
 }
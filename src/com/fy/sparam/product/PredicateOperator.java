@@ -0,0 +1,150 @@
+package com.fy.sparam.product;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * 内存搜索使用的比较操作, 比较规则与sql保持一致: 有一方为null时不匹配
+ * <br/> 数字按数值比较(不区分Integer, Long, BigDecimal等类型), 日期按时间戳比较.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+enum PredicateOperator {
+
+	EQ {
+		@Override
+		boolean match(Object fieldVal, Object val) {
+			return PredicateOperator.isEqual(fieldVal, val);
+		}
+	},
+
+	NOT_EQ {
+		@Override
+		boolean match(Object fieldVal, Object val) {
+			return ! PredicateOperator.isEqual(fieldVal, val);
+		}
+	},
+
+	LESS_THAN {
+		@Override
+		boolean match(Object fieldVal, Object val) {
+			return PredicateOperator.compare(fieldVal, val) < 0;
+		}
+	},
+
+	NOT_LESS_THAN {
+		@Override
+		boolean match(Object fieldVal, Object val) {
+			return PredicateOperator.compare(fieldVal, val) >= 0;
+		}
+	},
+
+	GREATER_THAN {
+		@Override
+		boolean match(Object fieldVal, Object val) {
+			return PredicateOperator.compare(fieldVal, val) > 0;
+		}
+	},
+
+	NOT_GREATER_THAN {
+		@Override
+		boolean match(Object fieldVal, Object val) {
+			return PredicateOperator.compare(fieldVal, val) <= 0;
+		}
+	};
+
+	/**
+	 * 比较两个都不为null的值
+	 *
+	 * @param fieldVal 数据行中的字段值
+	 * @param val 搜索值
+	 * @return 是否匹配
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	abstract boolean match(Object fieldVal, Object val);
+
+	/**
+	 * 比较两个值, 有一方为null时不匹配
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	final boolean test(Object fieldVal, Object val) {
+		if(fieldVal == null || val == null) {
+			return false;
+		}
+		return this.match(fieldVal, val);
+	}
+
+	/**
+	 * 判断两个不为null的值是否相等
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static boolean isEqual(Object a, Object b) {
+		if(a instanceof Number && b instanceof Number) {
+			return toDecimal((Number) a).compareTo(toDecimal((Number) b)) == 0;
+		}
+		if(a instanceof Date && b instanceof Date) {
+			return ((Date) a).getTime() == ((Date) b).getTime();
+		}
+		return a.equals(b);
+	}
+
+	/**
+	 * 比较两个不为null的值的大小
+	 *
+	 * @throws IllegalArgumentException 两个值无法比较则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static int compare(Object a, Object b) {
+		if(a instanceof Number && b instanceof Number) {
+			return toDecimal((Number) a).compareTo(toDecimal((Number) b));
+		}
+		if(a instanceof Date && b instanceof Date) {
+			long aTime = ((Date) a).getTime();
+			long bTime = ((Date) b).getTime();
+			return aTime < bTime ? -1 : (aTime == bTime ? 0 : 1);
+		}
+		if(a instanceof Comparable && a.getClass().isInstance(b)) {
+			return ((Comparable) a).compareTo(b);
+		}
+		throw new IllegalArgumentException(String.format("类型%s的值无法与类型%s的值比较大小",
+				a.getClass().getName(), b.getClass().getName()));
+	}
+
+	/**
+	 * 获取值用于集合查找的键, 与{@link #isEqual(Object, Object)}的相等规则一致
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static Object toKey(Object val) {
+		if(val instanceof Number) {
+			BigDecimal decimal = toDecimal((Number) val);
+			return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+		}
+		if(val instanceof Date) {
+			return ((Date) val).getTime();
+		}
+		return val;
+	}
+
+	private static BigDecimal toDecimal(Number number) {
+		if(number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		}
+		if(number instanceof Integer || number instanceof Long
+				|| number instanceof Short || number instanceof Byte) {
+			return BigDecimal.valueOf(number.longValue());
+		}
+		return new BigDecimal(number.toString());
+	}
+}
@@ -0,0 +1,292 @@
+package com.fy.sparam.product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+import com.fy.sparam.core.AbsParameter;
+import com.fy.sparam.core.JoinWorker.JoinRelationType;
+import com.fy.sparam.core.JoinWorker.JoinType;
+import com.fy.sparam.core.ParameterField;
+import com.fy.sparam.core.SearchNode;
+import com.fy.sparam.core.SearchNode.Relation;
+import com.fy.sparam.core.SearchNode.SearchCondition;
+import com.fy.sparam.core.SearchNode.SearchGroup;
+import com.fy.sparam.init.anno.AnnotationInitializor;
+
+/**
+ * 构建内存过滤条件的搜索参数
+ * <br/> 与{@link SqlParameter}使用相同的搜索参数定义和搜索方式, 构建结果是对本地数据行的Predicate,
+ * 排序的Comparator和分页范围, 用于对已经加载到内存中的数据进行过滤.
+ * <br/> 数据行中的值按搜索参数字段的路径读取, 默认关联的搜索参数字段对应数据行中的嵌套对象;
+ * 不支持动态关联, 子查询和分组.
+ * <br> <strong>非线程安全!!!</strong>
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class PredicateParameter extends AbsParameter<PredicateParameter, PredicatePiece, PredicateResult> {
+
+	/**
+	 * 最小的页码
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final int MIN_PAGE = 1;
+
+	/**
+	 * 不分页时的单页记录数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final int NO_LIMIT_COUNT = 0;
+
+	/**
+	 * 条件的搜索内容键, 条件的搜索内容实际保存在搜索条件树中
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static final String WHERE = "WHERE";
+
+	/**
+	 * 搜索参数原型缓存池
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Map<Class<? extends PredicateParameter>, PredicateParameter> paramPrototypePool
+		= new ConcurrentHashMap<Class<? extends PredicateParameter>, PredicateParameter>();
+
+	/**
+	 * 注解式搜索参数初始化器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final AnnotationInitializor<PredicateParameter, PredicatePiece, PredicateResult> annoInitializor
+		= new AnnotationInitializor<PredicateParameter, PredicatePiece, PredicateResult>(BaseConfig.PARAM_TRANSLATORS);
+
+	/**
+	 * 没有条件时使用的Predicate, 总是匹配
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Predicate<Object> ALWAYS_TRUE = new Predicate<Object>() {
+		@Override
+		public boolean test(Object row) {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "TRUE";
+		}
+	};
+
+	/**
+	 * 辅助的Integer排序比较器, 优先级大的排前面
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Comparator<Integer> INT_COMPARATOR = new Comparator<Integer>() {
+		@Override
+		public int compare(Integer o1, Integer o2) {
+			return o2 - o1;
+		}
+	};
+
+	/**
+	 * 根据搜索参数具体实现类字节码获取对应的搜索参数实例
+	 *
+	 * @param paramClazz 指定的搜索参数具体实现类字节码
+	 * @return 对应的搜索参数实例, 默认不分页
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public static <PPT extends PredicateParameter> PPT getParameter(Class<PPT> paramClazz) throws Exception {
+		PPT prototype = (PPT) paramPrototypePool.get(paramClazz);
+		if(prototype == null) {
+			prototype = paramClazz.newInstance();
+			prototype.init(annoInitializor, PredicateSearcher.class, PredicateParameter.class, null, null, null);
+			prototype.setPage(MIN_PAGE);
+			prototype.setCount(NO_LIMIT_COUNT);
+			paramPrototypePool.put(paramClazz, prototype);
+		}
+		return (PPT) prototype.clone();
+	}
+
+	@Override
+	public void setCount(int count) {
+		if(count < 0) {
+			count = NO_LIMIT_COUNT;
+		}
+		super.setCount(count);
+	}
+
+	@Override
+	public void setPage(int page) {
+		if(page < MIN_PAGE) {
+			page = MIN_PAGE;
+		}
+		super.setPage(page);
+	}
+
+	@Override
+	protected void onJoin(PredicateParameter fromParam, JoinType joinType, JoinRelationType relationType,
+			ParameterField<PredicateParameter, PredicatePiece, PredicateResult> fromField,
+			ParameterField<PredicateParameter, PredicatePiece, PredicateResult> toField,
+			PredicateResult extraQuery) throws Exception {
+		// 默认关联和继承关联的字段按路径在数据行的嵌套对象中读取, 不需要额外处理
+		if(extraQuery != null) {
+			throw new IllegalArgumentException("内存搜索参数不支持带额外条件的动态关联");
+		}
+	}
+
+	@Override
+	protected PredicateResult onJoinExtra() throws Exception {
+		return new PredicateResult(compileCondition(this.getSearchTree()), null, 0, NO_LIMIT_COUNT);
+	}
+
+	@Override
+	protected PredicateResult onBuild(Object... args) throws Exception {
+		if(! this.getAllDynamicJoinedParameters().isEmpty()) {
+			throw new IllegalArgumentException("内存搜索参数不支持动态关联");
+		}
+		Predicate<Object> predicate = compileCondition(this.getSearchTree());
+		Comparator<Object> comparator = this.buildComparator();
+		int count = this.getCount();
+		int start = count > 0 ? (this.getPage() - 1) * count : 0;
+		return new PredicateResult(predicate, comparator, start, count);
+	}
+
+	/**
+	 * 按搜索参数字段的排序标记构建数据行的排序比较器
+	 * <br/> 优先级大的先比较, 相同优先级的按字段出现顺序比较; 与mysql一致, 升序时null排在前面.
+	 *
+	 * @return 排序比较器, 没有排序则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Comparator<Object> buildComparator() {
+		Map<Integer, List<ParameterField<PredicateParameter, PredicatePiece, PredicateResult>>> orderByFields
+			= new TreeMap<Integer, List<ParameterField<PredicateParameter, PredicatePiece, PredicateResult>>>(INT_COMPARATOR);
+		Collection<ParameterField<PredicateParameter, PredicatePiece, PredicateResult>> allParamFields =
+				this.getParameterContext().getAllParameterFields();
+		for(ParameterField<PredicateParameter, PredicatePiece, PredicateResult> paramField : allParamFields) {
+			if(paramField.isOrderBy()) {
+				List<ParameterField<PredicateParameter, PredicatePiece, PredicateResult>> priorityFields
+					= orderByFields.get(paramField.getOrderByPriority());
+				if(priorityFields == null) {
+					priorityFields = new ArrayList<ParameterField<PredicateParameter, PredicatePiece, PredicateResult>>(1);
+					orderByFields.put(paramField.getOrderByPriority(), priorityFields);
+				}
+				priorityFields.add(paramField);
+			}
+		}
+		if(orderByFields.isEmpty()) {
+			return null;
+		}
+		final List<PredicateRowReader> readers = new ArrayList<PredicateRowReader>();
+		final List<Boolean> ascs = new ArrayList<Boolean>();
+		for(List<ParameterField<PredicateParameter, PredicatePiece, PredicateResult>> priorityFields : orderByFields.values()) {
+			for(ParameterField<PredicateParameter, PredicatePiece, PredicateResult> paramField : priorityFields) {
+				readers.add(new PredicateRowReader(paramField.getPath()));
+				ascs.add(paramField.isAsc());
+			}
+		}
+		return new Comparator<Object>() {
+			@Override
+			public int compare(Object row1, Object row2) {
+				for(int i = 0; i < readers.size(); i ++) {
+					PredicateRowReader reader = readers.get(i);
+					Object val1 = reader.read(row1);
+					Object val2 = reader.read(row2);
+					int result;
+					if(val1 == null || val2 == null) {
+						result = val1 == val2 ? 0 : (val1 == null ? -1 : 1);
+					} else {
+						result = PredicateOperator.compare(val1, val2);
+					}
+					if(result != 0) {
+						return ascs.get(i) ? result : - result;
+					}
+				}
+				return 0;
+			}
+		};
+	}
+
+	/**
+	 * 把搜索条件树组合为一个Predicate, AND优先于OR, 条件组内的先组合
+	 * <br/> 组内第一个节点的逻辑关系(关联的额外条件)不参与组合.
+	 *
+	 * @param group 条件组
+	 * @return 组合后的Predicate, 没有条件则返回总是匹配的Predicate
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	private static Predicate<Object> compileCondition(SearchGroup<PredicatePiece> group) {
+		Predicate<Object> orPredicate = null;
+		Predicate<Object> andPredicate = null;
+		for(SearchNode<PredicatePiece> node : group.getChildren()) {
+			Predicate<Object> nodePredicate;
+			if(node instanceof SearchCondition) {
+				nodePredicate = null;
+				for(PredicatePiece piece : ((SearchCondition<PredicatePiece>) node).getContents()) {
+					nodePredicate = nodePredicate == null ? piece.getCondition()
+							: combine(nodePredicate, piece.getCondition(), true);
+				}
+			} else {
+				nodePredicate = compileCondition((SearchGroup<PredicatePiece>) node);
+			}
+			if(andPredicate == null) {
+				andPredicate = nodePredicate;
+			} else if(node.getRelation() == Relation.OR) {
+				orPredicate = orPredicate == null ? andPredicate : combine(orPredicate, andPredicate, false);
+				andPredicate = nodePredicate;
+			} else {
+				andPredicate = combine(andPredicate, nodePredicate, true);
+			}
+		}
+		if(andPredicate == null) {
+			return ALWAYS_TRUE;
+		}
+		return orPredicate == null ? andPredicate : combine(orPredicate, andPredicate, false);
+	}
+
+	/**
+	 * 按逻辑关系组合两个Predicate
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Predicate<Object> combine(final Predicate<Object> left, final Predicate<Object> right,
+			final boolean isAnd) {
+		return new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				return isAnd ? left.test(row) && right.test(row) : left.test(row) || right.test(row);
+			}
+
+			@Override
+			public String toString() {
+				return "(" + left + (isAnd ? " AND " : " OR ") + right + ")";
+			}
+		};
+	}
+}
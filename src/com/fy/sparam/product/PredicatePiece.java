@@ -0,0 +1,50 @@
+package com.fy.sparam.product;
+
+import java.util.function.Predicate;
+
+/**
+ * 内存搜索的搜索内容片段, 即一次搜索生成的对数据行的条件
+ * <br/> 条件间的逻辑关系和分割符由搜索条件树记录, 构建时再按AND优先于OR的规则组合成一个Predicate.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class PredicatePiece {
+
+	/**
+	 * 条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Predicate<Object> condition;
+
+	/**
+	 * 构造器: 指定条件
+	 *
+	 * @param condition 条件, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	PredicatePiece(Predicate<Object> condition) {
+		this.condition = condition;
+	}
+
+	/**
+	 * 获取条件
+	 *
+	 * @return 条件, 不会为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Predicate<Object> getCondition() {
+		return condition;
+	}
+
+	@Override
+	public String toString() {
+		return this.condition.toString();
+	}
+}
@@ -0,0 +1,170 @@
+package com.fy.sparam.product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * 内存搜索参数的构建结果
+ * <br/> 包含条件组成的Predicate, 排序组成的Comparator和分页范围, 可以直接对本地缓存的数据进行过滤.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class PredicateResult {
+
+	/**
+	 * 搜索条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Predicate<Object> predicate;
+
+	/**
+	 * 排序方式, 没有排序则为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Comparator<Object> comparator;
+
+	/**
+	 * 分页的开始位置, 从0开始
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int start;
+
+	/**
+	 * 分页的记录数量, 小于等于0表示不分页
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int count;
+
+	/**
+	 * 构造器: 指定构建结果的内容
+	 *
+	 * @param predicate 搜索条件, 不能为null
+	 * @param comparator 排序方式, 可以为null
+	 * @param start 分页的开始位置
+	 * @param count 分页的记录数量, 小于等于0表示不分页
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	PredicateResult(Predicate<Object> predicate, Comparator<Object> comparator, int start, int count) {
+		this.predicate = predicate;
+		this.comparator = comparator;
+		this.start = start;
+		this.count = count;
+	}
+
+	/**
+	 * 获取搜索条件
+	 *
+	 * @return 搜索条件, 不会为null, 没有条件时总是返回true
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Predicate<Object> getPredicate() {
+		return predicate;
+	}
+
+	/**
+	 * 获取排序方式
+	 *
+	 * @return 排序方式, 没有排序则为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Comparator<Object> getComparator() {
+		return comparator;
+	}
+
+	public int getStart() {
+		return start;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * 判断数据行是否满足搜索条件
+	 *
+	 * @param row 数据行
+	 * @return 满足返回true, 否则返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public boolean test(Object row) {
+		return this.predicate.test(row);
+	}
+
+	/**
+	 * 对数据行进行过滤, 排序和分页
+	 *
+	 * @param rows 数据行, 不能为null
+	 * @return 满足条件的当前页的数据行, 不会为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <R> List<R> filter(Collection<? extends R> rows) {
+		if(rows == null) {
+			throw new IllegalArgumentException("过滤的数据行不能为null");
+		}
+		List<R> matchedRows = new ArrayList<R>();
+		for(R row : rows) {
+			if(this.predicate.test(row)) {
+				matchedRows.add(row);
+			}
+		}
+		if(this.comparator != null) {
+			Collections.sort(matchedRows, this.comparator);
+		}
+		if(this.count <= 0) {
+			return matchedRows;
+		}
+		int fromIndex = Math.min(this.start, matchedRows.size());
+		int toIndex = (int) Math.min((long) fromIndex + this.count, matchedRows.size());
+		return new ArrayList<R>(matchedRows.subList(fromIndex, toIndex));
+	}
+
+	/**
+	 * 统计满足搜索条件的数据行数量, 不受分页影响
+	 *
+	 * @param rows 数据行, 不能为null
+	 * @return 满足条件的数据行数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int count(Collection<?> rows) {
+		if(rows == null) {
+			throw new IllegalArgumentException("统计的数据行不能为null");
+		}
+		int matchedCount = 0;
+		for(Object row : rows) {
+			if(this.predicate.test(row)) {
+				matchedCount ++;
+			}
+		}
+		return matchedCount;
+	}
+
+	@Override
+	public String toString() {
+		return "PredicateResult [predicate=" + predicate + ", start=" + start + ", count=" + count + "]";
+	}
+}
@@ -0,0 +1,171 @@
+package com.fy.sparam.product;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按搜索参数字段路径读取数据行中的值
+ * <br/> 数据行可以是以字段路径(如customer.name)为键的Map, 逐级嵌套的Map, 或者具有同名属性/getter的对象.
+ * <br/> 对象属性的访问方式按类缓存, 读取时不再查找反射信息.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+final class PredicateRowReader {
+
+	/**
+	 * 对象属性访问方式的缓存, 键为类, 值为属性名称与访问方式的映射
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Map<Class<?>, Map<String, IPropertyAccessor>> accessorPool
+		= new ConcurrentHashMap<Class<?>, Map<String, IPropertyAccessor>>();
+
+	/**
+	 * 字段路径
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String path;
+
+	/**
+	 * 按'.'分割的字段路径
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String[] pathNames;
+
+	/**
+	 * 构造器: 指定读取的字段路径
+	 *
+	 * @param path 搜索参数字段相对根搜索参数的路径
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	PredicateRowReader(String path) {
+		this.path = path;
+		this.pathNames = path.split("\\.");
+	}
+
+	/**
+	 * 读取数据行中的值
+	 *
+	 * @param row 数据行
+	 * @return 字段路径对应的值, 路径中途遇到null则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	Object read(Object row) {
+		if(row instanceof Map) {
+			Map<?, ?> rowMap = (Map<?, ?>) row;
+			if(rowMap.containsKey(this.path)) {
+				return rowMap.get(this.path);
+			}
+		}
+		Object current = row;
+		for(String pathName : this.pathNames) {
+			if(current == null) {
+				return null;
+			}
+			current = PredicateRowReader.readProperty(current, pathName);
+		}
+		return current;
+	}
+
+	@Override
+	public String toString() {
+		return this.path;
+	}
+
+	/**
+	 * 读取对象中的属性值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Object readProperty(Object obj, String name) {
+		if(obj instanceof Map) {
+			return ((Map<?, ?>) obj).get(name);
+		}
+		Class<?> objClass = obj.getClass();
+		Map<String, IPropertyAccessor> accessors = accessorPool.get(objClass);
+		if(accessors == null) {
+			accessors = new ConcurrentHashMap<String, IPropertyAccessor>();
+			accessorPool.put(objClass, accessors);
+		}
+		IPropertyAccessor accessor = accessors.get(name);
+		if(accessor == null) {
+			accessor = PredicateRowReader.findAccessor(objClass, name);
+			accessors.put(name, accessor);
+		}
+		try {
+			return accessor.get(obj);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(String.format("读取对象%s的属性%s失败", objClass.getName(), name), e);
+		}
+	}
+
+	/**
+	 * 查找属性的访问方式, 优先使用public的getter, 没有则使用类及其父类中声明的字段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static IPropertyAccessor findAccessor(Class<?> objClass, String name) {
+		String capitalName = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for(String getterName : new String[] {"get" + capitalName, "is" + capitalName}) {
+			try {
+				final Method getter = objClass.getMethod(getterName);
+				if(! Modifier.isStatic(getter.getModifiers()) && ! void.class.equals(getter.getReturnType())) {
+					getter.setAccessible(true);
+					return new IPropertyAccessor() {
+						@Override
+						public Object get(Object obj) throws Exception {
+							return getter.invoke(obj);
+						}
+					};
+				}
+			} catch (NoSuchMethodException e) {
+				// 没有对应的getter, 继续查找
+			}
+		}
+		Class<?> searchClass = objClass;
+		while(searchClass != null && ! Object.class.equals(searchClass)) {
+			try {
+				final Field field = searchClass.getDeclaredField(name);
+				if(! Modifier.isStatic(field.getModifiers())) {
+					field.setAccessible(true);
+					return new IPropertyAccessor() {
+						@Override
+						public Object get(Object obj) throws Exception {
+							return field.get(obj);
+						}
+					};
+				}
+			} catch (NoSuchFieldException e) {
+				// 当前类没有声明, 继续查找父类
+			}
+			searchClass = searchClass.getSuperclass();
+		}
+		throw new IllegalArgumentException(String.format("对象%s中找不到属性%s", objClass.getName(), name));
+	}
+
+	/**
+	 * 对象属性访问方式
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private interface IPropertyAccessor {
+
+		Object get(Object obj) throws Exception;
+	}
+}
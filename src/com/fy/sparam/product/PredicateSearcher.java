@@ -0,0 +1,448 @@
+package com.fy.sparam.product;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import com.fy.sparam.core.AbsSearcher;
+import com.fy.sparam.core.SearchContext.ISearchable;
+
+/**
+ * 内存搜索器实现
+ * <br/> 每个搜索都生成一个对数据行的条件, 数据行中的值按搜索参数字段的路径读取, 比较规则与sql保持一致.
+ *
+ * @param <T> 字段类类型
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class PredicateSearcher<T> extends AbsSearcher<PredicateParameter, PredicatePiece, PredicateResult, T> {
+
+	/**
+	 * 数据行读取器, 第一次使用时创建
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private PredicateRowReader rowReader;
+
+	/**
+	 * 获取数据行读取器, 按所属搜索参数字段的路径读取
+	 *
+	 * @return 数据行读取器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	PredicateRowReader getRowReader() {
+		if(this.rowReader == null) {
+			this.rowReader = new PredicateRowReader(this.getBelongParameterField().getPath());
+		}
+		return this.rowReader;
+	}
+
+	@Override
+	protected void onEq(T value) throws Exception {
+		this.addCompareCondition(PredicateOperator.EQ, value);
+	}
+
+	@Override
+	protected void onEq(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.EQ, searchField);
+	}
+
+	@Override
+	protected void onNotEq(T value) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_EQ, value);
+	}
+
+	@Override
+	protected void onNotEq(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_EQ, searchField);
+	}
+
+	@Override
+	protected void onIn(Collection<T> values) throws Exception {
+		if(values == null) {
+			throw new IllegalArgumentException("搜索内容不能为null.");
+		}
+		if(values.isEmpty()) {
+			throw new IllegalArgumentException("in搜索集合不能为空.");
+		}
+		this.addInCondition(values, true);
+	}
+
+	@Override
+	protected void onIn(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.EQ, searchField);
+	}
+
+	@Override
+	protected void onNotIn(Collection<T> values) throws Exception {
+		if(values == null || values.isEmpty()) {
+			throw new IllegalArgumentException("搜索内容不能为null.");
+		}
+		this.addInCondition(values, false);
+	}
+
+	@Override
+	protected void onNotIn(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_EQ, searchField);
+	}
+
+	@Override
+	protected void onBetween(final T from, final T to) throws Exception {
+		if(from == null || to == null) {
+			throw new IllegalArgumentException("搜索内容不能为null.");
+		}
+		final PredicateRowReader reader = this.getRowReader();
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				Object fieldVal = reader.read(row);
+				return PredicateOperator.NOT_LESS_THAN.test(fieldVal, from)
+						&& PredicateOperator.NOT_GREATER_THAN.test(fieldVal, to);
+			}
+
+			@Override
+			public String toString() {
+				return reader + " BETWEEN " + from + " AND " + to;
+			}
+		});
+	}
+
+	@Override
+	protected void onBetween(ISearchable<?> from, ISearchable<?> to) throws Exception {
+		final PredicateRowReader reader = this.getRowReader();
+		final PredicateRowReader fromReader = toRowReader(from);
+		final PredicateRowReader toReader = toRowReader(to);
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				Object fieldVal = reader.read(row);
+				return PredicateOperator.NOT_LESS_THAN.test(fieldVal, fromReader.read(row))
+						&& PredicateOperator.NOT_GREATER_THAN.test(fieldVal, toReader.read(row));
+			}
+
+			@Override
+			public String toString() {
+				return reader + " BETWEEN " + fromReader + " AND " + toReader;
+			}
+		});
+	}
+
+	@Override
+	protected void onLessThan(T value) throws Exception {
+		this.addCompareCondition(PredicateOperator.LESS_THAN, value);
+	}
+
+	@Override
+	protected void onLessThan(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.LESS_THAN, searchField);
+	}
+
+	@Override
+	protected void onNotLessThan(T value) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_LESS_THAN, value);
+	}
+
+	@Override
+	protected void onNotLessThan(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_LESS_THAN, searchField);
+	}
+
+	@Override
+	protected void onGreaterThan(T value) throws Exception {
+		this.addCompareCondition(PredicateOperator.GREATER_THAN, value);
+	}
+
+	@Override
+	protected void onGreaterThan(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.GREATER_THAN, searchField);
+	}
+
+	@Override
+	protected void onNotGreaterThan(T value) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_GREATER_THAN, value);
+	}
+
+	@Override
+	protected void onNotGreaterThan(ISearchable<?> searchField) throws Exception {
+		this.addCompareCondition(PredicateOperator.NOT_GREATER_THAN, searchField);
+	}
+
+	@Override
+	protected void onLike(String value) throws Exception {
+		this.addLikeCondition(value, true);
+	}
+
+	@Override
+	protected void onLike(ISearchable<?> searchField) throws Exception {
+		this.addLikeCondition(searchField, true);
+	}
+
+	@Override
+	protected void onNotLike(String value) throws Exception {
+		this.addLikeCondition(value, false);
+	}
+
+	@Override
+	protected void onNotLike(ISearchable<?> searchField) throws Exception {
+		this.addLikeCondition(searchField, false);
+	}
+
+	@Override
+	protected void onIsNull() throws Exception {
+		this.addNullCondition(true);
+	}
+
+	@Override
+	protected void onIsNotNull() throws Exception {
+		this.addNullCondition(false);
+	}
+
+	@Override
+	protected void onInChildQuery(PredicateParameter childQuery) throws Exception {
+		throw new IllegalArgumentException("内存搜索参数不支持子查询");
+	}
+
+	@Override
+	protected void onNotInChildQuery(PredicateParameter childQuery) throws Exception {
+		throw new IllegalArgumentException("内存搜索参数不支持子查询");
+	}
+
+	@Override
+	protected void onDelimiterStart(Object... params) throws Exception {
+		// 分割符由搜索条件树的条件组表示, 构建时组合
+	}
+
+	@Override
+	protected void onDelimiterEnd(Object... params) throws Exception {
+		// 分割符由搜索条件树的条件组表示, 构建时组合
+	}
+
+	@Override
+	protected void onAnd() throws Exception {
+		// 逻辑关系记录在搜索条件树的节点上, 构建时组合
+	}
+
+	@Override
+	protected void onOr() throws Exception {
+		// 逻辑关系记录在搜索条件树的节点上, 构建时组合
+	}
+
+	/**
+	 * 添加条件片段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addCondition(Predicate<Object> condition) throws Exception {
+		this.addSearchEntry(PredicateParameter.WHERE, new PredicatePiece(condition));
+	}
+
+	/**
+	 * 添加与指定值比较的条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addCompareCondition(final PredicateOperator operator, final Object value) throws Exception {
+		if(value == null) {
+			throw new IllegalArgumentException("搜索内容不能为null.");
+		}
+		final PredicateRowReader reader = this.getRowReader();
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				return operator.test(reader.read(row), value);
+			}
+
+			@Override
+			public String toString() {
+				return reader + " " + operator + " " + value;
+			}
+		});
+	}
+
+	/**
+	 * 添加与同一数据行中另一个字段比较的条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addCompareCondition(final PredicateOperator operator, ISearchable<?> searchField) throws Exception {
+		final PredicateRowReader reader = this.getRowReader();
+		final PredicateRowReader otherReader = toRowReader(searchField);
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				return operator.test(reader.read(row), otherReader.read(row));
+			}
+
+			@Override
+			public String toString() {
+				return reader + " " + operator + " " + otherReader;
+			}
+		});
+	}
+
+	/**
+	 * 添加in或not in条件, 搜索值预先转换为查找键放入集合中
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addInCondition(Collection<T> values, final boolean isIn) throws Exception {
+		final Set<Object> valueKeys = new HashSet<Object>();
+		boolean hasNull = false;
+		for(T value : values) {
+			if(value == null) {
+				hasNull = true;
+				continue;
+			}
+			valueKeys.add(PredicateOperator.toKey(value));
+		}
+		// sql中not in的集合包含null时, 结果总是不匹配
+		final boolean isNeverMatch = ! isIn && hasNull;
+		final PredicateRowReader reader = this.getRowReader();
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				Object fieldVal = reader.read(row);
+				if(fieldVal == null || isNeverMatch) {
+					return false;
+				}
+				return valueKeys.contains(PredicateOperator.toKey(fieldVal)) == isIn;
+			}
+
+			@Override
+			public String toString() {
+				return reader + (isIn ? " IN " : " NOT IN ") + valueKeys;
+			}
+		});
+	}
+
+	/**
+	 * 添加like或not like条件, 匹配模式预先编译为正则表达式
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addLikeCondition(final String value, final boolean isLike) throws Exception {
+		if(value == null) {
+			throw new IllegalArgumentException("搜索内容不能为null.");
+		}
+		final Pattern pattern = toLikePattern(value);
+		final PredicateRowReader reader = this.getRowReader();
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				Object fieldVal = reader.read(row);
+				if(fieldVal == null) {
+					return false;
+				}
+				return pattern.matcher(fieldVal.toString()).matches() == isLike;
+			}
+
+			@Override
+			public String toString() {
+				return reader + (isLike ? " LIKE " : " NOT LIKE ") + value;
+			}
+		});
+	}
+
+	/**
+	 * 添加以同一数据行中另一个字段为模式的like或not like条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addLikeCondition(ISearchable<?> searchField, final boolean isLike) throws Exception {
+		final PredicateRowReader reader = this.getRowReader();
+		final PredicateRowReader otherReader = toRowReader(searchField);
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				Object fieldVal = reader.read(row);
+				Object patternVal = otherReader.read(row);
+				if(fieldVal == null || patternVal == null) {
+					return false;
+				}
+				return toLikePattern(patternVal.toString()).matcher(fieldVal.toString()).matches() == isLike;
+			}
+
+			@Override
+			public String toString() {
+				return reader + (isLike ? " LIKE " : " NOT LIKE ") + otherReader;
+			}
+		});
+	}
+
+	/**
+	 * 添加is null或is not null条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addNullCondition(final boolean isNull) throws Exception {
+		final PredicateRowReader reader = this.getRowReader();
+		this.addCondition(new Predicate<Object>() {
+			@Override
+			public boolean test(Object row) {
+				return (reader.read(row) == null) == isNull;
+			}
+
+			@Override
+			public String toString() {
+				return reader + (isNull ? " IS NULL" : " IS NOT NULL");
+			}
+		});
+	}
+
+	/**
+	 * 获取另一个搜索字段的数据行读取器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static PredicateRowReader toRowReader(ISearchable<?> searchField) {
+		if(! (searchField instanceof PredicateSearcher)) {
+			throw new IllegalArgumentException("搜索字段必须是PredicateSearcher的实例");
+		}
+		return ((PredicateSearcher<?>) searchField).getRowReader();
+	}
+
+	/**
+	 * 把sql的like匹配模式转换为正则表达式, %匹配任意字符串, _匹配单个字符, \转义下一个字符
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static Pattern toLikePattern(String likePattern) {
+		StringBuilder regex = new StringBuilder(likePattern.length() + 8);
+		StringBuilder literal = new StringBuilder();
+		for(int i = 0; i < likePattern.length(); i ++) {
+			char c = likePattern.charAt(i);
+			if(c == '\\' && i + 1 < likePattern.length()) {
+				literal.append(likePattern.charAt(++ i));
+				continue;
+			}
+			if(c != '%' && c != '_') {
+				literal.append(c);
+				continue;
+			}
+			if(literal.length() > 0) {
+				regex.append(Pattern.quote(literal.toString()));
+				literal.setLength(0);
+			}
+			regex.append(c == '%' ? ".*" : ".");
+		}
+		if(literal.length() > 0) {
+			regex.append(Pattern.quote(literal.toString()));
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+}
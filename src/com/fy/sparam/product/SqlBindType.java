@@ -0,0 +1,467 @@
+package com.fy.sparam.product;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * sql语句占位符值的绑定类型
+ * <br/> 根据类型使用PreparedStatement对应的基本类型设置方法, 避免驱动对每个值进行类型推断.
+ * <br/> 值的类型与绑定类型不一致时(如{@link com.fy.sparam.init.anno.FieldMeta#valType()}与属性类型不同)先转换,
+ * 数值和日期可以从字符串转换, 无法转换则抛出{@link IllegalArgumentException}.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public enum SqlBindType {
+
+	/**
+	 * 字符串
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	STRING(Types.VARCHAR) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setString(index, val.toString());
+		}
+	},
+
+	/**
+	 * 整数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	INT(Types.INTEGER) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setInt(index, SqlBindType.toNumber(this, val).intValue());
+		}
+	},
+
+	/**
+	 * 长整数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	LONG(Types.BIGINT) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setLong(index, SqlBindType.toNumber(this, val).longValue());
+		}
+	},
+
+	/**
+	 * 短整数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SHORT(Types.SMALLINT) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setShort(index, SqlBindType.toNumber(this, val).shortValue());
+		}
+	},
+
+	/**
+	 * 字节
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	BYTE(Types.TINYINT) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setByte(index, SqlBindType.toNumber(this, val).byteValue());
+		}
+	},
+
+	/**
+	 * 双精度浮点数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	DOUBLE(Types.DOUBLE) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setDouble(index, SqlBindType.toNumber(this, val).doubleValue());
+		}
+	},
+
+	/**
+	 * 单精度浮点数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	FLOAT(Types.REAL) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setFloat(index, SqlBindType.toNumber(this, val).floatValue());
+		}
+	},
+
+	/**
+	 * 布尔值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	BOOLEAN(Types.BOOLEAN) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setBoolean(index, SqlBindType.toBoolean(this, val));
+		}
+	},
+
+	/**
+	 * 高精度小数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	BIG_DECIMAL(Types.DECIMAL) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			if(val instanceof BigDecimal) {
+				ps.setBigDecimal(index, (BigDecimal) val);
+			} else {
+				ps.setBigDecimal(index, SqlBindType.toBigDecimal(this, val));
+			}
+		}
+	},
+
+	/**
+	 * 日期, 包含时间部分, 对应java.util.Date和java.sql.Timestamp
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	TIMESTAMP(Types.TIMESTAMP) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			if(val instanceof Timestamp) {
+				ps.setTimestamp(index, (Timestamp) val);
+			} else if(val instanceof CharSequence) {
+				try {
+					ps.setTimestamp(index, Timestamp.valueOf(val.toString().trim()));
+				} catch (IllegalArgumentException e) {
+					throw SqlBindType.convertFailed(this, val, e);
+				}
+			} else {
+				ps.setTimestamp(index, new Timestamp(SqlBindType.toTime(this, val)));
+			}
+		}
+	},
+
+	/**
+	 * 日期, 不包含时间部分, 对应java.sql.Date
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	DATE(Types.DATE) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			if(val instanceof java.sql.Date) {
+				ps.setDate(index, (java.sql.Date) val);
+			} else if(val instanceof CharSequence) {
+				try {
+					ps.setDate(index, java.sql.Date.valueOf(val.toString().trim()));
+				} catch (IllegalArgumentException e) {
+					throw SqlBindType.convertFailed(this, val, e);
+				}
+			} else {
+				ps.setDate(index, new java.sql.Date(SqlBindType.toTime(this, val)));
+			}
+		}
+	},
+
+	/**
+	 * 时间, 对应java.sql.Time
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	TIME(Types.TIME) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			if(val instanceof Time) {
+				ps.setTime(index, (Time) val);
+			} else if(val instanceof CharSequence) {
+				try {
+					ps.setTime(index, Time.valueOf(val.toString().trim()));
+				} catch (IllegalArgumentException e) {
+					throw SqlBindType.convertFailed(this, val, e);
+				}
+			} else {
+				ps.setTime(index, new Time(SqlBindType.toTime(this, val)));
+			}
+		}
+	},
+
+	/**
+	 * 字节数组
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	BYTES(Types.VARBINARY) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			if(! (val instanceof byte[])) {
+				throw SqlBindType.convertFailed(this, val, null);
+			}
+			ps.setBytes(index, (byte[]) val);
+		}
+	},
+
+	/**
+	 * 无法确定的类型, 交给驱动处理
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	OBJECT(Types.OTHER) {
+		@Override
+		protected void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException {
+			ps.setObject(index, val);
+		}
+
+		@Override
+		public void bind(PreparedStatement ps, int index, Object val) throws SQLException {
+			if(val == null) {
+				ps.setObject(index, null);
+				return;
+			}
+			this.bindNonNull(ps, index, val);
+		}
+	};
+
+	/**
+	 * java类型与绑定类型的对应关系, 包括基本类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Map<Class<?>, SqlBindType> TYPE_MAPPER = new HashMap<Class<?>, SqlBindType>();
+
+	static {
+		TYPE_MAPPER.put(String.class, STRING);
+		TYPE_MAPPER.put(Character.class, STRING);
+		TYPE_MAPPER.put(char.class, STRING);
+		TYPE_MAPPER.put(Integer.class, INT);
+		TYPE_MAPPER.put(int.class, INT);
+		TYPE_MAPPER.put(Long.class, LONG);
+		TYPE_MAPPER.put(long.class, LONG);
+		TYPE_MAPPER.put(Short.class, SHORT);
+		TYPE_MAPPER.put(short.class, SHORT);
+		TYPE_MAPPER.put(Byte.class, BYTE);
+		TYPE_MAPPER.put(byte.class, BYTE);
+		TYPE_MAPPER.put(Double.class, DOUBLE);
+		TYPE_MAPPER.put(double.class, DOUBLE);
+		TYPE_MAPPER.put(Float.class, FLOAT);
+		TYPE_MAPPER.put(float.class, FLOAT);
+		TYPE_MAPPER.put(Boolean.class, BOOLEAN);
+		TYPE_MAPPER.put(boolean.class, BOOLEAN);
+		TYPE_MAPPER.put(BigDecimal.class, BIG_DECIMAL);
+		TYPE_MAPPER.put(Date.class, TIMESTAMP);
+		TYPE_MAPPER.put(Timestamp.class, TIMESTAMP);
+		TYPE_MAPPER.put(java.sql.Date.class, DATE);
+		TYPE_MAPPER.put(Time.class, TIME);
+		TYPE_MAPPER.put(byte[].class, BYTES);
+	}
+
+	/**
+	 * 值为null时使用的sql类型, 参考{@link Types}
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int sqlType;
+
+	/**
+	 * 构造器: 指定值为null时使用的sql类型
+	 *
+	 * @param sqlType 值为null时使用的sql类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlBindType(int sqlType) {
+		this.sqlType = sqlType;
+	}
+
+	/**
+	 * 获取值为null时使用的sql类型
+	 *
+	 * @return 值为null时使用的sql类型, 参考{@link Types}
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int getSqlType() {
+		return sqlType;
+	}
+
+	/**
+	 * 把占位符值设置到PreparedStatement中
+	 *
+	 * @param ps 要设置的PreparedStatement, 不能为null
+	 * @param index 占位符的位置, 从1开始
+	 * @param val 占位符值, 可以为null
+	 * @throws IllegalArgumentException 占位符值无法转换为绑定类型则抛出异常
+	 * @throws SQLException 设置失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void bind(PreparedStatement ps, int index, Object val) throws SQLException {
+		if(val == null) {
+			ps.setNull(index, this.sqlType);
+			return;
+		}
+		this.bindNonNull(ps, index, val);
+	}
+
+	/**
+	 * 把不为null的占位符值设置到PreparedStatement中
+	 *
+	 * @param ps 要设置的PreparedStatement
+	 * @param index 占位符的位置, 从1开始
+	 * @param val 占位符值, 不为null
+	 * @throws SQLException 设置失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected abstract void bindNonNull(PreparedStatement ps, int index, Object val) throws SQLException;
+
+	/**
+	 * 把占位符值转换为数值, 字符串按十进制数解析
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Number toNumber(SqlBindType bindType, Object val) {
+		if(val instanceof Number) {
+			return (Number) val;
+		}
+		return SqlBindType.toBigDecimal(bindType, val);
+	}
+
+	/**
+	 * 把占位符值转换为高精度小数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static BigDecimal toBigDecimal(SqlBindType bindType, Object val) {
+		if(val instanceof Number || val instanceof CharSequence) {
+			try {
+				return new BigDecimal(val.toString().trim());
+			} catch (NumberFormatException e) {
+				throw SqlBindType.convertFailed(bindType, val, e);
+			}
+		}
+		throw SqlBindType.convertFailed(bindType, val, null);
+	}
+
+	/**
+	 * 把占位符值转换为布尔值, 数值不为0为true, 字符串只能是true/false/1/0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean toBoolean(SqlBindType bindType, Object val) {
+		if(val instanceof Boolean) {
+			return (Boolean) val;
+		}
+		if(val instanceof Number) {
+			return ((Number) val).doubleValue() != 0;
+		}
+		String str = val.toString().trim();
+		if("true".equalsIgnoreCase(str) || "1".equals(str)) {
+			return true;
+		}
+		if("false".equalsIgnoreCase(str) || "0".equals(str)) {
+			return false;
+		}
+		throw SqlBindType.convertFailed(bindType, val, null);
+	}
+
+	/**
+	 * 把日期或表示毫秒数的数值转换为毫秒数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static long toTime(SqlBindType bindType, Object val) {
+		if(val instanceof Date) {
+			return ((Date) val).getTime();
+		}
+		if(val instanceof Number) {
+			return ((Number) val).longValue();
+		}
+		throw SqlBindType.convertFailed(bindType, val, null);
+	}
+
+	/**
+	 * 生成占位符值无法转换为绑定类型的异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static IllegalArgumentException convertFailed(SqlBindType bindType, Object val, Exception cause) {
+		return new IllegalArgumentException(String.format("占位符值[%s](%s)无法转换为绑定类型%s", 
+				val, val.getClass().getName(), bindType.name()), cause);
+	}
+
+	/**
+	 * 获取java类型对应的绑定类型
+	 *
+	 * @param typeClass java类型, 可以为null
+	 * @return 对应的绑定类型, 无法确定(包括常量类)则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static SqlBindType of(Class<?> typeClass) {
+		if(typeClass == null) {
+			return null;
+		}
+		SqlBindType bindType = TYPE_MAPPER.get(typeClass);
+		if(bindType == null && Date.class.isAssignableFrom(typeClass)) {
+			bindType = TIMESTAMP;
+		}
+		return bindType;
+	}
+
+	/**
+	 * 根据值本身获取对应的绑定类型
+	 *
+	 * @param val 占位符值, 可以为null
+	 * @return 对应的绑定类型, 无法确定则返回{@link #OBJECT}, 不会返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static SqlBindType ofValue(Object val) {
+		if(val == null) {
+			return OBJECT;
+		}
+		SqlBindType bindType = of(val.getClass());
+		return bindType != null ? bindType : OBJECT;
+	}
+}
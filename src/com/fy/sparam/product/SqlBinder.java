@@ -0,0 +1,63 @@
+package com.fy.sparam.product;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * sql语句占位符值绑定工具
+ * <br/> 使用构建结果中记录的绑定类型调用PreparedStatement的基本类型设置方法, 绑定过程没有反射.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class SqlBinder {
+
+	/**
+	 * 把构建结果的占位符值绑定到PreparedStatement中
+	 *
+	 * @param ps 要绑定的PreparedStatement, 不能为null
+	 * @param result 搜索参数的构建结果, 不能为null
+	 * @throws SQLException 绑定失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static void bind(PreparedStatement ps, SqlResult result) throws SQLException {
+		if(result == null) {
+			throw new IllegalArgumentException("绑定的构建结果不能为null");
+		}
+		SqlBinder.bind(ps, result.getVals(), result.getValTypes());
+	}
+
+	/**
+	 * 把占位符值按照对应的绑定类型绑定到PreparedStatement中
+	 *
+	 * @param ps 要绑定的PreparedStatement, 不能为null
+	 * @param vals 占位符值, 为null表示没有占位符值
+	 * @param valTypes 与占位符值一一对应的绑定类型, 为null或其中的项为null的根据值本身决定
+	 * @throws SQLException 绑定失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static void bind(PreparedStatement ps, Object[] vals, SqlBindType[] valTypes) throws SQLException {
+		if(ps == null) {
+			throw new IllegalArgumentException("绑定的PreparedStatement不能为null");
+		}
+		if(vals == null) {
+			return;
+		}
+		if(valTypes != null && valTypes.length != vals.length) {
+			throw new IllegalArgumentException("占位符值与绑定类型的数量不一致");
+		}
+		for(int i = 0; i < vals.length; i ++) {
+			SqlBindType valType = valTypes != null ? valTypes[i] : null;
+			if(valType == null) {
+				valType = SqlBindType.ofValue(vals[i]);
+			}
+			valType.bind(ps, i + 1, vals[i]);
+		}
+	}
+
+	private SqlBinder() {}
+}
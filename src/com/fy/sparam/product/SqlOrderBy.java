@@ -0,0 +1,88 @@
+package com.fy.sparam.product;
+
+/**
+ * 构建结果中的一个排序项, 用来在应用层按相同规则对多个结果进行合并
+ * <br/> 相同优先级的多个字段在sql语句中使用CONCAT连接为一个排序项, 合并时也作为一个排序项.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class SqlOrderBy {
+
+	/**
+	 * 排序表达式, 如: 表别名.字段名, 或者相同优先级的字段的CONCAT(...)
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String expression;
+
+	/**
+	 * 是否升序
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final boolean isAsc;
+
+	/**
+	 * 输出排序列时使用的列别名
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String columnLabel;
+
+	/**
+	 * 构造器: 指定排序项的信息
+	 *
+	 * @param expression 排序表达式
+	 * @param isAsc 是否升序
+	 * @param columnLabel 输出排序列时使用的列别名
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlOrderBy(String expression, boolean isAsc, String columnLabel) {
+		this.expression = expression;
+		this.isAsc = isAsc;
+		this.columnLabel = columnLabel;
+	}
+
+	/**
+	 * 获取排序表达式
+	 *
+	 * @return 排序表达式, 如: 表别名.字段名, 或者相同优先级的字段的CONCAT(...)
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String getExpression() {
+		return expression;
+	}
+
+	/**
+	 * 判断是否升序
+	 *
+	 * @return 升序返回true, 降序返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public boolean isAsc() {
+		return isAsc;
+	}
+
+	/**
+	 * 获取输出排序列时使用的列别名
+	 * <br/> 只有构建结果输出了排序列({@link SqlResult#isOrderColumnsOutput()})时查询结果中才有该列.
+	 *
+	 * @return 排序列的别名, 以{@value SqlParameter#UNION_ORDER_COLUMN_PREFIX}开头
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String getColumnLabel() {
+		return columnLabel;
+	}
+}
@@ -0,0 +1,105 @@
+package com.fy.sparam.product;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fy.sparam.test.StringUtils;
+
+/**
+ * 列投影模式({@link SqlParameter.BuildMode#SELECT_ENTITY_COLUMNS})的构建结果中输出的一个实体
+ * <br/> 继承的父级搜索参数的列合并到继承它的实体中, 用来在应用层把关联查询的记录还原为实体的关联关系.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class SqlOutputEntity {
+
+	/**
+	 * 实体对应的搜索参数的路径
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String path;
+
+	/**
+	 * 关联来源实体的路径, 根实体为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String fromPath;
+
+	/**
+	 * 主键的列名, 没有配置主键或主键没有输出为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String primaryKeyColumn;
+
+	/**
+	 * 实体输出的所有列名
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final List<String> columns;
+
+	SqlOutputEntity(String path, String fromPath, String primaryKeyColumn, List<String> columns) {
+		this.path = path;
+		this.fromPath = fromPath;
+		this.primaryKeyColumn = primaryKeyColumn;
+		this.columns = Collections.unmodifiableList(columns);
+	}
+
+	/**
+	 * 获取实体对应的搜索参数的路径
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * 获取关联来源实体的路径, 即在输出的实体中最近的关联来源
+	 *
+	 * @return 关联来源实体的路径, 根实体返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String getFromPath() {
+		return fromPath;
+	}
+
+	/**
+	 * 获取主键的列名({@link com.fy.sparam.init.anno.TableMeta#primaryKey()})
+	 *
+	 * @return 主键的列名, 没有配置主键或主键被排除输出则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String getPrimaryKeyColumn() {
+		return primaryKeyColumn;
+	}
+
+	/**
+	 * 获取实体输出的所有列名, 包括继承的父级搜索参数的列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	@Override
+	public String toString() {
+		return StringUtils.concatAsStr("entity [", this.path, "] from [", String.valueOf(this.fromPath),
+				"] key [", String.valueOf(this.primaryKeyColumn), "]");
+	}
+}
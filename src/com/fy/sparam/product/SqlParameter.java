@@ -1,24 +1,39 @@
 package com.fy.sparam.product;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.fy.sparam.core.AbsParameter;
 import com.fy.sparam.core.JoinWorker.JoinType;
 import com.fy.sparam.core.JoinWorker.JoinRelationType;
 import com.fy.sparam.core.ParameterContext;
+import com.fy.sparam.core.ParameterContext.ModifyType;
 import com.fy.sparam.core.ParameterField;
 import com.fy.sparam.core.ParameterField.IFieldQueryNameGenerateStrategy;
 import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.core.SearchMark;
+import com.fy.sparam.core.SearchNode;
+import com.fy.sparam.core.SearchNode.Relation;
+import com.fy.sparam.core.SearchNode.SearchCondition;
+import com.fy.sparam.core.SearchNode.SearchGroup;
 import com.fy.sparam.init.anno.AnnotationInitializor;
+import com.fy.sparam.init.anno.TableMeta;
+import com.fy.sparam.init.anno.TableMeta.IShardRouter;
 import com.fy.sparam.test.FormatUtils;
 import com.fy.sparam.test.StringUtils;
 
@@ -47,6 +62,22 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 	 */
 	public static final int MAX_COUNT = 500;
 	
+	/**
+	 * 额外输出的排序列的别名前缀, OR条件改写为UNION的各分支和需要合并多个查询结果时输出
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final String UNION_ORDER_COLUMN_PREFIX = "sparam_order_";
+	
+	/**
+	 * 拆分查询时额外输出的关联字段列的别名前缀
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final String SPLIT_KEY_COLUMN_PREFIX = "sparam_split_";
+	
 	/**
 	 * 构建类型, 即构建方式
 	 *
@@ -65,6 +96,17 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 				SqlMember.FROM, SqlMember.JOIN, SqlMember.WHERE,
 				SqlMember.GROUP_BY, SqlMember.ORDER_BY,
 				SqlMember.LIMIT),
+		/**
+		 * 构建获取实体SQL, 但把输出的实体展开为其配置的列, 而不是使用"表别名.*"
+		 * <br/> 可以通过{@link SqlParameter#excludeProjection(ISearchable...)}排除不需要的列.
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		SELECT_ENTITY_COLUMNS(SqlMember.SELECT_ENTITY_COLUMNS_HEAD,
+				SqlMember.FROM, SqlMember.JOIN, SqlMember.WHERE,
+				SqlMember.GROUP_BY, SqlMember.ORDER_BY,
+				SqlMember.LIMIT),
 		/**
 		 * 构建获取实体指定字段SQL
 		 * 
@@ -133,12 +175,44 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		public SqlResult build(SqlParameter param, Object...args) throws Exception {
 			SqlResult result = new SqlResult();
 			for(SqlMember sqlMember : sqlMembers) {
-				sqlMember.getBuilder().build(param, result, args);
+				param.buildSqlMember(sqlMember, result, args);
 			}
 			return result;
 		}
 	}
 	
+	/**
+	 * OR条件改写为UNION的方式
+	 * <br/> 顶层的OR条件的每一项都有不同索引字段({@link com.fy.sparam.init.anno.FieldMeta#indexed()})上的条件时,
+	 * 把每一项改写为一个只使用AND条件的查询分支, 让每个分支都可以使用自己的索引, 排序和分页在合并后的结果上进行.
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public enum OrUnionMode {
+		
+		/**
+		 * 使用UNION ALL连接分支, 后面的分支排除前面分支已经匹配的记录(如"AND CASE WHEN (前一项) THEN 1 ELSE 0 END = 0",
+		 * 不使用IS NOT TRUE, 以兼容不支持布尔判断的数据库)
+		 * <br/> 结果与改写前完全一致, 但每个分支都要重复前面分支的条件和占位符值.
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		UNION_ALL,
+		
+		/**
+		 * 使用UNION连接分支, 由数据库对合并的结果去重
+		 * <br/> 分支不需要重复其它分支的条件, 分支多时更快; 
+		 * 但会合并完全相同的输出记录, 只能在输出记录本身不会重复(如输出包含主键且没有一对多的关联)时使用.
+		 * 构建数量时仍然使用UNION ALL的方式.
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		UNION
+	}
+	
 	/**
 	 * 定义sql成员常量
 	 * 
@@ -170,12 +244,57 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 					selectEntitiesSqlBuilder.append(outputParam.getQueryAlias()).append(".*,");
 				}
 				selectEntitiesSqlBuilder.deleteCharAt(selectEntitiesSqlBuilder.length() - 1); /* 删除最后的',' */
+				param.appendSplitKeyColumns(selectEntitiesSqlBuilder);
+				param.appendOrderColumns(selectEntitiesSqlBuilder, result);
 				// 添加到搜索内容中
 				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr("SELECT ",
 						selectEntitiesSqlBuilder.toString())));
 			}
 		}),
 		
+		/**
+		 * 查询实体的列使用的sql语句的SELECT语句开头
+		 * <br/> 按搜索参数路径和字段名称排序输出, 列别名为"表别名_列名", 同一结构的搜索参数生成的列顺序和别名是固定的.
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		SELECT_ENTITY_COLUMNS_HEAD(new ISqlBuilder() {
+	
+			@Override
+			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
+				param.setAllMyFieldOutput(true);
+				// 获取所有输出的实体对应的搜索参数, 按固定顺序排列
+				ParameterContext<SqlParameter, SqlPiece, SqlResult> paramContext = param.getParameterContext();
+				List<SqlParameter> outputParams = new ArrayList<SqlParameter>(paramContext.getAllOutputParameters());
+				if(outputParams.isEmpty()) {
+					throw new IllegalArgumentException("获取实体的sql构建需要指定输出的实体");
+				}
+				Collections.sort(outputParams, PARAM_PATH_COMPARATOR);
+				// 拼接select的列内容
+				Set<ParameterField<SqlParameter, SqlPiece, SqlResult>> excludeFields = param.getRootParameter().projectionExcludeFields;
+				StringBuilder selectSqlBuilder = new StringBuilder();
+				List<String[]> outputFieldNames = new ArrayList<String[]>();
+				List<String[]> outputFieldPaths = new ArrayList<String[]>();
+				Map<SqlParameter, List<String>> paramColumns = new IdentityHashMap<SqlParameter, List<String>>();
+				for(SqlParameter outputParam : outputParams) {
+					List<String> columns = new ArrayList<String>();
+					SqlParameter.appendEntityColumns(outputParam, excludeFields, selectSqlBuilder, outputFieldNames, outputFieldPaths, columns);
+					paramColumns.put(outputParam, columns);
+				}
+				if(outputFieldNames.isEmpty()) {
+					throw new IllegalArgumentException("获取实体的列的sql构建在排除字段后没有可以输出的列");
+				}
+				selectSqlBuilder.deleteCharAt(selectSqlBuilder.length() - 1); /* 删除最后的',' */
+				param.appendSplitKeyColumns(selectSqlBuilder);
+				param.appendOrderColumns(selectSqlBuilder, result);
+				result.setOutputValCorrespondFieldNames(outputFieldNames);
+				result.setOutputFieldPaths(outputFieldPaths);
+				result.setOutputEntities(SqlParameter.generateOutputEntities(outputParams, paramColumns));
+				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr("SELECT ", selectSqlBuilder.toString())));
+			}
+		}),
+		
 		/**
 		 * 查询某些字段使用的sql语句的SELECT语句开头
 		 * 
@@ -198,12 +317,15 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 				StringBuilder selectSqlBuilder = new StringBuilder();
 				Set<String> appearDbFieldNames = new HashSet<String>(outputParamFields.size());
 				List<String[]> outputFieldNames = new ArrayList<String[]>(outputParamFields.size());
+				List<String[]> outputFieldPaths = new ArrayList<String[]>(outputParamFields.size());
 				for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : outputParamFields) {
 					// 拼接select语句中输出的内容
 					selectSqlBuilder.append(param.generateQueryFieldName(paramField));
 					// 把输出的列对应的属性名称按顺序记录下来
 					List<String> dbTableAliasLocatFieldNames = param.generatePassedLocateFieldNames(paramField);
 					outputFieldNames.add(dbTableAliasLocatFieldNames.toArray(new String[dbTableAliasLocatFieldNames.size()]));
+					List<String> passedPaths = paramField.getPassedPaths();
+					outputFieldPaths.add(passedPaths.toArray(new String[passedPaths.size()]));
 					// 如果该字段之前已经出现过了, 那么加上别名
 					String dbFieldName = paramField.getQueryFieldName();
 					if(appearDbFieldNames.contains(dbFieldName)) {
@@ -225,7 +347,9 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 					selectSqlBuilder.append(",");
 				}
 				selectSqlBuilder.deleteCharAt(selectSqlBuilder.length() - 1); /* 删除最后的',' */
+				param.appendOrderColumns(selectSqlBuilder, result);
 				result.setOutputValCorrespondFieldNames(outputFieldNames);
+				result.setOutputFieldPaths(outputFieldPaths);
 				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr("SELECT ", selectSqlBuilder.toString())));
 			}
 		}),
@@ -301,10 +425,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
 				// 构建变化的部分
-				String tableName = param.getQueryName();
-				String tableAlias = param.getQueryAlias();
-				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr(
-						"UPDATE ", tableName," ", tableAlias, " ")));
+				result.addSqlPiece(param.generateTablePiece("UPDATE ", " ", null, null));
 			}
 		}),
 		
@@ -332,15 +453,17 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 						}
 						// 构建set子句的sql语句
 						StringBuilder setSqlBuilder = new StringBuilder("SET");
+						List<SqlBindType> setValTypes = new ArrayList<SqlBindType>(udpateContents.size());
 						for(ISearchable<?> searchField : udpateContents.keySet()) {
 							SqlSearcher<?> fieldSearcher = (SqlSearcher<?>) searchField;
+							setValTypes.add(fieldSearcher.getBindType());
 							ParameterField<SqlParameter, SqlPiece, SqlResult> paramField =
 									fieldSearcher.getBelongParameterField();
 							String fieldName = param.generateQueryFieldName(paramField);
 							setSqlBuilder.append(" ").append(fieldName).append(" = ?").append(",");
 						}
 						setSqlBuilder.deleteCharAt(setSqlBuilder.length() - 1);
-						result.addSqlPiece(new SqlPiece(setSqlBuilder.toString(), udpateContents.values()));
+						result.addSqlPiece(new SqlPiece(setSqlBuilder.toString(), udpateContents.values(), setValTypes));
 					}
 				} else {
 					throw new IllegalAccessException("构建update语句缺失了set字句的额外参数, 无法构建!");
@@ -354,14 +477,11 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		 * @author linjie
 		 * @since 1.0.2
 		 */
-		FROM(new ISqlBuilder() {
+		FROM(new ModifyType[] {ModifyType.QUERY_NAME}, new ISqlBuilder() {
 	
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
-				String tableName = param.getQueryName();
-				String tableAlias = param.getQueryAlias();
-				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr(
-						" FROM ", tableName, " ", tableAlias, " ")));
+				result.addSqlPiece(param.generateTablePiece(" FROM ", " ", null, null));
 			}
 		}),
 		
@@ -371,7 +491,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		 * @author linjie
 		 * @since 1.0.2
 		 */
-		JOIN(new ISqlBuilder() {
+		JOIN(new ModifyType[] {}, new ISqlBuilder() {
 	
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
@@ -388,14 +508,14 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		 * @author linjie
 		 * @since 1.0.2
 		 */
-		WHERE(new ISqlBuilder() {
+		WHERE(new ModifyType[] {}, new ISqlBuilder() {
 	
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
-				List<SqlPiece> whereSqlPieces = param.getSearchEntry(SqlMember.WHERE.name());
-				if(! whereSqlPieces.isEmpty()) {
+				SearchGroup<SqlPiece> searchTree = param.getSearchTree();
+				if(! searchTree.isEmpty()) {
 					result.addSqlPiece(new SqlPiece(" WHERE "));
-					result.addSqlPieces(whereSqlPieces);
+					SqlSearcher.renderSearchTree(searchTree, result);
 				}
 			}
 		}),
@@ -406,7 +526,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		 * @author linjie
 		 * @since 1.0.2
 		 */
-		GROUP_BY(new ISqlBuilder() {
+		GROUP_BY(new ModifyType[] {ModifyType.GROUP_BY, ModifyType.QUERY_NAME}, new ISqlBuilder() {
 	
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
@@ -432,7 +552,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		 * @author linjie
 		 * @since 1.0.2
 		 */
-		ORDER_BY(new ISqlBuilder() {
+		ORDER_BY(new ModifyType[] {ModifyType.ORDER_BY, ModifyType.QUERY_NAME}, new ISqlBuilder() {
 	
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
@@ -444,42 +564,20 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 					}
 					return;
 				}
-				Map<Integer, String> orderBys = new TreeMap<Integer, String>(INT_COMPARATOR);
-				
-				Collection<ParameterField<SqlParameter, SqlPiece, SqlResult>> allParamFields = 
-						param.getParameterContext().getAllParameterFields();
-				for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : allParamFields) {
-					String fieldName = param.generateQueryFieldName(paramField);
-					if(paramField.isOrderBy()) {
-						Integer priority = paramField.getOrderByPriority();
-						// 相同优先级的作concat处理
-						if(orderBys.containsKey(priority)) {
-							String orderByFieldStr = orderBys.get(priority);
-							// 去掉OrderBy语句一定会加上的 ASC或 DESC(包括前面的空格)
-							orderByFieldStr = orderByFieldStr.replaceAll(" ASC| DESC", "");
-							if(! orderByFieldStr.contains("CONCAT")) {
-								// 再重新构建CONCAT语句
-								fieldName = StringUtils.concatAsStr("CONCAT(", orderByFieldStr,", ", fieldName,")");
-							} else {
-								// 去掉CONCAT(...)最右边的括号
-								String ableToAddConcatStr = orderByFieldStr.substring(0, orderByFieldStr.length() - 1);
-								// 拼上新的列名, 不齐右括号
-								fieldName = StringUtils.concatAsStr("", ableToAddConcatStr,", ", fieldName,")");
-							}
-						}
-						String order = paramField.isAsc() ? "ASC" : "DESC";
-						orderBys.put(paramField.getOrderByPriority(), StringUtils.concatAsStr(" ", fieldName, " ", order));
-					}
-				}
-				if(! orderBys.isEmpty()) {
+				List<String[]> orderByItems = SqlParameter.generateOrderBySqlItems(param);
+				if(! orderByItems.isEmpty()) {
 					StringBuilder orderBySqlBuilder = new StringBuilder();
-					for(Integer key : orderBys.keySet()) {
-						orderBySqlBuilder.append(orderBys.get(key));
-						orderBySqlBuilder.append(",");
+					List<SqlOrderBy> sqlOrderBys = new ArrayList<SqlOrderBy>(orderByItems.size());
+					for(int i = 0; i < orderByItems.size(); i ++) {
+						String[] orderByItem = orderByItems.get(i);
+						orderBySqlBuilder.append(" ").append(orderByItem[0]).append(" ").append(orderByItem[1]).append(",");
+						sqlOrderBys.add(new SqlOrderBy(orderByItem[0], "ASC".equals(orderByItem[1]), 
+								StringUtils.concatAsStr(UNION_ORDER_COLUMN_PREFIX, i)));
 					}
 					orderBySqlBuilder.deleteCharAt(orderBySqlBuilder.length() - 1);
 					result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr(
 							"ORDER BY ", orderBySqlBuilder.toString(), " ")));
+					result.setOrderBys(sqlOrderBys);
 				}
 			}
 		}),
@@ -490,7 +588,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		 * @author linjie
 		 * @since 1.0.2
 		 */
-		LIMIT(new ISqlBuilder() {
+		LIMIT(new ModifyType[] {ModifyType.PAGING}, new ISqlBuilder() {
 	
 			@Override
 			public void build(SqlParameter param, SqlResult result, Object... args) throws Exception {
@@ -500,8 +598,9 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 				int page = param.getPage();
 				int count = param.getCount();
 				int start = (page - 1) * count;
-				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr(
-						"LIMIT ", start, ", ", count, " ")));
+				String limitSql = SqlResult.toLimitSql(start, count);
+				result.setLimit(limitSql, start, count);
+				result.addSqlPiece(new SqlPiece(limitSql));
 			}
 		});
 	
@@ -514,7 +613,16 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		private ISqlBuilder builder;
 		
 		/**
-		 * 构造器: 指定当前sql语句成员使用的sql构建器
+		 * 构建结果依赖的搜索内容之外的状态, 为null表示不缓存构建结果
+		 * <br/> 可缓存的成员还会依赖与成员同名的搜索内容
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		private ModifyType[] dependModifyTypes;
+		
+		/**
+		 * 构造器: 指定当前sql语句成员使用的sql构建器, 构建结果不缓存
 		 * 
 		 * @param builder 当前sql语句成员使用的sql构建器
 		 * 
@@ -525,6 +633,20 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 			this.builder = builder;
 		}
 		
+		/**
+		 * 构造器: 指定构建结果依赖的状态和当前sql语句成员使用的sql构建器, 构建结果会缓存
+		 * 
+		 * @param dependModifyTypes 构建结果依赖的搜索内容之外的状态, 不能为null
+		 * @param builder 当前sql语句成员使用的sql构建器
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		private SqlMember(ModifyType[] dependModifyTypes, ISqlBuilder builder) {
+			this.dependModifyTypes = dependModifyTypes;
+			this.builder = builder;
+		}
+		
 		/**
 		 * 获取当前sql语句成员使用的sql构建器
 		 * 
@@ -536,6 +658,38 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		public ISqlBuilder getBuilder() {
 			return builder;
 		}
+		
+		/**
+		 * 判断当前sql语句成员的构建结果是否可以缓存
+		 * 
+		 * @return 可以缓存返回true, 否则返回false
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public boolean isCacheable() {
+			return this.dependModifyTypes != null;
+		}
+		
+		/**
+		 * 获取当前sql语句成员的构建结果依赖的状态最后一次修改的标记
+		 * 
+		 * @param param 进行构建的根搜索参数
+		 * @return 依赖的状态最后一次修改的标记, 与之前获取的值不同则需要重新构建
+		 * 
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		long getModifyStamp(SqlParameter param) {
+			ParameterContext<SqlParameter, SqlPiece, SqlResult> paramContext = param.getParameterContext();
+			long modifyStamp = Math.max(paramContext.getSearchEntryModifyStamp(this.name()), 
+					paramContext.getModifyStamp(this.dependModifyTypes));
+			// 条件保存在搜索条件树中
+			if(this == WHERE) {
+				modifyStamp = Math.max(modifyStamp, paramContext.getSearchTreeModifyStamp());
+			}
+			return modifyStamp;
+		}
 	}
 
 	/**
@@ -668,6 +822,72 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 	 */
 	private boolean isIgnoreOrderBy;
 	
+	/**
+	 * OR条件改写为UNION的方式, 为null表示不改写
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private OrUnionMode orUnionMode;
+	
+	/**
+	 * 是否在查询的输出内容中额外输出排序列
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isOutputOrderColumns;
+	
+	/**
+	 * 列投影模式下不输出的搜索参数字段, 只在根搜索参数中记录
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Set<ParameterField<SqlParameter, SqlPiece, SqlResult>> projectionExcludeFields;
+	
+	/**
+	 * 构建拆分查询的根查询时额外输出的关联字段列, 只在根搜索参数中构建期间记录
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<String> splitKeyColumns;
+	
+	/**
+	 * 可缓存的sql语句成员的构建结果, 只在根搜索参数中记录
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Map<SqlMember, RenderedSqlMember> renderedSqlMembers;
+	
+	/**
+	 * 已构建的sql语句成员, 记录构建时依赖状态的修改标记
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class RenderedSqlMember {
+		
+		private final long modifyStamp;
+		private final SqlResult memberResult;
+		
+		private RenderedSqlMember(long modifyStamp, SqlResult memberResult) {
+			this.modifyStamp = modifyStamp;
+			this.memberResult = memberResult;
+		}
+	}
+	
+	/**
+	 * 分表路由函数缓存池
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Map<Class<? extends IShardRouter>, IShardRouter> shardRouterPool 
+		= new ConcurrentHashMap<Class<? extends IShardRouter>, IShardRouter>();
+	
 	/**
 	 * 搜索参数原型缓存池
 	 * 
@@ -699,6 +919,60 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 		}
 	};
 
+	/**
+	 * 辅助的搜索参数排序比较器, 按路径再按表名排序
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Comparator<SqlParameter> PARAM_PATH_COMPARATOR = new Comparator<SqlParameter>() {
+		@Override
+		public int compare(SqlParameter o1, SqlParameter o2) {
+			int result = o1.getPath().compareTo(o2.getPath());
+			if(result == 0) {
+				result = o1.getQueryName().compareTo(o2.getQueryName());
+			}
+			return result;
+		}
+	};
+	
+	/**
+	 * 辅助的搜索参数排序比较器, 按关联的层级排序, 关联来源在前
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Comparator<SqlParameter> JOIN_DEPTH_COMPARATOR = new Comparator<SqlParameter>() {
+		@Override
+		public int compare(SqlParameter o1, SqlParameter o2) {
+			return this.getJoinDepth(o1) - this.getJoinDepth(o2);
+		}
+		
+		private int getJoinDepth(SqlParameter param) {
+			int depth = 0;
+			for(SqlParameter fromParam = param.getMappedFromParameter(); fromParam != null; 
+					fromParam = fromParam.getMappedFromParameter()) {
+				depth ++;
+			}
+			return depth;
+		}
+	};
+	
+	/**
+	 * 辅助的搜索参数字段排序比较器, 按字段名称排序
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Comparator<ParameterField<SqlParameter, SqlPiece, SqlResult>> FIELD_NAME_COMPARATOR 
+		= new Comparator<ParameterField<SqlParameter, SqlPiece, SqlResult>>() {
+		@Override
+		public int compare(ParameterField<SqlParameter, SqlPiece, SqlResult> o1,
+				ParameterField<SqlParameter, SqlPiece, SqlResult> o2) {
+			return o1.getFieldName().compareTo(o2.getFieldName());
+		}
+	};
+
 	/**
 	 * 根据搜索参数具体实现类字节码获取对应的搜索参数实例
 	 * 
@@ -769,7 +1043,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 			throw new IllegalArgumentException("错误的自定义Where的Sql语句"); 
 		}
 		this.above().and(null);
-		this.addSearchEntry(SqlMember.WHERE.name(), new SqlPiece(where, params));
+		this.addSearchCondition(new SqlPiece(where, params));
 	}
 	
 	/**
@@ -788,6 +1062,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 			throw new IllegalArgumentException("错误的自定义GroupBy的Sql语句"); 
 		}
 		this.isIgnoreGroupBy = true;
+		this.discardRenderedSqlMember(SqlMember.GROUP_BY);
 		this.clearSearchEntry(SqlMember.GROUP_BY.name());
 		this.addSearchEntry(SqlMember.GROUP_BY.name(), new SqlPiece(groupBy));
 	}
@@ -808,6 +1083,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 			throw new IllegalArgumentException("错误的自定义OrderBy的Sql语句"); 
 		}
 		this.isIgnoreOrderBy = true;
+		this.discardRenderedSqlMember(SqlMember.ORDER_BY);
 		this.clearSearchEntry(SqlMember.ORDER_BY.name());
 		this.addSearchEntry(SqlMember.ORDER_BY.name(), new SqlPiece(orderBy));
 	}
@@ -821,6 +1097,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 	 */
 	public void setIgnoreLimit(boolean isIgnoreLimit) {
 		this.isIgnoreLimit = isIgnoreLimit;
+		this.discardRenderedSqlMember(SqlMember.LIMIT);
 	}
 	
 	/**
@@ -832,6 +1109,7 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 	 */
 	public void setIgnoreGroupBy(boolean isIgnoreGroupBy) {
 		this.isIgnoreGroupBy = isIgnoreGroupBy;
+		this.discardRenderedSqlMember(SqlMember.GROUP_BY);
 	}
 	
 	/**
@@ -843,115 +1121,1196 @@ public class SqlParameter extends AbsParameter<SqlParameter, SqlPiece, SqlResult
 	 */
 	public void setIgnoreOrderBy(boolean isIgnoreOrderBy) {
 		this.isIgnoreOrderBy = isIgnoreOrderBy;
+		this.discardRenderedSqlMember(SqlMember.ORDER_BY);
 	}
 	
 	/**
-	 * 根据当前上下文环境生成查询字段名称
+	 * 设置OR条件改写为UNION的方式
+	 * <br/> 只对查询实体, 列, 字段和数量的构建生效, 有分组或自定义排序时不改写; 
+	 * 顶层OR条件的每一项都要有索引字段上可以使用索引的条件, 并且至少涉及两个不同的索引字段才会改写.
+	 * <br/> 查询时每个分支额外输出排序列(别名以{@value #UNION_ORDER_COLUMN_PREFIX}开头), 用于在合并后的结果上排序.
 	 * 
-	 * @param paramField 查询的搜索参数字段
-	 * @return 查询字段名称
+	 * @param orUnionMode 改写的方式, 为null表示不改写(默认)
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
-	String generateQueryFieldName(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField) {
-		return paramField.getContextUniqueFieldName(FieldNameGenerateStrategy.DB_FIELD_NAME.getStrategy());
+	public void setOrUnionMode(OrUnionMode orUnionMode) {
+		this.orUnionMode = orUnionMode;
 	}
 	
 	/**
-	 * 根据当前上下文环境生成查询字段关联路径中所有字段的定位名称
+	 * 设置是否在查询的输出内容中额外输出排序列(别名以{@value #UNION_ORDER_COLUMN_PREFIX}开头)
+	 * <br/> 在多个数据源上执行同一个构建结果再合并时需要开启, 合并按数据库计算的排序列进行, 与各个查询的排序一致;
+	 * 涉及分表的查询总是输出排序列.
 	 * 
-	 * @param paramField 查询的搜索参数字段
-	 * @return 查询字段关联路径中所有字段的定位名称
+	 * @param isOutputOrderColumns 是否输出排序列, 默认不输出
 	 * 
 	 * @author linjie
 	 * @since 1.0.2
 	 */
-	List<String> generatePassedLocateFieldNames(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField) {
-		return paramField.getPassedLocateFieldNames(FieldNameGenerateStrategy.OBJ_FIELD_NAME.getStrategy());
+	public void setOutputOrderColumns(boolean isOutputOrderColumns) {
+		this.isOutputOrderColumns = isOutputOrderColumns;
 	}
 	
-	@Override
-	protected void onJoin(SqlParameter fromParam, JoinType joinType, JoinRelationType relationType,
-			ParameterField<SqlParameter, SqlPiece, SqlResult> fromField,
-			ParameterField<SqlParameter, SqlPiece, SqlResult> toField,
-			SqlResult extraQuery) throws Exception {
-		String mappedFromQueryFieldName = fromParam.generateQueryFieldName(fromField);
-		String mappedToDbTableAlias = this.getQueryAlias();
-		String mappedToDbTableName = this.getQueryName();
-		String mappedToQueryFieldName = this.generateQueryFieldName(toField);
-		// 根据关联类型确定关联sql语句
-		String joinTypeStr = null;
-		switch(joinType) {
-		case INNER_JOIN: default:
-			joinTypeStr = "INNER JOIN";
-			break;
-		case LEFT_JOIN:
-			joinTypeStr = "LEFT OUTER JOIN";
-			break;
-		case RIGHT_JOIN:
-			joinTypeStr = "RIGHT OUTER JOIN";
-			break;
-		}
-		// 根据关系类型确定ON后的条件
-		String onStr = null;
-		switch(relationType) {
-		case EQ: default:
-			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
-					" = ", mappedToQueryFieldName);
-			break;
-		case NOT_EQ:
-			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
-					" <> ", mappedToQueryFieldName);
-			break;
-		case IN:
-			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
-					" IN (", mappedToQueryFieldName, ")");
-			break;
-		case NOT_IN:
-			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
-					" NOT IN (", mappedToQueryFieldName, ")");
-			break;
+	/**
+	 * 在列投影模式({@link BuildMode#SELECT_ENTITY_COLUMNS})下排除当前搜索参数的某些字段
+	 * <br/> 如大字段等不需要读取的列, 重置搜索参数时会清空.
+	 * 
+	 * @param searchFields 要排除的当前搜索参数拥有的搜索字段(包括继承的), 不能为null
+	 * @throws Exception 搜索字段不属于当前搜索参数则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void excludeProjection(ISearchable<?>...searchFields) throws Exception {
+		if(searchFields == null) {
+			throw new IllegalArgumentException("排除输出的搜索字段不能为null");
 		}
-		// 如果有额外查询, 加入ON后的sql语句
-		if(extraQuery != null) {
-			onStr = StringUtils.concatAsStr(onStr, " ", extraQuery.getSql());
+		SqlParameter rootParam = this.getRootParameter();
+		for(ISearchable<?> searchField : searchFields) {
+			ParameterField<SqlParameter, SqlPiece, SqlResult> paramField = 
+					((SqlSearcher<?>) searchField).getBelongParameterField();
+			SqlParameter belongParam = paramField.getBelongParameter();
+			if(! this.equals(belongParam) && ! this.getInheritedFromParameters().contains(belongParam)) {
+				throw new IllegalArgumentException("排除输出的搜索字段必须属于当前搜索参数");
+			}
+			if(rootParam.projectionExcludeFields == null) {
+				rootParam.projectionExcludeFields = new HashSet<ParameterField<SqlParameter, SqlPiece, SqlResult>>();
+			}
+			rootParam.projectionExcludeFields.add(paramField);
 		}
-		this.addSearchEntry(SqlMember.JOIN.name(), new SqlPiece(StringUtils.concatAsStr(joinTypeStr, 
-				" ", mappedToDbTableName, " ", mappedToDbTableAlias, " ON ", onStr, " "),
-				extraQuery.getVals()));
 	}
 	
-	@Override
-	protected SqlResult onJoinExtra() throws Exception {
-		SqlResult result = new SqlResult();
-		List<SqlPiece> whereSqlPieces = this.getSearchEntry(SqlMember.WHERE.name());
-		if(! whereSqlPieces.isEmpty()) {
-			result.addSqlPieces(whereSqlPieces);
-		}
-		return result;
+	/**
+	 * 构建分表执行计划, 每一项是一个分表上可以直接执行的构建结果
+	 * <br/> 条件中有分表键的eq或in(且没有使用or)时只包含命中的分表, 否则包含所有分表.
+	 * <br/> 没有使用分表时只包含{@link #build(Object...)}的结果.
+	 * 
+	 * @param args 与{@link #build(Object...)}的参数一致
+	 * @return 分表执行计划, 不会返回null
+	 * @throws Exception 构建失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<SqlResult> buildShardPlan(Object...args) throws Exception {
+		return this.build(args).getShardResults();
 	}
-
-	@Override
-	protected SqlResult onBuild(Object... args) throws Exception {
-		// 获取构建的模式
-		BuildMode buildMode = BuildMode.SELECT_ENTITIES;
-		if(args != null && args.length > 0) {
+	
+	/**
+	 * 构建拆分查询的执行计划, 输出多个关联的实体时避免一对多的关联把记录相乘
+	 * <br/> 输出的关联搜索参数满足以下条件时拆分出来单独查询: 是使用左外连接和eq关系且没有额外关联条件的默认关联或动态关联
+	 * (内连接会过滤关联来源的记录, 拆分后结果不一致), 自身没有被搜索, 排序或分组, 没有继承和分表, 
+	 * 根查询不再需要关联它, 并且关联来源在根查询中或也被拆分; 其它输出的关联搜索参数仍在根查询中输出.
+	 * <br/> 根查询额外输出拆分查询需要的关联字段列({@link #SPLIT_KEY_COLUMN_PREFIX}开头), 分页作用在根查询的记录上.
+	 * <br/> 构建完成后恢复搜索参数原来的状态.
+	 * 
+	 * @param args 与{@link #build(Object...)}的参数一致, 构建模式只能是{@link BuildMode#SELECT_ENTITIES}或{@link BuildMode#SELECT_ENTITY_COLUMNS}
+	 * @return 拆分查询的执行计划, 没有可以拆分的关联时只有根查询
+	 * @throws Exception 构建模式不支持, 不是根搜索参数或构建失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlSplitPlan buildSplitPlan(Object...args) throws Exception {
+		BuildMode buildMode = BuildMode.SELECT_ENTITIES;
+		if(args != null && args.length > 0) {
 			if(!(args[0] instanceof BuildMode)) {
 				throw new IllegalArgumentException("选择的获取结果类型无效, 必须为SqlParameter.BuildMode常量的一项.");
 			}
 			buildMode = (BuildMode) args[0];
 		}
-		SqlResult result = buildMode.build(this, args);
+		if(buildMode != BuildMode.SELECT_ENTITIES && buildMode != BuildMode.SELECT_ENTITY_COLUMNS) {
+			throw new IllegalArgumentException("拆分查询只支持获取实体的构建模式");
+		}
+		ParameterContext<SqlParameter, SqlPiece, SqlResult> paramContext = this.getParameterContext();
+		SearchMark mark = this.mark();
+		try {
+			// 根搜索参数总是输出, 先设置输出使继承的父级搜索参数完成关联
+			this.setAllMyFieldOutput(true);
+			List<SqlParameter> splitParams = new ArrayList<SqlParameter>();
+			for(SqlParameter outputParam : paramContext.getAllOutputParameters()) {
+				if(outputParam.isSplittable()) {
+					splitParams.add(outputParam);
+				}
+			}
+			Collections.sort(splitParams, JOIN_DEPTH_COMPARATOR);
+			// 从最深的开始取消拆分的搜索参数的输出, 仍然需要关联或关联来源不可用的不拆分, 重新尝试直到稳定; 
+			// 字段的输出可能由关联来源的字段代表, 最后取消的是代表字段时不会回滚关联, 所以再取消一次
+			while(true) {
+				for(int pass = 0; pass < 2; pass ++) {
+					for(int i = splitParams.size() - 1; i >= 0; i --) {
+						splitParams.get(i).setAllMyFieldOutput(false);
+					}
+				}
+				Set<SqlParameter> usableParams = Collections.newSetFromMap(new IdentityHashMap<SqlParameter, Boolean>());
+				usableParams.addAll(paramContext.getAllJoinedParameters());
+				List<SqlParameter> stableSplitParams = new ArrayList<SqlParameter>(splitParams.size());
+				for(SqlParameter splitParam : splitParams) {
+					if(! usableParams.contains(splitParam) && usableParams.contains(splitParam.getMappedFromParameter())) {
+						stableSplitParams.add(splitParam);
+						usableParams.add(splitParam);
+					}
+				}
+				if(stableSplitParams.size() == splitParams.size()) {
+					break;
+				}
+				this.rollbackTo(mark);
+				this.setAllMyFieldOutput(true);
+				splitParams = stableSplitParams;
+			}
+			// 关联字段列: 关联来源在根查询中的由根查询输出, 否则由关联来源的拆分查询输出
+			Map<SqlParameter, Integer> splitIndexes = new IdentityHashMap<SqlParameter, Integer>();
+			List<Integer> fromIndexes = new ArrayList<Integer>(splitParams.size());
+			List<List<String>> splitKeyColumnsList = new ArrayList<List<String>>(splitParams.size());
+			List<String> rootKeyColumns = new ArrayList<String>();
+			for(int i = 0; i < splitParams.size(); i ++) {
+				SqlParameter splitParam = splitParams.get(i);
+				SqlParameter fromParam = splitParam.getMappedFromParameter();
+				String keyColumnSql = StringUtils.concatAsStr(fromParam.generateQueryFieldName(splitParam.getMappedFromField()),
+						" AS ", SPLIT_KEY_COLUMN_PREFIX, "from_", i);
+				Integer fromIndex = splitIndexes.get(fromParam);
+				if(fromIndex == null) {
+					rootKeyColumns.add(keyColumnSql);
+					fromIndexes.add(-1);
+				} else {
+					splitKeyColumnsList.get(fromIndex).add(keyColumnSql);
+					fromIndexes.add(fromIndex);
+				}
+				splitIndexes.put(splitParam, i);
+				splitKeyColumnsList.add(new ArrayList<String>());
+			}
+			SqlResult rootResult;
+			this.splitKeyColumns = rootKeyColumns;
+			try {
+				rootResult = this.build(args);
+			} finally {
+				this.splitKeyColumns = null;
+			}
+			List<SqlSplitPlan.SplitJoin> splitJoins = new ArrayList<SqlSplitPlan.SplitJoin>(splitParams.size());
+			for(int i = 0; i < splitParams.size(); i ++) {
+				splitJoins.add(splitParams.get(i).buildSplitJoin(buildMode, this.projectionExcludeFields, 
+						i, fromIndexes.get(i), splitKeyColumnsList.get(i)));
+			}
+			return new SqlSplitPlan(rootResult, splitJoins);
+		} finally {
+			this.rollbackTo(mark);
+			this.releaseMark(mark);
+		}
+	}
+	
+	/**
+	 * 判断当前搜索参数作为输出的关联搜索参数时能否拆分出来单独查询
+	 * 
+	 * @return 可以拆分返回true, 否则返回false
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isSplittable() {
+		if(this.getMappedFromParameter() == null || this.isInheritJoinParameter() || this.getMappedJoinType() != JoinType.LEFT_JOIN
+				|| this.getMappedRelationType() != JoinRelationType.EQ || this.hasMappedExtraQuery()) {
+			return false;
+		}
+		if(! this.getInheritedFromParameters().isEmpty() || this.getShardTableMeta() != null || this.hasFieldSearched()) {
+			return false;
+		}
+		for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : this.getMyParameterFields()) {
+			if(paramField.isOrderBy() || paramField.isGroupBy()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * 构建当前搜索参数拆分出来的查询
+	 * 
+	 * @param buildMode 构建的模式
+	 * @param excludeFields 列投影模式下不输出的搜索参数字段, 可以为null
+	 * @param index 拆分查询在计划中的位置
+	 * @param fromIndex 关联来源所在的拆分查询的位置, 关联来源在根查询中为-1
+	 * @param keyColumns 下一级拆分查询需要的关联字段列
+	 * @return 拆分出来的查询
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlSplitPlan.SplitJoin buildSplitJoin(BuildMode buildMode, 
+			Set<ParameterField<SqlParameter, SqlPiece, SqlResult>> excludeFields, 
+			int index, int fromIndex, List<String> keyColumns) {
+		StringBuilder sqlBuilder = new StringBuilder("SELECT ");
+		List<String[]> outputFieldNames = null;
+		List<String[]> outputFieldPaths = null;
+		if(buildMode == BuildMode.SELECT_ENTITIES) {
+			sqlBuilder.append(this.getQueryAlias()).append(".*,");
+		} else {
+			outputFieldNames = new ArrayList<String[]>();
+			outputFieldPaths = new ArrayList<String[]>();
+			SqlParameter.appendEntityColumns(this, excludeFields, sqlBuilder, outputFieldNames, outputFieldPaths, null);
+		}
+		String keyQueryFieldName = this.generateQueryFieldName(this.getMappedField());
+		String keyColumn = StringUtils.concatAsStr(SPLIT_KEY_COLUMN_PREFIX, "to_", index);
+		sqlBuilder.append(keyQueryFieldName).append(" AS ").append(keyColumn);
+		for(String keyColumnSql : keyColumns) {
+			sqlBuilder.append(",").append(keyColumnSql);
+		}
+		sqlBuilder.append(" FROM ").append(this.getQueryName()).append(" ").append(this.getQueryAlias())
+			.append(" WHERE ").append(keyQueryFieldName).append(" IN (");
+		return new SqlSplitPlan.SplitJoin(this.getPath(), fromIndex, 
+				StringUtils.concatAsStr(SPLIT_KEY_COLUMN_PREFIX, "from_", index), keyColumn, sqlBuilder.toString(), 
+				Collections.singleton(this.getQueryName()), outputFieldNames, outputFieldPaths);
+	}
+	
+	/**
+	 * 在SELECT语句的输出内容后追加构建拆分查询的根查询时需要的关联字段列
+	 * 
+	 * @param selectSqlBuilder SELECT语句的输出内容
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void appendSplitKeyColumns(StringBuilder selectSqlBuilder) {
+		if(this.splitKeyColumns != null) {
+			for(String keyColumnSql : this.splitKeyColumns) {
+				selectSqlBuilder.append(",").append(keyColumnSql);
+			}
+		}
+	}
+	
+	/**
+	 * 在SELECT语句的输出内容后追加排序列, 只在开启了排序列输出或者涉及分表时追加
+	 * <br/> 合并多个查询结果时按这些列排序, 比较的是数据库计算的排序值, 相同优先级的CONCAT排序项也作为一列.
+	 * 
+	 * @param selectSqlBuilder SELECT语句的输出内容
+	 * @param result 构建结果, 追加后标记为输出了排序列
+	 * @throws Exception 生成排序项失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void appendOrderColumns(StringBuilder selectSqlBuilder, SqlResult result) throws Exception {
+		if(this.isIgnoreOrderBy) {
+			return;
+		}
+		boolean isOutputOrderColumns = this.isOutputOrderColumns;
+		if(! isOutputOrderColumns) {
+			for(SqlParameter joinedParam : this.getParameterContext().getAllJoinedParameters()) {
+				if(joinedParam.getShardTableMeta() != null) {
+					isOutputOrderColumns = true;
+					break;
+				}
+			}
+		}
+		if(! isOutputOrderColumns) {
+			return;
+		}
+		List<String[]> orderByItems = SqlParameter.generateOrderBySqlItems(this);
+		for(int i = 0; i < orderByItems.size(); i ++) {
+			selectSqlBuilder.append(", ").append(orderByItems.get(i)[0]).append(" AS ").append(UNION_ORDER_COLUMN_PREFIX).append(i);
+		}
+		if(! orderByItems.isEmpty()) {
+			result.setOrderColumnsOutput(true);
+		}
+	}
+	
+	/**
+	 * 判断搜索参数字段是否是当前搜索参数的分表键
+	 * 
+	 * @param paramField 判断的搜索参数字段
+	 * @return 是分表键返回true, 否则返回false
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	boolean isShardKeyField(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField) {
+		TableMeta tableMeta = this.getShardTableMeta();
+		return tableMeta != null && tableMeta.shardKey().equals(paramField.getFieldName());
+	}
+	
+	/**
+	 * 判断搜索参数字段是否是当前搜索参数的主键
+	 * 
+	 * @param paramField 判断的搜索参数字段
+	 * @return 是主键返回true, 否则返回false
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	boolean isPrimaryKeyField(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField) {
+		TableMeta tableMeta = this.getClass().getAnnotation(TableMeta.class);
+		return tableMeta != null && ! tableMeta.primaryKey().isEmpty() 
+				&& tableMeta.primaryKey().equals(paramField.getFieldName());
+	}
+	
+	/**
+	 * 获取当前搜索参数的分表配置
+	 * 
+	 * @return 当前搜索参数的表配置, 没有配置分表则返回null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private TableMeta getShardTableMeta() {
+		TableMeta tableMeta = this.getClass().getAnnotation(TableMeta.class);
+		if(tableMeta == null || tableMeta.shardKey().isEmpty() || tableMeta.shardCount() <= 0) {
+			return null;
+		}
+		return tableMeta;
+	}
+	
+	/**
+	 * 获取分表键的查询字段名称(数据库列名)
+	 * 
+	 * @return 分表键的数据库列名, 没有配置分表或找不到分表键字段则返回null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String getShardKeyQueryFieldName() {
+		TableMeta tableMeta = this.getShardTableMeta();
+		if(tableMeta == null) {
+			return null;
+		}
+		List<SqlParameter> fieldOwnerParams = new ArrayList<SqlParameter>(this.getInheritedFromParameters());
+		fieldOwnerParams.add(0, this);
+		for(SqlParameter fieldOwnerParam : fieldOwnerParams) {
+			for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : fieldOwnerParam.getMyParameterFields()) {
+				if(tableMeta.shardKey().equals(paramField.getFieldName())) {
+					return paramField.getQueryFieldName();
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 判断当前分表搜索参数是否通过分表键等于分表键的条件关联到另一个分表搜索参数上
+	 * <br/> 这样关联的两个分表的记录一定在同一个分表位置上, 可以使用相同的分表位置关联.
+	 * 
+	 * @param shardParams 表别名对应的出现在sql语句中的分表搜索参数
+	 * @return 是则返回true, 否则返回false
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isJoinedOnShardKey(Map<String, SqlParameter> shardParams) {
+		SqlParameter fromParam = this.getMappedFromParameter();
+		if(fromParam == null || this.getMappedRelationType() != JoinRelationType.EQ) {
+			return false;
+		}
+		fromParam = shardParams.get(fromParam.getQueryAlias());
+		if(fromParam == null) {
+			return false;
+		}
+		String shardKey = this.getShardKeyQueryFieldName();
+		String fromShardKey = fromParam.getShardKeyQueryFieldName();
+		return shardKey != null && fromShardKey != null
+				&& shardKey.equals(this.getMappedField().getQueryFieldName())
+				&& fromShardKey.equals(this.getMappedFromField().getQueryFieldName());
+	}
+	
+	/**
+	 * 对构建结果进行分表路由, 在构建结果记录的表名位置渲染分表的物理表名
+	 * <br/> 出现在sql语句中的分表需要使用相同的分表方式, 并且都通过分表键等于分表键的条件关联在一起,
+	 * 这样才能在同一个分表位置上进行关联.
+	 * 
+	 * @param result 使用逻辑表名的构建结果
+	 * @return 命中的各个分表上的构建结果, 没有使用分表则返回null
+	 * @throws Exception 分表方式不一致或分表之间没有通过分表键关联则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SqlResult> routeShards(SqlResult result) throws Exception {
+		List<SqlParameter> tableParams = result.getShardTableParams();
+		if(tableParams.isEmpty()) {
+			return null;
+		}
+		// sql语句片段可能是分叉前添加的, 记录的是被分叉的搜索参数, 所以按别名对应到当前的搜索参数
+		Map<String, SqlParameter> aliasParams = new HashMap<String, SqlParameter>();
+		for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : this.getParameterContext().getAllParameterFields()) {
+			SqlParameter param = paramField.getBelongParameter();
+			aliasParams.put(param.getQueryAlias(), param);
+		}
+		TableMeta usingShardMeta = null;
+		Map<String, SqlParameter> shardParams = new LinkedHashMap<String, SqlParameter>();
+		for(SqlParameter tableParam : tableParams) {
+			SqlParameter param = aliasParams.get(tableParam.getQueryAlias());
+			if(param == null) {
+				param = tableParam;
+			}
+			TableMeta shardMeta = param.getShardTableMeta();
+			if(usingShardMeta == null) {
+				usingShardMeta = shardMeta;
+			} else if(usingShardMeta.shardCount() != shardMeta.shardCount() 
+					|| ! usingShardMeta.shardRouter().equals(shardMeta.shardRouter())) {
+				throw new IllegalArgumentException(String.format(
+						"关联的分表%s与%s的分表方式不一致, 无法在同一个分表位置上关联", 
+						param.getQueryName(), this.getQueryName()));
+			}
+			shardParams.put(param.getQueryAlias(), param);
+		}
+		// 只能有一个分表不是通过分表键关联到其它分表上的, 否则不同分表位置上的记录也可能关联
+		SqlParameter anchorParam = null;
+		for(SqlParameter shardParam : shardParams.values()) {
+			if(shardParam.isJoinedOnShardKey(shardParams)) {
+				continue;
+			}
+			if(anchorParam != null) {
+				throw new IllegalArgumentException(String.format(
+						"分表%s与%s没有通过分表键关联, 无法在同一个分表位置上关联", 
+						shardParam.getQueryName(), anchorParam.getQueryName()));
+			}
+			anchorParam = shardParam;
+		}
+		IShardRouter router = SqlParameter.getShardRouter(usingShardMeta.shardRouter());
+		int shardCount = usingShardMeta.shardCount();
+		// 条件中只有and关系时, 取所有分表键条件命中的分表的交集
+		Set<Integer> shardIndexes = null;
+		SearchGroup<SqlPiece> searchTree = this.getSearchTree();
+		if(! searchTree.hasOrRelation()) {
+			for(SearchCondition<SqlPiece> condition : searchTree.getAllConditions()) {
+				for(SqlPiece whereSqlPiece : condition.getContents()) {
+					SqlParameter shardRouteParam = whereSqlPiece.getShardRouteParam();
+					if(shardRouteParam == null || ! shardParams.containsKey(shardRouteParam.getQueryAlias())) {
+						continue;
+					}
+					Set<Integer> pieceShardIndexes = new TreeSet<Integer>();
+					for(Object shardKeyVal : whereSqlPiece.getVals()) {
+						pieceShardIndexes.add(router.route(shardKeyVal, shardCount));
+					}
+					if(shardIndexes == null) {
+						shardIndexes = pieceShardIndexes;
+					} else {
+						shardIndexes.retainAll(pieceShardIndexes);
+					}
+				}
+			}
+		}
+		if(shardIndexes == null) {
+			shardIndexes = new TreeSet<Integer>();
+			for(int i = 0; i < shardCount; i ++) {
+				shardIndexes.add(i);
+			}
+		}
+		// 生成各个分表上的构建结果
+		List<SqlResult> shardResults = new ArrayList<SqlResult>(shardIndexes.size());
+		for(Integer shardIndex : shardIndexes) {
+			Map<String, String> shardTableNames = new HashMap<String, String>();
+			for(SqlParameter shardParam : shardParams.values()) {
+				shardTableNames.put(shardParam.getQueryAlias(), router.getShardTableName(shardParam.getQueryName(), shardIndex));
+			}
+			shardResults.add(result.toShardResult(shardTableNames, shardIndex));
+		}
+		return shardResults;
+	}
+	
+	/**
+	 * 生成包含当前搜索参数的表名和别名的sql语句片段, 分表时记录表名的位置以便路由时渲染物理表名
+	 * 
+	 * @param head 表名前的sql语句
+	 * @param tail 别名后的sql语句
+	 * @param vals 占位符值, 可以为null
+	 * @param valTypes 占位符值的绑定类型, 可以为null
+	 * @return sql语句片段
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlPiece generateTablePiece(String head, String tail, Collection<Object> vals, List<SqlBindType> valTypes) {
+		SqlPiece tablePiece = new SqlPiece(StringUtils.concatAsStr(head, this.getQueryName(), " ", this.getQueryAlias(), tail), 
+				vals, valTypes);
+		if(this.getShardTableMeta() != null) {
+			tablePiece.setTableSlot(this, head.length());
+		}
+		return tablePiece;
+	}
+	
+	/**
+	 * 获取分表路由函数实例, 同一个实现类共用一个实例
+	 * 
+	 * @param routerClass 分表路由函数实现类
+	 * @return 分表路由函数实例
+	 * @throws Exception 实例化失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static IShardRouter getShardRouter(Class<? extends IShardRouter> routerClass) throws Exception {
+		IShardRouter router = shardRouterPool.get(routerClass);
+		if(router == null) {
+			router = routerClass.newInstance();
+			shardRouterPool.put(routerClass, router);
+		}
+		return router;
+	}
+	
+	/**
+	 * 根据当前上下文环境生成查询字段名称
+	 * 
+	 * @param paramField 查询的搜索参数字段
+	 * @return 查询字段名称
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	String generateQueryFieldName(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField) {
+		return paramField.getContextUniqueFieldName(FieldNameGenerateStrategy.DB_FIELD_NAME.getStrategy());
+	}
+	
+	/**
+	 * 根据当前上下文环境生成查询字段关联路径中所有字段的定位名称
+	 * 
+	 * @param paramField 查询的搜索参数字段
+	 * @return 查询字段关联路径中所有字段的定位名称
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	List<String> generatePassedLocateFieldNames(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField) {
+		return paramField.getPassedLocateFieldNames(FieldNameGenerateStrategy.OBJ_FIELD_NAME.getStrategy());
+	}
+	
+	@Override
+	protected void onJoin(SqlParameter fromParam, JoinType joinType, JoinRelationType relationType,
+			ParameterField<SqlParameter, SqlPiece, SqlResult> fromField,
+			ParameterField<SqlParameter, SqlPiece, SqlResult> toField,
+			SqlResult extraQuery) throws Exception {
+		String mappedFromQueryFieldName = fromParam.generateQueryFieldName(fromField);
+		String mappedToQueryFieldName = this.generateQueryFieldName(toField);
+		// 根据关联类型确定关联sql语句
+		String joinTypeStr = null;
+		switch(joinType) {
+		case INNER_JOIN: default:
+			joinTypeStr = "INNER JOIN";
+			break;
+		case LEFT_JOIN:
+			joinTypeStr = "LEFT OUTER JOIN";
+			break;
+		case RIGHT_JOIN:
+			joinTypeStr = "RIGHT OUTER JOIN";
+			break;
+		}
+		// 根据关系类型确定ON后的条件
+		String onStr = null;
+		switch(relationType) {
+		case EQ: default:
+			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
+					" = ", mappedToQueryFieldName);
+			break;
+		case NOT_EQ:
+			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
+					" <> ", mappedToQueryFieldName);
+			break;
+		case IN:
+			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
+					" IN (", mappedToQueryFieldName, ")");
+			break;
+		case NOT_IN:
+			onStr = StringUtils.concatAsStr(mappedFromQueryFieldName,
+					" NOT IN (", mappedToQueryFieldName, ")");
+			break;
+		}
+		// 如果有额外查询, 加入ON后的sql语句
+		if(extraQuery != null) {
+			onStr = StringUtils.concatAsStr(onStr, " ", extraQuery.getSql());
+		}
+		List<Object> extraVals = null;
+		List<SqlBindType> extraValTypes = null;
+		if(extraQuery != null && extraQuery.getVals() != null) {
+			extraVals = Arrays.asList(extraQuery.getVals());
+			extraValTypes = Arrays.asList(extraQuery.getValTypes());
+		}
+		this.addSearchEntry(SqlMember.JOIN.name(), this.generateTablePiece(StringUtils.concatAsStr(joinTypeStr, " "), 
+				StringUtils.concatAsStr(" ON ", onStr, " "), extraVals, extraValTypes));
+	}
+	
+	@Override
+	protected SqlResult onJoinExtra() throws Exception {
+		SqlResult result = new SqlResult();
+		SqlSearcher.renderSearchTree(this.getSearchTree(), result);
+		return result;
+	}
+
+	@Override
+	protected SqlResult onBuild(Object... args) throws Exception {
+		// 获取构建的模式
+		BuildMode buildMode = BuildMode.SELECT_ENTITIES;
+		if(args != null && args.length > 0) {
+			if(!(args[0] instanceof BuildMode)) {
+				throw new IllegalArgumentException("选择的获取结果类型无效, 必须为SqlParameter.BuildMode常量的一项.");
+			}
+			buildMode = (BuildMode) args[0];
+		}
+		SqlResult result = this.buildOrUnion(buildMode, args);
+		if(result == null) {
+			result = buildMode.build(this, args);
+		}
 		result.addSqlPiece(new SqlPiece(";"));
+		this.setResultTableNames(buildMode, result, args);
+		this.setResultPrimaryKeyVals(buildMode, result);
+		// 有分表的进行分表路由, 只命中一个分表直接返回该分表上的结果
+		List<SqlResult> shardResults = this.routeShards(result);
+		if(shardResults != null) {
+			if(shardResults.size() == 1) {
+				return shardResults.get(0);
+			}
+			result.setShardResults(shardResults);
+		}
 		return result;
 	}
 	
+	/**
+	 * 设置构建结果涉及的表名称和修改的表名称
+	 * 
+	 * @param buildMode 构建的模式
+	 * @param result 构建结果
+	 * @param args 搜索参数{@link SqlParameter#build(Object...)}方法传入的可选参数
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void setResultTableNames(BuildMode buildMode, SqlResult result, Object...args) {
+		Set<String> tableNames = new LinkedHashSet<String>();
+		for(SqlParameter joinedParam : this.getParameterContext().getAllJoinedParameters()) {
+			tableNames.add(joinedParam.getQueryName());
+		}
+		tableNames.addAll(result.getChildQueryTableNames());
+		SqlMarker marker = null;
+		if(args.length > 1 && args[1] instanceof SqlMarker) {
+			marker = (SqlMarker) args[1];
+		}
+		Set<String> writeTableNames = null;
+		if(buildMode == BuildMode.DELETE) {
+			writeTableNames = new LinkedHashSet<String>();
+			List<SqlParameter> deleteParams = marker == null ? null : marker.getDeleteContents();
+			if(deleteParams != null && ! deleteParams.isEmpty()) {
+				for(SqlParameter deleteParam : deleteParams) {
+					writeTableNames.add(deleteParam.getQueryName());
+				}
+			} else {
+				for(SqlParameter inheritedFromParam : this.getInheritedFromParameters()) {
+					writeTableNames.add(inheritedFromParam.getQueryName());
+				}
+				writeTableNames.add(this.getQueryName());
+			}
+		} else if(buildMode == BuildMode.UPDATE && marker != null) {
+			writeTableNames = new LinkedHashSet<String>();
+			for(ISearchable<?> searchField : marker.getUpdateContents().keySet()) {
+				writeTableNames.add(((SqlSearcher<?>) searchField).getBelongParameterField()
+						.getBelongParameter().getQueryName());
+			}
+		}
+		result.setTableNames(tableNames, writeTableNames);
+	}
+	
+	/**
+	 * 构建结果只按当前搜索参数的主键的eq或in条件定位记录时, 在构建结果中记录主键值
+	 * <br/> 查询需要是只输出当前搜索参数的实体的查询, 没有关联, 分组和排序, 分页不会截断结果; 
+	 * UPDATE和DELETE需要没有关联. 分表不记录.
+	 * 
+	 * @param buildMode 构建的模式
+	 * @param result 构建结果
+	 * @throws Exception 获取搜索内容失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void setResultPrimaryKeyVals(BuildMode buildMode, SqlResult result) throws Exception {
+		TableMeta tableMeta = this.getClass().getAnnotation(TableMeta.class);
+		if(tableMeta == null || tableMeta.primaryKey().isEmpty() || this.getShardTableMeta() != null) {
+			return;
+		}
+		boolean isQuery = buildMode == BuildMode.SELECT_ENTITIES || buildMode == BuildMode.SELECT_ENTITY_COLUMNS;
+		if(! isQuery && buildMode != BuildMode.UPDATE && buildMode != BuildMode.DELETE) {
+			return;
+		}
+		ParameterContext<SqlParameter, SqlPiece, SqlResult> paramContext = this.getParameterContext();
+		if(paramContext.getAllJoinedParameters().size() != 1 || ! this.getSearchEntry(SqlMember.JOIN.name()).isEmpty()) {
+			return;
+		}
+		// 只有一个主键的eq或in条件, 条件的sql语句片段可能是分叉前添加的, 所以按别名匹配
+		List<SearchCondition<SqlPiece>> conditions = this.getSearchTree().getAllConditions();
+		if(conditions.size() != 1 || conditions.get(0).getContents().size() != 1) {
+			return;
+		}
+		SqlPiece conditionSqlPiece = conditions.get(0).getContents().get(0);
+		SqlParameter primaryKeyParam = conditionSqlPiece.getPrimaryKeyParam();
+		if(primaryKeyParam == null || primaryKeyParam.getClass() != this.getClass()
+				|| ! primaryKeyParam.getQueryAlias().equals(this.getQueryAlias())) {
+			return;
+		}
+		ParameterField<SqlParameter, SqlPiece, SqlResult> primaryKeyField = null;
+		for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : this.getMyParameterFields()) {
+			if(this.isPrimaryKeyField(paramField)) {
+				primaryKeyField = paramField;
+				break;
+			}
+		}
+		if(primaryKeyField == null) {
+			return;
+		}
+		String primaryKeyColumn = null;
+		if(isQuery) {
+			// 查询中只有主键条件的占位符, 才能把主键条件改写为其它主键值
+			if(conditionSqlPiece.getVals().size() != result.getVals().length) {
+				return;
+			}
+			Collection<SqlParameter> outputParams = paramContext.getAllOutputParameters();
+			if(outputParams.size() != 1 || outputParams.iterator().next() != this) {
+				return;
+			}
+			if(this.isIgnoreGroupBy ? ! this.getSearchEntry(SqlMember.GROUP_BY.name()).isEmpty()
+					: ! SqlParameter.generateGroupBySqlStr(this).isEmpty()) {
+				return;
+			}
+			if(this.isIgnoreOrderBy ? ! this.getSearchEntry(SqlMember.ORDER_BY.name()).isEmpty()
+					: ! SqlParameter.generateOrderBySqlItems(this).isEmpty()) {
+				return;
+			}
+			if(! this.isIgnoreLimit && (this.getPage() != 1 || this.getCount() < conditionSqlPiece.getVals().size())) {
+				return;
+			}
+			if(buildMode == BuildMode.SELECT_ENTITIES) {
+				primaryKeyColumn = primaryKeyField.getQueryFieldName();
+			} else {
+				if(this.projectionExcludeFields != null && this.projectionExcludeFields.contains(primaryKeyField)) {
+					return;
+				}
+				primaryKeyColumn = StringUtils.concatAsStr(this.getQueryAlias(), "_", primaryKeyField.getQueryFieldName());
+			}
+		}
+		result.setPrimaryKeyVals(conditionSqlPiece.getSqlPart(), 
+				FieldNameGenerateStrategy.DB_FIELD_NAME.getStrategy().generate(this, primaryKeyField),
+				primaryKeyColumn, conditionSqlPiece.getValTypes(), conditionSqlPiece.getVals());
+	}
+	
 	@Override
 	protected void onReset(Object... args) throws Exception {
 		this.isIgnoreGroupBy = false;
 		this.isIgnoreOrderBy = false;
 		this.isIgnoreLimit = false;
+		this.orUnionMode = null;
+		this.isOutputOrderColumns = false;
+		this.projectionExcludeFields = null;
+		this.renderedSqlMembers = null;
+	}
+	
+	@Override
+	public SqlParameter clone() throws CloneNotSupportedException {
+		SqlParameter cloneParam = super.clone();
+		// 构建结果缓存不能与原型共用
+		cloneParam.renderedSqlMembers = null;
+		return cloneParam;
+	}
+	
+	@Override
+	protected void onFork(SqlParameter fromParam, 
+			Map<ParameterField<SqlParameter, SqlPiece, SqlResult>, ParameterField<SqlParameter, SqlPiece, SqlResult>> forkParamFields) 
+					throws Exception {
+		// 构建结果缓存不能共用, 排除输出的字段换成分叉出来的
+		this.renderedSqlMembers = null;
+		if(fromParam.projectionExcludeFields != null) {
+			this.projectionExcludeFields = new HashSet<ParameterField<SqlParameter, SqlPiece, SqlResult>>();
+			for(ParameterField<SqlParameter, SqlPiece, SqlResult> excludeField : fromParam.projectionExcludeFields) {
+				ParameterField<SqlParameter, SqlPiece, SqlResult> forkField = forkParamFields.get(excludeField);
+				if(forkField != null) {
+					this.projectionExcludeFields.add(forkField);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 使用sql语句成员构建到SqlResult结果中
+	 * <br/> 可缓存的成员在依赖的状态没有修改时直接使用上次的构建结果, 否则重新构建并缓存.
+	 * 
+	 * @param sqlMember 使用的sql语句成员
+	 * @param result 构建到的SqlResult结果
+	 * @param args 搜索参数{@link SqlParameter#build(Object...)}方法传入的可选参数
+	 * @throws Exception 构建失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void buildSqlMember(SqlMember sqlMember, SqlResult result, Object...args) throws Exception {
+		if(! sqlMember.isCacheable()) {
+			sqlMember.getBuilder().build(this, result, args);
+			return;
+		}
+		// 在构建前获取修改标记, 构建过程中发生的修改会在下次构建时生效
+		long modifyStamp = sqlMember.getModifyStamp(this);
+		RenderedSqlMember renderedSqlMember = null;
+		if(this.renderedSqlMembers != null) {
+			renderedSqlMember = this.renderedSqlMembers.get(sqlMember);
+		}
+		if(renderedSqlMember == null || renderedSqlMember.modifyStamp != modifyStamp) {
+			SqlResult memberResult = new SqlResult();
+			sqlMember.getBuilder().build(this, memberResult, args);
+			renderedSqlMember = new RenderedSqlMember(modifyStamp, memberResult);
+			if(this.renderedSqlMembers == null) {
+				this.renderedSqlMembers = new EnumMap<SqlMember, RenderedSqlMember>(SqlMember.class);
+			}
+			this.renderedSqlMembers.put(sqlMember, renderedSqlMember);
+		}
+		result.appendResult(renderedSqlMember.memberResult);
+	}
+	
+	/**
+	 * 按OR条件改写为UNION的方式构建结果
+	 * <br/> 顶层OR条件的每一项作为一个分支, 分支内使用相同的FROM和关联, 排序和分页先下推到每个分支(取到当前页结束位置),
+	 * 再在合并后的结果上进行; 构建数量时在合并后的结果上计数.
+	 * 
+	 * @param buildMode 构建的模式
+	 * @param args 搜索参数{@link SqlParameter#build(Object...)}方法传入的可选参数
+	 * @return 改写后的构建结果, 不需要或不能改写则返回null
+	 * @throws Exception 构建失败则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlResult buildOrUnion(BuildMode buildMode, Object...args) throws Exception {
+		if(this.orUnionMode == null) {
+			return null;
+		}
+		SqlMember headMember;
+		switch(buildMode) {
+		case SELECT_ENTITIES:
+			headMember = SqlMember.SELECT_ENTITIES_HEAD;
+			break;
+		case SELECT_ENTITY_COLUMNS:
+			headMember = SqlMember.SELECT_ENTITY_COLUMNS_HEAD;
+			break;
+		case SELECT_FIELDS:
+			headMember = SqlMember.SELECT_FIELDS_HEAD;
+			break;
+		case SELECT_COUNT:
+			headMember = null;
+			break;
+		default:
+			return null;
+		}
+		// 分组和自定义的排序无法在合并后的结果上进行
+		if(this.isIgnoreGroupBy ? ! this.getSearchEntry(SqlMember.GROUP_BY.name()).isEmpty()
+				: ! SqlParameter.generateGroupBySqlStr(this).isEmpty()) {
+			return null;
+		}
+		if(this.isIgnoreOrderBy && ! this.getSearchEntry(SqlMember.ORDER_BY.name()).isEmpty()) {
+			return null;
+		}
+		List<List<SearchNode<SqlPiece>>> orTerms = SqlParameter.splitOrTerms(this.getSearchTree());
+		if(! SqlParameter.isIndexedDisjunction(orTerms)) {
+			return null;
+		}
+		// 各分支共用的部分
+		SqlResult fromResult = new SqlResult();
+		this.buildSqlMember(SqlMember.FROM, fromResult, args);
+		this.buildSqlMember(SqlMember.JOIN, fromResult, args);
+		boolean isCount = headMember == null;
+		boolean isUnionAll = isCount || this.orUnionMode == OrUnionMode.UNION_ALL;
+		SqlResult headResult = new SqlResult();
+		SqlResult orderByResult = new SqlResult();
+		List<String[]> orderByItems = Collections.emptyList();
+		if(isCount) {
+			headResult.addSqlPiece(new SqlPiece("SELECT 1"));
+		} else {
+			this.buildSqlMember(headMember, headResult, args);
+			if(! this.isIgnoreOrderBy) {
+				orderByItems = SqlParameter.generateOrderBySqlItems(this);
+			}
+			this.buildSqlMember(SqlMember.ORDER_BY, orderByResult, args);
+		}
+		boolean hasLimit = ! isCount && ! this.isIgnoreLimit;
+		int start = (this.getPage() - 1) * this.getCount();
+		// 拼接各个分支
+		SqlResult result = new SqlResult();
+		if(isCount) {
+			result.addSqlPiece(new SqlPiece("SELECT COUNT(1) FROM ("));
+		}
+		for(int i = 0; i < orTerms.size(); i ++) {
+			if(i > 0) {
+				result.addSqlPiece(new SqlPiece(isUnionAll ? " UNION ALL " : " UNION "));
+			}
+			result.addSqlPiece(new SqlPiece("("));
+			result.appendResult(headResult);
+			for(int j = 0; ! headResult.isOrderColumnsOutput() && j < orderByItems.size(); j ++) {
+				result.addSqlPiece(new SqlPiece(StringUtils.concatAsStr(", ", orderByItems.get(j)[0], 
+						" AS ", UNION_ORDER_COLUMN_PREFIX, j)));
+			}
+			result.appendResult(fromResult);
+			result.addSqlPiece(new SqlPiece(" WHERE "));
+			SqlSearcher.renderSearchNodes(orTerms.get(i), result);
+			// 排除前面的分支已经匹配的记录, 条件结果为null的记录前面的分支也不会匹配, 所以按不成立处理
+			if(isUnionAll) {
+				for(int j = 0; j < i; j ++) {
+					result.addSqlPiece(new SqlPiece("AND CASE WHEN ( "));
+					SqlSearcher.renderSearchNodes(orTerms.get(j), result);
+					result.addSqlPiece(new SqlPiece(" ) THEN 1 ELSE 0 END = 0 "));
+				}
+			}
+			result.appendResult(orderByResult);
+			if(hasLimit) {
+				result.addSqlPiece(new SqlPiece(SqlResult.toLimitSql(0, start + this.getCount())));
+			}
+			result.addSqlPiece(new SqlPiece(")"));
+		}
+		// 在合并后的结果上计数或排序分页
+		if(isCount) {
+			result.addSqlPiece(new SqlPiece(") sparam_union "));
+			return result;
+		}
+		result.addSqlPiece(new SqlPiece(" "));
+		if(! orderByItems.isEmpty()) {
+			result.setOrderColumnsOutput(true);
+			StringBuilder orderBySqlBuilder = new StringBuilder("ORDER BY");
+			for(int j = 0; j < orderByItems.size(); j ++) {
+				orderBySqlBuilder.append(" ").append(UNION_ORDER_COLUMN_PREFIX).append(j)
+					.append(" ").append(orderByItems.get(j)[1]).append(",");
+			}
+			orderBySqlBuilder.deleteCharAt(orderBySqlBuilder.length() - 1);
+			result.addSqlPiece(new SqlPiece(orderBySqlBuilder.append(" ").toString()));
+		}
+		if(hasLimit) {
+			String limitSql = SqlResult.toLimitSql(start, this.getCount());
+			result.addSqlPiece(new SqlPiece(limitSql));
+			result.setLimit(limitSql, start, this.getCount());
+		}
+		return result;
+	}
+	
+	/**
+	 * 把条件组按顶层的OR逻辑关系拆分为以AND连接的项
+	 * 
+	 * @param group 拆分的条件组
+	 * @return 拆分后的项, 每一项中的节点以AND连接
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static List<List<SearchNode<SqlPiece>>> splitOrTerms(SearchGroup<SqlPiece> group) {
+		List<List<SearchNode<SqlPiece>>> orTerms = new ArrayList<List<SearchNode<SqlPiece>>>();
+		List<SearchNode<SqlPiece>> andTerm = null;
+		List<SearchNode<SqlPiece>> children = group.getChildren();
+		for(int i = 0; i < children.size(); i ++) {
+			SearchNode<SqlPiece> child = children.get(i);
+			if(andTerm == null || (i > 0 && child.getRelation() == Relation.OR)) {
+				andTerm = new ArrayList<SearchNode<SqlPiece>>();
+				orTerms.add(andTerm);
+			}
+			andTerm.add(child);
+		}
+		return orTerms;
+	}
+	
+	/**
+	 * 判断OR条件的各项是否都可以使用索引, 并且至少涉及两个不同的索引字段
+	 * <br/> 只使用同一个索引字段的OR条件数据库本身就可以使用索引, 不需要改写.
+	 * 
+	 * @param orTerms 以OR连接的各项
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean isIndexedDisjunction(List<List<SearchNode<SqlPiece>>> orTerms) {
+		if(orTerms.size() < 2) {
+			return false;
+		}
+		Set<ParameterField<SqlParameter, SqlPiece, SqlResult>> indexedFields = 
+				new HashSet<ParameterField<SqlParameter, SqlPiece, SqlResult>>();
+		for(List<SearchNode<SqlPiece>> andTerm : orTerms) {
+			ParameterField<SqlParameter, SqlPiece, SqlResult> indexedField = null;
+			for(SearchNode<SqlPiece> node : andTerm) {
+				if(node instanceof SearchCondition && isIndexUsable((SearchCondition<SqlPiece>) node)) {
+					indexedField = ((SqlSearcher<?>) ((SearchCondition<SqlPiece>) node).getSearcher()).getSearchParameterField();
+					break;
+				}
+			}
+			if(indexedField == null) {
+				return false;
+			}
+			indexedFields.add(indexedField);
+		}
+		return indexedFields.size() > 1;
+	}
+	
+	/**
+	 * 判断条件是否可以使用索引: 索引字段与值的比较, 模糊匹配不能以通配符开头
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean isIndexUsable(SearchCondition<SqlPiece> condition) {
+		if(! (condition.getSearcher() instanceof SqlSearcher) 
+				|| ! ((SqlSearcher<?>) condition.getSearcher()).isIndexed()) {
+			return false;
+		}
+		List<Object> values = condition.getValues();
+		for(Object value : values) {
+			if(value instanceof ISearchable) {
+				return false;
+			}
+		}
+		switch(condition.getOperator()) {
+		case EQ: case IN: case BETWEEN: case IS_NULL: case IN_CHILD_QUERY:
+		case LESS_THAN: case NOT_LESS_THAN: case GREATER_THAN: case NOT_GREATER_THAN:
+			return true;
+		case LIKE:
+			return values.size() == 1 && values.get(0) instanceof String
+				&& ! ((String) values.get(0)).isEmpty()
+				&& "%_".indexOf(((String) values.get(0)).charAt(0)) < 0;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * 丢弃sql语句成员的构建结果缓存, 在修改了不通过修改标记记录的状态时使用
+	 * 
+	 * @param sqlMember 要丢弃构建结果缓存的sql语句成员
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void discardRenderedSqlMember(SqlMember sqlMember) {
+		if(this.renderedSqlMembers != null) {
+			this.renderedSqlMembers.remove(sqlMember);
+		}
+	}
+	
+	/**
+	 * 解析并生成OrderBy的排序项
+	 * <br/> 按照优先级进行排序, 优先级越高在越前面, 相同优先级的多个字段使用CONCAT进行连接, 排序方向以最后一个字段为准
+	 * 
+	 * @param param 进行构建的根搜索参数
+	 * @return 排序项, 每一项为{排序表达式, ASC或DESC}, 没有排序则返回空列表
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static List<String[]> generateOrderBySqlItems(SqlParameter param) throws Exception {
+		Map<Integer, String[]> orderBys = new TreeMap<Integer, String[]>(INT_COMPARATOR);
+		Collection<ParameterField<SqlParameter, SqlPiece, SqlResult>> allParamFields = 
+				param.getParameterContext().getAllParameterFields();
+		for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : allParamFields) {
+			String fieldName = param.generateQueryFieldName(paramField);
+			if(! paramField.isOrderBy()) {
+				continue;
+			}
+			Integer priority = paramField.getOrderByPriority();
+			String orderByExpr = fieldName;
+			// 相同优先级的作concat处理
+			String[] existOrderByItem = orderBys.get(priority);
+			if(existOrderByItem != null) {
+				if(! existOrderByItem[0].startsWith("CONCAT(")) {
+					orderByExpr = StringUtils.concatAsStr("CONCAT(", existOrderByItem[0], ", ", fieldName, ")");
+				} else {
+					// 去掉CONCAT(...)最右边的括号再拼上新的列名
+					String ableToAddConcatStr = existOrderByItem[0].substring(0, existOrderByItem[0].length() - 1);
+					orderByExpr = StringUtils.concatAsStr(ableToAddConcatStr, ", ", fieldName, ")");
+				}
+			}
+			orderBys.put(priority, new String[] {orderByExpr, paramField.isAsc() ? "ASC" : "DESC"});
+		}
+		return new ArrayList<String[]>(orderBys.values());
+	}
+	
+	/**
+	 * 把搜索参数的列按字段名称排序后追加到SELECT语句的输出内容中, 列别名为"表别名_列名", 每一列后面都带有','
+	 * 
+	 * @param outputParam 输出的搜索参数
+	 * @param excludeFields 不输出的搜索参数字段, 可以为null
+	 * @param selectSqlBuilder SELECT语句的输出内容
+	 * @param outputFieldNames 输出的列对应的属性名称列表
+	 * @param outputFieldPaths 输出的列对应的搜索参数字段路径列表
+	 * @param columns 输出的列的别名列表, 为null则不记录
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static void appendEntityColumns(SqlParameter outputParam, 
+			Set<ParameterField<SqlParameter, SqlPiece, SqlResult>> excludeFields, StringBuilder selectSqlBuilder,
+			List<String[]> outputFieldNames, List<String[]> outputFieldPaths, List<String> columns) {
+		List<ParameterField<SqlParameter, SqlPiece, SqlResult>> columnFields = 
+				new ArrayList<ParameterField<SqlParameter, SqlPiece, SqlResult>>(outputParam.getMyParameterFields());
+		Collections.sort(columnFields, FIELD_NAME_COMPARATOR);
+		for(ParameterField<SqlParameter, SqlPiece, SqlResult> columnField : columnFields) {
+			if(excludeFields != null && excludeFields.contains(columnField)) {
+				continue;
+			}
+			String column = StringUtils.concatAsStr(outputParam.getQueryAlias(), "_", columnField.getQueryFieldName());
+			selectSqlBuilder.append(FieldNameGenerateStrategy.DB_FIELD_NAME.getStrategy().generate(outputParam, columnField))
+				.append(" AS ").append(column).append(",");
+			if(columns != null) {
+				columns.add(column);
+			}
+			outputFieldNames.add(new String[] {
+					FieldNameGenerateStrategy.OBJ_FIELD_NAME.getStrategy().generate(outputParam, columnField)});
+			outputFieldPaths.add(new String[] {columnField.getPath()});
+		}
+	}
+	
+	/**
+	 * 生成列投影模式下输出的实体, 继承的父级搜索参数的列合并到继承终点的实体中
+	 * 
+	 * @param outputParams 输出的搜索参数
+	 * @param paramColumns 输出的搜索参数对应的输出列的别名
+	 * @return 输出的实体列表, 关联来源在前
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static List<SqlOutputEntity> generateOutputEntities(List<SqlParameter> outputParams, 
+			Map<SqlParameter, List<String>> paramColumns) {
+		Map<SqlParameter, List<String>> entityColumns = new IdentityHashMap<SqlParameter, List<String>>();
+		List<SqlParameter> entityParams = new ArrayList<SqlParameter>();
+		for(SqlParameter outputParam : outputParams) {
+			SqlParameter entityParam = outputParam;
+			while(entityParam.isInheritJoinParameter()) {
+				entityParam = entityParam.getMappedFromParameter();
+			}
+			List<String> columns = entityColumns.get(entityParam);
+			if(columns == null) {
+				columns = new ArrayList<String>();
+				entityColumns.put(entityParam, columns);
+				entityParams.add(entityParam);
+			}
+			// 关联字段与被关联字段可能输出相同的列
+			for(String column : paramColumns.get(outputParam)) {
+				if(! columns.contains(column)) {
+					columns.add(column);
+				}
+			}
+		}
+		Collections.sort(entityParams, JOIN_DEPTH_COMPARATOR);
+		List<SqlOutputEntity> outputEntities = new ArrayList<SqlOutputEntity>(entityParams.size());
+		for(SqlParameter entityParam : entityParams) {
+			List<String> columns = entityColumns.get(entityParam);
+			// 主键可能是继承的字段, 被排除输出时没有主键列
+			String primaryKeyColumn = null;
+			TableMeta tableMeta = entityParam.getClass().getAnnotation(TableMeta.class);
+			if(tableMeta != null && ! tableMeta.primaryKey().isEmpty()) {
+				List<SqlParameter> fieldOwnerParams = new ArrayList<SqlParameter>(entityParam.getInheritedFromParameters());
+				fieldOwnerParams.add(0, entityParam);
+				for(SqlParameter fieldOwnerParam : fieldOwnerParams) {
+					for(ParameterField<SqlParameter, SqlPiece, SqlResult> paramField : fieldOwnerParam.getMyParameterFields()) {
+						String column = StringUtils.concatAsStr(fieldOwnerParam.getQueryAlias(), "_", paramField.getQueryFieldName());
+						if(primaryKeyColumn == null && tableMeta.primaryKey().equals(paramField.getFieldName()) && columns.contains(column)) {
+							primaryKeyColumn = column;
+						}
+					}
+				}
+			}
+			// 关联来源是输出的实体中最近的一个
+			SqlParameter fromParam = entityParam.getMappedFromParameter();
+			while(fromParam != null && ! entityColumns.containsKey(fromParam)) {
+				fromParam = fromParam.getMappedFromParameter();
+			}
+			outputEntities.add(new SqlOutputEntity(entityParam.getPath(), fromParam == null ? null : fromParam.getPath(),
+					primaryKeyColumn, columns));
+		}
+		return outputEntities;
 	}
 	
 	/**
@@ -3,7 +3,9 @@ package com.fy.sparam.product;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * 
@@ -30,6 +32,54 @@ public final class SqlPiece {
 	 */
 	private List<Object> vals;
 
+	/**
+	 * sql语句片段中占位符'?'对应的值的绑定类型, 与值一一对应, 为null表示根据值本身决定
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SqlBindType> valTypes;
+	
+	/**
+	 * 作为分表路由条件时对应的分表搜索参数, 只有分表键的eq和in条件会设置
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlParameter shardRouteParam;
+
+	/**
+	 * 作为主键定位条件时对应的搜索参数, 只有主键的eq和in条件会设置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlParameter primaryKeyParam;
+
+	/**
+	 * 片段中表名对应的分表搜索参数, 只有分表的FROM, JOIN和UPDATE片段会设置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlParameter tableParam;
+
+	/**
+	 * 表名在片段中的起始位置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private int tableNameIndex;
+
+	/**
+	 * 片段中子查询涉及的表名称, 只有子查询条件的片段会设置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Set<String> childQueryTableNames;
+
 	/**
 	 * 构造函数, 指定sql语句以及占位符值(以可变长参数形式)
 	 *
@@ -62,6 +112,53 @@ public final class SqlPiece {
 		}
 	}
 	
+	/**
+	 * 构造函数, 指定sql语句以及相同绑定类型的占位符值(以可变长参数形式)
+	 * 
+	 * @param sqlPart sql片段语句
+	 * @param valType 所有占位符值的绑定类型, 为null表示根据值本身决定
+	 * @param vals 占位符值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlPiece(String sqlPart, SqlBindType valType, Object... vals) {
+		this(sqlPart, vals);
+		this.fillValTypes(valType);
+	}
+	
+	/**
+	 * 构造函数, 指定sql语句以及相同绑定类型的占位符值(以列表形式)
+	 * 
+	 * @param sqlPart sql片段语句
+	 * @param valType 所有占位符值的绑定类型, 为null表示根据值本身决定
+	 * @param vals 占位符值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlPiece(String sqlPart, SqlBindType valType, Collection<Object> vals) {
+		this(sqlPart, vals);
+		this.fillValTypes(valType);
+	}
+	
+	/**
+	 * 构造函数, 指定sql语句以及占位符值和各自的绑定类型
+	 * 
+	 * @param sqlPart sql片段语句
+	 * @param vals 占位符值
+	 * @param valTypes 占位符值的绑定类型, 为null或数量与占位符值不一致则根据值本身决定
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlPiece(String sqlPart, Collection<Object> vals, List<SqlBindType> valTypes) {
+		this(sqlPart, vals);
+		if(this.vals != null && valTypes != null && valTypes.size() == this.vals.size()) {
+			this.valTypes = new ArrayList<SqlBindType>(valTypes);
+		}
+	}
+	
 	/**
 	 * 获取sql片段语句
 	 * 
@@ -85,4 +182,138 @@ public final class SqlPiece {
 	public List<Object> getVals() {
 		return vals;
 	}
+	
+	/**
+	 * 获取sql语句片段中占位符'?'对应的值的绑定类型列表, 与值一一对应
+	 * 
+	 * @return 占位符值的绑定类型列表, 没有指定时返回null, 其中的项为null表示根据值本身决定
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<SqlBindType> getValTypes() {
+		return valTypes;
+	}
+	
+	/**
+	 * 获取作为分表路由条件时对应的分表搜索参数
+	 * 
+	 * @return 对应的分表搜索参数, 不是分表路由条件则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlParameter getShardRouteParam() {
+		return shardRouteParam;
+	}
+	
+	/**
+	 * 设置作为分表路由条件时对应的分表搜索参数, 占位符值就是分表键的可能值
+	 * 
+	 * @param shardRouteParam 对应的分表搜索参数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setShardRouteParam(SqlParameter shardRouteParam) {
+		this.shardRouteParam = shardRouteParam;
+	}
+
+	/**
+	 * 获取作为主键定位条件时对应的搜索参数
+	 *
+	 * @return 对应的搜索参数, 不是主键定位条件则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlParameter getPrimaryKeyParam() {
+		return primaryKeyParam;
+	}
+
+	/**
+	 * 设置作为主键定位条件时对应的搜索参数, 占位符值就是主键值
+	 *
+	 * @param primaryKeyParam 对应的搜索参数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setPrimaryKeyParam(SqlParameter primaryKeyParam) {
+		this.primaryKeyParam = primaryKeyParam;
+	}
+
+	/**
+	 * 获取片段中表名对应的分表搜索参数
+	 *
+	 * @return 对应的分表搜索参数, 片段中没有分表的表名则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlParameter getTableParam() {
+		return tableParam;
+	}
+
+	/**
+	 * 获取表名在片段中的起始位置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	int getTableNameIndex() {
+		return tableNameIndex;
+	}
+
+	/**
+	 * 设置片段中表名对应的分表搜索参数和表名的起始位置, 分表路由时在该位置渲染物理表名
+	 *
+	 * @param tableParam 对应的分表搜索参数
+	 * @param tableNameIndex 表名在片段中的起始位置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setTableSlot(SqlParameter tableParam, int tableNameIndex) {
+		this.tableParam = tableParam;
+		this.tableNameIndex = tableNameIndex;
+	}
+
+	/**
+	 * 获取片段中子查询涉及的表名称
+	 *
+	 * @return 子查询涉及的表名称, 片段中没有子查询则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	Set<String> getChildQueryTableNames() {
+		return childQueryTableNames;
+	}
+
+	/**
+	 * 设置片段中子查询涉及的表名称, 构建结果涉及的表名称会包括这些表
+	 *
+	 * @param childQueryTableNames 子查询涉及的表名称
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setChildQueryTableNames(Set<String> childQueryTableNames) {
+		this.childQueryTableNames = childQueryTableNames;
+	}
+
+	/**
+	 * 为所有占位符值设置相同的绑定类型
+	 * 
+	 * @param valType 绑定类型, 为null则不处理
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void fillValTypes(SqlBindType valType) {
+		if(valType != null && this.vals != null) {
+			this.valTypes = new ArrayList<SqlBindType>(Collections.nCopies(this.vals.size(), valType));
+		}
+	}
 }
@@ -1,8 +1,17 @@
 package com.fy.sparam.product;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fy.sparam.test.StringUtils;
 
 /**
  * 
@@ -28,6 +37,14 @@ public final class SqlResult {
 	 */
 	private List<Object> vals;
 	
+	/**
+	 * 完整sql语句中占位符'?'对应的值的绑定类型, 与值一一对应
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SqlBindType> valTypes;
+	
 	/**
 	 * 选择输出的搜索参数字段名称列表
 	 * 
@@ -36,6 +53,109 @@ public final class SqlResult {
 	 */
 	private List<String[]> outputValCorrespondFieldNames;
 	
+	/**
+	 * 选择输出的列对应的搜索参数字段路径列表, 按列的顺序排列
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<String[]> outputFieldPaths;
+	
+	/**
+	 * 列投影模式下输出的实体, 关联来源在前
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SqlOutputEntity> outputEntities;
+	
+	/**
+	 * 语句涉及的表名称集合, 包括FROM和所有已经关联的表
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Set<String> tableNames;
+	
+	/**
+	 * 语句修改的表名称集合, 查询语句为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Set<String> writeTableNames;
+	
+	/**
+	 * 只按主键的eq或in条件定位记录时的主键值, 对应条件的sql语句片段和占位符值的绑定类型, 主键的查询字段名称,
+	 * 以及查询结果中主键的列名(UPDATE和DELETE语句为null). 不是按主键定位时主键值为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<Object> primaryKeyVals;
+	private List<SqlBindType> primaryKeyValTypes;
+	private String primaryKeySql;
+	private String primaryKeyQueryFieldName;
+	private String primaryKeyColumn;
+	
+	/**
+	 * 路由到的分表位置, 没有经过分表路由则为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Integer shardIndex;
+	
+	/**
+	 * 分表执行计划, 每一项是一个分表上的构建结果
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SqlResult> shardResults;
+	
+	/**
+	 * sql语句中分表的表名位置, 分表路由时在这些位置渲染物理表名
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<TableSlot> tableSlots;
+	
+	/**
+	 * sql语句中子查询涉及的表名称
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Set<String> childQueryTableNames;
+	
+	/**
+	 * 排序列, 按排序优先级排列
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SqlOrderBy> orderBys;
+	
+	/**
+	 * 查询的输出内容中是否额外输出了排序列
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean orderColumnsOutput;
+	
+	/**
+	 * 构建的LIMIT语句以及对应的起始位置和数量, 没有LIMIT语句时limitSql为null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String limitSql;
+	private int limitStart;
+	private int limitCount;
+	
 	/**
 	 * 获取构建完成的完整sql语句
 	 * 
@@ -64,6 +184,22 @@ public final class SqlResult {
 		return null;
 	}
 
+	/**
+	 * 获取完整sql语句中占位符'?'对应的值的绑定类型数组, 与{@link #getVals()}一一对应
+	 * <br/> 搜索器构建的值使用搜索器对应字段的类型, 其它的根据值本身决定, 无法确定的为{@link SqlBindType#OBJECT}.
+	 * 
+	 * @return 占位符值的绑定类型数组, 如果没有构建完成则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlBindType[] getValTypes() {
+		if(this.valTypes != null) {
+			return this.valTypes.toArray(new SqlBindType[this.valTypes.size()]);
+		}
+		return null;
+	}
+
 	/**
 	 * 获取选择输出的列的对应的属性名称列表, 格式为: 表别名.属性名, 顺序与select中的字段顺序一致.
 	 * <br/> 注意是搜索参数属性的名称(属性名或成员变量名), 不是数据库字段名称.
@@ -83,7 +219,277 @@ public final class SqlResult {
 		}
 		return this.outputValCorrespondFieldNames;
 	}
+	
+	/**
+	 * 获取选择输出的列对应的搜索参数字段路径列表
+	 * <br/> 路径相对根搜索参数(如customer.name), 与结构相同的对象的属性路径一致, 可用于把记录转换为对象.
+	 * <br/> 与{@link #getOutputValCorrespondFieldNames()}一样, 一列可能对应关联路径上的多个搜索参数字段路径.
+	 * 
+	 * @return 按列的顺序排列的搜索参数字段路径列表, 不会返回null.
+	 * @throws IllegalAccessException 如果不是以SELECT_FIELDS或SELECT_ENTITY_COLUMNS模式构建的结果则抛出异常
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<String[]> getOutputFieldPaths() throws IllegalAccessException {
+		if(this.outputFieldPaths == null || this.outputFieldPaths.isEmpty()) {
+			throw new IllegalAccessException("只有搜索参数构建模式为SELECT_FIELDS或SELECT_ENTITY_COLUMNS才能获取选择输出的列对应的搜索参数字段路径列表");
+		}
+		return this.outputFieldPaths;
+	}
+	
+	/**
+	 * 获取列投影模式下输出的实体, 包括每个实体的主键列, 所有列和关联来源实体
+	 * <br/> 关联来源实体排在前面, 第一项是根实体.
+	 * 
+	 * @return 输出的实体列表, 不是以SELECT_ENTITY_COLUMNS模式构建的结果则返回null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<SqlOutputEntity> getOutputEntities() {
+		if(this.outputEntities == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(this.outputEntities);
+	}
 
+	/**
+	 * 获取语句涉及的表名称
+	 * <br/> 包括FROM, 所有已经关联(默认关联, 继承关联, 动态关联)的表和子查询条件涉及的表, 使用搜索参数的表名称(不是分表的名称),
+	 * 不包括自定义的sql语句中出现的表.
+	 * 
+	 * @return 表名称集合, 不会返回null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Set<String> getTableNames() {
+		if(this.tableNames == null) {
+			return Collections.emptySet();
+		}
+		return this.tableNames;
+	}
+	
+	/**
+	 * 获取语句修改的表名称
+	 * <br/> UPDATE语句为更新的字段所在的表, DELETE语句为删除记录的表, 查询语句没有修改的表.
+	 * 
+	 * @return 表名称集合, 查询语句返回空集合, 不会返回null
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Set<String> getWriteTableNames() {
+		if(this.writeTableNames == null) {
+			return Collections.emptySet();
+		}
+		return this.writeTableNames;
+	}
+
+	/**
+	 * 获取只按主键的eq或in条件定位记录时的主键值
+	 * <br/> 只输出根搜索参数实体的查询, UPDATE和DELETE语句在只有一个主键条件, 没有关联时记录, 
+	 * 主键需要在表配置中指定({@link com.fy.sparam.init.anno.TableMeta#primaryKey()}).
+	 * 
+	 * @return 主键值列表, 不是按主键定位记录则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<Object> getPrimaryKeyVals() {
+		if(this.primaryKeyVals == null) {
+			return null;
+		}
+		return Collections.unmodifiableList(this.primaryKeyVals);
+	}
+	
+	/**
+	 * 获取按主键定位记录的查询结果中主键的列名, 用于从结果集中读取主键值
+	 * 
+	 * @return 主键的列名, 不是按主键定位记录的查询则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public String getPrimaryKeyColumn() {
+		return primaryKeyColumn;
+	}
+	
+	/**
+	 * 获取把主键条件替换为指定主键值的in条件的构建结果, 其它内容不变
+	 * <br/> 如按主键缓存实体时只查询没有缓存的主键.
+	 * 
+	 * @param primaryKeyVals 新的主键值, 不能为null或空
+	 * @return 替换了主键条件的新构建结果
+	 * @throws IllegalArgumentException 不是按主键定位记录或主键值为空则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlResult withPrimaryKeyVals(Collection<?> primaryKeyVals) throws IllegalArgumentException {
+		if(this.primaryKeyVals == null) {
+			throw new IllegalArgumentException("构建结果不是按主键定位记录, 无法替换主键条件");
+		}
+		if(primaryKeyVals == null || primaryKeyVals.isEmpty()) {
+			throw new IllegalArgumentException("替换的主键值不能为null或空");
+		}
+		StringBuilder newPrimaryKeySql = new StringBuilder(this.primaryKeyQueryFieldName).append(" IN (");
+		for(int i = 0; i < primaryKeyVals.size(); i ++) {
+			newPrimaryKeySql.append(i == 0 ? "?" : ",?");
+		}
+		newPrimaryKeySql.append(") ");
+		int primaryKeySqlIndex = this.sql.lastIndexOf(this.primaryKeySql);
+		StringBuilder newSql = new StringBuilder(this.sql);
+		newSql.replace(primaryKeySqlIndex, primaryKeySqlIndex + this.primaryKeySql.length(), newPrimaryKeySql.toString());
+		SqlResult result = this.copyWithSql(newSql.toString());
+		result.shiftTableSlots(primaryKeySqlIndex, newPrimaryKeySql.length() - this.primaryKeySql.length());
+		SqlBindType valType = this.primaryKeyValTypes == null || this.primaryKeyValTypes.isEmpty() ? null : this.primaryKeyValTypes.get(0);
+		List<SqlBindType> newValTypes = new ArrayList<SqlBindType>(primaryKeyVals.size());
+		for(int i = 0; i < primaryKeyVals.size(); i ++) {
+			newValTypes.add(valType);
+		}
+		result.vals = null;
+		result.valTypes = null;
+		result.addPreparedVals(new ArrayList<Object>(primaryKeyVals), newValTypes);
+		result.primaryKeyVals = result.vals;
+		result.primaryKeyValTypes = result.valTypes;
+		result.primaryKeySql = newPrimaryKeySql.toString();
+		return result;
+	}
+
+	/**
+	 * 获取路由到的分表位置
+	 * 
+	 * @return 路由到的分表位置, 没有经过分表路由则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Integer getShardIndex() {
+		return this.shardIndex;
+	}
+	
+	/**
+	 * 判断是否需要在多个分表中执行, 是的话当前结果的sql语句使用的是逻辑表名, 不能直接执行
+	 * 
+	 * @return 需要在多个分表中执行返回true, 否则返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public boolean isShardFanOut() {
+		return this.shardResults != null;
+	}
+	
+	/**
+	 * 获取分表执行计划, 每一项是一个分表上可以直接执行的构建结果
+	 * <br/> 不需要在多个分表中执行时只包含当前结果; 条件互相矛盾不可能命中任何分表时为空列表.
+	 * 
+	 * @return 分表执行计划, 不会返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<SqlResult> getShardResults() {
+		if(this.shardResults != null) {
+			return this.shardResults;
+		}
+		return Collections.singletonList(this);
+	}
+	
+	/**
+	 * 获取排序项, 在多个结果进行合并时按相同规则排序
+	 * <br/> 使用自定义的ORDER BY语句时没有排序项.
+	 * 
+	 * @return 按排序优先级排列的排序项, 不会返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<SqlOrderBy> getOrderBys() {
+		if(this.orderBys == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(this.orderBys);
+	}
+	
+	/**
+	 * 判断查询的输出内容中是否额外输出了排序列({@link SqlOrderBy#getColumnLabel()})
+	 * 
+	 * @return 输出了排序列返回true, 否则返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public boolean isOrderColumnsOutput() {
+		return this.orderColumnsOutput;
+	}
+	
+	/**
+	 * 判断sql语句中是否有LIMIT语句
+	 * 
+	 * @return 有LIMIT语句返回true, 否则返回false
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public boolean hasLimit() {
+		return this.limitSql != null;
+	}
+	
+	/**
+	 * 获取LIMIT语句的起始位置
+	 * 
+	 * @return LIMIT语句的起始位置, 没有LIMIT语句时为0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int getLimitStart() {
+		return this.limitStart;
+	}
+	
+	/**
+	 * 获取LIMIT语句的数量
+	 * 
+	 * @return LIMIT语句的数量, 没有LIMIT语句时为0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int getLimitCount() {
+		return this.limitCount;
+	}
+	
+	/**
+	 * 获取替换了LIMIT语句的构建结果, 其它内容不变
+	 * <br/> 如多个分表的结果合并分页时, 每个分表需要从头获取到当前页结束位置的记录.
+	 * 
+	 * @param start 新的起始位置
+	 * @param count 新的数量
+	 * @return 替换了LIMIT语句的新构建结果
+	 * @throws IllegalArgumentException 没有LIMIT语句则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlResult withLimit(int start, int count) throws IllegalArgumentException {
+		if(this.limitSql == null) {
+			throw new IllegalArgumentException("构建结果中没有LIMIT语句, 无法替换");
+		}
+		String newLimitSql = SqlResult.toLimitSql(start, count);
+		int limitIndex = this.sql.lastIndexOf(this.limitSql);
+		StringBuilder newSql = new StringBuilder(this.sql);
+		newSql.replace(limitIndex, limitIndex + this.limitSql.length(), newLimitSql);
+		SqlResult result = this.copyWithSql(newSql.toString());
+		result.shiftTableSlots(limitIndex, newLimitSql.length() - this.limitSql.length());
+		result.limitSql = newLimitSql;
+		result.limitStart = start;
+		result.limitCount = count;
+		return result;
+	}
+	
 	/**
 	 * 设置构建完成的完整sql语句
 	 * <br/>设置完成表示构建完成
@@ -100,8 +506,10 @@ public final class SqlResult {
 		if(this.sql == null) {
 			this.sql = new StringBuilder();
 		}
+		this.addTableSlot(sqlPiece);
+		this.addChildQueryTableNames(sqlPiece.getChildQueryTableNames());
 		this.sql.append(sqlPiece.getSqlPart());
-		this.addPreparedVals(sqlPiece.getVals());
+		this.addPreparedVals(sqlPiece.getVals(), sqlPiece.getValTypes());
 	}
 	
 	/**
@@ -122,8 +530,10 @@ public final class SqlResult {
 				this.sql = new StringBuilder();
 			}
 			for(SqlPiece sqlPiece : sqlPieces) {
+				this.addTableSlot(sqlPiece);
+				this.addChildQueryTableNames(sqlPiece.getChildQueryTableNames());
 				this.sql.append(sqlPiece.getSqlPart());
-				this.addPreparedVals(sqlPiece.getVals());
+				this.addPreparedVals(sqlPiece.getVals(), sqlPiece.getValTypes());
 			}
 		}
 	}
@@ -138,11 +548,305 @@ public final class SqlResult {
 	 * @since 4.5.0
 	 */
 	protected void addPreparedVals(Collection<Object> partVals) {
+		this.addPreparedVals(partVals, null);
+	}
+	
+	/**
+	 * 添加完整sql语句中使用占位符'?'对应的值以及值的绑定类型
+	 * <br/>添加值不表示构建完成
+	 * 
+	 * @param partVals 占位符'?'对应的值, 顺序会与存入顺序保持一致
+	 * @param partValTypes 与值一一对应的绑定类型, 为null或其中的项为null的根据值本身决定
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	protected void addPreparedVals(Collection<Object> partVals, List<SqlBindType> partValTypes) {
 		if(this.vals == null) {
 			this.vals = new LinkedList<Object>();
+			this.valTypes = new LinkedList<SqlBindType>();
 		}
 		if(partVals != null) {
 			this.vals.addAll(partVals);
+			Iterator<SqlBindType> valTypeIt = null;
+			if(partValTypes != null && partValTypes.size() == partVals.size()) {
+				valTypeIt = partValTypes.iterator();
+			}
+			for(Object partVal : partVals) {
+				SqlBindType valType = valTypeIt != null ? valTypeIt.next() : null;
+				if(valType == null) {
+					valType = SqlBindType.ofValue(partVal);
+				}
+				this.valTypes.add(valType);
+			}
+		}
+	}
+
+	/**
+	 * 获取sql语句中出现的分表搜索参数, 按出现的顺序排列, 同一个表别名只出现一次
+	 * 
+	 * @return 分表搜索参数列表, 没有分表则为空列表
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	List<SqlParameter> getShardTableParams() {
+		List<SqlParameter> tableParams = new ArrayList<SqlParameter>();
+		if(this.tableSlots != null) {
+			Set<String> tableAliases = new HashSet<String>();
+			for(TableSlot tableSlot : this.tableSlots) {
+				if(tableAliases.add(tableSlot.tableParam.getQueryAlias())) {
+					tableParams.add(tableSlot.tableParam);
+				}
+			}
+		}
+		return tableParams;
+	}
+	
+	/**
+	 * 复制为指定分表上的构建结果, 在记录的表名位置渲染物理表名, 占位符值和输出信息不变
+	 * 
+	 * @param shardTableNames 表别名对应的物理表名
+	 * @param shardIndex 分表的位置
+	 * @return 分表上的构建结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlResult toShardResult(Map<String, String> shardTableNames, int shardIndex) {
+		StringBuilder shardSql = new StringBuilder(this.sql);
+		// 从后往前替换, 前面的表名位置不受影响
+		for(int i = this.tableSlots.size() - 1; i >= 0; i --) {
+			TableSlot tableSlot = this.tableSlots.get(i);
+			String shardTableName = shardTableNames.get(tableSlot.tableParam.getQueryAlias());
+			if(shardTableName != null) {
+				shardSql.replace(tableSlot.index, tableSlot.index + tableSlot.length, shardTableName);
+			}
+		}
+		SqlResult shardResult = this.copyWithSql(shardSql.toString());
+		shardResult.tableSlots = null;
+		shardResult.shardIndex = shardIndex;
+		return shardResult;
+	}
+	
+	/**
+	 * 设置分表执行计划
+	 * 
+	 * @param shardResults 各个分表上的构建结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setShardResults(List<SqlResult> shardResults) {
+		this.shardResults = shardResults;
+	}
+	
+	/**
+	 * 追加sql语句成员单独构建的结果, 包括sql语句, 占位符值, 输出列和排序, 分页信息
+	 * 
+	 * @param memberResult sql语句成员单独构建的结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void appendResult(SqlResult memberResult) {
+		if(memberResult.sql != null && memberResult.sql.length() != 0) {
+			if(this.sql == null) {
+				this.sql = new StringBuilder();
+			}
+			if(memberResult.tableSlots != null) {
+				for(TableSlot tableSlot : memberResult.tableSlots) {
+					this.addTableSlot(new TableSlot(tableSlot.tableParam, this.sql.length() + tableSlot.index, tableSlot.length));
+				}
+			}
+			this.sql.append(memberResult.sql);
+			this.addPreparedVals(memberResult.vals, memberResult.valTypes);
+		}
+		this.addChildQueryTableNames(memberResult.childQueryTableNames);
+		if(memberResult.outputValCorrespondFieldNames != null) {
+			this.outputValCorrespondFieldNames = memberResult.outputValCorrespondFieldNames;
+		}
+		if(memberResult.outputFieldPaths != null) {
+			this.outputFieldPaths = memberResult.outputFieldPaths;
+		}
+		if(memberResult.outputEntities != null) {
+			this.outputEntities = memberResult.outputEntities;
+		}
+		if(memberResult.orderBys != null) {
+			this.orderBys = memberResult.orderBys;
+		}
+		if(memberResult.orderColumnsOutput) {
+			this.orderColumnsOutput = true;
+		}
+		if(memberResult.limitSql != null) {
+			this.setLimit(memberResult.limitSql, memberResult.limitStart, memberResult.limitCount);
+		}
+	}
+	
+	/**
+	 * 设置排序列
+	 * 
+	 * @param orderBys 按排序优先级排列的排序列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setOrderBys(List<SqlOrderBy> orderBys) {
+		this.orderBys = orderBys;
+	}
+	
+	/**
+	 * 设置查询的输出内容中是否额外输出了排序列
+	 * 
+	 * @param orderColumnsOutput 是否输出了排序列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setOrderColumnsOutput(boolean orderColumnsOutput) {
+		this.orderColumnsOutput = orderColumnsOutput;
+	}
+	
+	/**
+	 * 设置构建的LIMIT语句信息
+	 * 
+	 * @param limitSql 构建的LIMIT语句, 需要由{@link #toLimitSql(int, int)}生成
+	 * @param start 起始位置
+	 * @param count 数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setLimit(String limitSql, int start, int count) {
+		this.limitSql = limitSql;
+		this.limitStart = start;
+		this.limitCount = count;
+	}
+	
+	/**
+	 * 生成LIMIT语句
+	 * 
+	 * @param start 起始位置
+	 * @param count 数量
+	 * @return LIMIT语句
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static String toLimitSql(int start, int count) {
+		return StringUtils.concatAsStr("LIMIT ", start, ", ", count, " ");
+	}
+	
+	/**
+	 * 复制为使用指定sql语句的构建结果, 其它内容不变
+	 * 
+	 * @param newSql 使用的sql语句
+	 * @return 复制的构建结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlResult copyWithSql(String newSql) {
+		SqlResult result = new SqlResult();
+		result.sql = new StringBuilder(newSql);
+		result.vals = this.vals;
+		result.valTypes = this.valTypes;
+		result.outputValCorrespondFieldNames = this.outputValCorrespondFieldNames;
+		result.outputFieldPaths = this.outputFieldPaths;
+		result.outputEntities = this.outputEntities;
+		result.tableNames = this.tableNames;
+		result.writeTableNames = this.writeTableNames;
+		result.primaryKeyVals = this.primaryKeyVals;
+		result.primaryKeyValTypes = this.primaryKeyValTypes;
+		result.primaryKeySql = this.primaryKeySql;
+		result.primaryKeyQueryFieldName = this.primaryKeyQueryFieldName;
+		result.primaryKeyColumn = this.primaryKeyColumn;
+		result.shardIndex = this.shardIndex;
+		result.orderBys = this.orderBys;
+		result.orderColumnsOutput = this.orderColumnsOutput;
+		result.limitSql = this.limitSql;
+		result.limitStart = this.limitStart;
+		result.limitCount = this.limitCount;
+		if(this.tableSlots != null) {
+			result.tableSlots = new ArrayList<TableSlot>(this.tableSlots);
+		}
+		return result;
+	}
+	
+	/**
+	 * 记录sql语句片段中分表的表名位置, 需要在追加片段之前调用
+	 * 
+	 * @param sqlPiece 追加的sql语句片段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addTableSlot(SqlPiece sqlPiece) {
+		SqlParameter tableParam = sqlPiece.getTableParam();
+		if(tableParam != null) {
+			this.addTableSlot(new TableSlot(tableParam, this.sql.length() + sqlPiece.getTableNameIndex(), 
+					tableParam.getQueryName().length()));
+		}
+	}
+	
+	private void addTableSlot(TableSlot tableSlot) {
+		if(this.tableSlots == null) {
+			this.tableSlots = new ArrayList<TableSlot>();
+		}
+		this.tableSlots.add(tableSlot);
+	}
+	
+	/**
+	 * 记录子查询涉及的表名称
+	 * 
+	 * @param childQueryTableNames 子查询涉及的表名称, 为null则不处理
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void addChildQueryTableNames(Set<String> childQueryTableNames) {
+		if(childQueryTableNames == null || childQueryTableNames.isEmpty()) {
+			return;
+		}
+		if(this.childQueryTableNames == null) {
+			this.childQueryTableNames = new LinkedHashSet<String>();
+		}
+		this.childQueryTableNames.addAll(childQueryTableNames);
+	}
+	
+	/**
+	 * 获取sql语句中子查询涉及的表名称
+	 * 
+	 * @return 子查询涉及的表名称, 不会返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	Set<String> getChildQueryTableNames() {
+		if(this.childQueryTableNames == null) {
+			return Collections.emptySet();
+		}
+		return this.childQueryTableNames;
+	}
+	
+	/**
+	 * 替换sql语句的一部分后移动其后的表名位置
+	 * 
+	 * @param fromIndex 替换的起始位置
+	 * @param delta 替换后的长度变化
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void shiftTableSlots(int fromIndex, int delta) {
+		if(this.tableSlots == null || delta == 0) {
+			return;
+		}
+		for(int i = 0; i < this.tableSlots.size(); i ++) {
+			TableSlot tableSlot = this.tableSlots.get(i);
+			if(tableSlot.index > fromIndex) {
+				this.tableSlots.set(i, new TableSlot(tableSlot.tableParam, tableSlot.index + delta, tableSlot.length));
+			}
 		}
 	}
 
@@ -156,4 +860,82 @@ public final class SqlResult {
 	protected void setOutputValCorrespondFieldNames(List<String[]> outputValCorrespondFieldNames) {
 		this.outputValCorrespondFieldNames = outputValCorrespondFieldNames;
 	}
+	
+	/**
+	 * 设置选择输出的列对应的搜索参数字段路径列表
+	 * 
+	 * @param outputFieldPaths 按列的顺序排列的搜索参数字段路径列表
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setOutputFieldPaths(List<String[]> outputFieldPaths) {
+		this.outputFieldPaths = outputFieldPaths;
+	}
+	
+	/**
+	 * 设置列投影模式下输出的实体
+	 * 
+	 * @param outputEntities 输出的实体列表, 关联来源在前
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setOutputEntities(List<SqlOutputEntity> outputEntities) {
+		this.outputEntities = outputEntities;
+	}
+	
+	/**
+	 * 设置语句涉及的表名称和修改的表名称
+	 * 
+	 * @param tableNames 语句涉及的表名称集合
+	 * @param writeTableNames 语句修改的表名称集合, 查询语句为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setTableNames(Set<String> tableNames, Set<String> writeTableNames) {
+		this.tableNames = tableNames;
+		this.writeTableNames = writeTableNames;
+	}
+	
+	/**
+	 * 设置只按主键的eq或in条件定位记录时的主键信息
+	 * 
+	 * @param primaryKeySql 主键条件的sql语句片段
+	 * @param primaryKeyQueryFieldName 主键的查询字段名称, 如: 表别名.字段名
+	 * @param primaryKeyColumn 查询结果中主键的列名, UPDATE和DELETE语句为null
+	 * @param primaryKeyValTypes 主键值的绑定类型
+	 * @param primaryKeyVals 主键值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	void setPrimaryKeyVals(String primaryKeySql, String primaryKeyQueryFieldName, String primaryKeyColumn,
+			List<SqlBindType> primaryKeyValTypes, List<Object> primaryKeyVals) {
+		this.primaryKeySql = primaryKeySql;
+		this.primaryKeyQueryFieldName = primaryKeyQueryFieldName;
+		this.primaryKeyColumn = primaryKeyColumn;
+		this.primaryKeyValTypes = primaryKeyValTypes;
+		this.primaryKeyVals = primaryKeyVals;
+	}
+	
+	/**
+	 * sql语句中一个分表的表名位置
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class TableSlot {
+		
+		private final SqlParameter tableParam;
+		private final int index;
+		private final int length;
+		
+		private TableSlot(SqlParameter tableParam, int index, int length) {
+			this.tableParam = tableParam;
+			this.index = index;
+			this.length = length;
+		}
+	}
 }
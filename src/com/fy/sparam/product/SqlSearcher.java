@@ -1,12 +1,20 @@
 package com.fy.sparam.product;
 
+import java.lang.reflect.Field;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 
 import com.fy.sparam.core.AbsSearcher;
+import com.fy.sparam.core.ParameterField;
 import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.core.SearchNode;
+import com.fy.sparam.core.SearchNode.Relation;
+import com.fy.sparam.core.SearchNode.SearchCondition;
+import com.fy.sparam.core.SearchNode.SearchGroup;
+import com.fy.sparam.init.anno.AnnotationInitializor;
+import com.fy.sparam.init.anno.FieldMeta;
 import com.fy.sparam.product.SqlParameter.BuildMode;
 import com.fy.sparam.product.SqlParameter.SqlMember;
 import com.fy.sparam.test.StringUtils;
@@ -23,6 +31,71 @@ import com.fy.sparam.test.StringUtils;
  */
 public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResult, T> {
 
+	/**
+	 * 占位符值的绑定类型, 第一次使用时确定
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlBindType bindType;
+	private boolean isBindTypeResolved;
+
+	/**
+	 * 把搜索条件树渲染为sql语句片段
+	 * <br/> 条件使用搜索时生成的sql语句片段, 逻辑关系和分割符按树的结构生成.
+	 * 
+	 * @param group 渲染的条件组
+	 * @param result 渲染到的SqlResult结果
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static void renderSearchTree(SearchGroup<SqlPiece> group, SqlResult result) {
+		for(SearchNode<SqlPiece> node : group.getChildren()) {
+			if(node.getRelation() == Relation.AND) {
+				result.addSqlPiece(new SqlPiece("AND "));
+			} else if(node.getRelation() == Relation.OR) {
+				result.addSqlPiece(new SqlPiece("OR "));
+			}
+			SqlSearcher.renderSearchNode(node, result);
+		}
+	}
+	
+	/**
+	 * 把以AND连接的多个节点渲染为sql语句片段, 忽略节点原来的逻辑关系
+	 * 
+	 * @param nodes 渲染的节点
+	 * @param result 渲染到的SqlResult结果
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static void renderSearchNodes(List<SearchNode<SqlPiece>> nodes, SqlResult result) {
+		for(int i = 0; i < nodes.size(); i ++) {
+			if(i > 0) {
+				result.addSqlPiece(new SqlPiece("AND "));
+			}
+			SqlSearcher.renderSearchNode(nodes.get(i), result);
+		}
+	}
+	
+	/**
+	 * 渲染一个节点, 不包括它的逻辑关系
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	private static void renderSearchNode(SearchNode<SqlPiece> node, SqlResult result) {
+		if(node instanceof SearchCondition) {
+			result.addSqlPieces(((SearchCondition<SqlPiece>) node).getContents());
+		} else {
+			result.addSqlPiece(new SqlPiece(" ( "));
+			SqlSearcher.renderSearchTree((SearchGroup<SqlPiece>) node, result);
+			result.addSqlPiece(new SqlPiece(" ) "));
+		}
+	}
+	
 	/**
 	 * 获取字段查询名称, 与当前查询环境相关
 	 * 
@@ -76,6 +149,46 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		return locateFileNames.get(locateFileNames.size() - 1);
 	}
 	
+	/**
+	 * 获取占位符值的绑定类型
+	 * <br/> 优先使用{@link FieldMeta#valType()}指定的类型, 没有则使用搜索器的泛型类型.
+	 * 
+	 * @return 占位符值的绑定类型, 无法确定(如常量类需要转换)则返回null, 表示根据值本身决定
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	SqlBindType getBindType() {
+		if(! this.isBindTypeResolved) {
+			Class<?> valType = null;
+			Field field = (Field) this.getBelongParameterField().getExtra(AnnotationInitializor.PF_EXTRA_FIELD);
+			if(field != null && field.isAnnotationPresent(FieldMeta.class)) {
+				Class<?> metaValType = field.getAnnotation(FieldMeta.class).valType();
+				if(! Object.class.equals(metaValType)) {
+					valType = metaValType;
+				}
+			}
+			if(valType == null) {
+				valType = this.getFieldTypeClass();
+			}
+			this.bindType = SqlBindType.of(valType);
+			this.isBindTypeResolved = true;
+		}
+		return this.bindType;
+	}
+	
+	/**
+	 * 判断搜索字段对应的数据库字段是否有索引, 由{@link FieldMeta#indexed()}指定
+	 * 
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	boolean isIndexed() {
+		Field field = (Field) this.getBelongParameterField().getExtra(AnnotationInitializor.PF_EXTRA_FIELD);
+		return field != null && field.isAnnotationPresent(FieldMeta.class)
+				&& field.getAnnotation(FieldMeta.class).indexed();
+	}
+	
 	@Override
 	protected void onIn(Collection<T> values) throws Exception {
 		if(values == null) {
@@ -87,7 +200,9 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(),
 						" IN (", this.generatePlaceHolder(values.size()),") "),
-						this.translateEnums(values));
+						this.getBindType(), this.translateEnums(values));
+		this.markShardRoute(sqlPiece);
+		this.markPrimaryKey(sqlPiece);
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 	}
 
@@ -102,7 +217,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(),
 						" NOT IN (", this.generatePlaceHolder(values.size()),") "),
-						this.translateEnums(values));
+						this.getBindType(), this.translateEnums(values));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -114,7 +229,9 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName()," = ? "),
-				this.translateEnum(value));
+				this.getBindType(), this.translateEnum(value));
+		this.markShardRoute(sqlPiece);
+		this.markPrimaryKey(sqlPiece);
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -126,7 +243,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(), " <> ? "),
-				this.translateEnum(value));
+				this.getBindType(), this.translateEnum(value));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -138,7 +255,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName()," BETWEEN ? AND ? "),
-				this.translateEnum(from), this.translateEnum(to));
+				this.getBindType(), this.translateEnum(from), this.translateEnum(to));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -150,7 +267,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName()," < ? "),
-				this.translateEnum(value));
+				this.getBindType(), this.translateEnum(value));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -162,7 +279,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName()," >= ? "),
-				this.translateEnum(value));
+				this.getBindType(), this.translateEnum(value));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -174,7 +291,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(), " > ? "),
-				this.translateEnum(value));
+				this.getBindType(), this.translateEnum(value));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -186,7 +303,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(), " <= ? "),
-				this.translateEnum(value));
+				this.getBindType(), this.translateEnum(value));
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -198,7 +315,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(), " LIKE ? "),
-				value);
+				SqlBindType.STRING, value);
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -210,7 +327,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		}
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(), " NOT LIKE ? "),
-				value);
+				SqlBindType.STRING, value);
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 		
 	}
@@ -242,6 +359,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(),
 						" IN (", sql, ") "));
+		sqlPiece.setChildQueryTableNames(result.getTableNames());
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 	}
 
@@ -258,6 +376,7 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		SqlPiece sqlPiece = new SqlPiece(
 				StringUtils.concatAsStr(this.toQueryFieldName(),
 						" NOT IN (", sql,") "));
+		sqlPiece.setChildQueryTableNames(result.getTableNames());
 		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
 	}
 
@@ -365,26 +484,22 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 	
 	@Override
 	protected void onDelimiterStart(Object... params) throws Exception {
-		SqlPiece sqlPiece = new SqlPiece(" ( ");
-		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
+		// 分割符由搜索条件树的条件组表示, 构建时渲染
 	}
 
 	@Override
 	protected void onDelimiterEnd(Object... params) throws Exception {
-		SqlPiece sqlPiece = new SqlPiece(" ) ");
-		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
+		// 分割符由搜索条件树的条件组表示, 构建时渲染
 	}
 	
 	@Override
 	protected void onAnd() throws Exception {
-		SqlPiece sqlPiece = new SqlPiece("AND ");
-		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
+		// 逻辑关系记录在搜索条件树的节点上, 构建时渲染
 	}
 
 	@Override
 	protected void onOr() throws Exception {
-		SqlPiece sqlPiece = new SqlPiece("OR ");
-		this.addSearchEntry(SqlMember.WHERE.name(), sqlPiece);
+		// 逻辑关系记录在搜索条件树的节点上, 构建时渲染
 	}
 	
 	@Override
@@ -397,6 +512,38 @@ public class SqlSearcher<T> extends AbsSearcher<SqlParameter, SqlPiece, SqlResul
 		// TODO 目前没有需求
 	}
 	
+	/**
+	 * 如果搜索的是所在分表的分表键, 把条件标记为分表路由条件
+	 * 
+	 * @param sqlPiece 条件的sql语句片段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void markShardRoute(SqlPiece sqlPiece) {
+		ParameterField<SqlParameter, SqlPiece, SqlResult> searchParamField = this.getSearchParameterField();
+		SqlParameter searchParam = searchParamField.getBelongParameter();
+		if(searchParam.isShardKeyField(searchParamField)) {
+			sqlPiece.setShardRouteParam(searchParam);
+		}
+	}
+	
+	/**
+	 * 如果搜索的是所在搜索参数的主键, 把条件标记为主键定位条件
+	 * 
+	 * @param sqlPiece 条件的sql语句片段
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void markPrimaryKey(SqlPiece sqlPiece) {
+		ParameterField<SqlParameter, SqlPiece, SqlResult> searchParamField = this.getSearchParameterField();
+		SqlParameter searchParam = searchParamField.getBelongParameter();
+		if(searchParam.isPrimaryKeyField(searchParamField)) {
+			sqlPiece.setPrimaryKeyParam(searchParam);
+		}
+	}
+	
 	/**
 	 * 构建指定数量的占位符字符串, 即: ?,?,?,...
 	 * 
@@ -0,0 +1,169 @@
+package com.fy.sparam.product;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.fy.sparam.test.StringUtils;
+
+/**
+ * 拆分查询的执行计划, 由{@link SqlParameter#buildSplitPlan(Object...)}构建
+ * <br/> 根查询只输出不拆分的实体, 拆分出来的关联搜索参数各自通过一个关联字段的in条件查询,
+ * 避免多个一对多的关联在同一个查询中相乘出大量的重复记录.
+ * <br/> 关联字段的值作为额外的列输出, 上一级查询结果中的关联来源字段值用来构建下一级的查询.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class SqlSplitPlan {
+
+	/**
+	 * 拆分出来的一个关联搜索参数的查询
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class SplitJoin {
+
+		private final String path;
+		private final int fromIndex;
+		private final String fromKeyColumn;
+		private final String keyColumn;
+		private final String sqlPrefix;
+		private final Set<String> tableNames;
+		private final List<String[]> outputValCorrespondFieldNames;
+		private final List<String[]> outputFieldPaths;
+
+		SplitJoin(String path, int fromIndex, String fromKeyColumn, String keyColumn, String sqlPrefix,
+				Set<String> tableNames, List<String[]> outputValCorrespondFieldNames, List<String[]> outputFieldPaths) {
+			this.path = path;
+			this.fromIndex = fromIndex;
+			this.fromKeyColumn = fromKeyColumn;
+			this.keyColumn = keyColumn;
+			this.sqlPrefix = sqlPrefix;
+			this.tableNames = tableNames;
+			this.outputValCorrespondFieldNames = outputValCorrespondFieldNames;
+			this.outputFieldPaths = outputFieldPaths;
+		}
+
+		/**
+		 * 获取拆分出来的关联搜索参数的路径
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public String getPath() {
+			return path;
+		}
+
+		/**
+		 * 获取关联来源所在的拆分查询在计划中的位置
+		 *
+		 * @return 关联来源所在的拆分查询的位置, 关联来源在根查询中则返回-1
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public int getFromIndex() {
+			return fromIndex;
+		}
+
+		/**
+		 * 获取关联来源字段的值在上一级查询结果中的列名
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public String getFromKeyColumn() {
+			return fromKeyColumn;
+		}
+
+		/**
+		 * 获取被关联字段的值在当前查询结果中的列名
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public String getKeyColumn() {
+			return keyColumn;
+		}
+
+		/**
+		 * 构建按指定的关联字段值查询的构建结果
+		 *
+		 * @param keys 关联来源字段的值, 不能为null或空
+		 * @return 使用被关联字段的in条件的构建结果
+		 * @throws IllegalArgumentException 关联字段值为空则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public SqlResult buildResult(Collection<?> keys) throws IllegalArgumentException {
+			if(keys == null || keys.isEmpty()) {
+				throw new IllegalArgumentException("拆分查询的关联字段值不能为null或空");
+			}
+			StringBuilder sqlBuilder = new StringBuilder(this.sqlPrefix);
+			for(int i = 0; i < keys.size(); i ++) {
+				sqlBuilder.append(i == 0 ? "?" : ",?");
+			}
+			sqlBuilder.append(") ;");
+			SqlResult result = new SqlResult();
+			result.addSqlPiece(new SqlPiece(sqlBuilder.toString(), new ArrayList<Object>(keys)));
+			if(this.outputValCorrespondFieldNames != null) {
+				result.setOutputValCorrespondFieldNames(this.outputValCorrespondFieldNames);
+				result.setOutputFieldPaths(this.outputFieldPaths);
+			}
+			result.setTableNames(this.tableNames, null);
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return StringUtils.concatAsStr("split join [", this.path, "] from [", this.fromIndex, "]");
+		}
+	}
+
+	/**
+	 * 根查询的构建结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final SqlResult rootResult;
+
+	/**
+	 * 拆分出来的查询, 关联来源所在的查询排在前面
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final List<SplitJoin> splitJoins;
+
+	SqlSplitPlan(SqlResult rootResult, List<SplitJoin> splitJoins) {
+		this.rootResult = rootResult;
+		this.splitJoins = Collections.unmodifiableList(splitJoins);
+	}
+
+	/**
+	 * 获取根查询的构建结果
+	 * <br/> 只输出不拆分的实体, 分页作用在根查询的记录上.
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlResult getRootResult() {
+		return rootResult;
+	}
+
+	/**
+	 * 获取拆分出来的查询, 关联来源所在的查询排在前面, 没有可以拆分的关联时为空列表
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<SplitJoin> getSplitJoins() {
+		return splitJoins;
+	}
+}
@@ -0,0 +1,389 @@
+package com.fy.sparam.product.executor;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 异步执行构建结果的执行器
+ * <br/> 每次查询作为一个任务交给线程执行器, 立即返回查询结果的{@link CompletableFuture},
+ * 可以同时发起分页查询, 记录数量查询和其它查询, 再按需要等待或组合结果.
+ * <br/> 默认的线程执行器在运行环境支持虚拟线程时为每个任务创建一个虚拟线程,
+ * 否则使用最多{@value #FALLBACK_MAX_THREADS}个守护线程的线程池, 超出的任务排队等待.
+ * <br/> 同一个数据源上同时执行的查询数量有上限, 任务在执行线程中等待许可后才获取连接, 不会耗尽连接池.
+ * <br/> 搜索参数不是线程安全的, 需要在调用线程中构建好结果再交给执行器.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class AsyncSqlExecutor {
+
+	/**
+	 * 把记录数量查询的记录转换为数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final SqlExecutor.IRowMapper<Long> COUNT_MAPPER = new SqlExecutor.IRowMapper<Long>() {
+		@Override
+		public Long mapRow(ResultSet rs) throws Exception {
+			return rs.getLong(1);
+		}
+	};
+
+	/**
+	 * 运行环境不支持虚拟线程时默认线程池的线程数量上限
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final int FALLBACK_MAX_THREADS = 64;
+
+	/**
+	 * 默认的线程执行器, 使用时才创建
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static volatile Executor defaultExecutor;
+
+	/**
+	 * 执行查询使用的同步执行器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final SqlExecutor sqlExecutor;
+
+	/**
+	 * 执行查询任务使用的线程执行器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Executor executor;
+
+	/**
+	 * 每个数据源上同时执行的查询数量上限
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int maxConcurrencyPerDataSource;
+
+	/**
+	 * 每个数据源的执行许可
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Map<DataSource, Semaphore> permitsPool = new ConcurrentHashMap<DataSource, Semaphore>();
+
+	/**
+	 * 构造器: 使用默认的同步执行器和线程执行器, 指定每个数据源上同时执行的查询数量上限
+	 *
+	 * @param maxConcurrencyPerDataSource 每个数据源上同时执行的查询数量上限, 需要大于0, 建议不超过连接池的大小
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public AsyncSqlExecutor(int maxConcurrencyPerDataSource) {
+		this(new SqlExecutor(), AsyncSqlExecutor.getDefaultExecutor(), maxConcurrencyPerDataSource);
+	}
+
+	/**
+	 * 构造器: 指定同步执行器, 线程执行器和每个数据源上同时执行的查询数量上限
+	 *
+	 * @param sqlExecutor 执行查询使用的同步执行器, 不能为null
+	 * @param executor 执行查询任务使用的线程执行器, 不能为null; 任务会在执行线程中等待许可,
+	 * 使用线程数量有限的线程池时同时提交的任务数量不宜超过线程数量
+	 * @param maxConcurrencyPerDataSource 每个数据源上同时执行的查询数量上限, 需要大于0, 建议不超过连接池的大小
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public AsyncSqlExecutor(SqlExecutor sqlExecutor, Executor executor, int maxConcurrencyPerDataSource) {
+		if(sqlExecutor == null || executor == null) {
+			throw new IllegalArgumentException("同步执行器和线程执行器不能为null");
+		}
+		if(maxConcurrencyPerDataSource <= 0) {
+			throw new IllegalArgumentException("每个数据源上同时执行的查询数量上限需要大于0");
+		}
+		this.sqlExecutor = sqlExecutor;
+		this.executor = executor;
+		this.maxConcurrencyPerDataSource = maxConcurrencyPerDataSource;
+	}
+
+	public int getMaxConcurrencyPerDataSource() {
+		return maxConcurrencyPerDataSource;
+	}
+
+	/**
+	 * 异步执行查询, 在执行线程中逐条把记录交给回调处理
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 执行的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param handler 记录处理回调, 不能为null, 在执行线程中调用
+	 * @return 处理的记录数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public CompletableFuture<Integer> query(final DataSource dataSource, final SqlResult result,
+			final SqlExecutor.IRowHandler handler) {
+		return this.submit(dataSource, new Callable<Integer>() {
+			@Override
+			public Integer call() throws Exception {
+				return AsyncSqlExecutor.this.sqlExecutor.query(dataSource, result, handler);
+			}
+		});
+	}
+
+	/**
+	 * 异步执行查询, 把所有记录转换后放到列表中
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 执行的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null, 在执行线程中调用
+	 * @return 按查询顺序排列的转换结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> CompletableFuture<List<T>> queryList(final DataSource dataSource, final SqlResult result,
+			final SqlExecutor.IRowMapper<T> mapper) {
+		return this.submit(dataSource, new Callable<List<T>>() {
+			@Override
+			public List<T> call() throws Exception {
+				List<T> rows = new ArrayList<T>();
+				SqlExecutor.RowIterator<T> iterator = AsyncSqlExecutor.this.sqlExecutor.iterate(dataSource, result, mapper);
+				try {
+					while(iterator.hasNext()) {
+						rows.add(iterator.next());
+					}
+				} finally {
+					iterator.close();
+				}
+				return rows;
+			}
+		});
+	}
+
+	/**
+	 * 异步执行查询, 只转换第一条记录
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 执行的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null, 在执行线程中调用
+	 * @return 第一条记录的转换结果, 没有记录则为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> CompletableFuture<T> queryFirst(final DataSource dataSource, final SqlResult result,
+			final SqlExecutor.IRowMapper<T> mapper) {
+		return this.submit(dataSource, new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				SqlExecutor.RowIterator<T> iterator = AsyncSqlExecutor.this.sqlExecutor.iterate(dataSource, result, mapper);
+				try {
+					return iterator.hasNext() ? iterator.next() : null;
+				} finally {
+					iterator.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * 异步执行记录数量查询
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param countResult 以SELECT_COUNT模式构建的结果, 不能为null且不能是需要分表执行的结果
+	 * @return 记录数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public CompletableFuture<Long> queryCount(DataSource dataSource, SqlResult countResult) {
+		return this.queryFirst(dataSource, countResult, COUNT_MAPPER);
+	}
+
+	/**
+	 * 在同一个数据源上同时执行多个构建结果, 并等待所有结果
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param results 执行的构建结果, 不能为null, 每个都不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null, 在执行线程中调用
+	 * @return 与构建结果顺序对应的转换结果列表, 其中一个失败则以该异常失败
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> CompletableFuture<List<List<T>>> queryAll(DataSource dataSource, List<SqlResult> results,
+			SqlExecutor.IRowMapper<T> mapper) {
+		if(results == null) {
+			throw new IllegalArgumentException("执行的构建结果不能为null");
+		}
+		List<CompletableFuture<List<T>>> futures = new ArrayList<CompletableFuture<List<T>>>(results.size());
+		for(SqlResult result : results) {
+			futures.add(this.queryList(dataSource, result, mapper));
+		}
+		return AsyncSqlExecutor.joinAll(futures);
+	}
+
+	/**
+	 * 等待所有异步结果, 按顺序组合为列表
+	 *
+	 * @param futures 异步结果, 不能为null
+	 * @return 与异步结果顺序对应的结果列表, 其中一个失败则以该异常失败(不等待其它还没完成的结果)
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static <T> CompletableFuture<List<T>> joinAll(final List<? extends CompletableFuture<? extends T>> futures) {
+		if(futures == null) {
+			throw new IllegalArgumentException("异步结果不能为null");
+		}
+		final CompletableFuture<List<T>> joined = new CompletableFuture<List<T>>();
+		CompletableFuture<?>[] all = futures.toArray(new CompletableFuture<?>[futures.size()]);
+		for(CompletableFuture<?> future : all) {
+			future.whenComplete(new BiConsumer<Object, Throwable>() {
+				@Override
+				public void accept(Object val, Throwable error) {
+					if(error != null) {
+						joined.completeExceptionally(error);
+					}
+				}
+			});
+		}
+		CompletableFuture.allOf(all).thenRun(new Runnable() {
+			@Override
+			public void run() {
+				List<T> vals = new ArrayList<T>(futures.size());
+				for(CompletableFuture<? extends T> future : futures) {
+					vals.add(future.join());
+				}
+				joined.complete(vals);
+			}
+		});
+		return joined;
+	}
+
+	/**
+	 * 提交查询任务, 任务在执行线程中获取数据源的许可后执行
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private <R> CompletableFuture<R> submit(DataSource dataSource, final Callable<R> call) {
+		if(dataSource == null) {
+			throw new IllegalArgumentException("执行查询的数据源不能为null");
+		}
+		final Semaphore permits = this.getPermits(dataSource);
+		final CompletableFuture<R> future = new CompletableFuture<R>();
+		try {
+			this.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if(future.isDone()) {
+						return; /* 开始执行前已经被取消 */
+					}
+					try {
+						permits.acquire();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						future.completeExceptionally(e);
+						return;
+					}
+					try {
+						if(! future.isDone()) {
+							future.complete(call.call());
+						}
+					} catch (Throwable t) {
+						future.completeExceptionally(t);
+					} finally {
+						permits.release();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 获取数据源的执行许可, 没有则创建
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Semaphore getPermits(DataSource dataSource) {
+		Semaphore permits = this.permitsPool.get(dataSource);
+		if(permits == null) {
+			permits = new Semaphore(this.maxConcurrencyPerDataSource, true);
+			Semaphore existPermits = this.permitsPool.putIfAbsent(dataSource, permits);
+			if(existPermits != null) {
+				permits = existPermits;
+			}
+		}
+		return permits;
+	}
+
+	/**
+	 * 获取默认的线程执行器, 运行环境支持虚拟线程时为每个任务创建一个虚拟线程,
+	 * 否则使用线程数量有上限的守护线程池, 空闲的线程会被回收
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Executor getDefaultExecutor() {
+		Executor executor = defaultExecutor;
+		if(executor != null) {
+			return executor;
+		}
+		synchronized(AsyncSqlExecutor.class) {
+			if(defaultExecutor != null) {
+				return defaultExecutor;
+			}
+			try {
+				Method virtualExecutorMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				executor = (Executor) virtualExecutorMethod.invoke(null);
+			} catch (Exception e) {
+				// 运行环境不支持虚拟线程, 任务在线程中等待许可, 线程数量需要有上限
+				ThreadPoolExecutor threadPool = new ThreadPoolExecutor(FALLBACK_MAX_THREADS, FALLBACK_MAX_THREADS,
+						60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "sparam-async-sql");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				threadPool.allowCoreThreadTimeOut(true);
+				executor = threadPool;
+			}
+			defaultExecutor = executor;
+			return executor;
+		}
+	}
+}
@@ -0,0 +1,384 @@
+package com.fy.sparam.product.executor;
+
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.init.anno.TableMeta;
+import com.fy.sparam.product.SqlOutputEntity;
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 按主键缓存一个表的实体
+ * <br/> 需要在表配置中指定主键({@link TableMeta#primaryKey()}), 为需要缓存的表创建实例即开启缓存.
+ * <br/> 查询只按主键的eq或in条件定位记录且只输出该表实体时({@link SqlResult#getPrimaryKeyVals()}), 已经缓存的主键直接使用缓存的实体,
+ * 只把没有缓存的主键改写为更小的in条件查询, 查询到的实体放入缓存后与缓存的实体合并, 按主键值第一次出现的顺序返回;
+ * 其它查询直接执行, 不使用缓存.
+ * <br/> 通过{@link #update(DataSource, SqlResult)}执行或通过{@link #invalidate(SqlResult)}通知以SqlMarker构建的UPDATE或DELETE时,
+ * 按主键定位的修改移除对应主键的实体, 其它修改该表的语句清空缓存. 修改期间开始的查询结果不会再放入缓存.
+ * <br/> 只缓存第一次使用缓存的查询的输出形式(构建模式和输出的列)的实体, 其它输出形式的查询直接执行,
+ * 如列投影模式下排除了部分列的查询不会与输出全部列的查询共用缓存.
+ * <br/> 缓存的实体会返回给所有查询者, 不应该修改. 超过数量上限时移除最久没有使用的实体. 可以在多个线程中同时使用.
+ *
+ * @param <T> 实体的类型
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class EntityCache<T> {
+
+	private final SqlExecutor sqlExecutor;
+	private final SqlExecutor.IRowMapper<T> mapper;
+
+	/**
+	 * 缓存的表的表名
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final String tableName;
+
+	/**
+	 * 按主键缓存的实体, 按访问顺序排列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Map<Object, T> entities;
+
+	/**
+	 * 缓存的失效版本号, 每次修改加1
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private long version;
+
+	/**
+	 * 缓存的实体对应的查询结果的输出形式, 用于区分输出的列不同的查询, 第一次缓存时确定
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private String outputShape;
+
+	private long hitCount;
+	private long missCount;
+
+	/**
+	 * 构造器: 使用默认的执行器, 指定缓存的表, 记录转换器和实体数量上限
+	 *
+	 * @param paramClass 缓存的表对应的搜索参数类, 不能为null, 需要在表配置中指定主键且不是分表
+	 * @param mapper 记录转换器, 不能为null, 需要与查询的构建模式对应
+	 * @param maxEntries 缓存的实体数量上限, 需要大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public EntityCache(Class<? extends SqlParameter> paramClass, SqlExecutor.IRowMapper<T> mapper, int maxEntries) {
+		this(new SqlExecutor(), paramClass, mapper, maxEntries);
+	}
+
+	/**
+	 * 构造器: 指定执行器, 缓存的表, 记录转换器和实体数量上限
+	 *
+	 * @param sqlExecutor 执行查询和修改使用的执行器, 不能为null
+	 * @param paramClass 缓存的表对应的搜索参数类, 不能为null, 需要在表配置中指定主键且不是分表
+	 * @param mapper 记录转换器, 不能为null, 需要与查询的构建模式对应
+	 * @param maxEntries 缓存的实体数量上限, 需要大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public EntityCache(SqlExecutor sqlExecutor, Class<? extends SqlParameter> paramClass,
+			SqlExecutor.IRowMapper<T> mapper, final int maxEntries) {
+		if(sqlExecutor == null || paramClass == null || mapper == null) {
+			throw new IllegalArgumentException("执行器, 搜索参数类和记录转换器不能为null");
+		}
+		TableMeta tableMeta = paramClass.getAnnotation(TableMeta.class);
+		if(tableMeta == null || tableMeta.primaryKey().isEmpty()) {
+			throw new IllegalArgumentException(String.format("%s没有在表配置中指定主键, 无法按主键缓存实体", paramClass.getName()));
+		}
+		if(! tableMeta.shardKey().isEmpty() && tableMeta.shardCount() > 0) {
+			throw new IllegalArgumentException(String.format("%s是分表, 无法按主键缓存实体", paramClass.getName()));
+		}
+		if(maxEntries <= 0) {
+			throw new IllegalArgumentException("缓存的实体数量上限需要大于0");
+		}
+		this.sqlExecutor = sqlExecutor;
+		this.mapper = mapper;
+		this.tableName = tableMeta.name();
+		this.entities = new LinkedHashMap<Object, T>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, T> eldest) {
+				return this.size() > maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * 执行查询, 按主键定位的查询优先使用缓存的实体
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 查询的构建结果, 不能为null, 不能是修改语句或需要分表执行的结果
+	 * @return 转换结果列表, 按主键定位的查询按主键值第一次出现的顺序排列, 没有对应记录的主键不在结果中
+	 * @throws Exception 执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<T> queryList(DataSource dataSource, SqlResult result) throws Exception {
+		if(dataSource == null || result == null) {
+			throw new IllegalArgumentException("查询的数据源和构建结果不能为null");
+		}
+		if(! result.getWriteTableNames().isEmpty()) {
+			throw new IllegalArgumentException("只能执行查询语句");
+		}
+		if(! this.isCacheable(result)) {
+			return this.load(dataSource, result, null);
+		}
+		// 按主键值去重, 保留第一次出现的顺序
+		Map<Object, Object> primaryKeyVals = new LinkedHashMap<Object, Object>();
+		for(Object primaryKeyVal : result.getPrimaryKeyVals()) {
+			Object key = EntityCache.toKey(primaryKeyVal);
+			if(! primaryKeyVals.containsKey(key)) {
+				primaryKeyVals.put(key, primaryKeyVal);
+			}
+		}
+		Map<Object, T> foundEntities = new HashMap<Object, T>();
+		List<Object> missingVals = new ArrayList<Object>();
+		long loadVersion;
+		synchronized(this) {
+			if(this.outputShape == null) {
+				this.outputShape = EntityCache.toOutputShape(result);
+			}
+			for(Map.Entry<Object, Object> primaryKeyVal : primaryKeyVals.entrySet()) {
+				T entity = this.entities.get(primaryKeyVal.getKey());
+				if(entity != null) {
+					foundEntities.put(primaryKeyVal.getKey(), entity);
+				} else {
+					missingVals.add(primaryKeyVal.getValue());
+				}
+			}
+			this.hitCount += foundEntities.size();
+			this.missCount += missingVals.size();
+			loadVersion = this.version;
+		}
+		if(! missingVals.isEmpty()) {
+			// 全部没有缓存时不需要改写
+			SqlResult loadResult = missingVals.size() == result.getPrimaryKeyVals().size() ?
+					result : result.withPrimaryKeyVals(missingVals);
+			Map<Object, T> loadedEntities = new HashMap<Object, T>();
+			this.load(dataSource, loadResult, loadedEntities);
+			synchronized(this) {
+				// 查询期间表被修改了, 结果可能是旧的, 不放入缓存
+				if(loadVersion == this.version) {
+					this.entities.putAll(loadedEntities);
+				}
+			}
+			foundEntities.putAll(loadedEntities);
+		}
+		List<T> entities = new ArrayList<T>(primaryKeyVals.size());
+		for(Object key : primaryKeyVals.keySet()) {
+			T entity = foundEntities.get(key);
+			if(entity != null) {
+				entities.add(entity);
+			}
+		}
+		return entities;
+	}
+
+	/**
+	 * 执行以SqlMarker构建的UPDATE或DELETE, 执行后移除受影响的实体
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param writeResult 以UPDATE或DELETE模式构建的结果, 不能为null
+	 * @return 影响的记录数量
+	 * @throws Exception 执行失败则抛出异常, 失败时也会移除受影响的实体
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int update(DataSource dataSource, SqlResult writeResult) throws Exception {
+		try {
+			return this.sqlExecutor.update(dataSource, writeResult);
+		} finally {
+			if(writeResult != null) {
+				this.invalidate(writeResult);
+			}
+		}
+	}
+
+	/**
+	 * 移除修改语句影响的实体, 用于不通过缓存执行的修改
+	 * <br/> 按主键定位的修改移除对应主键的实体, 其它修改当前表的语句清空缓存, 不修改当前表的语句不处理.
+	 *
+	 * @param writeResult 以UPDATE或DELETE模式构建的结果, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void invalidate(SqlResult writeResult) {
+		if(writeResult == null) {
+			throw new IllegalArgumentException("修改的构建结果不能为null");
+		}
+		if(! writeResult.getWriteTableNames().contains(this.tableName)) {
+			return;
+		}
+		List<Object> primaryKeyVals = writeResult.getPrimaryKeyVals();
+		if(primaryKeyVals != null && writeResult.getTableNames().size() == 1) {
+			this.invalidate(primaryKeyVals);
+		} else {
+			this.clear();
+		}
+	}
+
+	/**
+	 * 移除指定主键的实体
+	 *
+	 * @param primaryKeyVals 主键值, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized void invalidate(Collection<?> primaryKeyVals) {
+		if(primaryKeyVals == null) {
+			throw new IllegalArgumentException("主键值不能为null");
+		}
+		this.version ++;
+		for(Object primaryKeyVal : primaryKeyVals) {
+			this.entities.remove(EntityCache.toKey(primaryKeyVal));
+		}
+	}
+
+	/**
+	 * 清空缓存的实体, 不影响统计数据
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized void clear() {
+		this.version ++;
+		this.entities.clear();
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public synchronized int getSize() {
+		return this.entities.size();
+	}
+
+	/**
+	 * 获取使用缓存的实体的主键数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * 获取需要查询的主键数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * 判断查询是否是只按当前表的主键定位记录, 且输出形式与缓存的实体相同的查询
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isCacheable(SqlResult result) {
+		if(result.getPrimaryKeyVals() == null || result.getPrimaryKeyColumn() == null
+				|| result.getTableNames().size() != 1 || ! result.getTableNames().contains(this.tableName)) {
+			return false;
+		}
+		// 输出的列与缓存的实体不同(构建模式或投影的列不同)时, 转换结果的形式可能不同, 不使用缓存
+		String outputShape = EntityCache.toOutputShape(result);
+		synchronized(this) {
+			return this.outputShape == null || this.outputShape.equals(outputShape);
+		}
+	}
+
+	/**
+	 * 生成查询结果的输出形式: 输出全部列的查询为主键的列名, 列投影模式为主键的列名和输出的所有列名
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static String toOutputShape(SqlResult result) {
+		List<SqlOutputEntity> outputEntities = result.getOutputEntities();
+		if(outputEntities == null || outputEntities.isEmpty()) {
+			return result.getPrimaryKeyColumn();
+		}
+		StringBuilder outputShape = new StringBuilder(result.getPrimaryKeyColumn());
+		for(SqlOutputEntity outputEntity : outputEntities) {
+			for(String column : outputEntity.getColumns()) {
+				outputShape.append(',').append(column);
+			}
+		}
+		return outputShape.toString();
+	}
+
+	/**
+	 * 执行查询, 需要时按主键记录转换结果
+	 *
+	 * @param loadedEntities 按主键存放转换结果的容器, 为null表示不需要按主键记录
+	 * @return 按查询顺序排列的转换结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<T> load(DataSource dataSource, SqlResult result, final Map<Object, T> loadedEntities) throws Exception {
+		final List<T> entities = new ArrayList<T>();
+		final String primaryKeyColumn = result.getPrimaryKeyColumn();
+		this.sqlExecutor.query(dataSource, result, new SqlExecutor.IRowHandler() {
+			@Override
+			public boolean onRow(ResultSet rs) throws Exception {
+				T entity = mapper.mapRow(rs);
+				entities.add(entity);
+				if(loadedEntities != null && entity != null) {
+					loadedEntities.put(EntityCache.toKey(rs.getObject(primaryKeyColumn)), entity);
+				}
+				return true;
+			}
+		});
+		return entities;
+	}
+
+	/**
+	 * 把主键值转换为缓存的键, 整数统一为Long, 使条件中的值与结果集中读取的值可以匹配
+	 * <br/> 批量加载器和拆分查询执行器按键分配记录时也使用.
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static Object toKey(Object primaryKeyVal) {
+		if(primaryKeyVal instanceof Integer || primaryKeyVal instanceof Long
+				|| primaryKeyVal instanceof Short || primaryKeyVal instanceof Byte) {
+			return ((Number) primaryKeyVal).longValue();
+		}
+		if(primaryKeyVal instanceof BigInteger && ((BigInteger) primaryKeyVal).bitLength() < 64) {
+			return ((BigInteger) primaryKeyVal).longValue();
+		}
+		return primaryKeyVal;
+	}
+}
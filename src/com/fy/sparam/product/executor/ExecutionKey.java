@@ -0,0 +1,52 @@
+package com.fy.sparam.product.executor;
+
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 一次执行的标识, 由数据源, sql语句, 占位符值和记录转换器组成
+ * <br/> 数据源和记录转换器按实例比较, 占位符值按值比较(数组按内容比较).
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+final class ExecutionKey {
+
+	final DataSource dataSource;
+	final String sql;
+	final Object[] vals;
+	final SqlExecutor.IRowMapper<?> mapper;
+	final int hash;
+
+	ExecutionKey(DataSource dataSource, SqlResult result, SqlExecutor.IRowMapper<?> mapper) {
+		this.dataSource = dataSource;
+		this.sql = result.getSql();
+		this.vals = result.getVals();
+		this.mapper = mapper;
+		int hash = System.identityHashCode(dataSource);
+		hash = hash * 31 + this.sql.hashCode();
+		hash = hash * 31 + Arrays.deepHashCode(this.vals);
+		this.hash = hash * 31 + System.identityHashCode(mapper);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(! (obj instanceof ExecutionKey)) {
+			return false;
+		}
+		ExecutionKey other = (ExecutionKey) obj;
+		return this.hash == other.hash && this.dataSource == other.dataSource && this.mapper == other.mapper
+				&& this.sql.equals(other.sql) && Arrays.deepEquals(this.vals, other.vals);
+	}
+}
@@ -0,0 +1,342 @@
+package com.fy.sparam.product.executor;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlOutputEntity;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 关联查询的实体还原器, 把列投影模式({@link com.fy.sparam.product.SqlParameter.BuildMode#SELECT_ENTITY_COLUMNS})
+ * 的关联查询记录还原为实体的关联关系
+ * <br/> 一对多的关联会让上一级实体的列在多条记录中重复, 还原时按每个实体的主键维护一个实体表,
+ * 相同主键的实体只转换一次, 关联的实体按引用交给上一级实体.
+ * <br/> 查询需要按根实体的主键排序, 根实体的主键变化时当前的根实体已经完整, 立即交给处理器并释放它的实体表,
+ * 所以内存只与一个根实体的关联记录数量相关; 相同的实体只在同一个根实体内共用.
+ * <br/> 默认只与上一条记录的根实体主键比较, 没有按主键排序时同一个根实体会被拆成多个; 可以在构造时开启主键连续的检查,
+ * 开启后会记录所有已完成的根实体主键, 内存随根实体数量增长, 适合在开发和测试时使用.
+ * <br/> 分页作用在关联后的记录上, 需要完整的根实体时不应该分页, 或者使用{@link SplitQueryExecutor}.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class GraphHydrator {
+
+	/**
+	 * 根实体处理器, 处理还原完成的根实体
+	 *
+	 * @param <T> 根实体的转换结果的类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public interface IAggregateHandler<T> {
+
+		/**
+		 * 处理一个还原完成的根实体
+		 *
+		 * @param root 根实体的转换结果, 已经交给了关联的实体
+		 * @return 是否继续处理之后的根实体
+		 * @throws Exception 处理失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		boolean onAggregate(T root) throws Exception;
+	}
+
+	private final SqlExecutor sqlExecutor;
+
+	/**
+	 * 是否检查根实体的主键连续
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final boolean isCheckRootKeyOrder;
+
+	/**
+	 * 构造器: 使用默认的执行器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public GraphHydrator() {
+		this(new SqlExecutor());
+	}
+
+	/**
+	 * 构造器: 指定执行查询的执行器
+	 *
+	 * @param sqlExecutor 执行查询的执行器, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public GraphHydrator(SqlExecutor sqlExecutor) {
+		this(sqlExecutor, false);
+	}
+
+	/**
+	 * 构造器: 指定执行查询的执行器和是否检查根实体的主键连续
+	 *
+	 * @param sqlExecutor 执行查询的执行器, 不能为null
+	 * @param isCheckRootKeyOrder 是否检查根实体的主键连续, 开启后记录所有已完成的根实体主键, 出现已完成的主键时抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public GraphHydrator(SqlExecutor sqlExecutor, boolean isCheckRootKeyOrder) {
+		if(sqlExecutor == null) {
+			throw new IllegalArgumentException("执行器不能为null");
+		}
+		this.sqlExecutor = sqlExecutor;
+		this.isCheckRootKeyOrder = isCheckRootKeyOrder;
+	}
+
+	/**
+	 * 执行关联查询并还原实体的关联关系, 返回所有根实体
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 按根实体主键排序的列投影模式的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param rootMapper 根实体的转换器, 不能为null
+	 * @param joinMappers 关联实体的路径({@link SqlOutputEntity#getPath()})对应的关联实体转换器,
+	 * 每个关联实体都需要有, 上一级实体的类型需要与上一级的转换结果一致
+	 * @return 根实体的转换结果列表, 已经交给了关联的实体
+	 * @throws Exception 执行, 转换或处理失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> List<T> queryList(DataSource dataSource, SqlResult result, SqlExecutor.IRowMapper<T> rootMapper,
+			Map<String, ? extends SplitQueryExecutor.IJoinMapper<?, ?>> joinMappers) throws Exception {
+		final List<T> roots = new ArrayList<T>();
+		this.query(dataSource, result, rootMapper, joinMappers, new IAggregateHandler<T>() {
+			@Override
+			public boolean onAggregate(T root) throws Exception {
+				roots.add(root);
+				return true;
+			}
+		});
+		return roots;
+	}
+
+	/**
+	 * 执行关联查询并还原实体的关联关系, 每个根实体还原完成后立即交给处理器
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 按根实体主键排序的列投影模式的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param rootMapper 根实体的转换器, 不能为null
+	 * @param joinMappers 关联实体的路径({@link SqlOutputEntity#getPath()})对应的关联实体转换器,
+	 * 每个关联实体都需要有, 上一级实体的类型需要与上一级的转换结果一致
+	 * @param handler 根实体处理器, 不能为null
+	 * @return 交给处理器的根实体数量
+	 * @throws IllegalStateException 根实体的主键值为null, 或开启了主键连续的检查且查询结果没有按根实体的主键排序则抛出异常
+	 * @throws Exception 执行, 转换或处理失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> int query(DataSource dataSource, SqlResult result, SqlExecutor.IRowMapper<T> rootMapper,
+			Map<String, ? extends SplitQueryExecutor.IJoinMapper<?, ?>> joinMappers,
+			final IAggregateHandler<T> handler) throws Exception {
+		if(dataSource == null || result == null || rootMapper == null || joinMappers == null || handler == null) {
+			throw new IllegalArgumentException("还原实体的数据源, 构建结果, 转换器和根实体处理器不能为null");
+		}
+		List<SqlOutputEntity> outputEntities = result.getOutputEntities();
+		if(outputEntities == null) {
+			throw new IllegalArgumentException("还原实体需要使用列投影模式(SELECT_ENTITY_COLUMNS)的构建结果");
+		}
+		if(outputEntities.get(0).getPrimaryKeyColumn() == null) {
+			throw new IllegalArgumentException(String.format("根实体[%s]没有配置主键或主键没有输出", outputEntities.get(0).getPath()));
+		}
+		final int size = outputEntities.size();
+		final SqlOutputEntity[] entities = outputEntities.toArray(new SqlOutputEntity[size]);
+		final List<SqlExecutor.IRowMapper<Object>> mappers = new ArrayList<SqlExecutor.IRowMapper<Object>>(size);
+		final int[] fromIndexes = new int[size];
+		Map<String, Integer> pathIndexes = new HashMap<String, Integer>();
+		mappers.add((SqlExecutor.IRowMapper<Object>) rootMapper);
+		fromIndexes[0] = -1;
+		pathIndexes.put(entities[0].getPath(), 0);
+		for(int i = 1; i < size; i ++) {
+			SqlExecutor.IRowMapper<Object> joinMapper = (SqlExecutor.IRowMapper<Object>) joinMappers.get(entities[i].getPath());
+			if(joinMapper == null) {
+				throw new IllegalArgumentException(String.format("关联实体[%s]没有对应的关联实体转换器", entities[i].getPath()));
+			}
+			mappers.add(joinMapper);
+			fromIndexes[i] = pathIndexes.get(entities[i].getFromPath());
+			pathIndexes.put(entities[i].getPath(), i);
+		}
+		final Aggregate aggregate = new Aggregate(size);
+		final Set<Object> completedRootKeys = this.isCheckRootKeyOrder ? new HashSet<Object>() : null;
+		final int[] count = new int[] {0};
+		final boolean[] stopped = new boolean[] {false};
+		this.sqlExecutor.query(dataSource, result, new SqlExecutor.IRowHandler() {
+			@Override
+			public boolean onRow(ResultSet rs) throws Exception {
+				Object rootKey = GraphHydrator.readKey(rs, entities[0]);
+				if(rootKey == null) {
+					throw new IllegalStateException(String.format("根实体[%s]的主键值不能为null", entities[0].getPath()));
+				}
+				if(! rootKey.equals(aggregate.rootKey)) {
+					if(aggregate.rootKey != null) {
+						if(completedRootKeys != null) {
+							completedRootKeys.add(aggregate.rootKey);
+						}
+						count[0] ++;
+						if(! handler.onAggregate((T) aggregate.complete(mappers, fromIndexes))) {
+							stopped[0] = true;
+							return false;
+						}
+					}
+					if(completedRootKeys != null && completedRootKeys.contains(rootKey)) {
+						throw new IllegalStateException(String.format("根实体[%s]的主键值[%s]不连续, 查询需要按根实体的主键排序",
+								entities[0].getPath(), rootKey));
+					}
+					aggregate.rootKey = rootKey;
+				}
+				// 关联来源在前, 上一级实体不存在时关联实体也不存在
+				EntityNode[] rowNodes = new EntityNode[size];
+				for(int i = 0; i < size; i ++) {
+					EntityNode fromNode = i == 0 ? null : rowNodes[fromIndexes[i]];
+					if(i != 0 && fromNode == null) {
+						continue;
+					}
+					Object key = i == 0 ? rootKey : GraphHydrator.readKey(rs, entities[i]);
+					if(key == null) {
+						continue;
+					}
+					Map<Object, EntityNode> nodes = aggregate.entityNodes.get(i);
+					EntityNode node = nodes.get(key);
+					if(node == null) {
+						node = new EntityNode(mappers.get(i).mapRow(rs), size);
+						nodes.put(key, node);
+					}
+					if(fromNode != null) {
+						fromNode.addChild(i, key, node);
+					}
+					rowNodes[i] = node;
+				}
+				return true;
+			}
+		});
+		if(! stopped[0] && aggregate.rootKey != null) {
+			count[0] ++;
+			handler.onAggregate((T) aggregate.complete(mappers, fromIndexes));
+		}
+		return count[0];
+	}
+
+	/**
+	 * 读取实体在当前记录中的标识, 有主键时使用主键值, 否则使用所有列的值
+	 *
+	 * @return 实体的标识, 当前记录中没有该实体(左关联没有匹配)则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Object readKey(ResultSet rs, SqlOutputEntity entity) throws Exception {
+		String primaryKeyColumn = entity.getPrimaryKeyColumn();
+		if(primaryKeyColumn != null) {
+			Object primaryKeyVal = rs.getObject(primaryKeyColumn);
+			return primaryKeyVal == null ? null : EntityCache.toKey(primaryKeyVal);
+		}
+		List<Object> vals = new ArrayList<Object>(entity.getColumns().size());
+		boolean allNull = true;
+		for(String column : entity.getColumns()) {
+			Object val = rs.getObject(column);
+			if(val != null) {
+				allNull = false;
+			}
+			vals.add(val == null ? null : EntityCache.toKey(val));
+		}
+		return allNull ? null : vals;
+	}
+
+	/**
+	 * 正在还原的一个根实体, 包括它关联的每个实体的实体表
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class Aggregate {
+
+		private Object rootKey;
+		private final List<Map<Object, EntityNode>> entityNodes;
+
+		private Aggregate(int size) {
+			this.entityNodes = new ArrayList<Map<Object, EntityNode>>(size);
+			for(int i = 0; i < size; i ++) {
+				this.entityNodes.add(new LinkedHashMap<Object, EntityNode>());
+			}
+		}
+
+		/**
+		 * 从下级到上级把关联的实体交给上一级实体, 返回根实体的转换结果并清空实体表
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@SuppressWarnings("unchecked")
+		private Object complete(List<SqlExecutor.IRowMapper<Object>> mappers, int[] fromIndexes) throws Exception {
+			for(int i = mappers.size() - 1; i > 0; i --) {
+				SplitQueryExecutor.IJoinMapper<Object, Object> joinMapper = (SplitQueryExecutor.IJoinMapper<Object, Object>) mappers.get(i);
+				for(EntityNode fromNode : this.entityNodes.get(fromIndexes[i]).values()) {
+					Map<Object, EntityNode> childNodes = fromNode.children.get(i);
+					if(childNodes == null) {
+						joinMapper.attach(fromNode.value, Collections.emptyList());
+						continue;
+					}
+					List<Object> children = new ArrayList<Object>(childNodes.size());
+					for(EntityNode childNode : childNodes.values()) {
+						children.add(childNode.value);
+					}
+					joinMapper.attach(fromNode.value, Collections.unmodifiableList(children));
+				}
+			}
+			Object root = this.entityNodes.get(0).values().iterator().next().value;
+			for(Map<Object, EntityNode> nodes : this.entityNodes) {
+				nodes.clear();
+			}
+			return root;
+		}
+	}
+
+	/**
+	 * 还原出来的一个实体, 包括按关联实体分组的不重复的关联实体
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class EntityNode {
+
+		private final Object value;
+		private final List<Map<Object, EntityNode>> children;
+
+		private EntityNode(Object value, int size) {
+			this.value = value;
+			this.children = new ArrayList<Map<Object, EntityNode>>(Collections.<Map<Object, EntityNode>>nCopies(size, null));
+		}
+
+		private void addChild(int index, Object key, EntityNode child) {
+			Map<Object, EntityNode> childNodes = this.children.get(index);
+			if(childNodes == null) {
+				childNodes = new LinkedHashMap<Object, EntityNode>();
+				this.children.set(index, childNodes);
+			}
+			if(! childNodes.containsKey(key)) {
+				childNodes.put(key, child);
+			}
+		}
+	}
+}
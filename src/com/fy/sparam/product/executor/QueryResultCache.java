@@ -0,0 +1,473 @@
+package com.fy.sparam.product.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 查询结果缓存
+ * <br/> 以数据源, sql语句, 占位符值和记录转换器作为键缓存查询的转换结果, 相同的查询在失效前直接返回缓存的结果.
+ * <br/> 每个结果按构建结果涉及的表打上标签({@link SqlResult#getTableNames()}), 通过缓存执行UPDATE或DELETE的构建结果时,
+ * 或者调用{@link #invalidate(SqlResult)}时, 修改的表({@link SqlResult#getWriteTableNames()})的所有结果失效.
+ * 表的失效以版本号记录, 失效前开始的查询结果不会再放入缓存.
+ * <br/> 缓存的结果数量和总权重(记录数量 + 1)有上限, 超过时按最久没有使用的顺序淘汰;
+ * 新结果的访问频率(按近期访问次数估算)不高于被淘汰的结果时不放入缓存, 避免偶尔出现的查询挤掉经常使用的结果.
+ * <br/> 缓存只能感知通过它执行的修改, 其它途径修改表后需要调用{@link #invalidateTables(Collection)}.
+ * <br/> 可以在多个线程中同时使用, 返回的结果列表是只读的.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class QueryResultCache {
+
+	/**
+	 * 执行查询使用的执行器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final SqlExecutor sqlExecutor;
+
+	/**
+	 * 缓存的结果数量上限
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int maxEntries;
+
+	/**
+	 * 缓存的结果总权重上限, 每个结果的权重为记录数量 + 1
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final long maxWeight;
+
+	/**
+	 * 缓存的结果, 按访问顺序排列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final LinkedHashMap<ExecutionKey, CacheEntry> entries = new LinkedHashMap<ExecutionKey, CacheEntry>(16, 0.75f, true);
+
+	/**
+	 * 按表名称索引的缓存结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Map<String, Set<ExecutionKey>> tableKeys = new HashMap<String, Set<ExecutionKey>>();
+
+	/**
+	 * 表的失效版本号, 没有失效过的表不记录
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Map<String, Long> tableVersions = new HashMap<String, Long>();
+
+	/**
+	 * 估算访问频率
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final FrequencySketch sketch;
+
+	private long weight;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long rejectCount;
+	private long invalidationCount;
+
+	/**
+	 * 构造器: 使用默认的执行器, 指定缓存的结果数量上限和总权重上限
+	 *
+	 * @param maxEntries 缓存的结果数量上限, 需要大于0
+	 * @param maxWeight 缓存的结果总权重上限(记录数量 + 1 的总和), 需要大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public QueryResultCache(int maxEntries, long maxWeight) {
+		this(new SqlExecutor(), maxEntries, maxWeight);
+	}
+
+	/**
+	 * 构造器: 指定执行器, 缓存的结果数量上限和总权重上限
+	 *
+	 * @param sqlExecutor 执行查询和修改使用的执行器, 不能为null
+	 * @param maxEntries 缓存的结果数量上限, 需要大于0
+	 * @param maxWeight 缓存的结果总权重上限(记录数量 + 1 的总和), 需要大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public QueryResultCache(SqlExecutor sqlExecutor, int maxEntries, long maxWeight) {
+		if(sqlExecutor == null) {
+			throw new IllegalArgumentException("执行器不能为null");
+		}
+		if(maxEntries <= 0 || maxWeight <= 0) {
+			throw new IllegalArgumentException("缓存的结果数量上限和总权重上限需要大于0");
+		}
+		this.sqlExecutor = sqlExecutor;
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+		this.sketch = new FrequencySketch(maxEntries);
+	}
+
+	/**
+	 * 执行查询, 有缓存的结果直接返回, 否则执行后放入缓存
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 查询的构建结果, 不能为null, 不能是修改语句或需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null, 相同的查询需要使用同一个转换器实例才能命中缓存
+	 * @return 只读的转换结果列表, 可能是缓存的结果
+	 * @throws Exception 执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> queryList(DataSource dataSource, SqlResult result, SqlExecutor.IRowMapper<T> mapper) throws Exception {
+		if(dataSource == null || result == null || mapper == null) {
+			throw new IllegalArgumentException("查询的数据源, 构建结果和记录转换器不能为null");
+		}
+		if(! result.getWriteTableNames().isEmpty()) {
+			throw new IllegalArgumentException("只能缓存查询语句的结果");
+		}
+		ExecutionKey key = new ExecutionKey(dataSource, result, mapper);
+		String[] tables = result.getTableNames().toArray(new String[result.getTableNames().size()]);
+		long[] versions;
+		synchronized(this) {
+			this.sketch.increment(key.hash);
+			CacheEntry entry = this.entries.get(key);
+			if(entry != null) {
+				this.hitCount ++;
+				return (List<T>) entry.rows;
+			}
+			this.missCount ++;
+			versions = this.getTableVersions(tables);
+		}
+		List<T> rows = new ArrayList<T>();
+		SqlExecutor.RowIterator<T> iterator = this.sqlExecutor.iterate(dataSource, result, mapper);
+		try {
+			while(iterator.hasNext()) {
+				rows.add(iterator.next());
+			}
+		} finally {
+			iterator.close();
+		}
+		rows = Collections.unmodifiableList(rows);
+		synchronized(this) {
+			// 查询期间涉及的表失效了, 结果可能是旧的, 不放入缓存
+			if(Arrays.equals(versions, this.getTableVersions(tables))) {
+				this.admit(key, new CacheEntry(rows, tables));
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 执行UPDATE或DELETE的构建结果, 执行后使修改的表的缓存结果失效
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param writeResult 以UPDATE或DELETE模式构建的结果, 不能为null
+	 * @return 影响的记录数量
+	 * @throws Exception 执行失败则抛出异常, 失败时也会使修改的表的缓存结果失效
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int update(DataSource dataSource, SqlResult writeResult) throws Exception {
+		try {
+			return this.sqlExecutor.update(dataSource, writeResult);
+		} finally {
+			if(writeResult != null) {
+				this.invalidate(writeResult);
+			}
+		}
+	}
+
+	/**
+	 * 使构建结果修改的表的缓存结果失效, 用于不通过缓存执行的修改
+	 *
+	 * @param writeResult 以UPDATE或DELETE模式构建的结果, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void invalidate(SqlResult writeResult) {
+		if(writeResult == null) {
+			throw new IllegalArgumentException("修改的构建结果不能为null");
+		}
+		this.invalidateTables(writeResult.getWriteTableNames());
+	}
+
+	/**
+	 * 使指定的表的缓存结果失效
+	 *
+	 * @param tableNames 表名称, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized void invalidateTables(Collection<String> tableNames) {
+		if(tableNames == null) {
+			throw new IllegalArgumentException("表名称不能为null");
+		}
+		for(String tableName : tableNames) {
+			Long version = this.tableVersions.get(tableName);
+			this.tableVersions.put(tableName, version == null ? 1L : version + 1);
+			Set<ExecutionKey> keys = this.tableKeys.remove(tableName);
+			if(keys != null) {
+				for(ExecutionKey key : keys) {
+					if(this.remove(key) != null) {
+						this.invalidationCount ++;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 清空缓存的结果, 不影响统计数据
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.tableKeys.clear();
+		this.weight = 0;
+	}
+
+	public synchronized int getSize() {
+		return this.entries.size();
+	}
+
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * 获取因为容量淘汰的结果数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * 获取因为访问频率不够高或权重超过上限没有放入缓存的结果数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getRejectCount() {
+		return rejectCount;
+	}
+
+	/**
+	 * 获取因为表被修改失效的结果数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getInvalidationCount() {
+		return invalidationCount;
+	}
+
+	/**
+	 * 获取命中率, 没有查询时为0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized double getHitRate() {
+		long requestCount = this.hitCount + this.missCount;
+		return requestCount == 0 ? 0 : (double) this.hitCount / requestCount;
+	}
+
+	/**
+	 * 放入结果, 容量不够时与最久没有使用的结果比较访问频率, 新结果更高才淘汰旧结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void admit(ExecutionKey key, CacheEntry entry) {
+		if(entry.weight > this.maxWeight) {
+			this.rejectCount ++;
+			return;
+		}
+		this.remove(key);
+		int frequency = this.sketch.frequency(key.hash);
+		Iterator<Map.Entry<ExecutionKey, CacheEntry>> iterator = this.entries.entrySet().iterator();
+		List<ExecutionKey> victims = new ArrayList<ExecutionKey>();
+		long freeWeight = this.maxWeight - this.weight;
+		int freeEntries = this.maxEntries - this.entries.size();
+		while(freeEntries < 1 || freeWeight < entry.weight) {
+			Map.Entry<ExecutionKey, CacheEntry> victim = iterator.next();
+			if(this.sketch.frequency(victim.getKey().hash) >= frequency) {
+				this.rejectCount ++;
+				return;
+			}
+			victims.add(victim.getKey());
+			freeEntries ++;
+			freeWeight += victim.getValue().weight;
+		}
+		for(ExecutionKey victim : victims) {
+			this.remove(victim);
+			this.evictionCount ++;
+		}
+		this.entries.put(key, entry);
+		this.weight += entry.weight;
+		for(String table : entry.tables) {
+			Set<ExecutionKey> keys = this.tableKeys.get(table);
+			if(keys == null) {
+				keys = new HashSet<ExecutionKey>();
+				this.tableKeys.put(table, keys);
+			}
+			keys.add(key);
+		}
+	}
+
+	/**
+	 * 移除结果, 同时移除表名称索引
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private CacheEntry remove(ExecutionKey key) {
+		CacheEntry entry = this.entries.remove(key);
+		if(entry == null) {
+			return null;
+		}
+		this.weight -= entry.weight;
+		for(String table : entry.tables) {
+			Set<ExecutionKey> keys = this.tableKeys.get(table);
+			if(keys != null) {
+				keys.remove(key);
+				if(keys.isEmpty()) {
+					this.tableKeys.remove(table);
+				}
+			}
+		}
+		return entry;
+	}
+
+	private long[] getTableVersions(String[] tables) {
+		long[] versions = new long[tables.length];
+		for(int i = 0; i < tables.length; i ++) {
+			Long version = this.tableVersions.get(tables[i]);
+			versions[i] = version == null ? 0 : version;
+		}
+		return versions;
+	}
+
+	/**
+	 * 缓存的结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class CacheEntry {
+
+		final List<?> rows;
+		final String[] tables;
+		final long weight;
+
+		CacheEntry(List<?> rows, String[] tables) {
+			this.rows = rows;
+			this.tables = tables;
+			this.weight = rows.size() + 1L;
+		}
+	}
+
+	/**
+	 * 访问频率的估算
+	 * <br/> 使用4行计数器(每个计数器最大为15, 每行的计数器数量为缓存数量上限的4倍以上)记录键的哈希值的访问次数, 取4行中的最小值作为估算值;
+	 * 记录的次数达到缓存数量上限的10倍时所有计数器减半, 使频率只反映近期的访问.
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class FrequencySketch {
+
+		private static final int[] SEEDS = {0x97cb3127, 0xa3b195b5, 0x5e9ae4b5, 0xc2b2ae35};
+		private static final int MAX_FREQUENCY = 15;
+
+		private final byte[][] counters;
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		FrequencySketch(int maxEntries) {
+			int width = Integer.highestOneBit((int) Math.min(1 << 24, Math.max(16L, maxEntries * 4L)) - 1) << 1;
+			this.counters = new byte[SEEDS.length][width];
+			this.mask = width - 1;
+			this.sampleSize = (int) Math.min(Integer.MAX_VALUE, 10L * Math.max(maxEntries, 8));
+		}
+
+		void increment(int hash) {
+			boolean isAdded = false;
+			for(int i = 0; i < SEEDS.length; i ++) {
+				int index = this.indexOf(hash, i);
+				if(this.counters[i][index] < MAX_FREQUENCY) {
+					this.counters[i][index] ++;
+					isAdded = true;
+				}
+			}
+			if(isAdded && ++ this.additions >= this.sampleSize) {
+				this.reset();
+			}
+		}
+
+		int frequency(int hash) {
+			int frequency = MAX_FREQUENCY;
+			for(int i = 0; i < SEEDS.length; i ++) {
+				frequency = Math.min(frequency, this.counters[i][this.indexOf(hash, i)]);
+			}
+			return frequency;
+		}
+
+		private int indexOf(int hash, int row) {
+			int h = (hash ^ SEEDS[row]) * 0x9e3779b9;
+			return (h ^ (h >>> 16)) & this.mask;
+		}
+
+		private void reset() {
+			for(byte[] row : this.counters) {
+				for(int i = 0; i < row.length; i ++) {
+					row[i] = (byte) (row[i] >>> 1);
+				}
+			}
+			this.additions /= 2;
+		}
+	}
+}
@@ -0,0 +1,851 @@
+package com.fy.sparam.product.executor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 按构建结果的输出列生成记录转换器
+ * <br/> 输出列对应的搜索参数字段路径(如customer.name)与对象的属性路径一致, 对象的结构可以与搜索参数类相同,
+ * 也可以只包含部分属性, 找不到属性的列会被忽略; 关联起点字段的列对应的属性是关联对象时也会被忽略.
+ * <br/> 同一个类和同一组输出列只在第一次使用时查找反射信息, 生成列位置到属性设置方法的转换计划并缓存,
+ * 之后每条记录只按列位置读取值, 转换为属性类型后直接设置; 缓存有容量上限, 超过时按加入顺序淘汰.
+ * <br/> 对象可以是具有无参构造器的类(优先使用setter, 没有则使用字段), 也可以是record类(使用规范构造器).
+ * <br/> 关联对象中所有列的值都为null时不创建关联对象; 列值为null时不设置属性, 保留属性的默认值.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public final class RowMapperFactory {
+
+	// 转换计划缓存的容量上限, 超过时按加入顺序淘汰
+	private static final int PLAN_CACHE_CAPACITY = 1024;
+	// 转换计划缓存, 以类名和输出列路径拼接的形状标识为键; 转换计划不可变, 可以在线程间共享
+	private static final Map<String, RowPlan<?>> PLAN_CACHE = new ConcurrentHashMap<String, RowPlan<?>>();
+	private static final Queue<String> PLAN_CACHE_KEYS = new ConcurrentLinkedQueue<String>();
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType CREATOR_TYPE = MethodType.methodType(Object.class);
+	private static final MethodType RECORD_CREATOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+	private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+	/**
+	 * 读取record类信息的反射方法, 运行环境不支持record时为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final Method IS_RECORD_METHOD;
+	private static final Method GET_RECORD_COMPONENTS_METHOD;
+	static {
+		Method isRecordMethod = null;
+		Method getRecordComponentsMethod = null;
+		try {
+			isRecordMethod = Class.class.getMethod("isRecord");
+			getRecordComponentsMethod = Class.class.getMethod("getRecordComponents");
+		} catch (NoSuchMethodException e) {
+			// 运行环境不支持record
+		}
+		IS_RECORD_METHOD = isRecordMethod;
+		GET_RECORD_COMPONENTS_METHOD = getRecordComponentsMethod;
+	}
+
+	private RowMapperFactory() {}
+
+	/**
+	 * 获取把构建结果的记录转换为指定类对象的转换器
+	 *
+	 * @param type 转换结果的类, 不能为null
+	 * @param result 以SELECT_FIELDS或SELECT_ENTITY_COLUMNS模式构建的结果, 不能为null
+	 * @return 记录转换器, 可以在多个线程中同时使用
+	 * @throws IllegalAccessException 构建结果不是以SELECT_FIELDS或SELECT_ENTITY_COLUMNS模式构建的则抛出异常
+	 * @throws IllegalArgumentException 类或其关联对象的类不能创建, 或者属性不能设置则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static <T> SqlExecutor.IRowMapper<T> getRowMapper(Class<T> type, SqlResult result) throws IllegalAccessException {
+		if(result == null) {
+			throw new IllegalArgumentException("构建结果不能为null");
+		}
+		return RowMapperFactory.getRowMapper(type, result.getOutputFieldPaths());
+	}
+
+	/**
+	 * 获取把记录转换为指定类对象的转换器
+	 *
+	 * @param type 转换结果的类, 不能为null
+	 * @param columnPaths 按列的顺序排列的属性路径, 一列可以对应多个属性路径, 不能为null, 为null或空的路径会被忽略
+	 * @return 记录转换器, 可以在多个线程中同时使用
+	 * @throws IllegalArgumentException 类或其关联对象的类不能创建, 或者属性不能设置则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> SqlExecutor.IRowMapper<T> getRowMapper(Class<T> type, List<String[]> columnPaths) {
+		if(type == null || columnPaths == null) {
+			throw new IllegalArgumentException("转换结果的类和属性路径不能为null");
+		}
+		StringBuilder shapeBuilder = new StringBuilder(type.getName()).append(':');
+		for(String[] paths : columnPaths) {
+			if(paths != null) {
+				for(String path : paths) {
+					shapeBuilder.append(path).append('|');
+				}
+			}
+			shapeBuilder.append(',');
+		}
+		String cacheKey = shapeBuilder.toString();
+		RowPlan<?> plan = PLAN_CACHE.get(cacheKey);
+		// 不同类加载器加载的同名类不使用缓存的转换计划
+		if(plan != null && plan.type == type) {
+			return (RowPlan<T>) plan;
+		}
+		RowPlan<T> newPlan = RowMapperFactory.compile(type, columnPaths);
+		if(plan == null && PLAN_CACHE.putIfAbsent(cacheKey, newPlan) == null) {
+			PLAN_CACHE_KEYS.offer(cacheKey);
+			while(PLAN_CACHE.size() > PLAN_CACHE_CAPACITY) {
+				String evictKey = PLAN_CACHE_KEYS.poll();
+				if(evictKey == null) {
+					break;
+				}
+				PLAN_CACHE.remove(evictKey);
+			}
+		}
+		return newPlan;
+	}
+
+	/**
+	 * 生成转换计划
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <T> RowPlan<T> compile(Class<T> type, List<String[]> columnPaths) {
+		// 把列路径整理成属性树, 同一路径出现多次时使用第一列
+		PathNode root = new PathNode();
+		for(int i = 0; i < columnPaths.size(); i ++) {
+			String[] paths = columnPaths.get(i);
+			if(paths == null) {
+				continue;
+			}
+			for(String path : paths) {
+				if(path == null || path.isEmpty()) {
+					continue;
+				}
+				PathNode node = root;
+				for(String name : path.split("\\.")) {
+					PathNode child = node.children.get(name);
+					if(child == null) {
+						child = new PathNode();
+						node.children.put(name, child);
+					}
+					node = child;
+				}
+				if(node.column < 0) {
+					node.column = i;
+				}
+			}
+		}
+		List<Integer> readColumns = new ArrayList<Integer>();
+		ObjectPlan rootPlan = RowMapperFactory.compileObject(type, root, readColumns);
+		int[] columns = new int[readColumns.size()];
+		for(int i = 0; i < columns.length; i ++) {
+			columns[i] = readColumns.get(i);
+		}
+		return new RowPlan<T>(type, rootPlan, columns, columnPaths.size());
+	}
+
+	/**
+	 * 生成一个对象的转换计划, 同时记录需要读取的列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static ObjectPlan compileObject(Class<?> type, PathNode node, List<Integer> readColumns) {
+		Object[] recordComponents = RowMapperFactory.getRecordComponents(type);
+		List<Slot> slots = new ArrayList<Slot>(node.children.size());
+		int firstColumn = readColumns.size();
+		try {
+			if(recordComponents != null) {
+				Class<?>[] argTypes = new Class<?>[recordComponents.length];
+				Map<String, Integer> argIndexes = new HashMap<String, Integer>();
+				for(int i = 0; i < recordComponents.length; i ++) {
+					Class<?> componentClass = recordComponents[i].getClass();
+					argTypes[i] = (Class<?>) componentClass.getMethod("getType").invoke(recordComponents[i]);
+					argIndexes.put((String) componentClass.getMethod("getName").invoke(recordComponents[i]), i);
+				}
+				Object[] argDefaults = new Object[argTypes.length];
+				for(int i = 0; i < argTypes.length; i ++) {
+					if(argTypes[i].isPrimitive()) {
+						argDefaults[i] = Array.get(Array.newInstance(argTypes[i], 1), 0);
+					}
+				}
+				for(Map.Entry<String, PathNode> entry : node.children.entrySet()) {
+					Integer argIndex = argIndexes.get(entry.getKey());
+					if(argIndex != null) {
+						Slot slot = RowMapperFactory.compileSlot(argTypes[argIndex], entry.getValue(), readColumns);
+						if(slot != null) {
+							slot.argIndex = argIndex;
+							slots.add(slot);
+						}
+					}
+				}
+				Constructor<?> constructor = type.getDeclaredConstructor(argTypes);
+				constructor.setAccessible(true);
+				MethodHandle creator = LOOKUP.unreflectConstructor(constructor)
+						.asSpreader(Object[].class, argTypes.length).asType(RECORD_CREATOR_TYPE);
+				return new ObjectPlan(creator, argDefaults, slots, readColumns.subList(firstColumn, readColumns.size()));
+			}
+			if(type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+				throw new IllegalArgumentException(String.format("类%s是接口或抽象类, 不能创建对象", type.getName()));
+			}
+			for(Map.Entry<String, PathNode> entry : node.children.entrySet()) {
+				String name = entry.getKey();
+				Method setter = RowMapperFactory.findSetter(type, name);
+				Field field = setter == null ? RowMapperFactory.findField(type, name) : null;
+				if(setter == null && field == null) {
+					continue;
+				}
+				Slot slot = RowMapperFactory.compileSlot(setter != null ? setter.getParameterTypes()[0] : field.getType(),
+						entry.getValue(), readColumns);
+				if(slot != null) {
+					if(setter != null) {
+						setter.setAccessible(true);
+						slot.setter = LOOKUP.unreflect(setter).asType(SETTER_TYPE);
+					} else {
+						field.setAccessible(true);
+						slot.setter = LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+					}
+					slots.add(slot);
+				}
+			}
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			MethodHandle creator = LOOKUP.unreflectConstructor(constructor).asType(CREATOR_TYPE);
+			return new ObjectPlan(creator, null, slots, readColumns.subList(firstColumn, readColumns.size()));
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException(String.format("类%s没有无参构造器或record规范构造器, 不能创建对象", type.getName()), e);
+		} catch (IllegalArgumentException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalArgumentException(String.format("生成类%s的转换计划失败", type.getName()), e);
+		}
+	}
+
+	/**
+	 * 生成一个属性的设置计划, 有下级属性的按关联对象处理(同一路径上的列被忽略), 否则按列值处理;
+	 * 属性类型不能由列值转换且可以作为关联对象创建时, 该列是关联起点字段的列, 忽略.
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Slot compileSlot(Class<?> propertyType, PathNode node, List<Integer> readColumns) {
+		if(! node.children.isEmpty()) {
+			int firstColumn = readColumns.size();
+			ObjectPlan child = RowMapperFactory.compileObject(propertyType, node, readColumns);
+			if(readColumns.size() == firstColumn) {
+				return null; /* 关联对象中没有可以设置的属性 */
+			}
+			return new Slot(child, -1, null, null);
+		}
+		if(node.column < 0) {
+			return null;
+		}
+		Class<?> valueType = MethodType.methodType(propertyType).wrap().returnType();
+		ColumnConverter converter = ColumnConverter.of(valueType);
+		if(converter == ColumnConverter.NONE && RowMapperFactory.isObjectType(valueType)) {
+			return null;
+		}
+		readColumns.add(node.column);
+		return new Slot(null, node.column, valueType, converter);
+	}
+
+	/**
+	 * 是否是可以作为关联对象创建的类型, JDK的类型和数组按列值处理
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean isObjectType(Class<?> type) {
+		if(type.isArray() || type.isInterface() || Modifier.isAbstract(type.getModifiers())
+				|| type.getName().startsWith("java.") || type.getName().startsWith("javax.")) {
+			return false;
+		}
+		if(RowMapperFactory.getRecordComponents(type) != null) {
+			return true;
+		}
+		try {
+			type.getDeclaredConstructor();
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 查找属性的public的setter, 没有则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Method findSetter(Class<?> type, String name) {
+		String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+		for(Method method : type.getMethods()) {
+			if(method.getName().equals(setterName) && method.getParameterTypes().length == 1
+					&& ! Modifier.isStatic(method.getModifiers())) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 查找类及其父类中声明的属性字段, 没有则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Field findField(Class<?> type, String name) {
+		Class<?> searchClass = type;
+		while(searchClass != null && ! Object.class.equals(searchClass)) {
+			try {
+				Field field = searchClass.getDeclaredField(name);
+				if(! Modifier.isStatic(field.getModifiers()) && ! Modifier.isFinal(field.getModifiers())) {
+					return field;
+				}
+				return null;
+			} catch (NoSuchFieldException e) {
+				// 当前类没有声明, 继续查找父类
+			}
+			searchClass = searchClass.getSuperclass();
+		}
+		return null;
+	}
+
+	/**
+	 * 获取record类的组件, 不是record类或运行环境不支持record时返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Object[] getRecordComponents(Class<?> type) {
+		if(IS_RECORD_METHOD == null) {
+			return null;
+		}
+		try {
+			if(! (Boolean) IS_RECORD_METHOD.invoke(type)) {
+				return null;
+			}
+			return (Object[]) GET_RECORD_COMPONENTS_METHOD.invoke(type);
+		} catch (Exception e) {
+			throw new IllegalArgumentException(String.format("读取record类%s的组件失败", type.getName()), e);
+		}
+	}
+
+	/**
+	 * 执行方法句柄抛出的异常按原样抛出, 其它Throwable包装后抛出
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static Exception rethrow(Throwable t) {
+		if(t instanceof Error) {
+			throw (Error) t;
+		}
+		if(t instanceof Exception) {
+			return (Exception) t;
+		}
+		return new IllegalStateException(t);
+	}
+
+	/**
+	 * 列路径整理成的属性树节点
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class PathNode {
+
+		final Map<String, PathNode> children = new LinkedHashMap<String, PathNode>();
+		int column = -1; /* 对应的列位置, 没有则为-1 */
+	}
+
+	/**
+	 * 一个属性的设置计划, 值来自一列或一个关联对象
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class Slot {
+
+		final ObjectPlan child;
+		final int column;
+		final Class<?> valueType;
+		final ColumnConverter converter;
+		MethodHandle setter; /* 普通类的属性设置方法 */
+		int argIndex; /* record类的构造器参数位置 */
+
+		Slot(ObjectPlan child, int column, Class<?> valueType, ColumnConverter converter) {
+			this.child = child;
+			this.column = column;
+			this.valueType = valueType;
+			this.converter = converter;
+		}
+
+		/**
+		 * 获取属性值, 为null表示不设置
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		Object read(Object[] vals) throws Throwable {
+			if(this.child != null) {
+				return this.child.create(vals, false);
+			}
+			Object val = vals[this.column];
+			if(val == null || this.valueType.isInstance(val)) {
+				return val;
+			}
+			return this.converter.convert(val, this.valueType);
+		}
+	}
+
+	/**
+	 * 一个对象的转换计划
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class ObjectPlan {
+
+		final MethodHandle creator;
+		final Object[] argDefaults; /* record类的构造器参数默认值, 普通类为null */
+		final Slot[] slots;
+		final int[] columns; /* 对象及其关联对象读取的列 */
+
+		ObjectPlan(MethodHandle creator, Object[] argDefaults, List<Slot> slots, List<Integer> columns) {
+			this.creator = creator;
+			this.argDefaults = argDefaults;
+			this.slots = slots.toArray(new Slot[slots.size()]);
+			this.columns = new int[columns.size()];
+			for(int i = 0; i < this.columns.length; i ++) {
+				this.columns[i] = columns.get(i);
+			}
+		}
+
+		/**
+		 * 创建对象并设置属性
+		 *
+		 * @param vals 按列位置读取的值
+		 * @param isRequired 是否必须创建, 否则所有列的值都为null时返回null
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		Object create(Object[] vals, boolean isRequired) throws Throwable {
+			if(! isRequired && ! this.hasValue(vals)) {
+				return null;
+			}
+			if(this.argDefaults != null) {
+				Object[] args = this.argDefaults.clone();
+				for(Slot slot : this.slots) {
+					Object val = slot.read(vals);
+					if(val != null) {
+						args[slot.argIndex] = val;
+					}
+				}
+				return (Object) this.creator.invokeExact(args);
+			}
+			Object obj = (Object) this.creator.invokeExact();
+			for(Slot slot : this.slots) {
+				Object val = slot.read(vals);
+				if(val != null) {
+					slot.setter.invokeExact(obj, val);
+				}
+			}
+			return obj;
+		}
+
+		private boolean hasValue(Object[] vals) {
+			for(int column : this.columns) {
+				if(vals[column] != null) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 一种输出列形状的转换计划
+	 *
+	 * @param <T> 转换结果的类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class RowPlan<T> implements SqlExecutor.IRowMapper<T> {
+
+		private final Class<T> type;
+		private final ObjectPlan rootPlan;
+		private final int[] columns; /* 需要读取的列 */
+		private final int columnCount;
+
+		RowPlan(Class<T> type, ObjectPlan rootPlan, int[] columns, int columnCount) {
+			this.type = type;
+			this.rootPlan = rootPlan;
+			this.columns = columns;
+			this.columnCount = columnCount;
+		}
+
+		@Override
+		public T mapRow(ResultSet rs) throws Exception {
+			Object[] vals = new Object[this.columnCount];
+			for(int column : this.columns) {
+				vals[column] = rs.getObject(column + 1);
+			}
+			try {
+				return this.type.cast(this.rootPlan.create(vals, true));
+			} catch (Throwable t) {
+				throw RowMapperFactory.rethrow(t);
+			}
+		}
+	}
+
+	/**
+	 * 列值到属性类型的转换方式, 按属性类型在生成转换计划时确定
+	 * <br/> 列值已经是属性类型时不经过转换.
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private enum ColumnConverter {
+
+		/**
+		 * 只接受属性类型的值
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		NONE {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				throw ColumnConverter.mismatch(val, valueType);
+			}
+		},
+
+		STRING {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return val.toString();
+			}
+		},
+
+		INT {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ColumnConverter.toNumber(val, valueType).intValue();
+			}
+		},
+
+		LONG {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ColumnConverter.toNumber(val, valueType).longValue();
+			}
+		},
+
+		SHORT {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ColumnConverter.toNumber(val, valueType).shortValue();
+			}
+		},
+
+		BYTE {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ColumnConverter.toNumber(val, valueType).byteValue();
+			}
+		},
+
+		DOUBLE {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ColumnConverter.toNumber(val, valueType).doubleValue();
+			}
+		},
+
+		FLOAT {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ColumnConverter.toNumber(val, valueType).floatValue();
+			}
+		},
+
+		BIG_DECIMAL {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				Number number = ColumnConverter.toNumber(val, valueType);
+				if(number instanceof BigDecimal) {
+					return number;
+				}
+				if(number instanceof BigInteger) {
+					return new BigDecimal((BigInteger) number);
+				}
+				return new BigDecimal(number.toString());
+			}
+		},
+
+		BIG_INTEGER {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return ((BigDecimal) BIG_DECIMAL.convert(val, valueType)).toBigInteger();
+			}
+		},
+
+		BOOLEAN {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof Number) {
+					return ((Number) val).intValue() != 0;
+				}
+				if(val instanceof String) {
+					String str = ((String) val).trim();
+					return "1".equals(str) || "true".equalsIgnoreCase(str);
+				}
+				throw ColumnConverter.mismatch(val, valueType);
+			}
+		},
+
+		CHARACTER {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				String str = val.toString();
+				if(str.length() != 1) {
+					throw ColumnConverter.mismatch(val, valueType);
+				}
+				return str.charAt(0);
+			}
+		},
+
+		/**
+		 * 日期, 包含时间部分, 对应java.util.Date
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		DATE {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				return TIMESTAMP.convert(val, valueType);
+			}
+		},
+
+		TIMESTAMP {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof LocalDateTime) {
+					return Timestamp.valueOf((LocalDateTime) val);
+				}
+				if(val instanceof LocalDate) {
+					return Timestamp.valueOf(((LocalDate) val).atStartOfDay());
+				}
+				return new Timestamp(ColumnConverter.toTime(val, valueType));
+			}
+		},
+
+		SQL_DATE {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof LocalDate) {
+					return java.sql.Date.valueOf((LocalDate) val);
+				}
+				if(val instanceof LocalDateTime) {
+					return java.sql.Date.valueOf(((LocalDateTime) val).toLocalDate());
+				}
+				return new java.sql.Date(ColumnConverter.toTime(val, valueType));
+			}
+		},
+
+		SQL_TIME {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof LocalTime) {
+					return Time.valueOf((LocalTime) val);
+				}
+				return new Time(ColumnConverter.toTime(val, valueType));
+			}
+		},
+
+		LOCAL_DATE {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof java.sql.Date) {
+					return ((java.sql.Date) val).toLocalDate();
+				}
+				return ((LocalDateTime) LOCAL_DATE_TIME.convert(val, valueType)).toLocalDate();
+			}
+		},
+
+		LOCAL_DATE_TIME {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof LocalDateTime) {
+					return val;
+				}
+				if(val instanceof LocalDate) {
+					return ((LocalDate) val).atStartOfDay();
+				}
+				if(val instanceof Timestamp) {
+					return ((Timestamp) val).toLocalDateTime();
+				}
+				return new Timestamp(ColumnConverter.toTime(val, valueType)).toLocalDateTime();
+			}
+		},
+
+		LOCAL_TIME {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				if(val instanceof Time) {
+					return ((Time) val).toLocalTime();
+				}
+				return ((LocalDateTime) LOCAL_DATE_TIME.convert(val, valueType)).toLocalTime();
+			}
+		},
+
+		/**
+		 * 枚举, 列值为名称或序号
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		ENUM {
+			@Override
+			Object convert(Object val, Class<?> valueType) {
+				Object[] constants = valueType.getEnumConstants();
+				if(val instanceof Number) {
+					int ordinal = ((Number) val).intValue();
+					if(ordinal >= 0 && ordinal < constants.length) {
+						return constants[ordinal];
+					}
+				} else {
+					String name = val.toString();
+					for(Object constant : constants) {
+						if(((Enum<?>) constant).name().equals(name)) {
+							return constant;
+						}
+					}
+				}
+				throw ColumnConverter.mismatch(val, valueType);
+			}
+		};
+
+		private static final Map<Class<?>, ColumnConverter> typeConverters = new HashMap<Class<?>, ColumnConverter>();
+		static {
+			typeConverters.put(String.class, STRING);
+			typeConverters.put(Integer.class, INT);
+			typeConverters.put(Long.class, LONG);
+			typeConverters.put(Short.class, SHORT);
+			typeConverters.put(Byte.class, BYTE);
+			typeConverters.put(Double.class, DOUBLE);
+			typeConverters.put(Float.class, FLOAT);
+			typeConverters.put(BigDecimal.class, BIG_DECIMAL);
+			typeConverters.put(BigInteger.class, BIG_INTEGER);
+			typeConverters.put(Boolean.class, BOOLEAN);
+			typeConverters.put(Character.class, CHARACTER);
+			typeConverters.put(Date.class, DATE);
+			typeConverters.put(Timestamp.class, TIMESTAMP);
+			typeConverters.put(java.sql.Date.class, SQL_DATE);
+			typeConverters.put(Time.class, SQL_TIME);
+			typeConverters.put(LocalDate.class, LOCAL_DATE);
+			typeConverters.put(LocalDateTime.class, LOCAL_DATE_TIME);
+			typeConverters.put(LocalTime.class, LOCAL_TIME);
+		}
+
+		/**
+		 * 把不是属性类型的列值转换为属性类型
+		 *
+		 * @param val 列值, 不为null
+		 * @param valueType 属性类型, 基本类型已经转换为包装类型
+		 * @return 转换后的值
+		 * @throws IllegalArgumentException 不能转换则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		abstract Object convert(Object val, Class<?> valueType);
+
+		/**
+		 * 获取属性类型的转换方式
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		static ColumnConverter of(Class<?> valueType) {
+			if(valueType.isEnum()) {
+				return ENUM;
+			}
+			ColumnConverter converter = typeConverters.get(valueType);
+			return converter == null ? NONE : converter;
+		}
+
+		private static Number toNumber(Object val, Class<?> valueType) {
+			if(val instanceof Number) {
+				return (Number) val;
+			}
+			if(val instanceof Boolean) {
+				return (Boolean) val ? 1 : 0;
+			}
+			if(val instanceof String) {
+				try {
+					return new BigDecimal(((String) val).trim());
+				} catch (NumberFormatException e) {
+					throw ColumnConverter.mismatch(val, valueType);
+				}
+			}
+			throw ColumnConverter.mismatch(val, valueType);
+		}
+
+		private static long toTime(Object val, Class<?> valueType) {
+			if(val instanceof Date) {
+				return ((Date) val).getTime();
+			}
+			if(val instanceof Number) {
+				return ((Number) val).longValue();
+			}
+			throw ColumnConverter.mismatch(val, valueType);
+		}
+
+		private static IllegalArgumentException mismatch(Object val, Class<?> valueType) {
+			return new IllegalArgumentException(String.format("列值%s(%s)不能转换为属性类型%s",
+					val, val.getClass().getName(), valueType.getName()));
+		}
+	}
+}
@@ -0,0 +1,463 @@
+package com.fy.sparam.product.executor;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlOrderBy;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 分散执行合并结果的执行器
+ * <br/> 把多个目标(分表或分库)上的构建结果并行执行, 同时执行的数量有上限;
+ * 按构建结果额外输出的排序列进行多路归并, 并在合并后的结果上进行全局分页.
+ * <br/> 有分页时每个目标只获取从头到当前页结束位置的记录(page * count条).
+ * <br/> 字符串排序列的顺序由数据库的排序规则决定, 需要指定与之一致的比较器才能合并.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class ScatterGatherExecutor {
+
+	/**
+	 * 执行的目标, 由数据源和在该数据源上执行的构建结果组成
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class Target {
+
+		private final DataSource dataSource;
+		private final SqlResult result;
+
+		/**
+		 * 构造器: 指定数据源和在该数据源上执行的构建结果
+		 *
+		 * @param dataSource 数据源, 不能为null
+		 * @param result 在该数据源上执行的构建结果, 不能为null且不能是需要分表执行的结果
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public Target(DataSource dataSource, SqlResult result) {
+			if(dataSource == null || result == null) {
+				throw new IllegalArgumentException("执行目标的数据源和构建结果不能为null");
+			}
+			if(result.isShardFanOut()) {
+				throw new IllegalArgumentException("执行目标的构建结果需要在多个分表中执行, 请使用分表执行计划中的结果");
+			}
+			this.dataSource = dataSource;
+			this.result = result;
+		}
+
+		public DataSource getDataSource() {
+			return dataSource;
+		}
+
+		public SqlResult getResult() {
+			return result;
+		}
+	}
+
+	/**
+	 * 执行查询使用的线程执行器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Executor executor;
+
+	/**
+	 * 同时执行的目标数量上限
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int maxConcurrency;
+
+	/**
+	 * 比较字符串排序列的比较器, 需要与数据库的排序规则一致, 为null时不能按字符串排序列合并
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Comparator<Object> stringComparator;
+
+	private final SqlExecutor sqlExecutor;
+
+	/**
+	 * 构造器: 指定线程执行器和同时执行的目标数量上限, 不能按字符串排序列合并
+	 *
+	 * @param executor 执行查询使用的线程执行器, 不能为null
+	 * @param maxConcurrency 同时执行的目标数量上限, 需要大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public ScatterGatherExecutor(Executor executor, int maxConcurrency) {
+		this(executor, maxConcurrency, null);
+	}
+
+	/**
+	 * 构造器: 指定线程执行器, 同时执行的目标数量上限和字符串排序列的比较器
+	 *
+	 * @param executor 执行查询使用的线程执行器, 不能为null
+	 * @param maxConcurrency 同时执行的目标数量上限, 需要大于0
+	 * @param stringComparator 比较字符串排序列的比较器, 需要与数据库的排序规则一致(如对应locale的{@link java.text.Collator});
+	 * 为null时有字符串排序列的结果不能合并
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public ScatterGatherExecutor(Executor executor, int maxConcurrency, Comparator<Object> stringComparator) {
+		this(executor, maxConcurrency, stringComparator, new SqlExecutor());
+	}
+
+	/**
+	 * 构造器: 指定线程执行器, 同时执行的目标数量上限, 字符串排序列的比较器和在每个目标上执行查询的执行器
+	 *
+	 * @param executor 执行查询使用的线程执行器, 不能为null
+	 * @param maxConcurrency 同时执行的目标数量上限, 需要大于0
+	 * @param stringComparator 比较字符串排序列的比较器, 需要与数据库的排序规则一致; 为null时有字符串排序列的结果不能合并
+	 * @param sqlExecutor 在每个目标上执行查询的执行器, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public ScatterGatherExecutor(Executor executor, int maxConcurrency, Comparator<Object> stringComparator,
+			SqlExecutor sqlExecutor) {
+		if(executor == null || sqlExecutor == null) {
+			throw new IllegalArgumentException("线程执行器和执行查询的执行器不能为null");
+		}
+		if(maxConcurrency <= 0) {
+			throw new IllegalArgumentException("同时执行的目标数量上限需要大于0");
+		}
+		this.executor = executor;
+		this.maxConcurrency = maxConcurrency;
+		this.stringComparator = stringComparator;
+		this.sqlExecutor = sqlExecutor;
+	}
+
+	/**
+	 * 在分表执行计划的每个分表上执行查询, 所有分表使用同一个数据源
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param shardResults 分表执行计划, 参考{@link SqlResult#getShardResults()}
+	 * @return 合并并分页后的记录, 每条记录是按查询列顺序排列的值, 包括末尾额外输出的排序列
+	 * @throws Exception 执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<Object[]> query(DataSource dataSource, List<SqlResult> shardResults) throws Exception {
+		if(shardResults == null) {
+			throw new IllegalArgumentException("分表执行计划不能为null");
+		}
+		List<Target> targets = new ArrayList<Target>(shardResults.size());
+		for(SqlResult shardResult : shardResults) {
+			targets.add(new Target(dataSource, shardResult));
+		}
+		return this.query(targets);
+	}
+
+	/**
+	 * 在所有目标上执行查询并合并结果
+	 * <br/> 所有目标的构建结果需要来自同一个搜索参数(相同的输出列, 排序和分页).
+	 * <br/> 有排序时构建结果需要额外输出排序列({@link SqlResult#isOrderColumnsOutput()}), 合并结果按排序列有序;
+	 * 没有排序时按目标顺序拼接.
+	 *
+	 * @param targets 执行的目标, 不能为null
+	 * @return 合并并分页后的记录, 每条记录是按查询列顺序排列的值, 包括末尾额外输出的排序列
+	 * @throws Exception 执行失败则抛出异常, 其中一个目标失败时会取消其它还没完成的目标;
+	 * 没有输出排序列或者字符串排序列没有指定比较器时抛出{@link IllegalArgumentException}
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public List<Object[]> query(List<Target> targets) throws Exception {
+		if(targets == null) {
+			throw new IllegalArgumentException("执行的目标不能为null");
+		}
+		if(targets.isEmpty()) {
+			return new ArrayList<Object[]>(0);
+		}
+		SqlResult firstResult = targets.get(0).getResult();
+		final List<SqlOrderBy> orderBys = firstResult.getOrderBys();
+		if(! orderBys.isEmpty() && ! firstResult.isOrderColumnsOutput()) {
+			throw new IllegalArgumentException("构建结果没有输出排序列, 无法合并结果, 请开启搜索参数的排序列输出");
+		}
+		boolean hasLimit = firstResult.hasLimit();
+		int start = firstResult.getLimitStart();
+		int count = firstResult.getLimitCount();
+		// 并行执行, 每个目标只获取到当前页结束位置
+		List<SqlResult> executeResults = new ArrayList<SqlResult>(targets.size());
+		for(Target target : targets) {
+			SqlResult executeResult = target.getResult();
+			if(hasLimit) {
+				executeResult = executeResult.withLimit(0, start + count);
+			}
+			executeResults.add(executeResult);
+		}
+		final List<TargetRows> allTargetRows = this.executeAll(targets, executeResults, orderBys);
+		// 多路归并
+		List<Object[]> mergedRows = new ArrayList<Object[]>();
+		int skipCount = hasLimit ? start : 0;
+		int takeCount = hasLimit ? count : Integer.MAX_VALUE;
+		if(orderBys.isEmpty()) {
+			for(TargetRows targetRows : allTargetRows) {
+				for(Object[] row : targetRows.rows) {
+					if(skipCount > 0) {
+						skipCount --;
+					} else if(mergedRows.size() < takeCount) {
+						mergedRows.add(row);
+					}
+				}
+			}
+			return mergedRows;
+		}
+		PriorityQueue<TargetRows> heads = new PriorityQueue<TargetRows>(allTargetRows.size(), new Comparator<TargetRows>() {
+			@Override
+			public int compare(TargetRows o1, TargetRows o2) {
+				Object[] row1 = o1.rows.get(o1.position);
+				Object[] row2 = o2.rows.get(o2.position);
+				for(int i = 0; i < orderBys.size(); i ++) {
+					int result = compareVal(row1[o1.sortIndexes[i]], row2[o2.sortIndexes[i]]);
+					if(result != 0) {
+						return orderBys.get(i).isAsc() ? result : - result;
+					}
+				}
+				return o1.targetIndex - o2.targetIndex;
+			}
+		});
+		for(TargetRows targetRows : allTargetRows) {
+			if(! targetRows.rows.isEmpty()) {
+				heads.add(targetRows);
+			}
+		}
+		while(! heads.isEmpty() && mergedRows.size() < takeCount) {
+			TargetRows targetRows = heads.poll();
+			Object[] row = targetRows.rows.get(targetRows.position);
+			if(skipCount > 0) {
+				skipCount --;
+			} else {
+				mergedRows.add(row);
+			}
+			targetRows.position ++;
+			if(targetRows.position < targetRows.rows.size()) {
+				heads.add(targetRows);
+			}
+		}
+		return mergedRows;
+	}
+
+	/**
+	 * 以有上限的并行数量执行所有目标, 完成一个再提交下一个
+	 *
+	 * @param targets 执行的目标
+	 * @param executeResults 各个目标实际执行的构建结果
+	 * @param orderBys 排序列
+	 * @return 各个目标的查询记录, 顺序与目标一致
+	 * @throws Exception 执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<TargetRows> executeAll(List<Target> targets, List<SqlResult> executeResults,
+			final List<SqlOrderBy> orderBys) throws Exception {
+		int targetCount = targets.size();
+		TargetRows[] allTargetRows = new TargetRows[targetCount];
+		CompletionService<TargetRows> completionService = new ExecutorCompletionService<TargetRows>(this.executor);
+		List<Future<TargetRows>> futures = new ArrayList<Future<TargetRows>>(targetCount);
+		int nextIndex = 0;
+		int runningCount = 0;
+		try {
+			while(nextIndex < targetCount && runningCount < this.maxConcurrency) {
+				futures.add(this.submit(completionService, nextIndex, targets.get(nextIndex),
+						executeResults.get(nextIndex), orderBys));
+				nextIndex ++;
+				runningCount ++;
+			}
+			while(runningCount > 0) {
+				TargetRows targetRows = completionService.take().get();
+				runningCount --;
+				allTargetRows[targetRows.targetIndex] = targetRows;
+				if(nextIndex < targetCount) {
+					futures.add(this.submit(completionService, nextIndex, targets.get(nextIndex),
+							executeResults.get(nextIndex), orderBys));
+					nextIndex ++;
+					runningCount ++;
+				}
+			}
+		} catch(ExecutionException e) {
+			for(Future<TargetRows> future : futures) {
+				future.cancel(true);
+			}
+			if(e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} catch(InterruptedException e) {
+			for(Future<TargetRows> future : futures) {
+				future.cancel(true);
+			}
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+		List<TargetRows> result = new ArrayList<TargetRows>(targetCount);
+		for(TargetRows targetRows : allTargetRows) {
+			result.add(targetRows);
+		}
+		return result;
+	}
+
+	/**
+	 * 提交一个目标的查询任务
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Future<TargetRows> submit(CompletionService<TargetRows> completionService, final int targetIndex,
+			final Target target, final SqlResult executeResult, final List<SqlOrderBy> orderBys) {
+		return completionService.submit(new Callable<TargetRows>() {
+			@Override
+			public TargetRows call() throws Exception {
+				return ScatterGatherExecutor.this.fetch(targetIndex, target.getDataSource(), executeResult, orderBys);
+			}
+		});
+	}
+
+	/**
+	 * 在数据源上执行构建结果并读取所有记录
+	 *
+	 * @param targetIndex 目标的位置
+	 * @param dataSource 数据源
+	 * @param result 执行的构建结果
+	 * @param orderBys 排序项, 用来确定排序列在记录中的位置
+	 * @return 目标的查询记录
+	 * @throws Exception 执行失败或排序列不在输出列中则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private TargetRows fetch(int targetIndex, DataSource dataSource, SqlResult result,
+			final List<SqlOrderBy> orderBys) throws Exception {
+		final List<Object[]> rows = new ArrayList<Object[]>();
+		final int[] sortIndexes = new int[orderBys.size()];
+		this.sqlExecutor.query(dataSource, result, new SqlExecutor.IRowHandler() {
+			@Override
+			public boolean onRow(ResultSet rs) throws Exception {
+				// 排序列的位置只在第一条记录时查找, 没有记录时不需要
+				if(rows.isEmpty()) {
+					ResultSetMetaData metaData = rs.getMetaData();
+					for(int i = 0; i < sortIndexes.length; i ++) {
+						sortIndexes[i] = findColumnIndex(metaData, orderBys.get(i));
+					}
+				}
+				rows.add(SqlExecutor.OBJECT_ARRAY_MAPPER.mapRow(rs));
+				return true;
+			}
+		});
+		return new TargetRows(targetIndex, rows, sortIndexes);
+	}
+
+	/**
+	 * 找到排序项额外输出的排序列在记录中的位置, 只按排序列的别名查找
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static int findColumnIndex(ResultSetMetaData metaData, SqlOrderBy orderBy) throws Exception {
+		int columnCount = metaData.getColumnCount();
+		for(int i = 1; i <= columnCount; i ++) {
+			if(orderBy.getColumnLabel().equalsIgnoreCase(metaData.getColumnLabel(i))) {
+				return i - 1;
+			}
+		}
+		throw new IllegalArgumentException(String.format(
+				"排序项%s的排序列%s不在查询的输出列中, 无法合并结果", orderBy.getExpression(), orderBy.getColumnLabel()));
+	}
+
+	/**
+	 * 比较两个排序列的值, null最小, 不同类型的数字按数值比较, 字符串使用指定的比较器比较
+	 *
+	 * @throws IllegalArgumentException 字符串没有指定比较器或者值不能比较时抛出
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private int compareVal(Object val1, Object val2) {
+		if(val1 == val2) {
+			return 0;
+		}
+		if(val1 == null) {
+			return -1;
+		}
+		if(val2 == null) {
+			return 1;
+		}
+		if(val1 instanceof Number && val2 instanceof Number && ! val1.getClass().equals(val2.getClass())) {
+			return new BigDecimal(val1.toString()).compareTo(new BigDecimal(val2.toString()));
+		}
+		if(val1 instanceof CharSequence || val2 instanceof CharSequence) {
+			if(this.stringComparator == null) {
+				throw new IllegalArgumentException("字符串排序列需要指定与数据库排序规则一致的比较器才能合并结果");
+			}
+			return this.stringComparator.compare(val1.toString(), val2.toString());
+		}
+		if(val1 instanceof Comparable && val1.getClass().isInstance(val2)) {
+			return ((Comparable) val1).compareTo(val2);
+		}
+		if(val2 instanceof Comparable && val2.getClass().isInstance(val1)) {
+			return - ((Comparable) val2).compareTo(val1);
+		}
+		throw new IllegalArgumentException(String.format("排序列的值%s(%s)与%s(%s)不能比较, 无法合并结果",
+				val1, val1.getClass().getName(), val2, val2.getClass().getName()));
+	}
+
+	/**
+	 * 去掉构建结果sql语句末尾的';', 部分驱动不接受
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	static String toExecutableSql(String sql) {
+		String executableSql = sql.trim();
+		if(executableSql.endsWith(";")) {
+			executableSql = executableSql.substring(0, executableSql.length() - 1);
+		}
+		return executableSql;
+	}
+
+	/**
+	 * 一个目标的查询记录以及合并时的读取位置
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class TargetRows {
+
+		private final int targetIndex;
+		private final List<Object[]> rows;
+		private final int[] sortIndexes;
+		private int position;
+
+		private TargetRows(int targetIndex, List<Object[]> rows, int[] sortIndexes) {
+			this.targetIndex = targetIndex;
+			this.rows = rows;
+			this.sortIndexes = sortIndexes;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package com.fy.sparam.product.executor;
+
+import java.io.InterruptedIOException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 合并相同查询的执行器
+ * <br/> 多个线程同时执行相同的查询(数据源, sql语句, 占位符值和记录转换器都相同)时, 只有第一个线程执行,
+ * 其它线程等待并共用它的只读结果; 执行完成后再执行相同的查询会重新执行, 不缓存结果.
+ * <br/> 等待的线程超时或被中断时只放弃自己的等待, 不影响执行和其它等待的线程;
+ * 执行的线程被中断或超时导致执行失败时, 等待的线程重新竞争执行, 不会收到别人的中断或超时; 其它执行失败时所有等待的线程以同一个异常失败.
+ * <br/> 结果列表是只读的, 列表中的转换结果由所有线程共用, 不应该修改.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SingleFlightExecutor {
+
+	private final SqlExecutor sqlExecutor;
+
+	/**
+	 * 正在执行的查询
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final ConcurrentMap<ExecutionKey, CompletableFuture<List<?>>> flights =
+			new ConcurrentHashMap<ExecutionKey, CompletableFuture<List<?>>>();
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final AtomicLong executionCount = new AtomicLong();
+	private final AtomicLong sharedCount = new AtomicLong();
+
+	/**
+	 * 构造器: 使用默认的执行器
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SingleFlightExecutor() {
+		this(new SqlExecutor());
+	}
+
+	/**
+	 * 构造器: 指定执行查询的执行器
+	 *
+	 * @param sqlExecutor 执行查询的执行器, 不能为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SingleFlightExecutor(SqlExecutor sqlExecutor) {
+		if(sqlExecutor == null) {
+			throw new IllegalArgumentException("执行器不能为null");
+		}
+		this.sqlExecutor = sqlExecutor;
+	}
+
+	/**
+	 * 执行查询, 有相同的查询正在执行时等待并共用它的结果
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 查询的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null, 相同的查询需要使用同一个转换器实例才能合并
+	 * @return 只读的转换结果列表
+	 * @throws Exception 执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> List<T> queryList(DataSource dataSource, SqlResult result, SqlExecutor.IRowMapper<T> mapper) throws Exception {
+		return this.queryList(dataSource, result, mapper, -1, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 执行查询, 有相同的查询正在执行时最多等待指定的时间并共用它的结果
+	 * <br/> 自己执行时同样受时间限制: 剩余的时间向上取整为秒作为语句的查询超时, 读取记录时超过时间也停止读取.
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 查询的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null, 相同的查询需要使用同一个转换器实例才能合并
+	 * @param timeout 最多等待的时间, 小于0表示一直等待
+	 * @param unit 等待时间的单位, 不能为null
+	 * @return 只读的转换结果列表
+	 * @throws TimeoutException 等待或自己执行超时则抛出异常, 别人正在进行的执行不受影响
+	 * @throws InterruptedException 等待时被中断则抛出异常, 正在进行的执行不受影响
+	 * @throws Exception 执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> queryList(DataSource dataSource, SqlResult result, SqlExecutor.IRowMapper<T> mapper,
+			long timeout, TimeUnit unit) throws Exception {
+		if(dataSource == null || result == null || mapper == null || unit == null) {
+			throw new IllegalArgumentException("查询的数据源, 构建结果, 记录转换器和等待时间的单位不能为null");
+		}
+		ExecutionKey key = new ExecutionKey(dataSource, result, mapper);
+		long deadline = timeout < 0 ? 0 : System.nanoTime() + unit.toNanos(timeout);
+		while(true) {
+			CompletableFuture<List<?>> flight = new CompletableFuture<List<?>>();
+			CompletableFuture<List<?>> existFlight = this.flights.putIfAbsent(key, flight);
+			if(existFlight == null) {
+				return this.execute(key, flight, dataSource, result, mapper, timeout < 0 ? 0 : deadline);
+			}
+			List<?> rows;
+			try {
+				if(timeout < 0) {
+					rows = existFlight.get();
+				} else {
+					rows = existFlight.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				}
+			} catch (CancellationException e) {
+				// 执行的线程被中断或超时, 重新竞争执行
+				continue;
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if(cause instanceof Exception) {
+					throw (Exception) cause;
+				}
+				if(cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw e;
+			}
+			// 只统计实际共用到结果的等待, 重新竞争或失败的不算
+			this.sharedCount.incrementAndGet();
+			return (List<T>) rows;
+		}
+	}
+
+	/**
+	 * 获取正在执行的查询数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int getInFlightCount() {
+		return this.flights.size();
+	}
+
+	/**
+	 * 获取实际执行的查询次数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public long getExecutionCount() {
+		return this.executionCount.get();
+	}
+
+	/**
+	 * 获取共用别人执行结果的次数, 只统计得到了结果的等待, 等待超时, 失败或重新竞争执行的不算
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public long getSharedCount() {
+		return this.sharedCount.get();
+	}
+
+	/**
+	 * 作为第一个线程执行查询, 完成后先移除正在执行的记录再通知等待的线程
+	 *
+	 * @param deadline 执行的截止时间({@link System#nanoTime()}), 为0表示不限制
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private <T> List<T> execute(ExecutionKey key, CompletableFuture<List<?>> flight, DataSource dataSource,
+			SqlResult result, SqlExecutor.IRowMapper<T> mapper, long deadline) throws Exception {
+		this.executionCount.incrementAndGet();
+		List<T> rows;
+		try {
+			int queryTimeout = 0;
+			if(deadline != 0) {
+				long remain = SingleFlightExecutor.checkDeadline(deadline);
+				queryTimeout = (int) Math.min(Integer.MAX_VALUE, (remain + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+			}
+			rows = new ArrayList<T>();
+			SqlExecutor.RowIterator<T> iterator = this.sqlExecutor.iterate(dataSource, result, mapper, queryTimeout);
+			try {
+				while(iterator.hasNext()) {
+					if(deadline != 0) {
+						SingleFlightExecutor.checkDeadline(deadline);
+					}
+					rows.add(iterator.next());
+				}
+			} finally {
+				iterator.close();
+			}
+			rows = Collections.unmodifiableList(rows);
+		} catch (Throwable e) {
+			this.flights.remove(key, flight);
+			boolean isTimeout = deadline != 0 && SingleFlightExecutor.isTimeout(e);
+			if(isTimeout || SingleFlightExecutor.isInterruption(e)) {
+				flight.cancel(false);
+			} else {
+				flight.completeExceptionally(e);
+			}
+			if(isTimeout && ! (e instanceof TimeoutException)) {
+				TimeoutException timeoutException = new TimeoutException("执行查询超时");
+				timeoutException.initCause(e);
+				throw timeoutException;
+			}
+			if(e instanceof Exception) {
+				throw (Exception) e;
+			}
+			throw (Error) e;
+		}
+		this.flights.remove(key, flight);
+		flight.complete(rows);
+		return rows;
+	}
+
+	/**
+	 * 检查是否已经超过截止时间
+	 *
+	 * @return 剩余的纳秒数, 大于0
+	 * @throws TimeoutException 超过截止时间则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static long checkDeadline(long deadline) throws TimeoutException {
+		long remain = deadline - System.nanoTime();
+		if(remain <= 0) {
+			throw new TimeoutException("执行查询超时");
+		}
+		return remain;
+	}
+
+	/**
+	 * 判断执行失败是否是超时导致的, 包括语句的查询超时
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean isTimeout(Throwable error) {
+		for(Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if(cause instanceof TimeoutException || cause instanceof SQLTimeoutException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 判断执行失败是否是执行的线程被中断导致的, 驱动一般会把中断包装为其它异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static boolean isInterruption(Throwable error) {
+		if(Thread.currentThread().isInterrupted()) {
+			return true;
+		}
+		for(Throwable cause = error; cause != null; cause = cause.getCause()) {
+			if(cause instanceof InterruptedException || cause instanceof InterruptedIOException) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,228 @@
+package com.fy.sparam.product.executor;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlResult;
+import com.fy.sparam.product.SqlSplitPlan;
+import com.fy.sparam.product.SqlSplitPlan.SplitJoin;
+
+/**
+ * 拆分查询的执行器, 执行{@link com.fy.sparam.product.SqlParameter#buildSplitPlan(Object...)}构建的执行计划
+ * <br/> 先执行根查询, 再按上一级记录中的关联来源字段值对每个拆分出来的关联执行in条件的查询(值较多时分批执行),
+ * 最后在内存中把关联的记录交给上一级的每条记录.
+ * <br/> 相同关联字段值的关联记录只查询和转换一次, 由关联到它的所有上一级记录共用.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SplitQueryExecutor {
+
+	/**
+	 * 关联记录转换器, 转换拆分查询的记录并交给上一级的记录
+	 *
+	 * @param <P> 上一级记录的转换结果的类型
+	 * @param <C> 关联记录的转换结果的类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public interface IJoinMapper<P, C> extends SqlExecutor.IRowMapper<C> {
+
+		/**
+		 * 把关联的记录交给上一级的记录, 上一级的每条记录调用一次
+		 *
+		 * @param parent 上一级记录的转换结果
+		 * @param children 只读的关联记录的转换结果, 按查询返回的顺序排列, 没有关联的记录时为空列表
+		 * @throws Exception 处理失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		void attach(P parent, List<C> children) throws Exception;
+	}
+
+	/**
+	 * 默认每次查询最多使用的关联字段值数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final int DEFAULT_MAX_KEYS = 1000;
+
+	private final SqlExecutor sqlExecutor;
+	private final int maxKeys;
+
+	/**
+	 * 构造器: 使用默认的执行器和每次查询最多使用的关联字段值数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SplitQueryExecutor() {
+		this(new SqlExecutor(), DEFAULT_MAX_KEYS);
+	}
+
+	/**
+	 * 构造器: 指定执行查询的执行器和每次查询最多使用的关联字段值数量
+	 *
+	 * @param sqlExecutor 执行查询的执行器, 不能为null
+	 * @param maxKeys 每次查询最多使用的关联字段值数量, 必须大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SplitQueryExecutor(SqlExecutor sqlExecutor, int maxKeys) {
+		if(sqlExecutor == null) {
+			throw new IllegalArgumentException("执行器不能为null");
+		}
+		if(maxKeys <= 0) {
+			throw new IllegalArgumentException("每次查询最多使用的关联字段值数量必须大于0");
+		}
+		this.sqlExecutor = sqlExecutor;
+		this.maxKeys = maxKeys;
+	}
+
+	/**
+	 * 执行拆分查询, 返回根查询的转换结果
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param plan 拆分查询的执行计划, 不能为null且根查询不能是需要分表执行的结果
+	 * @param rootMapper 根查询的记录转换器, 不能为null
+	 * @param joinMappers 拆分出来的关联搜索参数路径({@link SplitJoin#getPath()})对应的关联记录转换器,
+	 * 每个拆分出来的关联都需要有, 上一级记录的类型需要与上一级的转换结果一致
+	 * @return 根查询的转换结果列表, 已经交给了关联的记录
+	 * @throws Exception 执行, 转换或处理失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> queryList(DataSource dataSource, SqlSplitPlan plan, SqlExecutor.IRowMapper<T> rootMapper,
+			Map<String, ? extends IJoinMapper<?, ?>> joinMappers) throws Exception {
+		if(dataSource == null || plan == null || rootMapper == null || joinMappers == null) {
+			throw new IllegalArgumentException("拆分查询的数据源, 执行计划, 根查询的记录转换器和关联记录转换器不能为null");
+		}
+		List<SplitJoin> splitJoins = plan.getSplitJoins();
+		for(SplitJoin splitJoin : splitJoins) {
+			if(joinMappers.get(splitJoin.getPath()) == null) {
+				throw new IllegalArgumentException(String.format("拆分出来的关联[%s]没有对应的关联记录转换器", splitJoin.getPath()));
+			}
+		}
+		// 每一级记录需要读取的关联来源字段列, 第一项是根查询的
+		List<List<String>> levelFromKeyColumns = new ArrayList<List<String>>(splitJoins.size() + 1);
+		for(int i = 0; i <= splitJoins.size(); i ++) {
+			levelFromKeyColumns.add(new ArrayList<String>());
+		}
+		for(SplitJoin splitJoin : splitJoins) {
+			levelFromKeyColumns.get(splitJoin.getFromIndex() + 1).add(splitJoin.getFromKeyColumn());
+		}
+		List<List<SplitRow>> levelRows = new ArrayList<List<SplitRow>>(splitJoins.size() + 1);
+		levelRows.add(this.queryRows(dataSource, plan.getRootResult(), rootMapper, null, levelFromKeyColumns.get(0)));
+		for(int i = 0; i < splitJoins.size(); i ++) {
+			SplitJoin splitJoin = splitJoins.get(i);
+			IJoinMapper<Object, Object> joinMapper = (IJoinMapper<Object, Object>) joinMappers.get(splitJoin.getPath());
+			List<SplitRow> parentRows = levelRows.get(splitJoin.getFromIndex() + 1);
+			String fromKeyColumn = splitJoin.getFromKeyColumn();
+			// 收集上一级记录中不重复的关联来源字段值
+			Map<Object, Object> keys = new LinkedHashMap<Object, Object>();
+			for(SplitRow parentRow : parentRows) {
+				Object key = parentRow.getFromKey(fromKeyColumn);
+				if(key != null) {
+					keys.put(EntityCache.toKey(key), key);
+				}
+			}
+			// 分批查询关联的记录, 按被关联字段值分组
+			List<SplitRow> rows = new ArrayList<SplitRow>();
+			Map<Object, List<Object>> groupedChildren = new HashMap<Object, List<Object>>();
+			List<Object> keyVals = new ArrayList<Object>(keys.values());
+			for(int start = 0; start < keyVals.size(); start += this.maxKeys) {
+				SqlResult result = splitJoin.buildResult(keyVals.subList(start, Math.min(keyVals.size(), start + this.maxKeys)));
+				for(SplitRow row : this.queryRows(dataSource, result, joinMapper, splitJoin.getKeyColumn(),
+						levelFromKeyColumns.get(i + 1))) {
+					rows.add(row);
+					Object groupKey = EntityCache.toKey(row.key);
+					List<Object> children = groupedChildren.get(groupKey);
+					if(children == null) {
+						children = new ArrayList<Object>();
+						groupedChildren.put(groupKey, children);
+					}
+					children.add(row.value);
+				}
+			}
+			levelRows.add(rows);
+			// 把关联的记录交给上一级的每条记录
+			Map<Object, List<Object>> readOnlyChildren = new HashMap<Object, List<Object>>(groupedChildren.size());
+			for(Map.Entry<Object, List<Object>> entry : groupedChildren.entrySet()) {
+				readOnlyChildren.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+			}
+			for(SplitRow parentRow : parentRows) {
+				Object key = parentRow.getFromKey(fromKeyColumn);
+				List<Object> children = key == null ? null : readOnlyChildren.get(EntityCache.toKey(key));
+				joinMapper.attach(parentRow.value, children == null ? Collections.emptyList() : children);
+			}
+		}
+		List<T> rootValues = new ArrayList<T>(levelRows.get(0).size());
+		for(SplitRow rootRow : levelRows.get(0)) {
+			rootValues.add((T) rootRow.value);
+		}
+		return rootValues;
+	}
+
+	/**
+	 * 执行一级查询, 转换记录并读取关联字段列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private List<SplitRow> queryRows(DataSource dataSource, SqlResult result, final SqlExecutor.IRowMapper<?> mapper,
+			final String keyColumn, final List<String> fromKeyColumns) throws Exception {
+		final List<SplitRow> rows = new ArrayList<SplitRow>();
+		this.sqlExecutor.query(dataSource, result, new SqlExecutor.IRowHandler() {
+			@Override
+			public boolean onRow(ResultSet rs) throws Exception {
+				Object value = mapper.mapRow(rs);
+				Object key = keyColumn == null ? null : rs.getObject(keyColumn);
+				Object[] fromKeys = new Object[fromKeyColumns.size()];
+				for(int i = 0; i < fromKeys.length; i ++) {
+					fromKeys[i] = rs.getObject(fromKeyColumns.get(i));
+				}
+				rows.add(new SplitRow(value, key, fromKeyColumns, fromKeys));
+				return true;
+			}
+		});
+		return rows;
+	}
+
+	/**
+	 * 一级查询中的一条记录, 包括转换结果, 被关联字段值和下一级需要的关联来源字段值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class SplitRow {
+
+		private final Object value;
+		private final Object key;
+		private final List<String> fromKeyColumns;
+		private final Object[] fromKeys;
+
+		private SplitRow(Object value, Object key, List<String> fromKeyColumns, Object[] fromKeys) {
+			this.value = value;
+			this.key = key;
+			this.fromKeyColumns = fromKeyColumns;
+			this.fromKeys = fromKeys;
+		}
+
+		private Object getFromKey(String fromKeyColumn) {
+			return this.fromKeys[this.fromKeyColumns.indexOf(fromKeyColumn)];
+		}
+	}
+}
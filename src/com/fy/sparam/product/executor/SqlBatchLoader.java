@@ -0,0 +1,362 @@
+package com.fy.sparam.product.executor;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlParameter.BuildMode;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 按键批量加载记录的加载器
+ * <br/> 多个调用者各自按一个键加载记录(如同时按用户ID查询客户)时, 先把键放入等待的批次,
+ * 批次中的键达到数量上限或者等待时间到达时, 从模板搜索参数分叉出一个搜索参数, 以所有键的in条件执行一次查询,
+ * 再按每条记录的键把记录分配给对应调用者的异步结果. 同一个批次中相同的键只查询一次, 调用者共用同一个结果列表.
+ * <br/> 模板搜索参数可以预先设置其它条件和输出, 加载时与键的in条件以AND方式连接, 并忽略LIMIT语句以免截断其它键的记录;
+ * 模板需要是没有动态关联的根搜索参数, 在加载器使用期间不能修改.
+ * <br/> 可以在多个线程中同时使用.
+ *
+ * @param <K> 键的类型
+ * @param <T> 记录转换结果的类型
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SqlBatchLoader<K, T> {
+
+	/**
+	 * 所有加载器共用的定时器, 用于在等待时间到达时执行批次
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static volatile ScheduledExecutorService defaultScheduler;
+
+	private final SqlParameter template;
+	private final String keyPath;
+	private final BuildMode buildMode;
+	private final DataSource dataSource;
+	private final AsyncSqlExecutor executor;
+
+	/**
+	 * 从记录中读取键的转换器, 读取的键与加载的键按值比较(整数不区分类型)
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final SqlExecutor.IRowMapper<K> keyMapper;
+	private final SqlExecutor.IRowMapper<T> mapper;
+
+	/**
+	 * 批次的等待时间, 单位毫秒
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final long windowMillis;
+
+	/**
+	 * 批次中不同的键的数量上限
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * 等待的批次, 按键第一次加载的顺序排列
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Map<Object, PendingKey<K, T>> pendingKeys = new LinkedHashMap<Object, PendingKey<K, T>>();
+
+	/**
+	 * 等待的批次的定时执行, 没有等待的批次则为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private ScheduledFuture<?> pendingFlush;
+
+	private long batchCount;
+	private long keyCount;
+
+	/**
+	 * 构造器: 指定模板搜索参数, 键, 构建模式, 执行的数据源和执行器, 键和记录的转换器, 批次的等待时间和数量上限
+	 *
+	 * @param template 模板搜索参数, 不能为null, 需要是没有动态关联的根搜索参数
+	 * @param keyPath 键对应的搜索器的路径, 如"userID", 不能为null, 需要是模板搜索参数中存在的搜索器
+	 * @param buildMode 查询的构建模式, 不能为null, 不能是SELECT_COUNT, UPDATE或DELETE
+	 * @param dataSource 执行查询的数据源, 不能为null
+	 * @param executor 执行查询的执行器, 不能为null
+	 * @param keyMapper 从记录中读取键的转换器, 不能为null, 如读取键对应的列
+	 * @param mapper 记录转换器, 不能为null
+	 * @param windowMillis 批次的等待时间, 单位毫秒, 不能小于0
+	 * @param maxBatchSize 批次中不同的键的数量上限, 需要大于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlBatchLoader(SqlParameter template, String keyPath, BuildMode buildMode, DataSource dataSource,
+			AsyncSqlExecutor executor, SqlExecutor.IRowMapper<K> keyMapper, SqlExecutor.IRowMapper<T> mapper,
+			long windowMillis, int maxBatchSize) {
+		if(template == null || keyPath == null || buildMode == null || dataSource == null
+				|| executor == null || keyMapper == null || mapper == null) {
+			throw new IllegalArgumentException("模板搜索参数, 键, 构建模式, 数据源, 执行器和转换器不能为null");
+		}
+		if(template.getRootParameter() != template) {
+			throw new IllegalArgumentException("模板需要是根搜索参数");
+		}
+		if(template.getSearcher(keyPath) == null) {
+			throw new IllegalArgumentException(String.format("模板搜索参数中没有%s对应的搜索器", keyPath));
+		}
+		if(buildMode == BuildMode.SELECT_COUNT || buildMode == BuildMode.UPDATE || buildMode == BuildMode.DELETE) {
+			throw new IllegalArgumentException("批量加载的构建模式需要是输出记录的查询模式");
+		}
+		if(windowMillis < 0 || maxBatchSize <= 0) {
+			throw new IllegalArgumentException("批次的等待时间不能小于0, 数量上限需要大于0");
+		}
+		this.template = template;
+		this.keyPath = keyPath;
+		this.buildMode = buildMode;
+		this.dataSource = dataSource;
+		this.executor = executor;
+		this.keyMapper = keyMapper;
+		this.mapper = mapper;
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * 按键加载记录, 键放入等待的批次, 批次执行后得到结果
+	 *
+	 * @param key 键, 不能为null
+	 * @return 该键对应的只读记录列表, 没有记录则为空列表; 批次执行失败则以该异常失败
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public CompletableFuture<List<T>> load(K key) {
+		if(key == null) {
+			throw new IllegalArgumentException("加载的键不能为null");
+		}
+		Object batchKey = EntityCache.toKey(key);
+		CompletableFuture<List<T>> future = new CompletableFuture<List<T>>();
+		Map<Object, PendingKey<K, T>> batch = null;
+		synchronized(this) {
+			PendingKey<K, T> pendingKey = this.pendingKeys.get(batchKey);
+			if(pendingKey == null) {
+				pendingKey = new PendingKey<K, T>(key);
+				this.pendingKeys.put(batchKey, pendingKey);
+			}
+			pendingKey.futures.add(future);
+			if(this.pendingKeys.size() >= this.maxBatchSize) {
+				batch = this.takePendingKeys();
+			} else if(this.pendingFlush == null) {
+				this.pendingFlush = SqlBatchLoader.getDefaultScheduler().schedule(new Runnable() {
+					@Override
+					public void run() {
+						SqlBatchLoader.this.flush();
+					}
+				}, this.windowMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		if(batch != null) {
+			this.dispatch(batch);
+		}
+		return future;
+	}
+
+	/**
+	 * 立即执行等待的批次, 没有则不处理
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void flush() {
+		Map<Object, PendingKey<K, T>> batch;
+		synchronized(this) {
+			batch = this.takePendingKeys();
+		}
+		if(batch != null) {
+			this.dispatch(batch);
+		}
+	}
+
+	/**
+	 * 获取已经执行的批次数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getBatchCount() {
+		return batchCount;
+	}
+
+	/**
+	 * 获取已经执行的批次中不同的键的总数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public synchronized long getKeyCount() {
+		return keyCount;
+	}
+
+	/**
+	 * 取出等待的批次并取消定时执行
+	 *
+	 * @return 等待的批次, 没有则返回null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Map<Object, PendingKey<K, T>> takePendingKeys() {
+		if(this.pendingFlush != null) {
+			this.pendingFlush.cancel(false);
+			this.pendingFlush = null;
+		}
+		if(this.pendingKeys.isEmpty()) {
+			return null;
+		}
+		Map<Object, PendingKey<K, T>> batch = this.pendingKeys;
+		this.pendingKeys = new LinkedHashMap<Object, PendingKey<K, T>>();
+		this.batchCount ++;
+		this.keyCount += batch.size();
+		return batch;
+	}
+
+	/**
+	 * 以批次中所有键的in条件执行查询, 按记录的键分配给各个调用者
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void dispatch(final Map<Object, PendingKey<K, T>> batch) {
+		final Map<Object, List<T>> batchRows = new HashMap<Object, List<T>>();
+		List<K> keys = new ArrayList<K>(batch.size());
+		for(Map.Entry<Object, PendingKey<K, T>> pendingKey : batch.entrySet()) {
+			batchRows.put(pendingKey.getKey(), new ArrayList<T>());
+			keys.add(pendingKey.getValue().key);
+		}
+		SqlResult result;
+		try {
+			result = this.buildBatch(keys);
+		} catch (Throwable e) {
+			SqlBatchLoader.completeBatch(batch, null, e);
+			return;
+		}
+		this.executor.query(this.dataSource, result, new SqlExecutor.IRowHandler() {
+			@Override
+			public boolean onRow(ResultSet rs) throws Exception {
+				List<T> rows = batchRows.get(EntityCache.toKey(keyMapper.mapRow(rs)));
+				if(rows != null) {
+					rows.add(mapper.mapRow(rs));
+				}
+				return true;
+			}
+		}).whenComplete(new BiConsumer<Integer, Throwable>() {
+			@Override
+			public void accept(Integer count, Throwable error) {
+				SqlBatchLoader.completeBatch(batch, batchRows, error);
+			}
+		});
+	}
+
+	/**
+	 * 从模板分叉出搜索参数, 添加键的in条件后构建
+	 * <br/> 分叉会读取模板的状态, 所以同一个模板的构建依次进行.
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	private SqlResult buildBatch(List<K> keys) throws Exception {
+		synchronized(this.template) {
+			SqlParameter param = this.template.fork();
+			param.setIgnoreLimit(true);
+			// 模板的条件整体作为一组, 避免其中的OR与键的in条件按优先级结合
+			param.wrapSearch();
+			param.above().and(null);
+			((ISearchable<K>) param.getSearcher(this.keyPath)).in(keys);
+			return param.build(this.buildMode);
+		}
+	}
+
+	/**
+	 * 完成批次中所有调用者的异步结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <K, T> void completeBatch(Map<Object, PendingKey<K, T>> batch, Map<Object, List<T>> batchRows, Throwable error) {
+		for(Map.Entry<Object, PendingKey<K, T>> pendingKey : batch.entrySet()) {
+			List<T> rows = error == null ? Collections.unmodifiableList(batchRows.get(pendingKey.getKey())) : null;
+			for(CompletableFuture<List<T>> future : pendingKey.getValue().futures) {
+				if(error != null) {
+					future.completeExceptionally(error);
+				} else {
+					future.complete(rows);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 获取所有加载器共用的定时器, 使用一个守护线程
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static ScheduledExecutorService getDefaultScheduler() {
+		ScheduledExecutorService scheduler = defaultScheduler;
+		if(scheduler != null) {
+			return scheduler;
+		}
+		synchronized(SqlBatchLoader.class) {
+			if(defaultScheduler == null) {
+				defaultScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable task) {
+						Thread thread = new Thread(task, "sparam-batch-loader");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			return defaultScheduler;
+		}
+	}
+
+	/**
+	 * 等待的键和等待该键的调用者
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class PendingKey<K, T> {
+
+		final K key;
+		final List<CompletableFuture<List<T>>> futures = new ArrayList<CompletableFuture<List<T>>>(1);
+
+		PendingKey(K key) {
+			this.key = key;
+		}
+	}
+}
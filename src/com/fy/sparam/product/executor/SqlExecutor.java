@@ -0,0 +1,434 @@
+package com.fy.sparam.product.executor;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.product.SqlBinder;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 流式执行构建结果的执行器
+ * <br/> 在数据源上执行构建结果, 绑定占位符值后以只向前, 只读的游标逐条读取记录,
+ * 通过回调或迭代器交给调用者处理, 不在内存中缓存整个结果集, 内存占用与结果集大小无关.
+ * <br/> 每次查询独占一个连接, 读取结束, 提前停止或出错时按结果集, 语句, 连接的顺序关闭.
+ * <br/> 每次读取的记录数量由fetchSize决定, 部分驱动的流式读取有额外要求: PostgreSQL需要关闭自动提交(执行器会自动处理),
+ * MySQL需要使用{@link Integer#MIN_VALUE}作为fetchSize或在连接参数中开启useCursorFetch.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SqlExecutor {
+
+	/**
+	 * 记录处理回调
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public interface IRowHandler {
+
+		/**
+		 * 处理当前记录
+		 *
+		 * @param rs 已经移动到当前记录的结果集, 只能读取当前记录, 不能移动或关闭
+		 * @return 是否继续读取下一条记录, 返回false会停止读取并关闭资源
+		 * @throws Exception 处理失败则抛出异常, 会停止读取并关闭资源
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		boolean onRow(ResultSet rs) throws Exception;
+	}
+
+	/**
+	 * 记录转换器, 把当前记录转换为一个对象
+	 *
+	 * @param <T> 转换结果的类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public interface IRowMapper<T> {
+
+		/**
+		 * 转换当前记录
+		 *
+		 * @param rs 已经移动到当前记录的结果集, 只能读取当前记录, 不能移动或关闭
+		 * @return 转换结果
+		 * @throws Exception 转换失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		T mapRow(ResultSet rs) throws Exception;
+	}
+
+	/**
+	 * 把记录转换为按查询列顺序排列的值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final IRowMapper<Object[]> OBJECT_ARRAY_MAPPER = new IRowMapper<Object[]>() {
+		@Override
+		public Object[] mapRow(ResultSet rs) throws Exception {
+			int columnCount = rs.getMetaData().getColumnCount();
+			Object[] row = new Object[columnCount];
+			for(int i = 0; i < columnCount; i ++) {
+				row[i] = rs.getObject(i + 1);
+			}
+			return row;
+		}
+	};
+
+	/**
+	 * 默认每次读取的记录数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final int DEFAULT_FETCH_SIZE = 500;
+
+	/**
+	 * 每次读取的记录数量, 为0表示使用驱动的默认值
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final int fetchSize;
+
+	/**
+	 * 构造器: 使用默认的每次读取的记录数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlExecutor() {
+		this(DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * 构造器: 指定每次读取的记录数量
+	 *
+	 * @param fetchSize 每次读取的记录数量, 为0表示使用驱动的默认值, 不能小于0({@link Integer#MIN_VALUE}除外, 用于MySQL的流式读取)
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlExecutor(int fetchSize) {
+		if(fetchSize < 0 && fetchSize != Integer.MIN_VALUE) {
+			throw new IllegalArgumentException("每次读取的记录数量不能小于0");
+		}
+		this.fetchSize = fetchSize;
+	}
+
+	public int getFetchSize() {
+		return fetchSize;
+	}
+
+	/**
+	 * 执行查询, 逐条把记录交给回调处理
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 执行的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param handler 记录处理回调, 不能为null
+	 * @return 处理的记录数量
+	 * @throws Exception 执行或处理失败则抛出异常, 抛出前已经关闭资源
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int query(DataSource dataSource, SqlResult result, IRowHandler handler) throws Exception {
+		if(handler == null) {
+			throw new IllegalArgumentException("记录处理回调不能为null");
+		}
+		Cursor cursor = this.open(dataSource, result, 0);
+		Exception error = null;
+		try {
+			int rowCount = 0;
+			while(cursor.rs.next()) {
+				rowCount ++;
+				if(! handler.onRow(cursor.rs)) {
+					break;
+				}
+			}
+			return rowCount;
+		} catch(Exception e) {
+			error = e;
+			throw e;
+		} finally {
+			cursor.close(error);
+		}
+	}
+
+	/**
+	 * 执行查询, 返回逐条读取并转换记录的迭代器
+	 * <br/> 迭代器读取完所有记录时自动关闭资源, 提前停止迭代时需要调用{@link RowIterator#close()},
+	 * 建议在try-with-resources或finally中关闭.
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 执行的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null
+	 * @return 记录迭代器
+	 * @throws Exception 执行失败则抛出异常, 抛出前已经关闭资源
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> RowIterator<T> iterate(DataSource dataSource, SqlResult result, IRowMapper<T> mapper) throws Exception {
+		return this.iterate(dataSource, result, mapper, 0);
+	}
+
+	/**
+	 * 执行查询, 返回逐条读取并转换记录的迭代器, 执行语句的时间不超过指定的秒数
+	 * <br/> 超时由驱动通过{@link java.sql.Statement#setQueryTimeout(int)}控制, 超时时一般抛出{@link java.sql.SQLTimeoutException}.
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 执行的构建结果, 不能为null且不能是需要分表执行的结果
+	 * @param mapper 记录转换器, 不能为null
+	 * @param queryTimeout 语句的查询超时秒数, 为0表示不限制, 不能小于0
+	 * @return 记录迭代器
+	 * @throws Exception 执行失败则抛出异常, 抛出前已经关闭资源
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public <T> RowIterator<T> iterate(DataSource dataSource, SqlResult result, IRowMapper<T> mapper, int queryTimeout) throws Exception {
+		if(mapper == null) {
+			throw new IllegalArgumentException("记录转换器不能为null");
+		}
+		if(queryTimeout < 0) {
+			throw new IllegalArgumentException("查询超时秒数不能小于0");
+		}
+		return new RowIterator<T>(this.open(dataSource, result, queryTimeout), mapper);
+	}
+
+	/**
+	 * 执行更新或删除语句, 使用数据源连接的提交方式
+	 *
+	 * @param dataSource 数据源, 不能为null
+	 * @param result 以UPDATE或DELETE模式构建的结果, 不能为null且不能是需要分表执行的结果
+	 * @return 影响的记录数量
+	 * @throws Exception 执行失败则抛出异常, 抛出前已经关闭资源
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int update(DataSource dataSource, SqlResult result) throws Exception {
+		if(dataSource == null || result == null) {
+			throw new IllegalArgumentException("执行更新的数据源和构建结果不能为null");
+		}
+		if(result.isShardFanOut()) {
+			throw new IllegalArgumentException("构建结果需要在多个分表中执行, 请使用分表执行计划中的结果");
+		}
+		Cursor cursor = new Cursor(dataSource.getConnection());
+		Exception error = null;
+		try {
+			cursor.ps = cursor.conn.prepareStatement(ScatterGatherExecutor.toExecutableSql(result.getSql()));
+			SqlBinder.bind(cursor.ps, result);
+			return cursor.ps.executeUpdate();
+		} catch(Exception e) {
+			error = e;
+			throw e;
+		} finally {
+			cursor.close(error);
+		}
+	}
+
+	/**
+	 * 打开执行构建结果的游标
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private Cursor open(DataSource dataSource, SqlResult result, int queryTimeout) throws Exception {
+		if(dataSource == null || result == null) {
+			throw new IllegalArgumentException("执行查询的数据源和构建结果不能为null");
+		}
+		if(result.isShardFanOut()) {
+			throw new IllegalArgumentException("构建结果需要在多个分表中执行, 请使用分表执行计划中的结果");
+		}
+		Cursor cursor = new Cursor(dataSource.getConnection());
+		try {
+			// 部分驱动(如PostgreSQL)只有在事务中才按fetchSize分批读取
+			if(this.fetchSize > 0 && cursor.conn.getAutoCommit()) {
+				cursor.conn.setAutoCommit(false);
+				cursor.isRestoreAutoCommit = true;
+			}
+			cursor.ps = cursor.conn.prepareStatement(ScatterGatherExecutor.toExecutableSql(result.getSql()),
+					ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if(this.fetchSize != 0) {
+				cursor.ps.setFetchSize(this.fetchSize);
+			}
+			if(queryTimeout > 0) {
+				cursor.ps.setQueryTimeout(queryTimeout);
+			}
+			SqlBinder.bind(cursor.ps, result);
+			cursor.rs = cursor.ps.executeQuery();
+			return cursor;
+		} catch(Exception e) {
+			cursor.close(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * 逐条读取并转换记录的迭代器, 同时持有查询的资源
+	 * <br/> 读取完所有记录, 读取失败或调用{@link #close()}时关闭资源, 关闭后没有下一条记录.
+	 * <br/> 读取失败时抛出{@link IllegalStateException}, 原因是实际的异常.
+	 *
+	 * @param <T> 记录转换结果的类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class RowIterator<T> implements Iterator<T>, Closeable {
+
+		private final Cursor cursor;
+		private final IRowMapper<T> mapper;
+		private T nextRow;
+		private boolean hasFetched;
+		private boolean isClosed;
+
+		private RowIterator(Cursor cursor, IRowMapper<T> mapper) {
+			this.cursor = cursor;
+			this.mapper = mapper;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(this.isClosed) {
+				return false;
+			}
+			if(! this.hasFetched) {
+				try {
+					if(this.cursor.rs.next()) {
+						this.nextRow = this.mapper.mapRow(this.cursor.rs);
+						this.hasFetched = true;
+					} else {
+						this.close();
+					}
+				} catch(Exception e) {
+					this.isClosed = true;
+					try {
+						this.cursor.close(e);
+					} catch(Exception closeError) {
+						/* 异常已经附加到e中 */
+					}
+					throw new IllegalStateException("读取查询记录失败", e);
+				}
+			}
+			return this.hasFetched;
+		}
+
+		@Override
+		public T next() {
+			if(! this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T row = this.nextRow;
+			this.nextRow = null;
+			this.hasFetched = false;
+			return row;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("查询记录是只读的");
+		}
+
+		/**
+		 * 关闭查询的资源, 重复关闭没有影响
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		@Override
+		public void close() {
+			if(this.isClosed) {
+				return;
+			}
+			this.isClosed = true;
+			this.hasFetched = false;
+			this.nextRow = null;
+			try {
+				this.cursor.close(null);
+			} catch(Exception e) {
+				throw new IllegalStateException("关闭查询资源失败", e);
+			}
+		}
+	}
+
+	/**
+	 * 一次查询使用的连接, 语句和结果集
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class Cursor {
+
+		private final Connection conn;
+		private PreparedStatement ps;
+		private ResultSet rs;
+		private boolean isRestoreAutoCommit;
+
+		private Cursor(Connection conn) {
+			this.conn = conn;
+		}
+
+		/**
+		 * 按结果集, 语句, 连接的顺序关闭, 每一步失败都不影响后面的关闭
+		 *
+		 * @param error 已经发生的异常, 关闭的异常附加到它上面; 为null时抛出第一个关闭的异常
+		 * @throws Exception 没有已经发生的异常且关闭失败则抛出异常
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		private void close(Exception error) throws Exception {
+			Exception closeError = null;
+			if(this.rs != null) {
+				try {
+					this.rs.close();
+				} catch(Exception e) {
+					closeError = e;
+				}
+			}
+			if(this.ps != null) {
+				try {
+					this.ps.close();
+				} catch(Exception e) {
+					closeError = closeError == null ? e : closeError;
+				}
+			}
+			if(this.isRestoreAutoCommit) {
+				try {
+					// 只进行了查询, 回滚结束事务后再还原自动提交
+					this.conn.rollback();
+					this.conn.setAutoCommit(true);
+				} catch(Exception e) {
+					closeError = closeError == null ? e : closeError;
+				}
+			}
+			try {
+				this.conn.close();
+			} catch(Exception e) {
+				closeError = closeError == null ? e : closeError;
+			}
+			if(closeError == null) {
+				return;
+			}
+			if(error != null) {
+				error.addSuppressed(closeError);
+				return;
+			}
+			throw closeError;
+		}
+	}
+}
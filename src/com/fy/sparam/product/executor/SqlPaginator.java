@@ -0,0 +1,392 @@
+package com.fy.sparam.product.executor;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.sql.DataSource;
+
+import com.fy.sparam.core.SearchMark;
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlParameter.BuildMode;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 搜索参数的分页器
+ * <br/> 包装一个配置好搜索条件的根搜索参数, 按页码获取分页记录和记录总数.
+ * <br/> 记录总数按搜索条件的标识(记录数量查询的sql语句和占位符值)缓存, 在有效期内搜索条件不变时翻页不再执行记录数量查询;
+ * 需要执行记录数量查询时与分页查询同时执行.
+ * <br/> 开启预取时, 获取一页后在后台执行下一页的查询, 获取下一页时如果查询不变(搜索条件, 输出和排序相同)则直接使用预取的结果,
+ * 预取失败时重新查询.
+ * <br/> 构建记录数量查询不会改变搜索参数的状态. 分页器和搜索参数一样不是线程安全的.
+ *
+ * @param <T> 记录转换结果的类型
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SqlPaginator<T> {
+
+	/**
+	 * 缓存的记录总数的搜索条件数量上限, 超过时丢弃最久没有使用的
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final int MAX_CACHED_COUNTS = 16;
+
+	private final SqlParameter param;
+	private final BuildMode buildMode;
+	private final DataSource dataSource;
+	private final AsyncSqlExecutor executor;
+	private final SqlExecutor.IRowMapper<T> mapper;
+
+	/**
+	 * 记录总数的有效时间, 单位毫秒
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final long countTtlMillis;
+
+	/**
+	 * 是否预取下一页
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private boolean isPrefetch;
+
+	/**
+	 * 按搜索条件标识缓存的记录总数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private final Map<QueryKey, CachedCount> countCache = new LinkedHashMap<QueryKey, CachedCount>(MAX_CACHED_COUNTS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<QueryKey, CachedCount> eldest) {
+			return this.size() > MAX_CACHED_COUNTS;
+		}
+	};
+
+	/**
+	 * 预取的分页查询, 没有则为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private QueryKey prefetchKey;
+	private CompletableFuture<List<T>> prefetchRows;
+
+	/**
+	 * 构造器: 指定分页的搜索参数, 构建模式, 执行的数据源和执行器, 记录转换器和记录总数的有效时间
+	 *
+	 * @param param 分页的根搜索参数, 不能为null
+	 * @param buildMode 分页查询的构建模式, 不能为null, 需要是带LIMIT语句的查询模式, 如SELECT_FIELDS
+	 * @param dataSource 执行查询的数据源, 不能为null
+	 * @param executor 执行查询的执行器, 不能为null
+	 * @param mapper 记录转换器, 不能为null
+	 * @param countTtlMillis 记录总数的有效时间, 单位毫秒, 为0表示不缓存, 不能小于0
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public SqlPaginator(SqlParameter param, BuildMode buildMode, DataSource dataSource,
+			AsyncSqlExecutor executor, SqlExecutor.IRowMapper<T> mapper, long countTtlMillis) {
+		if(param == null || buildMode == null || dataSource == null || executor == null || mapper == null) {
+			throw new IllegalArgumentException("分页的搜索参数, 构建模式, 数据源, 执行器和记录转换器不能为null");
+		}
+		if(param.getRootParameter() != param) {
+			throw new IllegalArgumentException("只有根搜索参数才能分页");
+		}
+		if(buildMode == BuildMode.SELECT_COUNT) {
+			throw new IllegalArgumentException("分页查询的构建模式不能是SELECT_COUNT");
+		}
+		if(countTtlMillis < 0) {
+			throw new IllegalArgumentException("记录总数的有效时间不能小于0");
+		}
+		this.param = param;
+		this.buildMode = buildMode;
+		this.dataSource = dataSource;
+		this.executor = executor;
+		this.mapper = mapper;
+		this.countTtlMillis = countTtlMillis;
+	}
+
+	public boolean isPrefetch() {
+		return isPrefetch;
+	}
+
+	/**
+	 * 设置是否预取下一页, 关闭时丢弃已经预取的结果
+	 *
+	 * @param isPrefetch 是否预取下一页
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void setPrefetch(boolean isPrefetch) {
+		this.isPrefetch = isPrefetch;
+		if(! isPrefetch) {
+			this.clearPrefetch();
+		}
+	}
+
+	/**
+	 * 获取指定页的记录和记录总数, 获取后搜索参数的页码为指定页
+	 *
+	 * @param page 页码, 小于1时按第1页处理
+	 * @return 分页结果
+	 * @throws Exception 构建或执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public Page<T> getPage(int page) throws Exception {
+		this.param.setPage(page);
+		page = this.param.getPage();
+		int count = this.param.getCount();
+		SqlResult pageResult = this.param.build(this.buildMode);
+		QueryKey pageKey = new QueryKey(pageResult);
+		QueryKey countKey = new QueryKey(this.buildCount());
+		// 记录总数没有缓存时与分页查询同时执行
+		long now = System.currentTimeMillis();
+		CachedCount cachedCount = this.countCache.get(countKey);
+		CompletableFuture<Long> countFuture = null;
+		if(cachedCount == null || cachedCount.expireTime <= now) {
+			countFuture = this.executor.queryCount(this.dataSource, countKey.result);
+		}
+		List<T> rows = null;
+		if(this.prefetchRows != null && pageKey.equals(this.prefetchKey)) {
+			try {
+				rows = SqlPaginator.await(this.prefetchRows);
+			} catch (Exception e) {
+				// 预取失败, 重新查询
+			}
+		}
+		this.clearPrefetch();
+		if(rows == null) {
+			rows = SqlPaginator.await(this.executor.queryList(this.dataSource, pageResult, this.mapper));
+		}
+		long totalCount;
+		if(countFuture != null) {
+			totalCount = SqlPaginator.await(countFuture);
+			if(this.countTtlMillis > 0) {
+				this.countCache.put(countKey, new CachedCount(totalCount, System.currentTimeMillis() + this.countTtlMillis));
+			}
+		} else {
+			totalCount = cachedCount.totalCount;
+		}
+		Page<T> result = new Page<T>(rows, page, count, totalCount);
+		if(this.isPrefetch && page < result.getTotalPages()) {
+			this.prefetch(page + 1);
+		}
+		return result;
+	}
+
+	/**
+	 * 获取当前搜索条件的记录总数, 有效期内的缓存直接返回
+	 *
+	 * @return 记录总数
+	 * @throws Exception 构建或执行失败则抛出异常
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public long getTotalCount() throws Exception {
+		QueryKey countKey = new QueryKey(this.buildCount());
+		CachedCount cachedCount = this.countCache.get(countKey);
+		if(cachedCount != null && cachedCount.expireTime > System.currentTimeMillis()) {
+			return cachedCount.totalCount;
+		}
+		long totalCount = SqlPaginator.await(this.executor.queryCount(this.dataSource, countKey.result));
+		if(this.countTtlMillis > 0) {
+			this.countCache.put(countKey, new CachedCount(totalCount, System.currentTimeMillis() + this.countTtlMillis));
+		}
+		return totalCount;
+	}
+
+	/**
+	 * 丢弃缓存的记录总数和预取的结果, 如数据发生了变化时使用
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void invalidate() {
+		this.countCache.clear();
+		this.clearPrefetch();
+	}
+
+	/**
+	 * 在后台执行指定页的查询, 搜索参数的页码保持不变
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private void prefetch(int page) throws Exception {
+		int currentPage = this.param.getPage();
+		this.param.setPage(page);
+		SqlResult prefetchResult;
+		try {
+			prefetchResult = this.param.build(this.buildMode);
+		} finally {
+			this.param.setPage(currentPage);
+		}
+		this.prefetchKey = new QueryKey(prefetchResult);
+		this.prefetchRows = this.executor.queryList(this.dataSource, prefetchResult, this.mapper);
+	}
+
+	private void clearPrefetch() {
+		this.prefetchKey = null;
+		this.prefetchRows = null;
+	}
+
+	/**
+	 * 构建记录数量查询, 构建后回滚搜索参数, 不影响分页查询的构建
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private SqlResult buildCount() throws Exception {
+		SearchMark mark = this.param.mark();
+		try {
+			return this.param.build(BuildMode.SELECT_COUNT);
+		} finally {
+			this.param.rollbackTo(mark);
+			this.param.releaseMark(mark);
+		}
+	}
+
+	/**
+	 * 等待异步结果, 执行异常按原样抛出
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <R> R await(CompletableFuture<R> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * 分页结果
+	 *
+	 * @param <T> 记录转换结果的类型
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public static final class Page<T> {
+
+		private final List<T> rows;
+		private final int page;
+		private final int count;
+		private final long totalCount;
+
+		private Page(List<T> rows, int page, int count, long totalCount) {
+			this.rows = rows;
+			this.page = page;
+			this.count = count;
+			this.totalCount = totalCount;
+		}
+
+		public List<T> getRows() {
+			return rows;
+		}
+
+		public int getPage() {
+			return page;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public long getTotalCount() {
+			return totalCount;
+		}
+
+		/**
+		 * 获取总页数, 没有记录时为0
+		 *
+		 * @return 总页数
+		 *
+		 * @author linjie
+		 * @since 1.0.2
+		 */
+		public long getTotalPages() {
+			return this.count <= 0 ? 0 : (this.totalCount + this.count - 1) / this.count;
+		}
+	}
+
+	/**
+	 * 查询的标识, 由sql语句和占位符值组成
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class QueryKey {
+
+		final SqlResult result;
+		final String sql;
+		final Object[] vals;
+		final int hash;
+
+		QueryKey(SqlResult result) {
+			this.result = result;
+			this.sql = result.getSql();
+			this.vals = result.getVals();
+			this.hash = this.sql.hashCode() * 31 + Arrays.hashCode(this.vals);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if(this == obj) {
+				return true;
+			}
+			if(! (obj instanceof QueryKey)) {
+				return false;
+			}
+			QueryKey other = (QueryKey) obj;
+			return this.hash == other.hash && this.sql.equals(other.sql) && Arrays.equals(this.vals, other.vals);
+		}
+	}
+
+	/**
+	 * 缓存的记录总数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class CachedCount {
+
+		final long totalCount;
+		final long expireTime;
+
+		CachedCount(long totalCount, long expireTime) {
+			this.totalCount = totalCount;
+			this.expireTime = expireTime;
+		}
+	}
+}
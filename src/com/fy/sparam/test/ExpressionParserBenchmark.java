@@ -0,0 +1,238 @@
+package com.fy.sparam.test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.fy.sparam.core.SearchExpressionsCompiler;
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlPiece;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 搜索表达式解析的耗时和内存分配测试
+ * <br/> 比较逐字符解析的解析器与原来基于正则表达式的解析(复制在本类中)在平铺和深层嵌套表达式上的耗时和分配的字节数,
+ * 两种解析都不使用解析结果缓存.
+ * <br/> 运行参数: [每种表达式的解析次数] [条件数量/嵌套层数], 默认20000次, 50.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class ExpressionParserBenchmark {
+
+	private static final String[] SYMBOLS = {"$TO.", "$FROM."};
+
+	/**
+	 * 不使用缓存的解析器, 直接调用解析
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class UncachedCompiler extends SearchExpressionsCompiler {
+
+		private int parse(String expressions) throws Exception {
+			return this.<SqlParameter, SqlPiece, SqlResult>handleCompile(expressions, SYMBOLS).getExpressions().size();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int operationCount = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		int size = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		String[][] cases = {
+				{"平铺", generateFlat(size)},
+				{"嵌套", generateNested(size)},
+		};
+		UncachedCompiler compiler = new UncachedCompiler();
+		for(String[] expressionCase : cases) {
+			String expressions = expressionCase[1];
+			int parsedCount = compiler.parse(expressions);
+			int legacyCount = LegacyParser.parse(expressions).size();
+			if(parsedCount != legacyCount) {
+				System.out.println(String.format("%s表达式的解析结果数量不一致: %s != %s", expressionCase[0], parsedCount, legacyCount));
+				System.exit(1);
+			}
+			// 预热
+			run(compiler, expressions, operationCount, false);
+			run(compiler, expressions, operationCount, true);
+			long[] parserCost = run(compiler, expressions, operationCount, false);
+			long[] legacyCost = run(compiler, expressions, operationCount, true);
+			System.out.println(String.format("%s表达式(%s个条件, %s字符): 解析器 %.2f us/次 %s B/次, 正则 %.2f us/次 %s B/次",
+					expressionCase[0], parsedCount, expressions.length(),
+					parserCost[0] / 1000.0 / operationCount, parserCost[1] / operationCount,
+					legacyCost[0] / 1000.0 / operationCount, legacyCost[1] / operationCount));
+		}
+	}
+
+	/**
+	 * 重复解析表达式
+	 *
+	 * @return {总耗时(纳秒), 总分配的字节数(不支持统计时为负数)}
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static long[] run(UncachedCompiler compiler, String expressions, int operationCount, boolean isLegacy) throws Exception {
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		int checksum = 0;
+		for(int i = 0; i < operationCount; i ++) {
+			checksum += isLegacy ? LegacyParser.parse(expressions).size() : compiler.parse(expressions);
+		}
+		long cost = System.nanoTime() - start;
+		if(checksum < 0) {
+			System.out.println(checksum);
+		}
+		return new long[] {cost, allocatedBytes() - allocated};
+	}
+
+	/**
+	 * 生成以AND和OR交替连接的平铺表达式
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static String generateFlat(int size) {
+		StringBuilder expressions = new StringBuilder();
+		for(int i = 0; i < size; i ++) {
+			if(i > 0) {
+				expressions.append(i % 2 == 0 ? " AND " : " OR ");
+			}
+			expressions.append("{$TO.order").append(i % 5).append(".orderNumber}:eq(").append(i).append(')');
+		}
+		return expressions.toString();
+	}
+
+	/**
+	 * 生成每个条件后面都开始一层括号的嵌套表达式
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static String generateNested(int depth) {
+		StringBuilder expressions = new StringBuilder();
+		for(int i = 0; i < depth; i ++) {
+			if(i > 0) {
+				expressions.append(i % 2 == 0 ? " AND (" : " OR (");
+			}
+			expressions.append("{$FROM.totalCost}:between(").append(i).append(',').append(i + 1).append(')');
+		}
+		for(int i = 1; i < depth; i ++) {
+			expressions.append(')');
+		}
+		return expressions.toString();
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if(threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * 原来基于正则表达式的解析, 只用于比较, 结果为平铺的表达式和前后的括号数量
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static final class LegacyParser {
+
+		private static final Pattern EXPRESSION_PATTERN = Pattern.compile("(AND|OR)?[\\s(]*\\{[^\\s]+\\}\\:[^\\s]+");
+		private static final Pattern RELATION_PATTERN = Pattern.compile("AND|OR");
+		private static final Pattern BRACE_PATTERN = Pattern.compile("\\{|\\}");
+
+		private final boolean isAnd;
+		private final String searchFieldPath;
+		private final String searchMethod;
+		private final String searchParams;
+		private final int dsCount;
+		private final int deCount;
+		private final Set<String> containSymbols;
+
+		private LegacyParser(boolean isAnd, String searchFieldPath, String searchMethod, String searchParams,
+				int dsCount, int deCount, Set<String> containSymbols) {
+			this.isAnd = isAnd;
+			this.searchFieldPath = searchFieldPath;
+			this.searchMethod = searchMethod;
+			this.searchParams = searchParams;
+			this.dsCount = dsCount;
+			this.deCount = deCount;
+			this.containSymbols = containSymbols;
+		}
+
+		private static List<LegacyParser> parse(String expressionsStr) {
+			Matcher matcher = EXPRESSION_PATTERN.matcher(expressionsStr);
+			List<LegacyParser> expressions = new LinkedList<LegacyParser>();
+			while(matcher.find()) {
+				String expressionStr = expressionsStr.substring(matcher.start(), matcher.end());
+				expressions.add(compileSingleExpression(expressionStr, SYMBOLS));
+			}
+			return new ArrayList<LegacyParser>(expressions);
+		}
+
+		private static LegacyParser compileSingleExpression(String expressionStr, String[] symbols) {
+			String handlingExpressionStr = expressionStr;
+			// 获取连接关系
+			boolean isAnd = true;
+			if(handlingExpressionStr.startsWith("OR")) {
+				isAnd = false;
+			}
+			handlingExpressionStr = RELATION_PATTERN.matcher(handlingExpressionStr).replaceAll("").trim();
+			// 处理前面括号
+			int dsCount = 0;
+			while(handlingExpressionStr.startsWith("(")) {
+				dsCount ++;
+				handlingExpressionStr = handlingExpressionStr.substring(1, handlingExpressionStr.length()).trim();
+			}
+			// 获取搜索字段和搜索方法
+			String[] contents = handlingExpressionStr.split(":");
+			// 处理搜索字段
+			String searchFieldPath = contents[0];
+			searchFieldPath = BRACE_PATTERN.matcher(searchFieldPath).replaceAll("");
+			Set<String> containSymbols = new HashSet<String>();
+			for(String symbol : symbols) {
+				if(searchFieldPath.contains(symbol)) {
+					containSymbols.add(symbol);
+					searchFieldPath = searchFieldPath.replace(symbol, "");
+				}
+			}
+			handlingExpressionStr = handlingExpressionStr.replace(searchFieldPath, "").trim();
+			// 处理操作
+			String optExpression = contents[1];
+			int paramsDsIndex = optExpression.indexOf("(");
+			int paramsDeIndex = optExpression.indexOf(")", paramsDsIndex);
+			String searchMethod;
+			String searchParams = null;
+			if(paramsDsIndex != -1 && paramsDeIndex != -1) { /* eq(1)) */
+				searchMethod = optExpression.substring(0, paramsDsIndex);
+				searchParams = optExpression.substring(paramsDsIndex + 1, paramsDeIndex);
+				optExpression = optExpression.substring(0, paramsDeIndex + 1);
+			} else if(paramsDeIndex != -1) { /* isNull) */
+				searchMethod = optExpression.substring(0, paramsDeIndex);
+				optExpression = optExpression.substring(0, paramsDeIndex);
+			} else { /* isNull */
+				searchMethod = optExpression;
+			}
+			handlingExpressionStr = handlingExpressionStr.replace(optExpression, "").trim();
+			// 处理后面的括号
+			int deCount = 0;
+			while(handlingExpressionStr.endsWith(")")) {
+				deCount ++;
+				handlingExpressionStr = handlingExpressionStr.substring(0, handlingExpressionStr.length() - 1);
+			}
+			return new LegacyParser(isAnd, searchFieldPath, searchMethod, searchParams, dsCount, deCount, containSymbols);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s%s{%s}%s:%s(%s)%s", this.isAnd ? "AND " : "OR ", this.dsCount,
+					this.searchFieldPath, this.containSymbols, this.searchMethod, this.searchParams, this.deCount);
+		}
+	}
+}
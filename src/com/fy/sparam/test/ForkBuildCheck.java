@@ -0,0 +1,122 @@
+package com.fy.sparam.test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.core.SearchMark;
+import com.fy.sparam.core.SearchNode.SearchGroup;
+import com.fy.sparam.init.anno.FieldMeta;
+import com.fy.sparam.init.anno.TableMeta;
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlPiece;
+import com.fy.sparam.product.SqlResult;
+
+/**
+ * 分叉搜索参数的写时复制检查
+ * <br/> 只构建的分叉应该直接使用与原搜索参数共用的搜索条件树, 不复制容器, 耗时与原搜索参数的构建相当;
+ * 任意一方修改后才复制, 修改不影响另一方.
+ * <br/> 运行参数: [条件数量], 默认20000; 检查失败时输出原因并退出.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class ForkBuildCheck {
+
+	/**
+	 * 可以获取搜索条件树的订单搜索参数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@TableMeta(name = "t_order", alias = "o")
+	public static class TreeOrderParameter extends SqlParameter {
+
+		@FieldMeta(name = "order_number")
+		public ISearchable<String> orderNumber;
+
+		@FieldMeta(name = "total_cost")
+		public ISearchable<BigDecimal> totalCost;
+
+		SearchGroup<SqlPiece> searchTree() throws Exception {
+			return this.getSearchTree();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+		TreeOrderParameter param = SqlParameter.getParameter(TreeOrderParameter.class);
+		param.enableAutoRelation(true);
+		for(int i = 0; i < size; i ++) {
+			param.orderNumber.eq(String.valueOf(i));
+		}
+		// 预热
+		for(int i = 0; i < 5; i ++) {
+			param.fork().build();
+		}
+		long[] cost = measureStart();
+		String sql = param.build().getSql();
+		long[] parentCost = measureEnd(cost);
+		// 只构建的分叉不复制
+		cost = measureStart();
+		TreeOrderParameter fork = (TreeOrderParameter) param.fork();
+		SqlResult forkResult = fork.build();
+		long[] forkCost = measureEnd(cost);
+		check(fork.searchTree() == param.searchTree(), "只构建的分叉复制了搜索条件树");
+		check(sql.equals(forkResult.getSql()), "分叉的构建结果与原搜索参数不同");
+		System.out.println(String.format("%s个条件: 构建原搜索参数 %.2f ms / %s KB, 分叉并构建 %.2f ms / %s KB",
+				size, parentCost[0] / 1e6, parentCost[1] / 1024, forkCost[0] / 1e6, forkCost[1] / 1024));
+		// 保存点不复制, 回滚后与原搜索参数相同
+		SearchMark mark = fork.mark();
+		check(fork.searchTree() == param.searchTree(), "分叉创建保存点时复制了搜索条件树");
+		fork.totalCost.eq(BigDecimal.ONE);
+		check(fork.searchTree() != param.searchTree(), "分叉修改时没有复制搜索条件树");
+		check(fork.build().getSql().contains("total_cost") && ! param.build().getSql().contains("total_cost"),
+				"分叉的修改影响了原搜索参数");
+		fork.rollbackTo(mark);
+		check(sql.equals(fork.build().getSql()), "分叉回滚后与原搜索参数不同");
+		// 原搜索参数修改时先让分叉复制
+		TreeOrderParameter otherFork = (TreeOrderParameter) param.fork();
+		otherFork.build();
+		param.totalCost.eq(BigDecimal.TEN);
+		check(otherFork.searchTree() != param.searchTree(), "原搜索参数修改时分叉没有复制搜索条件树");
+		check(sql.equals(otherFork.build().getSql()), "原搜索参数的修改影响了分叉");
+		System.out.println("检查通过");
+	}
+
+	private static void check(boolean isPassed, String message) {
+		if(! isPassed) {
+			System.out.println(message);
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * 记录当前的时间和当前线程已分配的字节数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static long[] measureStart() {
+		return new long[] {System.nanoTime(), allocatedBytes()};
+	}
+
+	/**
+	 * 获取从开始记录以来的耗时(纳秒)和分配的字节数, 不支持统计分配时字节数为-1
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static long[] measureEnd(long[] start) {
+		long allocated = allocatedBytes();
+		return new long[] {System.nanoTime() - start[0], allocated < 0 ? -1 : allocated - start[1]};
+	}
+
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		if(threadBean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,36 @@
+package com.fy.sparam.test;
+
+import java.math.BigDecimal;
+
+import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.init.anno.FieldMeta;
+import com.fy.sparam.init.anno.TableMeta;
+import com.fy.sparam.product.PredicateParameter;
+
+/**
+ * 内存中的订单记录的搜索参数
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+@TableMeta(name = "t_order", alias = "o")
+public class MemOrderParameter extends PredicateParameter {
+
+	/**
+	 * 订单编号
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@FieldMeta(name = "order_number")
+	public ISearchable<Integer> orderNumber;
+
+	/**
+	 * 订单金额
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@FieldMeta(name = "amount")
+	public ISearchable<BigDecimal> amount;
+}
@@ -0,0 +1,164 @@
+package com.fy.sparam.test;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+/**
+ * 用于运行检查的内存数据库数据源, 使用H2的内存模式(MySQL兼容), 同名的数据源使用同一个数据库
+ * <br/> 记录打开还没关闭的连接, 语句和结果集数量, 用来检查执行器是否关闭了资源.
+ * <br/> 运行时需要把H2数据库驱动加入classpath.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class MemoryDataSource implements DataSource {
+
+	private final String url;
+	private final AtomicInteger openCount = new AtomicInteger();
+
+	/**
+	 * 构造器: 指定内存数据库的名称
+	 *
+	 * @param name 内存数据库的名称, 不同名称的数据源相互独立
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public MemoryDataSource(String name) {
+		try {
+			Class.forName("org.h2.Driver");
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("运行检查需要把H2数据库驱动加入classpath", e);
+		}
+		this.url = "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+	}
+
+	/**
+	 * 依次执行sql语句, 用来建表和准备数据
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public void execute(String... sqls) throws SQLException {
+		Connection conn = DriverManager.getConnection(this.url);
+		try {
+			Statement st = conn.createStatement();
+			for(String sql : sqls) {
+				st.execute(sql);
+			}
+			st.close();
+		} finally {
+			conn.close();
+		}
+	}
+
+	/**
+	 * 获取打开还没关闭的连接, 语句和结果集的总数
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	public int getOpenCount() {
+		return this.openCount.get();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return this.track(DriverManager.getConnection(this.url), Connection.class);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return this.getConnection();
+	}
+
+	/**
+	 * 包装资源, 关闭时减少打开的数量, 由它创建的语句和结果集也同样包装
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T track(final T resource, Class<T> type) {
+		this.openCount.incrementAndGet();
+		return (T) Proxy.newProxyInstance(MemoryDataSource.class.getClassLoader(), new Class<?>[] {type}, new InvocationHandler() {
+
+			private boolean isClosed;
+
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if("close".equals(method.getName()) && ! this.isClosed) {
+					this.isClosed = true;
+					MemoryDataSource.this.openCount.decrementAndGet();
+				}
+				Object result;
+				try {
+					result = method.invoke(resource, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				}
+				// 只包装新创建的资源, getStatement()等获取已有资源的方法不包装
+				String methodName = method.getName();
+				if("prepareStatement".equals(methodName)) {
+					return MemoryDataSource.this.track((PreparedStatement) result, PreparedStatement.class);
+				}
+				if("createStatement".equals(methodName)) {
+					return MemoryDataSource.this.track((Statement) result, Statement.class);
+				}
+				if("executeQuery".equals(methodName) || "getResultSet".equals(methodName)) {
+					return result == null ? null : MemoryDataSource.this.track((ResultSet) result, ResultSet.class);
+				}
+				return result;
+			}
+		});
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return DriverManager.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		DriverManager.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		DriverManager.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return DriverManager.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		throw new SQLException("不支持unwrap");
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return false;
+	}
+}
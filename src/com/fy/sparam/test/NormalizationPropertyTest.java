@@ -0,0 +1,145 @@
+package com.fy.sparam.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.fy.sparam.core.SearchContext.ISearchable;
+import com.fy.sparam.product.PredicateParameter;
+import com.fy.sparam.product.PredicateResult;
+
+/**
+ * 条件规范化的随机性质测试
+ * <br/> 用相同的随机种子生成两组相同的搜索条件, 一组启用条件规范化, 比较两组在同一批内存记录上的过滤结果是否一致.
+ * <br/> 运行参数: [轮数] [随机种子], 默认5000轮, 种子42; 出现不一致时输出两组条件并退出.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class NormalizationPropertyTest {
+
+	public static void main(String[] args) throws Exception {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 42L;
+		Random random = new Random(seed);
+		List<Map<String, Object>> rows = generateRows(random, 60);
+		int changedCount = 0;
+		for(int i = 0; i < rounds; i ++) {
+			long roundSeed = random.nextLong();
+			MemOrderParameter normalizedParam = PredicateParameter.getParameter(MemOrderParameter.class);
+			MemOrderParameter originalParam = PredicateParameter.getParameter(MemOrderParameter.class);
+			normalizedParam.enableConditionNormalization();
+			generateConditions(normalizedParam, new Random(roundSeed));
+			generateConditions(originalParam, new Random(roundSeed));
+			PredicateResult normalizedResult = normalizedParam.build();
+			PredicateResult originalResult = originalParam.build();
+			List<Map<String, Object>> normalizedRows = normalizedResult.filter(rows);
+			List<Map<String, Object>> originalRows = originalResult.filter(rows);
+			String normalized = normalizedResult.getPredicate().toString();
+			String original = originalResult.getPredicate().toString();
+			if(! normalizedRows.equals(originalRows)) {
+				System.out.println(String.format("第%s轮(种子%s)过滤结果不一致:\n原条件: %s\n规范化: %s",
+						i, roundSeed, original, normalized));
+				System.exit(1);
+			}
+			if(! normalized.equals(original)) {
+				changedCount ++;
+			}
+		}
+		System.out.println(String.format("%s轮全部一致, 其中%s轮的条件被规范化改写", rounds, changedCount));
+	}
+
+	/**
+	 * 生成内存记录, 字段值有一定概率为null
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static List<Map<String, Object>> generateRows(Random random, int size) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(size);
+		for(int i = 0; i < size; i ++) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			row.put("orderNumber", random.nextInt(8) == 0 ? null : random.nextInt(10));
+			row.put("amount", random.nextInt(8) == 0 ? null : new BigDecimal(random.nextInt(10)));
+			row.put("id", i);
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	/**
+	 * 生成随机的搜索条件, 以AND或OR连接, 最多嵌套两层括号
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static void generateConditions(MemOrderParameter param, Random random) throws Exception {
+		int conditionCount = 1 + random.nextInt(7);
+		int depth = 0;
+		param.enableAutoRelation(true);
+		for(int i = 0; i < conditionCount; i ++) {
+			if(i > 0) {
+				if(random.nextBoolean()) {
+					param.above().or(null);
+				} else {
+					param.above().and(null);
+				}
+			}
+			if(random.nextInt(6) == 0 && depth < 2) {
+				param.ds(null);
+				depth ++;
+			}
+			if(random.nextBoolean()) {
+				generateCondition(param.orderNumber, random.nextInt(10), random.nextInt(10), random);
+			} else {
+				generateCondition(param.amount, new BigDecimal(random.nextInt(10)), new BigDecimal(random.nextInt(10)), random);
+			}
+			if(depth > 0 && random.nextInt(3) == 0) {
+				param.above().de();
+				depth --;
+			}
+		}
+		while(depth -- > 0) {
+			param.above().de();
+		}
+	}
+
+	/**
+	 * 在字段上生成一个随机的搜索条件
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static <T> void generateCondition(ISearchable<T> searcher, T value, T otherValue, Random random) throws Exception {
+		switch(random.nextInt(9)) {
+		case 0:
+		case 1:
+			searcher.eq(value);
+			break;
+		case 2:
+			searcher.in(Arrays.asList(value, otherValue));
+			break;
+		case 3:
+			searcher.greaterThan(value);
+			break;
+		case 4:
+			searcher.notLessThan(value);
+			break;
+		case 5:
+			searcher.lessThan(value);
+			break;
+		case 6:
+			searcher.notGreaterThan(value);
+			break;
+		case 7:
+			searcher.between(value, otherValue);
+			break;
+		default:
+			searcher.notEq(value);
+		}
+	}
+}
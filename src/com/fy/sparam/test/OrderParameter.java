@@ -25,7 +25,7 @@ public class OrderParameter extends SqlParameter {
 	 * @author hongweiquan
 	 * @since 4.5.0
 	 */
-	@FieldMeta(name = "order_id")
+	@FieldMeta(name = "order_id", indexed = true)
 	public ISearchable<String> orderID;
 	
 	/**
@@ -34,7 +34,7 @@ public class OrderParameter extends SqlParameter {
 	 * @author hongweiquan
 	 * @since 4.5.0
 	 */
-	@FieldMeta(name = "order_number")
+	@FieldMeta(name = "order_number", indexed = true)
 	public ISearchable<String> orderNumber;
 	
 	/**
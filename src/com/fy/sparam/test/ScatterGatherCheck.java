@@ -0,0 +1,185 @@
+package com.fy.sparam.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlResult;
+import com.fy.sparam.product.executor.ScatterGatherExecutor;
+
+/**
+ * 分散执行合并结果的检查
+ * <br/> 在多个内存数据库上建立相同的订单表并写入随机数据(部分金额为null, 金额有重复),
+ * 比较合并结果与在内存中对所有数据排序分页的结果: 多列多方向的多路归并, null的顺序, 分页的偏移,
+ * 字符串排序列的比较器, 以及没有排序和没有输出排序列时的行为; 最后检查所有连接, 语句和结果集都已关闭.
+ * <br/> 运行参数: [分库数量] [每个分库的记录数] [随机种子], 默认3, 40, 7; 需要H2数据库驱动, 检查失败时输出原因并退出.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class ScatterGatherCheck {
+
+	// 与数据库默认的二进制排序规则一致的字符串比较器
+	private static final Comparator<Object> STRING_COMPARATOR = new Comparator<Object>() {
+		@Override
+		public int compare(Object o1, Object o2) {
+			return o1.toString().compareTo(o2.toString());
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int rowCount = args.length > 1 ? Integer.parseInt(args[1]) : 40;
+		Random random = new Random(args.length > 2 ? Long.parseLong(args[2]) : 7L);
+		List<MemoryDataSource> shards = new ArrayList<MemoryDataSource>(shardCount);
+		List<Object[]> allRows = new ArrayList<Object[]>();
+		for(int i = 0; i < shardCount; i ++) {
+			MemoryDataSource shard = new MemoryDataSource("scatter_gather_" + i);
+			shard.execute("DROP TABLE IF EXISTS t_order",
+					"CREATE TABLE t_order(order_id VARCHAR(20), order_number VARCHAR(20), total_cost DECIMAL(10, 2))");
+			for(int j = 0; j < rowCount; j ++) {
+				// 编号唯一且大小写混合, 金额只有少数几种取值
+				String orderNumber = (random.nextBoolean() ? "n" : "N") + (1000 + i * rowCount + j);
+				BigDecimal totalCost = random.nextInt(6) == 0 ? null : new BigDecimal(random.nextInt(8)).setScale(2);
+				String orderID = i + "_" + j;
+				shard.execute(String.format("INSERT INTO t_order VALUES('%s', '%s', %s)", orderID, orderNumber, totalCost));
+				allRows.add(new Object[] {orderID, orderNumber, totalCost});
+			}
+			shards.add(shard);
+		}
+		ExecutorService threadPool = Executors.newFixedThreadPool(2);
+		try {
+			ScatterGatherExecutor executor = new ScatterGatherExecutor(threadPool, 2, STRING_COMPARATOR);
+			// 金额降序(null在最后), 编号升序
+			OrderParameter param = SqlParameter.getParameter(OrderParameter.class);
+			param.totalCost.markOrderBy(2, false);
+			param.orderNumber.markOrderBy(1, true);
+			param.setOutputOrderColumns(true);
+			List<Object[]> expected = sort(allRows, false, true);
+			checkRows("金额降序编号升序", executor.query(toTargets(shards, param.build())), expected);
+			// 分页: 每个分库只取到当前页结束位置, 合并后再跳过前面的页
+			int count = 7;
+			for(int page = 1; (page - 1) * count <= expected.size(); page ++) {
+				param.setCount(count);
+				param.setPage(page);
+				int start = (page - 1) * count;
+				checkRows("第" + page + "页", executor.query(toTargets(shards, param.build())),
+						expected.subList(start, Math.min(start + count, expected.size())));
+			}
+			// 金额升序(null在最前), 编号升序
+			param = SqlParameter.getParameter(OrderParameter.class);
+			param.totalCost.markOrderBy(2, true);
+			param.orderNumber.markOrderBy(1, true);
+			param.setOutputOrderColumns(true);
+			checkRows("金额升序编号升序", executor.query(toTargets(shards, param.build())), sort(allRows, true, true));
+			// 字符串排序列需要比较器
+			param = SqlParameter.getParameter(OrderParameter.class);
+			param.orderNumber.markOrderBy(1, false);
+			param.setOutputOrderColumns(true);
+			List<ScatterGatherExecutor.Target> targets = toTargets(shards, param.build());
+			try {
+				new ScatterGatherExecutor(threadPool, 2).query(targets);
+				fail("字符串排序列没有比较器时没有拒绝合并");
+			} catch (IllegalArgumentException e) {
+				/* 预期的异常 */
+			}
+			checkRows("编号降序", executor.query(targets), sort(allRows, null, false));
+			// 没有输出排序列时拒绝合并
+			param = SqlParameter.getParameter(OrderParameter.class);
+			param.totalCost.markOrderBy(1, true);
+			try {
+				executor.query(toTargets(shards, param.build()));
+				fail("没有输出排序列时没有拒绝合并");
+			} catch (IllegalArgumentException e) {
+				/* 预期的异常 */
+			}
+			// 没有排序时按分库顺序拼接
+			param = SqlParameter.getParameter(OrderParameter.class);
+			param.setCount(rowCount);
+			param.setPage(2);
+			checkRows("没有排序", executor.query(toTargets(shards, param.build())), allRows.subList(rowCount, rowCount * 2));
+		} finally {
+			threadPool.shutdown();
+		}
+		for(MemoryDataSource shard : shards) {
+			if(shard.getOpenCount() != 0) {
+				fail("有没有关闭的数据库资源: " + shard.getOpenCount());
+			}
+		}
+		System.out.println("检查通过");
+	}
+
+	/**
+	 * 在每个分库上执行同一个构建结果
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static List<ScatterGatherExecutor.Target> toTargets(List<MemoryDataSource> shards, SqlResult result) {
+		List<ScatterGatherExecutor.Target> targets = new ArrayList<ScatterGatherExecutor.Target>(shards.size());
+		for(MemoryDataSource shard : shards) {
+			targets.add(new ScatterGatherExecutor.Target(shard, result));
+		}
+		return targets;
+	}
+
+	/**
+	 * 在内存中排序所有记录, null比任何值都小
+	 *
+	 * @param isCostAsc 金额是否升序, 为null表示不按金额排序
+	 * @param isNumberAsc 编号是否升序
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static List<Object[]> sort(List<Object[]> rows, final Boolean isCostAsc, final boolean isNumberAsc) {
+		List<Object[]> sortedRows = new ArrayList<Object[]>(rows);
+		Collections.sort(sortedRows, new Comparator<Object[]>() {
+			@Override
+			public int compare(Object[] row1, Object[] row2) {
+				if(isCostAsc != null) {
+					BigDecimal cost1 = (BigDecimal) row1[2];
+					BigDecimal cost2 = (BigDecimal) row2[2];
+					int result = cost1 == cost2 ? 0 : cost1 == null ? -1 : cost2 == null ? 1 : cost1.compareTo(cost2);
+					if(result != 0) {
+						return isCostAsc ? result : - result;
+					}
+				}
+				int result = STRING_COMPARATOR.compare(row1[1], row2[1]);
+				return isNumberAsc ? result : - result;
+			}
+		});
+		return sortedRows;
+	}
+
+	/**
+	 * 按订单ID比较合并结果与预期的记录
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static void checkRows(String name, List<Object[]> rows, List<Object[]> expected) {
+		List<Object> ids = new ArrayList<Object>(rows.size());
+		for(Object[] row : rows) {
+			ids.add(row[0]);
+		}
+		List<Object> expectedIDs = new ArrayList<Object>(expected.size());
+		for(Object[] row : expected) {
+			expectedIDs.add(row[0]);
+		}
+		if(! ids.equals(expectedIDs)) {
+			fail(String.format("%s的合并结果不一致:\n结果: %s\n预期: %s", name, ids, expectedIDs));
+		}
+	}
+
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(1);
+	}
+}
@@ -0,0 +1,67 @@
+package com.fy.sparam.test;
+
+import java.math.BigDecimal;
+
+import com.fy.sparam.product.SqlParameter;
+
+/**
+ * 按来源回滚搜索内容的耗时测试
+ * <br/> 先在搜索参数上添加数千个条件, 再反复在另外的字段上添加并取消搜索, 取消的耗时应该只与该字段自己的搜索内容相关,
+ * 不随已有条件的数量增长.
+ * <br/> 运行参数: [每种规模的操作次数] [已有条件数量...], 默认2000次, 规模1000 5000 20000.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SearchRollbackBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		int operationCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int[] sizes = {1000, 5000, 20000};
+		if(args.length > 1) {
+			sizes = new int[args.length - 1];
+			for(int i = 1; i < args.length; i ++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		// 预热
+		run(1000, operationCount);
+		for(int size : sizes) {
+			long[] costs = run(size, operationCount);
+			System.out.println(String.format("已有条件%s个: 添加并取消搜索 %.2f us/次, 混合排序分组和搜索 %.2f us/次",
+					size, costs[0] / 1000.0 / operationCount, costs[1] / 1000.0 / operationCount));
+		}
+	}
+
+	/**
+	 * 在有指定数量条件的搜索参数上进行测试
+	 *
+	 * @return {添加并取消搜索的总耗时, 混合操作的总耗时}, 单位纳秒
+	 *
+	 * @author linjie
+	 * @since 1.0.2
+	 */
+	private static long[] run(int size, int operationCount) throws Exception {
+		OrderParameter param = SqlParameter.getParameter(OrderParameter.class);
+		param.enableAutoRelation(true);
+		for(int i = 0; i < size; i ++) {
+			param.orderNumber.eq(String.valueOf(i));
+		}
+		long start = System.nanoTime();
+		for(int i = 0; i < operationCount; i ++) {
+			param.totalCost.eq(BigDecimal.ONE);
+			param.totalCost.cancelSearch();
+		}
+		long cancelCost = System.nanoTime() - start;
+		start = System.nanoTime();
+		for(int i = 0; i < operationCount; i ++) {
+			param.createDate.markOrderBy(1, true);
+			param.totalCost.markGroupBy(1);
+			param.totalCost.eq(BigDecimal.TEN);
+			param.totalCost.cancelSearch();
+			param.createDate.cancelSearch();
+		}
+		long mixedCost = System.nanoTime() - start;
+		return new long[] {cancelCost, mixedCost};
+	}
+}
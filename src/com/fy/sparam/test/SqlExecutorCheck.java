@@ -0,0 +1,166 @@
+package com.fy.sparam.test;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.fy.sparam.product.SqlMarker;
+import com.fy.sparam.product.SqlParameter;
+import com.fy.sparam.product.SqlParameter.BuildMode;
+import com.fy.sparam.product.executor.SqlExecutor;
+
+/**
+ * 构建结果执行器的检查
+ * <br/> 在内存数据库上检查占位符值的绑定(字符串, 数字, 时间, in列表), 记录的转换, 更新语句,
+ * 以及读取完成, 提前停止(处理回调返回false或提前关闭迭代器)和执行, 转换, 处理失败时都关闭了连接, 语句和结果集.
+ * <br/> 需要H2数据库驱动, 检查失败时输出原因并退出.
+ *
+ * @author linjie
+ * @since 1.0.2
+ */
+public class SqlExecutorCheck {
+
+	private static final long BASE_TIME = 1500000000000L;
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	public static void main(String[] args) throws Exception {
+		MemoryDataSource dataSource = new MemoryDataSource("sql_executor");
+		dataSource.execute("DROP TABLE IF EXISTS t_order",
+				"CREATE TABLE t_order(order_id VARCHAR(20), order_number VARCHAR(20), total_cost DECIMAL(10, 2), create_date TIMESTAMP)");
+		for(int i = 0; i < 30; i ++) {
+			dataSource.execute(String.format("INSERT INTO t_order VALUES('%s', '%s', %s, '%s')",
+					"o" + i, "N" + i, new BigDecimal(i).setScale(2), new Timestamp(BASE_TIME + i * DAY)));
+		}
+		SqlExecutor executor = new SqlExecutor(4);
+		// 绑定: 字符串in列表, 数字比较和时间比较
+		OrderParameter param = SqlParameter.getParameter(OrderParameter.class);
+		param.orderNumber.in(Arrays.asList("N3", "N8", "N12", "N20", "N25"));
+		param.above().and(null);
+		param.totalCost.greaterThan(new BigDecimal("5.5"));
+		param.above().and(null);
+		param.createDate.lessThan(new Date(BASE_TIME + 22 * DAY));
+		List<String> ids = new ArrayList<String>();
+		SqlExecutor.RowIterator<String> iterator = executor.iterate(dataSource, param.build(), new SqlExecutor.IRowMapper<String>() {
+			@Override
+			public String mapRow(ResultSet rs) throws Exception {
+				return rs.getString("order_id") + ":" + rs.getBigDecimal("total_cost");
+			}
+		});
+		while(iterator.hasNext()) {
+			ids.add(iterator.next());
+		}
+		Collections.sort(ids);
+		check(ids.equals(Arrays.asList("o12:12.00", "o20:20.00", "o8:8.00")), "绑定或转换的结果不正确: " + ids);
+		checkClosed(dataSource, "读取完所有记录后");
+		// 按列顺序转换
+		param = SqlParameter.getParameter(OrderParameter.class);
+		param.orderID.eq("o7");
+		List<Object[]> rows = toList(executor.iterate(dataSource, param.build(), SqlExecutor.OBJECT_ARRAY_MAPPER));
+		check(rows.size() == 1 && rows.get(0).length == 4 && "N7".equals(rows.get(0)[1]), "按列顺序转换的结果不正确");
+		// 处理回调返回false时停止读取
+		final int[] handledCount = new int[] {0};
+		int rowCount = executor.query(dataSource, SqlParameter.getParameter(OrderParameter.class).build(), new SqlExecutor.IRowHandler() {
+			@Override
+			public boolean onRow(ResultSet rs) throws Exception {
+				return ++ handledCount[0] < 3;
+			}
+		});
+		check(rowCount == 3 && handledCount[0] == 3, "处理回调返回false时没有停止读取: " + rowCount);
+		checkClosed(dataSource, "处理回调返回false后");
+		// 提前关闭迭代器, 重复关闭没有影响
+		iterator = executor.iterate(dataSource, SqlParameter.getParameter(OrderParameter.class).build(), new SqlExecutor.IRowMapper<String>() {
+			@Override
+			public String mapRow(ResultSet rs) throws Exception {
+				return rs.getString(1);
+			}
+		});
+		iterator.next();
+		iterator.next();
+		iterator.close();
+		iterator.close();
+		check(! iterator.hasNext(), "关闭后的迭代器还有记录");
+		checkClosed(dataSource, "提前关闭迭代器后");
+		// 转换失败
+		iterator = executor.iterate(dataSource, SqlParameter.getParameter(OrderParameter.class).build(), new SqlExecutor.IRowMapper<String>() {
+			private int count;
+
+			@Override
+			public String mapRow(ResultSet rs) throws Exception {
+				if(++ this.count == 2) {
+					throw new IllegalArgumentException("转换失败");
+				}
+				return rs.getString(1);
+			}
+		});
+		try {
+			toList(iterator);
+			fail("转换失败时没有抛出异常");
+		} catch (IllegalStateException e) {
+			check(e.getCause() instanceof IllegalArgumentException, "转换失败的原因不正确: " + e.getCause());
+		}
+		checkClosed(dataSource, "转换失败后");
+		// 处理失败
+		try {
+			executor.query(dataSource, SqlParameter.getParameter(OrderParameter.class).build(), new SqlExecutor.IRowHandler() {
+				@Override
+				public boolean onRow(ResultSet rs) throws Exception {
+					throw new UnsupportedOperationException("处理失败");
+				}
+			});
+			fail("处理失败时没有抛出异常");
+		} catch (UnsupportedOperationException e) {
+			/* 预期的异常 */
+		}
+		checkClosed(dataSource, "处理失败后");
+		// 执行失败
+		param = SqlParameter.getParameter(OrderParameter.class);
+		param.addExtraWhere("no_such_column = ? ", 1);
+		try {
+			executor.iterate(dataSource, param.build(), SqlExecutor.OBJECT_ARRAY_MAPPER);
+			fail("执行失败时没有抛出异常");
+		} catch (java.sql.SQLException e) {
+			/* 预期的异常 */
+		}
+		checkClosed(dataSource, "执行失败后");
+		// 更新
+		param = SqlParameter.getParameter(OrderParameter.class);
+		param.orderNumber.eq("N9");
+		SqlMarker marker = new SqlMarker();
+		marker.markUpdate(param.totalCost, new BigDecimal("99.90"));
+		int updateCount = executor.update(dataSource, param.build(BuildMode.UPDATE, marker));
+		param = SqlParameter.getParameter(OrderParameter.class);
+		param.totalCost.eq(new BigDecimal("99.90"));
+		rows = toList(executor.iterate(dataSource, param.build(), SqlExecutor.OBJECT_ARRAY_MAPPER));
+		check(updateCount == 1 && rows.size() == 1 && "o9".equals(rows.get(0)[0]), "更新的结果不正确: " + updateCount);
+		checkClosed(dataSource, "更新后");
+		System.out.println("检查通过");
+	}
+
+	private static <T> List<T> toList(SqlExecutor.RowIterator<T> iterator) {
+		List<T> rows = new ArrayList<T>();
+		while(iterator.hasNext()) {
+			rows.add(iterator.next());
+		}
+		return rows;
+	}
+
+	private static void checkClosed(MemoryDataSource dataSource, String when) {
+		check(dataSource.getOpenCount() == 0, String.format("%s有没有关闭的数据库资源: %s", when, dataSource.getOpenCount()));
+	}
+
+	private static void check(boolean isPassed, String message) {
+		if(! isPassed) {
+			fail(message);
+		}
+	}
+
+	private static void fail(String message) {
+		System.out.println(message);
+		System.exit(1);
+	}
+}
@@ -29,7 +29,7 @@ public class UserParameter extends SqlParameter {
 	 * @author hongweiquan
 	 * @since 4.5.0
 	 */
-	@FieldMeta(name = "name")
+	@FieldMeta(name = "name", indexed = true)
 	public ISearchable<String> name;
 	
 //	/**